@@ -0,0 +1,126 @@
+package com.example.assistant_therapeutique.ai;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One model server behind the load balancer: its outstanding request count,
+ * the outcomes of its most recent calls, whether it is currently ejected and
+ * its latest health probe result.
+ */
+public class AiBackend {
+
+    private final String url;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // Ring buffer of the last calls, true = failed. Guarded by this.
+    private final boolean[] outcomes;
+    private int nextOutcome;
+    private int calls;
+    private int failures;
+
+    // System.nanoTime() until which the backend receives no traffic, 0 when admitted
+    private volatile long ejectedUntilNanos;
+
+    private volatile AiHealthSnapshot health = AiHealthSnapshot.UNKNOWN;
+
+    AiBackend(String url, int errorWindow) {
+        this.url = url;
+        this.outcomes = new boolean[errorWindow];
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public AiHealthSnapshot getHealth() {
+        return health;
+    }
+
+    void publishHealth(AiHealthSnapshot snapshot) {
+        health = snapshot;
+    }
+
+    /**
+     * @return false only if the last health probe found the backend down
+     */
+    boolean isProbedUp() {
+        AiHealthSnapshot snapshot = health;
+        return !snapshot.isKnown() || snapshot.up();
+    }
+
+    public boolean isEjected() {
+        return ejectedUntilNanos != 0;
+    }
+
+    /**
+     * @return share of failed calls among the last calls, 0 when there were none
+     */
+    public synchronized double getErrorRate() {
+        return calls == 0 ? 0 : (double) failures / calls;
+    }
+
+    synchronized int getRecentCalls() {
+        return calls;
+    }
+
+    void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    void requestFinished() {
+        inFlight.decrementAndGet();
+    }
+
+    synchronized void recordOutcome(boolean failed) {
+        if (calls == outcomes.length) {
+            if (outcomes[nextOutcome]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        outcomes[nextOutcome] = failed;
+        if (failed) {
+            failures++;
+        }
+        nextOutcome = (nextOutcome + 1) % outcomes.length;
+    }
+
+    void eject(long untilNanos) {
+        // 0 is reserved for "admitted"
+        ejectedUntilNanos = untilNanos == 0 ? 1 : untilNanos;
+    }
+
+    /**
+     * Re-admit the backend if its ejection has elapsed, with a clean error history.
+     * @return true if the backend is admitted
+     */
+    synchronized boolean readmitIfDue(long nowNanos) {
+        long until = ejectedUntilNanos;
+        if (until == 0) {
+            return true;
+        }
+        if (nowNanos - until < 0) {
+            return false;
+        }
+        readmit();
+        return true;
+    }
+
+    synchronized void readmit() {
+        ejectedUntilNanos = 0;
+        calls = 0;
+        failures = 0;
+        nextOutcome = 0;
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.assistant_therapeutique.ai;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups prompts into micro-batches for the model server's {@code /chat/batch} endpoint.
+ * A batch is sent when it reaches {@code ai.batch.max-size} prompts, or {@code ai.batch.window-ms}
+ * after its first prompt arrived, whichever comes first. Each caller gets its own reply back.
+ * Larger windows mean fuller batches (throughput) at the cost of up to one window of added latency.
+ * Batch sizes are published as the {@code ai.batch.size} distribution summary.
+ */
+@Component
+public class AiBatchDispatcher {
+
+    @Value("${ai.batch.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ai.batch.window-ms:20}")
+    private long windowMs;
+
+    @Value("${ai.batch.max-size:8}")
+    private int maxSize;
+
+    @Autowired
+    private AiClient aiClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Object lock = new Object();
+
+    private List<PendingPrompt> pending = new ArrayList<>();
+
+    private ScheduledFuture<?> scheduledFlush;
+
+    private ScheduledExecutorService timer;
+
+    private DistributionSummary batchSizes;
+
+    @PostConstruct
+    void init() {
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ai-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        batchSizes = DistributionSummary.builder("ai.batch.size")
+                .description("Number of prompts per /chat/batch call")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void close() {
+        flush();
+        timer.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue a prompt for the next batch.
+     * The returned future completes on a worker thread (never the Netty event loop).
+     * @param message The user's message
+     * @return future of the reply; completes exceptionally if the batch call fails or
+     * the model returned no reply for this prompt
+     */
+    public CompletableFuture<String> submit(String message) {
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        List<PendingPrompt> fullBatch = null;
+        synchronized (lock) {
+            pending.add(new PendingPrompt(message, reply));
+            if (pending.size() >= maxSize) {
+                fullBatch = drain();
+            } else if (pending.size() == 1) {
+                scheduledFlush = timer.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (fullBatch != null) {
+            dispatch(fullBatch);
+        }
+        return reply;
+    }
+
+    private void flush() {
+        List<PendingPrompt> batch;
+        synchronized (lock) {
+            batch = drain();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    // Must hold the lock
+    private List<PendingPrompt> drain() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        List<PendingPrompt> batch = pending;
+        pending = new ArrayList<>(maxSize);
+        return batch;
+    }
+
+    private void dispatch(List<PendingPrompt> batch) {
+        batchSizes.record(batch.size());
+        List<String> messages = batch.stream().map(PendingPrompt::message).toList();
+
+        CompletableFuture<List<String>> replies;
+        try {
+            replies = aiClient.chatBatch(messages);
+        } catch (Exception e) {
+            replies = CompletableFuture.failedFuture(e);
+        }
+        replies.whenComplete((responses, error) -> {
+            if (error == null && responses.size() != batch.size()) {
+                error = new IllegalStateException("Expected " + batch.size()
+                        + " replies from /chat/batch, got " + responses.size());
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                CompletableFuture<String> reply = batch.get(i).reply();
+                if (error != null) {
+                    reply.completeExceptionally(error);
+                } else if (responses.get(i) == null || responses.get(i).isEmpty()) {
+                    reply.completeExceptionally(new AiEmptyResponseException());
+                } else {
+                    reply.complete(responses.get(i));
+                }
+            }
+        });
+    }
+
+    private record PendingPrompt(String message, CompletableFuture<String> reply) {
+    }
+}
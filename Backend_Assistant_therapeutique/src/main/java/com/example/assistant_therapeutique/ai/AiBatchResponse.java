@@ -0,0 +1,10 @@
+package com.example.assistant_therapeutique.ai;
+
+import java.util.List;
+
+/**
+ * Body of a {@code /chat/batch} response, as read by {@link AiJsonCodec}.
+ * @param responses The replies in request order, null if the array is absent
+ */
+public record AiBatchResponse(List<String> responses) {
+}
@@ -0,0 +1,9 @@
+package com.example.assistant_therapeutique.ai;
+
+/**
+ * Body of a {@code /chat} response, as read by {@link AiJsonCodec}.
+ * @param response The generated reply, null if absent or not a string
+ * @param status The server's status field, null if absent
+ */
+public record AiChatResponse(String response, String status) {
+}
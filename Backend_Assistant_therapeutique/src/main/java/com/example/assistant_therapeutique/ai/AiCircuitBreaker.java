@@ -0,0 +1,298 @@
+package com.example.assistant_therapeutique.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import javax.annotation.PostConstruct;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker in front of the model servers, so that an outage fails calls in
+ * microseconds instead of tying up callers until each HTTP call times out.
+ * <ul>
+ *     <li>CLOSED: calls go through; the outcomes of the last {@code ai.circuit.window} calls
+ *     are kept. Once at least {@code ai.circuit.min-calls} are known, a failure rate of
+ *     {@code ai.circuit.failure-rate} or a rate of calls slower than {@code ai.circuit.slow-call-ms}
+ *     of {@code ai.circuit.slow-call-rate} opens the circuit.</li>
+ *     <li>OPEN: calls are rejected with {@link AiCircuitOpenException} for {@code ai.circuit.open-ms}.</li>
+ *     <li>HALF_OPEN: {@code ai.circuit.half-open-calls} trial calls go through; the circuit closes
+ *     if they stay under both thresholds and opens again otherwise.</li>
+ * </ul>
+ * As for backend ejection, empty replies and 4xx errors are not failures, and calls cut short
+ * by the caller's deadline ({@link AiDeadlineExceededException}) count for nothing.
+ * Every transition is published as an {@link AiCircuitStateChangedEvent} and counted in
+ * {@code ai.circuit.transitions}; {@code ai.circuit.state} (0 closed, 1 open, 2 half-open)
+ * and {@code ai.circuit.rejected} are published too.
+ */
+@Component
+public class AiCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    @Value("${ai.circuit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.circuit.window:20}")
+    private int window;
+
+    @Value("${ai.circuit.min-calls:10}")
+    private int minCalls;
+
+    @Value("${ai.circuit.failure-rate:0.5}")
+    private double failureRateThreshold;
+
+    @Value("${ai.circuit.slow-call-ms:10000}")
+    private long slowCallMs;
+
+    @Value("${ai.circuit.slow-call-rate:0.8}")
+    private double slowCallRateThreshold;
+
+    @Value("${ai.circuit.open-ms:15000}")
+    private long openMs;
+
+    @Value("${ai.circuit.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Read without locking on the fast path; written under this
+    private volatile State state = State.CLOSED;
+    private volatile long openUntilNanos;
+
+    // Ring buffers of the last calls' outcomes, since the last transition. Guarded by this.
+    private boolean[] failed;
+    private boolean[] slow;
+    private int next;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+    private int trialsLeft;
+
+    private Counter rejected;
+
+    @PostConstruct
+    void init() {
+        failed = new boolean[Math.max(1, window)];
+        slow = new boolean[failed.length];
+        rejected = Counter.builder("ai.circuit.rejected")
+                .description("AI calls rejected while the circuit breaker is open")
+                .register(meterRegistry);
+        Gauge.builder("ai.circuit.state", this, breaker -> breaker.getState().ordinal())
+                .description("AI circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(meterRegistry);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Cheap, lock-free check for callers that queue before calling: false while the
+     * circuit is open and not yet due for a trial call.
+     */
+    public boolean isCallPermitted() {
+        return !enabled || state != State.OPEN || System.nanoTime() - openUntilNanos >= 0;
+    }
+
+    /**
+     * Run a single-valued call through the breaker.
+     * @return the call's future, or one failed with {@link AiCircuitOpenException} if rejected
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        if (!tryAcquire()) {
+            return CompletableFuture.failedFuture(new AiCircuitOpenException());
+        }
+        long start = System.nanoTime();
+        CompletableFuture<T> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            onError(System.nanoTime() - start, e);
+            return CompletableFuture.failedFuture(e);
+        }
+        return result.whenComplete((value, error) -> {
+            if (error == null) {
+                onResult(System.nanoTime() - start, false);
+            } else {
+                onError(System.nanoTime() - start, error);
+            }
+        });
+    }
+
+    /**
+     * Run a streaming call through the breaker. Its latency is the time to the first element,
+     * and its outcome is known from then on; a stream cancelled before that counts for nothing.
+     * @return the call's elements, or an {@link AiCircuitOpenException} error if rejected
+     */
+    public <T> Flux<T> executeMany(Supplier<Flux<T>> call) {
+        if (!enabled) {
+            return Flux.defer(call);
+        }
+        return Flux.defer(() -> {
+            if (!tryAcquire()) {
+                return Flux.error(new AiCircuitOpenException());
+            }
+            long start = System.nanoTime();
+            AtomicBoolean recorded = new AtomicBoolean();
+            return call.get()
+                    .doOnNext(value -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            onResult(System.nanoTime() - start, false);
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            onResult(System.nanoTime() - start, false);
+                        }
+                    })
+                    .doOnError(error -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            onError(System.nanoTime() - start, error);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            abandon();
+                        }
+                    });
+        });
+    }
+
+    /**
+     * @return true if a call may go through now, taking a trial slot when half-open
+     */
+    boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        AiCircuitStateChangedEvent transition = null;
+        boolean permitted;
+        synchronized (this) {
+            if (state == State.OPEN && System.nanoTime() - openUntilNanos >= 0) {
+                transition = transition(State.HALF_OPEN);
+            }
+            permitted = state == State.CLOSED;
+            if (state == State.HALF_OPEN && trialsLeft > 0) {
+                trialsLeft--;
+                permitted = true;
+            }
+        }
+        publish(transition);
+        if (!permitted) {
+            rejected.increment();
+        }
+        return permitted;
+    }
+
+    void onResult(long latencyNanos, boolean failure) {
+        AiCircuitStateChangedEvent transition;
+        synchronized (this) {
+            transition = record(failure, latencyNanos >= TimeUnit.MILLISECONDS.toNanos(slowCallMs));
+        }
+        publish(transition);
+    }
+
+    private void onError(long latencyNanos, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof CancellationException || AiLoadBalancer.isIgnored(cause)) {
+            abandon();
+        } else {
+            onResult(latencyNanos, AiLoadBalancer.isBackendFailure(cause));
+        }
+    }
+
+    /**
+     * A call that ended without an outcome gives its trial slot back.
+     */
+    private synchronized void abandon() {
+        if (state == State.HALF_OPEN && calls + trialsLeft < halfOpenCalls) {
+            trialsLeft++;
+        }
+    }
+
+    private AiCircuitStateChangedEvent record(boolean failure, boolean slowCall) {
+        if (state == State.OPEN) {
+            // A call started before the circuit opened
+            return null;
+        }
+        int size = state == State.HALF_OPEN ? Math.min(halfOpenCalls, failed.length) : failed.length;
+        if (calls == size) {
+            failures -= failed[next] ? 1 : 0;
+            slowCalls -= slow[next] ? 1 : 0;
+        } else {
+            calls++;
+        }
+        failed[next] = failure;
+        slow[next] = slowCall;
+        failures += failure ? 1 : 0;
+        slowCalls += slowCall ? 1 : 0;
+        next = (next + 1) % size;
+
+        boolean overThreshold = failureRate() >= failureRateThreshold || slowCallRate() >= slowCallRateThreshold;
+        if (state == State.HALF_OPEN) {
+            // One bad trial is enough to reopen; all trials good closes the circuit
+            if (failure || slowCall) {
+                return transition(State.OPEN);
+            }
+            return calls >= size ? transition(State.CLOSED) : null;
+        }
+        return calls >= minCalls && overThreshold ? transition(State.OPEN) : null;
+    }
+
+    private double failureRate() {
+        return calls == 0 ? 0 : (double) failures / calls;
+    }
+
+    private double slowCallRate() {
+        return calls == 0 ? 0 : (double) slowCalls / calls;
+    }
+
+    private AiCircuitStateChangedEvent transition(State to) {
+        AiCircuitStateChangedEvent event = new AiCircuitStateChangedEvent(state, to, failureRate(), slowCallRate());
+        if (to == State.OPEN) {
+            openUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(openMs);
+        }
+        trialsLeft = to == State.HALF_OPEN ? halfOpenCalls : 0;
+        calls = 0;
+        failures = 0;
+        slowCalls = 0;
+        next = 0;
+        state = to;
+        return event;
+    }
+
+    private void publish(AiCircuitStateChangedEvent event) {
+        if (event == null) {
+            return;
+        }
+        System.err.println("AI circuit breaker " + event.from() + " -> " + event.to()
+                + " (failure rate " + Math.round(event.failureRate() * 100) + "%, slow calls "
+                + Math.round(event.slowCallRate() * 100) + "%)");
+        Counter.builder("ai.circuit.transitions")
+                .description("AI circuit breaker state transitions")
+                .tag("from", event.from().name().toLowerCase(Locale.ROOT))
+                .tag("to", event.to().name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry)
+                .increment();
+        eventPublisher.publishEvent(event);
+    }
+}
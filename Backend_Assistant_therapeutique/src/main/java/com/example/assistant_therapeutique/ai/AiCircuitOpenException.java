@@ -0,0 +1,12 @@
+package com.example.assistant_therapeutique.ai;
+
+/**
+ * The AI circuit breaker is open: the call was rejected without reaching a model server.
+ */
+public class AiCircuitOpenException extends RuntimeException {
+
+    public AiCircuitOpenException() {
+        // No stack trace: thrown on every rejected call while the circuit is open
+        super("AI circuit breaker is open", null, false, false);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.assistant_therapeutique.ai;
+
+/**
+ * Published by the {@link AiCircuitBreaker} on every state transition.
+ * @param from The previous state
+ * @param to The new state
+ * @param failureRate Share of failed calls in the window that led to the transition
+ * @param slowCallRate Share of slow calls in that window
+ */
+public record AiCircuitStateChangedEvent(AiCircuitBreaker.State from, AiCircuitBreaker.State to,
+                                         double failureRate, double slowCallRate) {
+}
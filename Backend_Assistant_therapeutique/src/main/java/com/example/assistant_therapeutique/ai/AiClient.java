@@ -0,0 +1,298 @@
+package com.example.assistant_therapeutique.ai;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * HTTP client for the FastAPI model servers.
+ * Each call is routed to a backend by the {@link AiLoadBalancer}; {@code /chat} calls are
+ * hedged to a second backend when the first is slow.
+ * Connections are kept alive in a bounded pool shared by all calls, and every call has
+ * connect, read and total deadlines so a hung model server cannot block a caller forever.
+ * Request and response bodies go through {@link AiJsonCodec}, without data binding.
+ * Pool and request metrics are published to Micrometer under {@code reactor.netty.*},
+ * tagged with the backend's remote address.
+ */
+@Component
+public class AiClient {
+
+    public static final Integer MAX_TOKENS = 200;
+    public static final Double TEMPERATURE = 0.4;
+
+    private static final Consumer<HttpHeaders> JSON_HEADERS = headers -> {
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+    };
+
+    private static final Consumer<HttpHeaders> SSE_HEADERS = headers -> {
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+    };
+
+    private static final ParameterizedTypeReference<Map<String, Object>> JSON_OBJECT =
+            new ParameterizedTypeReference<>() {};
+
+    // Event data is kept as raw text and parsed by AiJsonCodec
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> TOKEN_EVENT =
+            new ParameterizedTypeReference<>() {};
+
+    @Value("${ai.client.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${ai.client.pending-acquire-max:500}")
+    private int pendingAcquireMax;
+
+    @Value("${ai.client.pending-acquire-timeout-ms:5000}")
+    private long pendingAcquireTimeoutMs;
+
+    @Value("${ai.client.max-idle-time-ms:30000}")
+    private long maxIdleTimeMs;
+
+    @Value("${ai.client.connect-timeout-ms:2000}")
+    private int connectTimeoutMs;
+
+    @Value("${ai.client.read-timeout-ms:30000}")
+    private long readTimeoutMs;
+
+    @Value("${ai.client.total-timeout-ms:60000}")
+    private long totalTimeoutMs;
+
+    @Value("${ai.client.health-timeout-ms:2000}")
+    private long healthTimeoutMs;
+
+    @Autowired
+    private AiLoadBalancer loadBalancer;
+
+    private ConnectionProvider connectionProvider;
+
+    private WebClient webClient;
+
+    @PostConstruct
+    void init() {
+        connectionProvider = ConnectionProvider.builder("ai")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMax)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+                .evictInBackground(Duration.ofMillis(maxIdleTimeMs))
+                .metrics(true)
+                .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .keepAlive(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(readTimeoutMs))
+                // Only a handful of fixed paths: the URI is a safe metrics tag
+                .metrics(true, uri -> uri);
+
+        webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    @PreDestroy
+    void close() {
+        connectionProvider.dispose();
+    }
+
+    /**
+     * Ask the model for a reply.
+     * The returned future completes on a worker thread (never the Netty event loop), so
+     * callers may chain blocking work such as persisting the reply.
+     * @param message The user's message
+     * @return future of the reply; completes exceptionally on HTTP errors, deadlines or an empty reply
+     */
+    public CompletableFuture<String> chat(String message) {
+        return chat(AiRequest.of(message));
+    }
+
+    /**
+     * Ask the model for a reply, given the conversation so far, within the request's
+     * generation budget and deadline.
+     * @param request The message, context (see {@code ConversationWindow}), max tokens and deadline
+     * @return future of the reply; completes exceptionally on HTTP errors, deadlines or an empty reply
+     */
+    public CompletableFuture<String> chat(AiRequest request) {
+        long timeoutMs = timeoutMillis(request.deadline());
+        return loadBalancer.routeHedged(backend -> webClient.post()
+                        .uri(backend.getUrl() + "/chat")
+                        .headers(JSON_HEADERS)
+                        .body(json(out -> AiJsonCodec.writeChat(request, out)))
+                        .retrieve()
+                        .bodyToMono(DataBuffer.class)
+                        .timeout(Duration.ofMillis(timeoutMs))
+                        .onErrorMap(TimeoutException.class, e -> timedOut(e, timeoutMs))
+                        .map(body -> read(body, AiJsonCodec::readChat))
+                        .flatMap(body -> Mono.justOrEmpty(body.response()))
+                        .switchIfEmpty(Mono.error(() -> new AiEmptyResponseException())))
+                .publishOn(Schedulers.boundedElastic())
+                .toFuture();
+    }
+
+    /**
+     * Ask the model for replies to several messages in one {@code /chat/batch} call.
+     * The returned future completes on a worker thread (never the Netty event loop).
+     * @param messages The user messages, all generated with the default parameters
+     * @return future of the replies, in the same order as the messages; completes
+     * exceptionally on HTTP errors, deadlines or a missing {@code responses} array
+     */
+    public CompletableFuture<List<String>> chatBatch(List<String> messages) {
+        return loadBalancer.route(backend -> webClient.post()
+                        .uri(backend.getUrl() + "/chat/batch")
+                        .headers(JSON_HEADERS)
+                        .body(json(out -> AiJsonCodec.writeBatch(messages, out)))
+                        .retrieve()
+                        .bodyToMono(DataBuffer.class)
+                        .timeout(Duration.ofMillis(totalTimeoutMs))
+                        .map(body -> read(body, AiJsonCodec::readBatch))
+                        .flatMap(response -> Mono.justOrEmpty(response.responses()))
+                        .switchIfEmpty(Mono.error(() -> new AiEmptyResponseException())))
+                .publishOn(Schedulers.boundedElastic())
+                .toFuture();
+    }
+
+    /**
+     * Stream the model's reply token by token from {@code /chat/stream}.
+     * Tokens are emitted on a worker thread (never the Netty event loop).
+     * @param message The user's message
+     * @return the generated tokens, in order; errors on HTTP errors or deadlines
+     */
+    public Flux<String> chatStream(String message) {
+        return chatStream(AiRequest.of(message));
+    }
+
+    /**
+     * Stream the model's reply token by token, given the conversation so far, within the
+     * request's generation budget and deadline.
+     * @param request The message, context, max tokens and deadline
+     * @return the generated tokens, in order; errors on HTTP errors or deadlines
+     */
+    public Flux<String> chatStream(AiRequest request) {
+        long timeoutMs = timeoutMillis(request.deadline());
+        return loadBalancer.routeMany(backend -> webClient.post()
+                        .uri(backend.getUrl() + "/chat/stream")
+                        .headers(SSE_HEADERS)
+                        .body(json(out -> AiJsonCodec.writeChat(request, out)))
+                        .retrieve()
+                        .bodyToFlux(TOKEN_EVENT)
+                        .timeout(Duration.ofMillis(timeoutMs))
+                        .onErrorMap(TimeoutException.class, e -> timedOut(e, timeoutMs))
+                        .takeWhile(event -> !"done".equals(event.event())))
+                .filter(event -> event.data() != null)
+                .<String>handle((event, sink) -> {
+                    try {
+                        String token = AiJsonCodec.readToken(event.data());
+                        if (token != null) {
+                            sink.next(token);
+                        }
+                    } catch (IOException e) {
+                        sink.error(e);
+                    }
+                })
+                .publishOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Call one model server's {@code /health} endpoint.
+     * @return its JSON body; errors on HTTP errors or when the health deadline passes
+     */
+    public Mono<Map<String, Object>> health(AiBackend backend) {
+        return webClient.get()
+                .uri(backend.getUrl() + "/health")
+                .headers(JSON_HEADERS)
+                .retrieve()
+                .bodyToMono(JSON_OBJECT)
+                .timeout(Duration.ofMillis(healthTimeoutMs));
+    }
+
+    /**
+     * Total deadline of one call: the configured ceiling, or less if the caller's
+     * deadline comes first.
+     */
+    private long timeoutMillis(Deadline deadline) {
+        return Math.min(totalTimeoutMs, deadline.remainingMillis());
+    }
+
+    /**
+     * A timeout cut short by the caller's deadline is reported as an
+     * {@link AiDeadlineExceededException}, which does not count against the backend.
+     */
+    private Throwable timedOut(TimeoutException e, long timeoutMs) {
+        if (timeoutMs >= totalTimeoutMs) {
+            return e;
+        }
+        AiDeadlineExceededException exceeded = new AiDeadlineExceededException(timeoutMs);
+        exceeded.initCause(e);
+        return exceeded;
+    }
+
+    /**
+     * Request body generated by {@code writer} directly into a (pooled) buffer of the connection.
+     */
+    private static BodyInserter<Object, ReactiveHttpOutputMessage> json(JsonWriter writer) {
+        return (message, context) -> message.writeWith(Mono.fromCallable(() -> {
+            DataBuffer buffer = message.bufferFactory().allocateBuffer(256);
+            boolean written = false;
+            try {
+                writer.write(buffer.asOutputStream());
+                written = true;
+                return buffer;
+            } finally {
+                if (!written) {
+                    DataBufferUtils.release(buffer);
+                }
+            }
+        }));
+    }
+
+    /**
+     * Parse a response body with {@code reader}, releasing the buffer.
+     */
+    private static <T> T read(DataBuffer body, JsonReader<T> reader) {
+        try {
+            return reader.read(body.asInputStream(true));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable response from AI service", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface JsonWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface JsonReader<T> {
+        T read(InputStream in) throws IOException;
+    }
+}
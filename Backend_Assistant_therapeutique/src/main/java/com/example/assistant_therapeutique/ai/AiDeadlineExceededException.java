@@ -0,0 +1,14 @@
+package com.example.assistant_therapeutique.ai;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A call timed out before {@code ai.client.total-timeout-ms} because the caller's
+ * {@link Deadline} left less time: it says nothing about the backend's health.
+ */
+public class AiDeadlineExceededException extends TimeoutException {
+
+    public AiDeadlineExceededException(long timeoutMs) {
+        super("Caller's deadline passed after " + timeoutMs + " ms, before the AI service answered");
+    }
+}
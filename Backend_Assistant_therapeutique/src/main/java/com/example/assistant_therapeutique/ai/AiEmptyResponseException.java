@@ -0,0 +1,11 @@
+package com.example.assistant_therapeutique.ai;
+
+/**
+ * The model server answered successfully but without a reply text.
+ */
+public class AiEmptyResponseException extends RuntimeException {
+
+    public AiEmptyResponseException() {
+        super("Empty response from AI service");
+    }
+}
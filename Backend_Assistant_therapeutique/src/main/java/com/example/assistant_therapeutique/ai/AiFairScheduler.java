@@ -0,0 +1,217 @@
+package com.example.assistant_therapeutique.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fair-share admission in front of the model servers, so one chatty user cannot take
+ * all of the inference capacity.
+ * At most {@code ai.scheduler.max-concurrent} calls run at once and each user has at
+ * most one of them. Every user waiting for a slot has a queue, and free slots go to
+ * those queues in round-robin order: a user with many queued messages gets one turn
+ * per round, like everyone else.
+ * Callers acquire a {@link Permit} before calling the model and release it once the
+ * call is over.
+ */
+@Component
+public class AiFairScheduler {
+
+    @Value("${ai.scheduler.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.scheduler.max-concurrent:8}")
+    private int maxConcurrent;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Guarded by this
+    private final Map<Object, UserQueue> queues = new HashMap<>();
+    private final Deque<UserQueue> ready = new ArrayDeque<>();
+    private int running;
+    private int queued;
+
+    private Timer waitTimer;
+    private Counter expired;
+
+    @PostConstruct
+    void init() {
+        // Per-user series would grow with the user base: wait times are tagged by nothing,
+        // the per-user view is the distribution itself
+        waitTimer = Timer.builder("ai.scheduler.wait")
+                .description("Time a user's AI call waited for its turn")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        expired = Counter.builder("ai.scheduler.expired")
+                .description("AI calls dropped from the queue because their deadline passed")
+                .register(meterRegistry);
+        Gauge.builder("ai.scheduler.queued", this, AiFairScheduler::getQueued)
+                .description("AI calls waiting for their turn")
+                .register(meterRegistry);
+        Gauge.builder("ai.scheduler.waiting.users", this, AiFairScheduler::getWaitingUsers)
+                .description("Users with AI calls waiting for their turn")
+                .register(meterRegistry);
+        Gauge.builder("ai.scheduler.running", this, AiFairScheduler::getRunning)
+                .description("AI calls holding a slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Wait for this user's turn to call the model.
+     * Calls not made on behalf of a user are not scheduled.
+     * @param user identity of the user the call is made for, or null
+     * @param deadline a call still queued when its deadline passes is dropped
+     * @return future of the permit to release once the call is over; completes exceptionally
+     * with a {@link TimeoutException} if the deadline passes first. Cancelling it gives up the turn.
+     */
+    public CompletableFuture<Permit> acquire(Object user, Deadline deadline) {
+        if (!enabled || user == null) {
+            return CompletableFuture.completedFuture(Permit.NONE);
+        }
+        Waiter waiter = new Waiter(deadline, System.nanoTime());
+        synchronized (this) {
+            UserQueue queue = queues.computeIfAbsent(user, UserQueue::new);
+            queue.waiters.addLast(waiter);
+            queued++;
+            if (!queue.inFlight && queue.waiters.size() == 1) {
+                ready.addLast(queue);
+            }
+        }
+        dispatch();
+        return waiter.future;
+    }
+
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    public synchronized int getWaitingUsers() {
+        int users = 0;
+        for (UserQueue queue : queues.values()) {
+            if (!queue.waiters.isEmpty()) {
+                users++;
+            }
+        }
+        return users;
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /**
+     * Hand free slots to waiting users, one per user in round-robin order.
+     */
+    private void dispatch() {
+        while (true) {
+            Waiter next = null;
+            Permit permit = null;
+            List<Waiter> dropped = new ArrayList<>(0);
+            synchronized (this) {
+                if (running >= maxConcurrent || ready.isEmpty()) {
+                    return;
+                }
+                UserQueue queue = ready.pollFirst();
+                Waiter waiter;
+                while ((waiter = queue.waiters.pollFirst()) != null) {
+                    queued--;
+                    if (!waiter.future.isDone() && !waiter.deadline.isExpired()) {
+                        next = waiter;
+                        break;
+                    }
+                    dropped.add(waiter);
+                }
+                if (next == null) {
+                    queues.remove(queue.user);
+                } else {
+                    queue.inFlight = true;
+                    running++;
+                    permit = new Permit(this, queue);
+                }
+            }
+            for (Waiter waiter : dropped) {
+                if (waiter.future.completeExceptionally(new TimeoutException("Deadline passed while waiting for an AI slot"))) {
+                    expired.increment();
+                }
+            }
+            if (next != null) {
+                waitTimer.record(System.nanoTime() - next.enqueuedAtNanos, TimeUnit.NANOSECONDS);
+                if (!next.future.complete(permit)) {
+                    // Cancelled while queued: the slot goes to the next user
+                    permit.release();
+                }
+            }
+        }
+    }
+
+    private void finished(UserQueue queue) {
+        synchronized (this) {
+            running--;
+            queue.inFlight = false;
+            if (queue.waiters.isEmpty()) {
+                queues.remove(queue.user);
+            } else {
+                ready.addLast(queue);
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * A slot to call the model. Releasing it more than once has no effect.
+     */
+    public static final class Permit {
+
+        static final Permit NONE = new Permit(null, null);
+
+        private final AiFairScheduler scheduler;
+        private final UserQueue queue;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(AiFairScheduler scheduler, UserQueue queue) {
+            this.scheduler = scheduler;
+            this.queue = queue;
+        }
+
+        public void release() {
+            if (scheduler != null && released.compareAndSet(false, true)) {
+                scheduler.finished(queue);
+            }
+        }
+    }
+
+    private static final class UserQueue {
+
+        private final Object user;
+        private final Deque<Waiter> waiters = new ArrayDeque<>();
+        private boolean inFlight;
+
+        private UserQueue(Object user) {
+            this.user = user;
+        }
+    }
+
+    private record Waiter(Deadline deadline, long enqueuedAtNanos, CompletableFuture<Permit> future) {
+
+        private Waiter(Deadline deadline, long enqueuedAtNanos) {
+            this(deadline, enqueuedAtNanos, new CompletableFuture<>());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.assistant_therapeutique.ai;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Actuator {@code ai} health component, built from the prober's cached snapshots (no I/O).
+ * UP if any backend is up, DOWN once every backend has been probed and none is,
+ * UNKNOWN before the first probe. Reported in the {@code upstream} health group, not in
+ * readiness: the instance keeps serving everything else, and fallback replies, while the AI is down.
+ */
+@Component
+public class AiHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private AiLoadBalancer loadBalancer;
+
+    @Override
+    public Health health() {
+        boolean anyUp = false;
+        boolean allKnown = true;
+        Map<String, Object> backends = new LinkedHashMap<>();
+        for (AiBackend backend : loadBalancer.getBackends()) {
+            AiHealthSnapshot snapshot = backend.getHealth();
+            anyUp |= snapshot.up();
+            allKnown &= snapshot.isKnown();
+
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("up", snapshot.up());
+            details.put("modelLoaded", snapshot.modelLoaded());
+            details.put("latencyMs", snapshot.latencyMs());
+            details.put("consecutiveFailures", snapshot.consecutiveFailures());
+            details.put("checkedAt", snapshot.checkedAt());
+            details.put("ejected", backend.isEjected());
+            details.put("inFlight", backend.getInFlight());
+            backends.put(backend.getUrl(), details);
+        }
+
+        Health.Builder builder = anyUp ? Health.up() : allKnown ? Health.down() : Health.unknown();
+        return builder.withDetail("backends", backends).build();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.assistant_therapeutique.ai;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Probes every AI backend's {@code /health} endpoint in the background, every
+ * {@code ai.health.interval-ms}, and publishes the result as an immutable
+ * {@link AiHealthSnapshot} on the backend. Availability checks then read the
+ * latest snapshots instead of making a network call.
+ * A backend is up when it answers within the health deadline with {@code model_loaded: true}.
+ */
+@Component
+public class AiHealthProber {
+
+    @Autowired
+    private AiClient aiClient;
+
+    @Autowired
+    private AiLoadBalancer loadBalancer;
+
+    private volatile boolean anyUp;
+
+    // A round still waiting on a slow backend is not overlapped by the next one
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    /**
+     * Start probing all backends, without waiting: the snapshots are published as the answers
+     * come in, so a hanging backend does not hold the scheduler thread shared with the other
+     * scheduled tasks. Skipped while the previous round is still running.
+     */
+    @Scheduled(initialDelayString = "${ai.health.initial-delay-ms:0}", fixedDelayString = "${ai.health.interval-ms:10000}")
+    public void probeAll() {
+        if (probing.compareAndSet(false, true)) {
+            probeRound()
+                    .doFinally(signal -> probing.set(false))
+                    .subscribe();
+        }
+    }
+
+    /**
+     * Probe all backends concurrently and publish their snapshots.
+     * @return completes once every backend has answered or failed
+     */
+    public Mono<Void> probeRound() {
+        return Flux.fromIterable(loadBalancer.getBackends())
+                .flatMap(this::probe)
+                .then(Mono.fromRunnable(() ->
+                        anyUp = loadBalancer.getBackends().stream().anyMatch(backend -> backend.getHealth().up())));
+    }
+
+    /**
+     * @return true if the last probe found at least one backend up; no I/O
+     */
+    public boolean isAvailable() {
+        return anyUp;
+    }
+
+    private Mono<Void> probe(AiBackend backend) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return aiClient.health(backend)
+                    .map(body -> Boolean.TRUE.equals(body.get("model_loaded")))
+                    .map(loaded -> backend.getHealth().next(true, loaded, elapsedMs(start), Instant.now()))
+                    .onErrorResume(e -> Mono.just(backend.getHealth().next(false, false, elapsedMs(start), Instant.now())))
+                    .doOnNext(snapshot -> publish(backend, snapshot))
+                    .then();
+        });
+    }
+
+    private static void publish(AiBackend backend, AiHealthSnapshot snapshot) {
+        AiHealthSnapshot previous = backend.getHealth();
+        backend.publishHealth(snapshot);
+        if (previous.up() && !snapshot.up()) {
+            System.err.println("AI backend " + backend.getUrl() + " is down");
+        } else if (!previous.up() && snapshot.up()) {
+            System.out.println("AI backend " + backend.getUrl() + " is up (" + snapshot.latencyMs() + " ms)");
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
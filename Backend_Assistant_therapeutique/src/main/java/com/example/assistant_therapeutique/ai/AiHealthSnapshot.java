@@ -0,0 +1,27 @@
+package com.example.assistant_therapeutique.ai;
+
+import java.time.Instant;
+
+/**
+ * Result of the latest health probe of one AI backend. Immutable, so it can be
+ * published and read atomically without locking.
+ * @param up true if the backend answered {@code /health} and its model is loaded
+ * @param modelLoaded the backend's {@code model_loaded} flag from its last answer
+ * @param latencyMs duration of the last probe, -1 before the first one
+ * @param consecutiveFailures probes in a row that found the backend down
+ * @param checkedAt time of the last probe, null before the first one
+ */
+public record AiHealthSnapshot(boolean up, boolean modelLoaded, long latencyMs,
+                               int consecutiveFailures, Instant checkedAt) {
+
+    static final AiHealthSnapshot UNKNOWN = new AiHealthSnapshot(false, false, -1, 0, null);
+
+    public boolean isKnown() {
+        return checkedAt != null;
+    }
+
+    AiHealthSnapshot next(boolean answered, boolean loaded, long latency, Instant now) {
+        boolean nowUp = answered && loaded;
+        return new AiHealthSnapshot(nowUp, loaded, latency, nowUp ? 0 : consecutiveFailures + 1, now);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.assistant_therapeutique.ai;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * When to hedge an AI call, and whether the budget still allows it.
+ * The hedge delay is the configured percentile of the last successful call latencies,
+ * never below a floor. No hedge is sent until enough latencies have been seen.
+ * Every primary call earns {@code budget} of a hedge and a hedge spends a whole one;
+ * unspent credit is capped at {@link #MAX_CREDITS}. Hedges therefore add at most
+ * {@code budget} extra load over time, while still absorbing a short burst of slow calls.
+ */
+class AiHedgePolicy {
+
+    static final int MAX_CREDITS = 10;
+
+    // Fixed-point unit of one hedge's worth of credit
+    private static final long UNIT = 1_000_000;
+
+    private final double percentile;
+    private final int minSamples;
+    private final long minDelayNanos;
+    private final long earnPerCall;
+    private final int recomputeEvery;
+
+    // Ring buffer of the last successful latencies. Guarded by this.
+    private final long[] latencies;
+    private int next;
+    private int count;
+    private int sinceRecompute;
+
+    // -1 until minSamples latencies have been recorded
+    private volatile long delayNanos = -1;
+
+    private final AtomicLong credits = new AtomicLong();
+
+    AiHedgePolicy(double percentile, double budget, int window, int minSamples, long minDelayNanos) {
+        this.percentile = percentile;
+        this.latencies = new long[Math.max(1, window)];
+        this.minSamples = Math.max(1, Math.min(minSamples, latencies.length));
+        this.minDelayNanos = minDelayNanos;
+        this.earnPerCall = Math.round(budget * UNIT);
+        this.recomputeEvery = Math.max(1, latencies.length / 8);
+    }
+
+    /**
+     * @return how long to wait for the primary call before hedging, -1 while still learning
+     */
+    long delayNanos() {
+        return delayNanos;
+    }
+
+    synchronized void record(long latencyNanos) {
+        latencies[next] = latencyNanos;
+        next = (next + 1) % latencies.length;
+        if (count < latencies.length) {
+            count++;
+        }
+        sinceRecompute++;
+        if (count >= minSamples && (delayNanos < 0 || sinceRecompute >= recomputeEvery)) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile * count) - 1;
+            delayNanos = Math.max(minDelayNanos, sorted[Math.max(0, Math.min(rank, count - 1))]);
+            sinceRecompute = 0;
+        }
+    }
+
+    /**
+     * Credit one primary call towards the hedge budget.
+     */
+    void earn() {
+        credits.accumulateAndGet(earnPerCall, (current, earned) -> Math.min(current + earned, MAX_CREDITS * UNIT));
+    }
+
+    /**
+     * @return true, spending one hedge's credit, if the budget allows a hedge now
+     */
+    boolean trySpend() {
+        while (true) {
+            long current = credits.get();
+            if (current < UNIT) {
+                return false;
+            }
+            if (credits.compareAndSet(current, current - UNIT)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.assistant_therapeutique.ai;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * JSON wire format of the model server API, on Jackson's streaming API.
+ * Request bodies are generated field by field straight into the output stream.
+ * Responses are read token by token: only the fields the client uses are
+ * materialized, and everything else is skipped without being turned into objects.
+ * There is no data binding, no reflection and no intermediate {@code Map}.
+ */
+public final class AiJsonCodec {
+
+    // Thread-safe once configured, and it recycles its parser/generator buffers
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private AiJsonCodec() {
+    }
+
+    /**
+     * Write a {@code /chat} or {@code /chat/stream} request body.
+     */
+    public static void writeChat(AiRequest request, OutputStream out) throws IOException {
+        try (JsonGenerator json = FACTORY.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("message", Objects.requireNonNullElse(request.message(), ""));
+            if (request.hasContext()) {
+                json.writeStringField("context", request.context());
+            }
+            json.writeNumberField("max_tokens", request.maxTokens());
+            json.writeNumberField("temperature", AiClient.TEMPERATURE);
+            json.writeEndObject();
+        }
+    }
+
+    /**
+     * Write a {@code /chat/batch} request body, with the default generation parameters.
+     */
+    public static void writeBatch(List<String> messages, OutputStream out) throws IOException {
+        try (JsonGenerator json = FACTORY.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("messages");
+            for (String message : messages) {
+                json.writeString(message);
+            }
+            json.writeEndArray();
+            json.writeNumberField("max_tokens", AiClient.MAX_TOKENS);
+            json.writeNumberField("temperature", AiClient.TEMPERATURE);
+            json.writeEndObject();
+        }
+    }
+
+    /**
+     * Read a {@code /chat} response body; the stream is closed.
+     */
+    public static AiChatResponse readChat(InputStream in) throws IOException {
+        String response = null;
+        String status = null;
+        try (JsonParser json = FACTORY.createParser(in)) {
+            startObject(json);
+            while (json.nextToken() == JsonToken.FIELD_NAME) {
+                String field = json.getCurrentName();
+                json.nextToken();
+                if ("response".equals(field)) {
+                    response = text(json);
+                } else if ("status".equals(field)) {
+                    status = text(json);
+                } else {
+                    json.skipChildren();
+                }
+            }
+        }
+        return new AiChatResponse(response, status);
+    }
+
+    /**
+     * Read a {@code /chat/batch} response body; the stream is closed.
+     */
+    public static AiBatchResponse readBatch(InputStream in) throws IOException {
+        List<String> responses = null;
+        try (JsonParser json = FACTORY.createParser(in)) {
+            startObject(json);
+            while (json.nextToken() == JsonToken.FIELD_NAME) {
+                String field = json.getCurrentName();
+                if ("responses".equals(field) && json.nextToken() == JsonToken.START_ARRAY) {
+                    responses = new ArrayList<>();
+                    while (json.nextToken() != JsonToken.END_ARRAY) {
+                        responses.add(text(json));
+                    }
+                } else {
+                    json.nextToken();
+                    json.skipChildren();
+                }
+            }
+        }
+        return new AiBatchResponse(responses);
+    }
+
+    /**
+     * Read the token of a {@code /chat/stream} event's data, e.g. {@code {"token":"Bon"}}.
+     * @return the token, or null if the event carries none
+     */
+    public static String readToken(String data) throws IOException {
+        try (JsonParser json = FACTORY.createParser(data)) {
+            if (json.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (json.nextToken() == JsonToken.FIELD_NAME) {
+                String field = json.getCurrentName();
+                json.nextToken();
+                if ("token".equals(field)) {
+                    return text(json);
+                }
+                json.skipChildren();
+            }
+            return null;
+        }
+    }
+
+    private static void startObject(JsonParser json) throws IOException {
+        if (json.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(json, "Expected a JSON object from the AI service");
+        }
+    }
+
+    // The current value if it is a string, otherwise null (the value is skipped)
+    private static String text(JsonParser json) throws IOException {
+        if (json.currentToken() == JsonToken.VALUE_STRING) {
+            return json.getText();
+        }
+        json.skipChildren();
+        return null;
+    }
+}
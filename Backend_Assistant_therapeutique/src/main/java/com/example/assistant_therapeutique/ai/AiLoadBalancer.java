@@ -0,0 +1,328 @@
+package com.example.assistant_therapeutique.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Spreads AI calls over the configured model servers ({@code ai.service.urls}).
+ * Each call goes to the admitted backend with the fewest outstanding requests.
+ * A backend whose error rate over its last {@code ai.lb.error-window} calls reaches
+ * {@code ai.lb.eject-error-rate} is ejected for {@code ai.lb.eject-duration-ms}, then
+ * re-admitted with a clean history. If every backend is ejected, calls still go to
+ * the least loaded one rather than failing outright. Backends that the {@link AiHealthProber}
+ * last found down are skipped the same way.
+ * With several backends, {@link #routeHedged} also sends a second attempt to another backend
+ * when the first has not answered within the observed {@code ai.hedge.percentile} latency,
+ * within an {@code ai.hedge.budget} share of extra calls (see {@link AiHedgePolicy}).
+ * Per backend, publishes {@code ai.backend.in.flight}, {@code ai.backend.ejected}, {@code ai.backend.up} and
+ * the {@code ai.backend.requests} latency timer, tagged with {@code backend=<url>}.
+ * Hedging publishes the {@code ai.hedge.fired}, {@code ai.hedge.won} and {@code ai.hedge.throttled}
+ * counters and the {@code ai.hedge.delay} gauge.
+ */
+@Component
+public class AiLoadBalancer {
+
+    @Value("${ai.service.urls:${ai.service.url:http://localhost:8000}}")
+    private List<String> backendUrls;
+
+    @Value("${ai.lb.error-window:20}")
+    private int errorWindow;
+
+    @Value("${ai.lb.min-calls:5}")
+    private int minCalls;
+
+    @Value("${ai.lb.eject-error-rate:0.5}")
+    private double ejectErrorRate;
+
+    @Value("${ai.lb.eject-duration-ms:30000}")
+    private long ejectDurationMs;
+
+    @Value("${ai.hedge.enabled:true}")
+    private boolean hedgeEnabled;
+
+    @Value("${ai.hedge.percentile:0.95}")
+    private double hedgePercentile;
+
+    @Value("${ai.hedge.budget:0.05}")
+    private double hedgeBudget;
+
+    @Value("${ai.hedge.window:1000}")
+    private int hedgeWindow;
+
+    @Value("${ai.hedge.min-samples:100}")
+    private int hedgeMinSamples;
+
+    @Value("${ai.hedge.min-delay-ms:20}")
+    private long hedgeMinDelayMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private List<AiBackend> backends;
+
+    private AiHedgePolicy hedgePolicy;
+
+    private Counter hedgesFired;
+
+    private Counter hedgesWon;
+
+    private Counter hedgesThrottled;
+
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    @PostConstruct
+    void init() {
+        List<AiBackend> configured = new ArrayList<>();
+        for (String url : backendUrls) {
+            if (!url.isBlank()) {
+                AiBackend backend = new AiBackend(url.trim(), errorWindow);
+                configured.add(backend);
+                Gauge.builder("ai.backend.in.flight", backend, AiBackend::getInFlight)
+                        .description("Outstanding requests to the AI backend")
+                        .tag("backend", backend.getUrl())
+                        .register(meterRegistry);
+                Gauge.builder("ai.backend.ejected", backend, b -> b.isEjected() ? 1 : 0)
+                        .description("1 while the AI backend is ejected for its error rate")
+                        .tag("backend", backend.getUrl())
+                        .register(meterRegistry);
+                Gauge.builder("ai.backend.up", backend, b -> b.getHealth().up() ? 1 : 0)
+                        .description("1 if the last health probe found the AI backend up")
+                        .tag("backend", backend.getUrl())
+                        .register(meterRegistry);
+            }
+        }
+        if (configured.isEmpty()) {
+            throw new IllegalStateException("No AI backend configured (ai.service.urls)");
+        }
+        backends = Collections.unmodifiableList(configured);
+
+        hedgePolicy = new AiHedgePolicy(hedgePercentile, hedgeBudget, hedgeWindow, hedgeMinSamples,
+                TimeUnit.MILLISECONDS.toNanos(hedgeMinDelayMs));
+        hedgesFired = Counter.builder("ai.hedge.fired")
+                .description("Hedged second attempts sent to another AI backend")
+                .register(meterRegistry);
+        hedgesWon = Counter.builder("ai.hedge.won")
+                .description("Hedged attempts that answered before the first attempt")
+                .register(meterRegistry);
+        hedgesThrottled = Counter.builder("ai.hedge.throttled")
+                .description("Hedges not sent because the hedge budget was spent")
+                .register(meterRegistry);
+        TimeGauge.builder("ai.hedge.delay", hedgePolicy, TimeUnit.NANOSECONDS, p -> Math.max(0, p.delayNanos()))
+                .description("How long a call waits before being hedged, 0 while latencies are being learned")
+                .register(meterRegistry);
+    }
+
+    public List<AiBackend> getBackends() {
+        return backends;
+    }
+
+    /**
+     * Run a single-valued call against the chosen backend, tracking its outcome.
+     */
+    public <T> Mono<T> route(Function<AiBackend, Mono<T>> call) {
+        return Mono.defer(() -> attempt(start(null, false), call));
+    }
+
+    /**
+     * Run a single-valued, idempotent call against the chosen backend, hedged: if it has not
+     * answered after the hedge delay and the budget allows, the same call is also sent to
+     * another backend. The first attempt to answer wins and the other one is cancelled; a
+     * failed attempt does not end the call while the other one may still answer. A first
+     * attempt failing before the hedge delay fails the call, as unhedged: hedging is for
+     * slow answers, not a retry. When both fail, the first attempt's error is reported.
+     * With a single backend or hedging disabled, same as {@link #route}.
+     */
+    public <T> Mono<T> routeHedged(Function<AiBackend, Mono<T>> call) {
+        if (!hedgeEnabled || backends.size() < 2) {
+            return route(call);
+        }
+        return Mono.defer(() -> {
+            hedgePolicy.earn();
+            Tracked primary = start(null, true);
+            AtomicReference<Throwable> primaryError = new AtomicReference<>();
+            Sinks.One<Boolean> primaryFailed = Sinks.one();
+            Mono<T> first = attempt(primary, call)
+                    .doOnError(e -> {
+                        primaryError.set(e);
+                        primaryFailed.tryEmitValue(Boolean.TRUE);
+                    });
+            long delayNanos = hedgePolicy.delayNanos();
+            if (delayNanos < 0) {
+                return first;
+            }
+            Mono<T> hedge = Mono.delay(Duration.ofNanos(delayNanos))
+                    .takeUntilOther(primaryFailed.asMono())
+                    .flatMap(tick -> {
+                        if (!hedgePolicy.trySpend()) {
+                            hedgesThrottled.increment();
+                            // No value: the first attempt alone decides the outcome
+                            return Mono.<T>empty();
+                        }
+                        hedgesFired.increment();
+                        return attempt(start(primary.backend, true), call)
+                                .doOnNext(value -> hedgesWon.increment());
+                    });
+            // Errors only once neither attempt can answer, with a NoSuchElementException
+            return Mono.firstWithValue(first, hedge)
+                    .onErrorMap(NoSuchElementException.class,
+                            e -> primaryError.get() != null ? primaryError.get() : e);
+        });
+    }
+
+    private <T> Mono<T> attempt(Tracked tracked, Function<AiBackend, Mono<T>> call) {
+        return call.apply(tracked.backend)
+                .doOnSuccess(value -> tracked.finish(null))
+                .doOnError(tracked::finish)
+                .doOnCancel(tracked::abandon);
+    }
+
+    /**
+     * Run a streaming call against the chosen backend, tracking its outcome.
+     */
+    public <T> Flux<T> routeMany(Function<AiBackend, Flux<T>> call) {
+        return Flux.defer(() -> {
+            Tracked tracked = start(null, false);
+            return call.apply(tracked.backend)
+                    .doOnComplete(() -> tracked.finish(null))
+                    .doOnError(tracked::finish)
+                    .doOnCancel(tracked::abandon);
+        });
+    }
+
+    /**
+     * @return the admitted, healthy backend with the fewest outstanding requests, ties broken round-robin
+     */
+    AiBackend choose() {
+        return choose(null);
+    }
+
+    /**
+     * @param excluded backend not to choose, or null
+     */
+    private AiBackend choose(AiBackend excluded) {
+        long now = System.nanoTime();
+        int size = backends.size();
+        int start = Math.floorMod(cursor.getAndIncrement(), size);
+        AiBackend best = null;
+        AiBackend leastLoaded = null;
+        for (int i = 0; i < size; i++) {
+            AiBackend backend = backends.get((start + i) % size);
+            if (backend == excluded) {
+                continue;
+            }
+            if (leastLoaded == null || backend.getInFlight() < leastLoaded.getInFlight()) {
+                leastLoaded = backend;
+            }
+            boolean available = backend.readmitIfDue(now) && backend.isProbedUp();
+            if (available && (best == null || backend.getInFlight() < best.getInFlight())) {
+                best = backend;
+            }
+        }
+        return best != null ? best : leastLoaded;
+    }
+
+    private Tracked start(AiBackend excluded, boolean sampled) {
+        AiBackend backend = choose(excluded);
+        backend.requestStarted();
+        return new Tracked(backend, System.nanoTime(), sampled);
+    }
+
+    private void record(AiBackend backend, Throwable error, long latencyNanos) {
+        boolean ignored = error != null && isIgnored(error);
+        boolean failed = error != null && !ignored && isBackendFailure(error);
+        Timer.builder("ai.backend.requests")
+                .description("AI backend call latency")
+                .tag("backend", backend.getUrl())
+                .tag("outcome", ignored ? "ignored" : failed ? "error" : "success")
+                .register(meterRegistry)
+                .record(latencyNanos, TimeUnit.NANOSECONDS);
+
+        if (ignored || backend.isEjected()) {
+            return;
+        }
+        backend.recordOutcome(failed);
+        if (failed && backend.getRecentCalls() >= minCalls && backend.getErrorRate() >= ejectErrorRate) {
+            backend.eject(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ejectDurationMs));
+            System.err.println("AI backend " + backend.getUrl() + " ejected for " + ejectDurationMs
+                    + " ms (error rate " + Math.round(backend.getErrorRate() * 100) + "%)");
+        }
+    }
+
+    /**
+     * Whether a call ended without an outcome to judge the backend by: the caller's deadline
+     * cut its timeout short, so the backend may well have answered within its own.
+     */
+    static boolean isIgnored(Throwable error) {
+        return error instanceof AiDeadlineExceededException;
+    }
+
+    /**
+     * Whether an error says something about the backend's health, as opposed to the request.
+     */
+    static boolean isBackendFailure(Throwable error) {
+        if (isIgnored(error)) {
+            return false;
+        }
+        if (error instanceof AiEmptyResponseException) {
+            return false;
+        }
+        if (error instanceof WebClientResponseException response) {
+            return !response.getStatusCode().is4xxClientError();
+        }
+        return true;
+    }
+
+    private final class Tracked {
+
+        private final AiBackend backend;
+        private final long startNanos;
+        // Whether a success feeds the hedge delay: only hedgeable calls have comparable latencies
+        private final boolean sampled;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Tracked(AiBackend backend, long startNanos, boolean sampled) {
+            this.backend = backend;
+            this.startNanos = startNanos;
+            this.sampled = sampled;
+        }
+
+        void finish(Throwable error) {
+            if (done.compareAndSet(false, true)) {
+                backend.requestFinished();
+                long latencyNanos = System.nanoTime() - startNanos;
+                record(backend, error, latencyNanos);
+                if (sampled && error == null) {
+                    hedgePolicy.record(latencyNanos);
+                }
+            }
+        }
+
+        void abandon() {
+            if (done.compareAndSet(false, true)) {
+                backend.requestFinished();
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.assistant_therapeutique.ai;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Identity of a prompt for caching and coalescing: the normalized message plus
+ * the generation parameters that influence the reply.
+ */
+public record AiPromptKey(String message, int maxTokens, double temperature) {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\s.!?…]+$");
+
+    /**
+     * Build the key for a message sent with the default generation parameters.
+     */
+    public static AiPromptKey of(String message) {
+        return of(message, AiClient.MAX_TOKENS, AiClient.TEMPERATURE);
+    }
+
+    public static AiPromptKey of(String message, int maxTokens, double temperature) {
+        return new AiPromptKey(normalize(message), maxTokens, temperature);
+    }
+
+    /**
+     * Normalize a message so trivially different spellings share a key:
+     * Unicode NFC, lower case, collapsed whitespace, no trailing punctuation.
+     * Accents are kept ("stressé" and "stresse" stay distinct).
+     */
+    static String normalize(String message) {
+        if (message == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(message, Normalizer.Form.NFC)
+                .toLowerCase(Locale.ROOT)
+                .trim();
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ");
+        return TRAILING_PUNCTUATION.matcher(normalized).replaceAll("");
+    }
+
+    /**
+     * Approximate retained size in bytes, used to weigh cache entries.
+     */
+    int weight() {
+        // Object headers and fields, plus at most two bytes per char of the message
+        return 48 + 2 * message.length();
+    }
+}
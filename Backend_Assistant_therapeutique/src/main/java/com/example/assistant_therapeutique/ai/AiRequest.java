@@ -0,0 +1,31 @@
+package com.example.assistant_therapeutique.ai;
+
+/**
+ * One call to the model: who it is for, the user's message, the conversation so far,
+ * the generation budget and the deadline the reply is due by.
+ * @param userId The user the call is made for (see {@link AiFairScheduler}), or null
+ * @param message The user's message
+ * @param context The conversation so far, or null/empty for none
+ * @param maxTokens Maximum number of tokens to generate
+ * @param deadline When the caller stops waiting for the reply
+ */
+public record AiRequest(Long userId, String message, String context, int maxTokens, Deadline deadline) {
+
+    /**
+     * A context-free request for no particular user, with the default generation budget and no deadline.
+     */
+    public static AiRequest of(String message) {
+        return new AiRequest(null, message, null, AiClient.MAX_TOKENS, Deadline.none());
+    }
+
+    public boolean hasContext() {
+        return context != null && !context.isEmpty();
+    }
+
+    /**
+     * Key identifying equivalent requests, for caching and coalescing.
+     */
+    public AiPromptKey promptKey() {
+        return AiPromptKey.of(message, maxTokens, AiClient.TEMPERATURE);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.assistant_therapeutique.ai;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+
+/**
+ * Exact-match cache of AI replies, keyed on the normalized prompt and generation parameters.
+ * Bounded by total weight in bytes with Caffeine's W-TinyLFU eviction, entries expire after a TTL.
+ * Hit/miss/eviction counts are published as {@code cache.*} metrics tagged {@code cache=ai.responses}.
+ * When disabled ({@code ai.cache.enabled=false}) every lookup misses and nothing is stored.
+ */
+@Component
+public class AiResponseCache {
+
+    static final String CACHE_NAME = "ai.responses";
+
+    @Value("${ai.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.cache.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    @Value("${ai.cache.max-weight-bytes:10485760}")
+    private long maxWeightBytes;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Ticker ticker = Ticker.systemTicker();
+
+    private Cache<AiPromptKey, String> cache;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((AiPromptKey key, String reply) -> key.weight() + 40 + 2 * reply.length())
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * @return the cached reply, or null on a miss (always null when disabled)
+     */
+    public String get(AiPromptKey key) {
+        return cache != null ? cache.getIfPresent(key) : null;
+    }
+
+    public void put(AiPromptKey key, String reply) {
+        if (cache != null && reply != null) {
+            cache.put(key, reply);
+        }
+    }
+
+    /**
+     * Apply pending evictions; only useful to make sizes observable in tests.
+     */
+    void cleanUp() {
+        if (cache != null) {
+            cache.cleanUp();
+        }
+    }
+
+    long size() {
+        return cache != null ? cache.estimatedSize() : 0;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.assistant_therapeutique.ai;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Token-budgeted view of one conversation for the model prompt: the most recent turns
+ * verbatim, plus a rolling extractive summary (first sentence of each) of older turns.
+ * Appending a message is O(1) amortized and rendering is O(window), whatever the
+ * length of the conversation. Thread-safe.
+ */
+public class ConversationWindow {
+
+    private static final int SUMMARY_LINE_MAX_CHARS = 160;
+
+    private final int maxTurns;
+    private final int maxTokens;
+    private final int summaryMaxTokens;
+
+    private final Deque<Turn> turns = new ArrayDeque<>();
+    private final Deque<String> summary = new ArrayDeque<>();
+    private int turnTokens;
+    private int summaryTokens;
+    private long lastMessageId;
+
+    /**
+     * @param maxTurns most recent messages kept verbatim
+     * @param maxTokens budget for the whole rendered context (summary and turns)
+     * @param summaryMaxTokens budget for the summary of older turns
+     */
+    public ConversationWindow(int maxTurns, int maxTokens, int summaryMaxTokens) {
+        this.maxTurns = maxTurns;
+        this.maxTokens = maxTokens;
+        this.summaryMaxTokens = summaryMaxTokens;
+    }
+
+    /**
+     * Add a saved message to the window. Messages must arrive in id order;
+     * one that is not newer than the last appended message is ignored.
+     */
+    public synchronized void append(long messageId, boolean fromAssistant, String content) {
+        if (messageId <= lastMessageId) {
+            return;
+        }
+        lastMessageId = messageId;
+
+        String text = content == null ? "" : content.strip();
+        // A single huge message must not blow the whole budget
+        if (estimateTokens(text) > maxTokens) {
+            text = text.substring(0, maxTokens * 4);
+        }
+        Turn turn = new Turn(fromAssistant, text, estimateTokens(text) + 2);
+        turns.addLast(turn);
+        turnTokens += turn.tokens();
+
+        while (turns.size() > maxTurns || (turns.size() > 1 && turnTokens + summaryTokens > maxTokens)) {
+            Turn oldest = turns.removeFirst();
+            turnTokens -= oldest.tokens();
+            summarize(oldest);
+        }
+    }
+
+    /**
+     * @return the context to send with the next prompt, empty if there is no history
+     */
+    public synchronized String render() {
+        if (turns.isEmpty() && summary.isEmpty()) {
+            return "";
+        }
+        StringBuilder context = new StringBuilder(4 * (turnTokens + summaryTokens) + 64);
+        if (!summary.isEmpty()) {
+            context.append("Earlier in the conversation:\n");
+            for (String line : summary) {
+                context.append("- ").append(line).append('\n');
+            }
+            context.append('\n');
+        }
+        for (Turn turn : turns) {
+            context.append(turn.fromAssistant() ? "Assistant: " : "User: ").append(turn.content()).append('\n');
+        }
+        return context.toString().strip();
+    }
+
+    public synchronized int size() {
+        return turns.size();
+    }
+
+    public synchronized int tokens() {
+        return turnTokens + summaryTokens;
+    }
+
+    private void summarize(Turn turn) {
+        String line = (turn.fromAssistant() ? "Assistant: " : "User: ") + firstSentence(turn.content());
+        summary.addLast(line);
+        summaryTokens += estimateTokens(line) + 1;
+        while (summaryTokens > summaryMaxTokens && !summary.isEmpty()) {
+            summaryTokens -= estimateTokens(summary.removeFirst()) + 1;
+        }
+    }
+
+    static String firstSentence(String text) {
+        int end = text.length();
+        for (int i = 0; i < text.length() - 1; i++) {
+            char c = text.charAt(i);
+            if ((c == '.' || c == '!' || c == '?') && Character.isWhitespace(text.charAt(i + 1))) {
+                end = i + 1;
+                break;
+            }
+        }
+        if (end > SUMMARY_LINE_MAX_CHARS) {
+            return text.substring(0, SUMMARY_LINE_MAX_CHARS - 1).strip() + "…";
+        }
+        return text.substring(0, end);
+    }
+
+    /**
+     * Rough token count (about four characters per token), good enough for budgeting
+     * without running the model's tokenizer.
+     */
+    static int estimateTokens(String text) {
+        return (text.length() + 3) / 4;
+    }
+
+    private record Turn(boolean fromAssistant, String content, int tokens) {
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.assistant_therapeutique.ai;
+
+import java.time.Duration;
+
+/**
+ * Point in time by which a request must be answered, passed down from the controller
+ * to the AI call so every layer knows how much time is left.
+ */
+public final class Deadline {
+
+    private static final Deadline NONE = new Deadline(0, false);
+
+    private final long expiresAtNanos;
+    private final boolean bounded;
+
+    private Deadline(long expiresAtNanos, boolean bounded) {
+        this.expiresAtNanos = expiresAtNanos;
+        this.bounded = bounded;
+    }
+
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos(), true);
+    }
+
+    /**
+     * @return a deadline that never expires
+     */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    public boolean isExpired() {
+        return bounded && System.nanoTime() - expiresAtNanos >= 0;
+    }
+
+    /**
+     * @return milliseconds left, 0 once expired, {@link Long#MAX_VALUE} when unbounded
+     */
+    public long remainingMillis() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, (expiresAtNanos - System.nanoTime()) / 1_000_000);
+    }
+
+    @Override
+    public String toString() {
+        return bounded ? "Deadline[" + remainingMillis() + " ms left]" : "Deadline[none]";
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.assistant_therapeutique.ai;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key into a single underlying call.
+ * The first caller for a key starts the call; callers arriving while it is in flight
+ * share its result. Once the call completes the key is released, so later callers
+ * start a fresh call.
+ * @param <K> key identifying equivalent calls
+ * @param <V> result type
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Run {@code call} for {@code key}, or join the call already in flight for it.
+     * Each caller gets its own dependent future, so cancelling one does not affect the others.
+     * @param key identity of the call
+     * @param call starts the underlying call; invoked at most once per flight
+     * @return future of the shared result
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            return existing.copy();
+        }
+
+        CompletableFuture<V> result;
+        try {
+            result = call.get();
+        } catch (Exception e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, error) -> {
+            // Release the key before waking callers so a follow-up call starts a new flight
+            inFlight.remove(key, flight);
+            if (error != null) {
+                flight.completeExceptionally(error);
+            } else {
+                flight.complete(value);
+            }
+        });
+        return flight.copy();
+    }
+
+    /**
+     * @return the number of keys with a call currently in flight
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
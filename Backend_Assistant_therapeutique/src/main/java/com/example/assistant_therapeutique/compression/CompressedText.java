@@ -0,0 +1,142 @@
+package com.example.assistant_therapeutique.compression;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Storage format of long texts in a text column: compressed, behind a header naming the codec
+ * and its version, or as is.
+ * <pre>
+ *   ~ZD1:&lt;UTF-8 length&gt;:&lt;base64 of the raw deflate stream of the UTF-8 bytes&gt;
+ *   ~ZR1:&lt;text&gt;      a text starting with the header prefix, escaped
+ *   &lt;text&gt;           anything else: short texts, texts that do not compress, rows written before
+ * </pre>
+ * Plain text stays plain, so rows written before the format existed read back unchanged, even
+ * when they start with {@value #PREFIX}: only a known header is decoded. New texts starting with
+ * the prefix are escaped so they are never mistaken for a header. Base64 costs a third of the
+ * compressed size but keeps the column a text column, without migrating existing rows.
+ * <p>
+ * Rows written before the format cannot be told apart from a header, though. One starting with
+ * {@code ~ZD1:} fails to decode, and {@link CompressedTextConverter} then reads it as stored.
+ * One starting with {@code ~ZR1:} is taken for an escaped text and loses those 5 characters:
+ * the format accepts this, as such a text is very unlikely in a chat message. A future codec or
+ * version gets a new header letter or digit, and the old headers stay readable.
+ */
+public final class CompressedText {
+
+    public static final String PREFIX = "~Z";
+    public static final char DEFLATE = 'D';
+    public static final char RAW = 'R';
+    public static final char VERSION = '1';
+
+    private static final String DEFLATE_HEADER = PREFIX + DEFLATE + VERSION + ":";
+    private static final String RAW_HEADER = PREFIX + RAW + VERSION + ":";
+    // Bound on the declared length, so a corrupt header cannot allocate without limit
+    private static final int MAX_DECODED_BYTES = 64 * 1024 * 1024;
+
+    // Deflaters and inflaters hold native buffers, costly to create on every message
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final int minLength;
+    private final ThreadLocal<Deflater> deflaters;
+
+    /**
+     * @param minLength texts shorter than this (in characters) are stored as is
+     * @param level deflate level, 1 (fastest) to 9 (smallest)
+     */
+    public CompressedText(int minLength, int level) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Deflate level must be between 1 and 9: " + level);
+        }
+        this.minLength = minLength;
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    /**
+     * @return the text compressed if that makes it smaller, else the text as is (escaped if needed)
+     */
+    public String encode(String text) {
+        if (text == null) {
+            return null;
+        }
+        if (text.length() >= minLength) {
+            byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+            String compressed = DEFLATE_HEADER + utf8.length + ":" + Base64.getEncoder().encodeToString(deflate(utf8));
+            if (compressed.length() < utf8.length) {
+                return compressed;
+            }
+        }
+        return text.startsWith(PREFIX) ? RAW_HEADER + text : text;
+    }
+
+    /**
+     * @return the text of a stored value, whether compressed, escaped or plain
+     * @throws IllegalArgumentException if the value has a deflate header but its payload is corrupt
+     */
+    public static String decode(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return stored;
+        }
+        if (stored.startsWith(RAW_HEADER)) {
+            return stored.substring(RAW_HEADER.length());
+        }
+        if (!stored.startsWith(DEFLATE_HEADER)) {
+            // Not a header: a row written before the format, whose text happens to start with the prefix
+            return stored;
+        }
+        int separator = stored.indexOf(':', DEFLATE_HEADER.length());
+        try {
+            int length = Integer.parseInt(stored.substring(DEFLATE_HEADER.length(), separator));
+            if (length < 0 || length > MAX_DECODED_BYTES) {
+                throw new IllegalArgumentException("Invalid compressed text length: " + length);
+            }
+            byte[] compressed = Base64.getDecoder().decode(stored.substring(separator + 1));
+            return new String(inflate(compressed, length), StandardCharsets.UTF_8);
+        } catch (IndexOutOfBoundsException | NumberFormatException | DataFormatException e) {
+            // Base64 errors are already IllegalArgumentExceptions
+            throw new IllegalArgumentException("Corrupt compressed text", e);
+        }
+    }
+
+    private byte[] deflate(byte[] input) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        // Incompressible input grows by a few bytes per block
+        byte[] buffer = new byte[input.length + input.length / 1000 + 64];
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            size += deflater.deflate(buffer, size, buffer.length - size);
+        }
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private static byte[] inflate(byte[] input, int length) throws DataFormatException {
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(input);
+        byte[] output = new byte[length];
+        int size = 0;
+        while (size < length) {
+            int inflated = inflater.inflate(output, size, length - size);
+            if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                break;
+            }
+            size += inflated;
+        }
+        // More output than declared means the length in the header is wrong
+        boolean longer = size == length && !inflater.finished() && inflater.inflate(new byte[1]) > 0;
+        if (size != length || longer) {
+            throw new DataFormatException("Expected " + length + " bytes, inflated " + size);
+        }
+        return output;
+    }
+}
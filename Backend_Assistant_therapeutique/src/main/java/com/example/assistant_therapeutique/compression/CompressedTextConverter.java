@@ -0,0 +1,54 @@
+package com.example.assistant_therapeutique.compression;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores a text attribute in the {@link CompressedText} format, so that compression is
+ * transparent to the entity. Hibernate gets the converter from Spring, hence the settings:
+ * texts of at least {@code chat.compression.min-length} characters are deflated at
+ * {@code chat.compression.level}; {@code chat.compression.enabled=false} stops compressing
+ * new values. Compressed values are always read back, whatever the settings.
+ * A value that looks compressed but does not decode is a plain row written before the format
+ * (see {@link CompressedText}) and is read back as stored, so one row cannot break the loading
+ * of its whole conversation.
+ */
+@Component
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, String> {
+
+    @Value("${chat.compression.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.compression.min-length:512}")
+    private int minLength;
+
+    @Value("${chat.compression.level:6}")
+    private int level;
+
+    private CompressedText format;
+
+    @PostConstruct
+    void init() {
+        format = new CompressedText(enabled ? minLength : Integer.MAX_VALUE, level);
+    }
+
+    @Override
+    public String convertToDatabaseColumn(String text) {
+        return format.encode(text);
+    }
+
+    @Override
+    public String convertToEntityAttribute(String stored) {
+        try {
+            return CompressedText.decode(stored);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Stored text has a compression header but does not decode, read as is: " + e.getMessage());
+            return stored;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.assistant_therapeutique.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Bulkhead between AI-bound and CRUD request handling.
+ * Blocking AI sends run on {@code aiExecutor}, with its own threads and a bounded queue,
+ * instead of on Tomcat's worker threads: however large the inference backlog, it never
+ * holds the threads the other endpoints need. When the threads and the queue are full,
+ * submitting fails with a {@link java.util.concurrent.RejectedExecutionException} and the
+ * caller answers 503 at once. Rejections are counted in {@code ai.bulkhead.rejected}; pool
+ * and queue metrics are published under {@code executor.*} with {@code name=aiExecutor}.
+ * What follows an AI reply (saving it, answering) runs on {@code aiCallbackExecutor}.
+ */
+@Configuration
+public class BulkheadConfig {
+
+    @Value("${ai.bulkhead.threads:16}")
+    private int threads;
+
+    @Value("${ai.bulkhead.queue:32}")
+    private int queueCapacity;
+
+    @Bean
+    public ThreadPoolTaskExecutor aiExecutor(MeterRegistry meterRegistry) {
+        Counter rejected = Counter.builder("ai.bulkhead.rejected")
+                .description("AI sends rejected because the AI bulkhead was full")
+                .register(meterRegistry);
+        ThreadPoolExecutor.AbortPolicy abort = new ThreadPoolExecutor.AbortPolicy();
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("ai-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            rejected.increment();
+            abort.rejectedExecution(task, pool);
+        });
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Runs what follows an AI call once its reply or fallback is in (saving the reply, completing
+     * a job) on the bulkhead's threads. Without it, that work would run on whichever thread
+     * completed the call: the JDK timer thread that fires every deadline in the JVM, or an HTTP
+     * client I/O thread, and a slow database would stall them. Callbacks end calls that were
+     * already admitted, so they are never rejected: when the bulkhead is full they run on the
+     * common pool instead (a rejected async stage would never complete).
+     */
+    @Bean
+    public Executor aiCallbackExecutor(@Qualifier("aiExecutor") Executor aiExecutor) {
+        return task -> {
+            try {
+                aiExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                ForkJoinPool.commonPool().execute(task);
+            }
+        };
+    }
+}
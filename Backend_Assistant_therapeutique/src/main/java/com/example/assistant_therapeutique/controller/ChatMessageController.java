@@ -8,7 +8,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/chat")
@@ -27,8 +27,24 @@ public class ChatMessageController {
         return new ResponseEntity<>(savedMessage, HttpStatus.CREATED);
     }
 
+    /**
+     * A conversation's history. Without parameters, the whole history as a plain array, as
+     * existing clients expect. With {@code before}, {@code after} or {@code limit}, a page
+     * ({@link com.example.assistant_therapeutique.dto.ChatMessagePageDTO}), oldest first: the
+     * newest messages, or the ones before or after a cursor (a message id, e.g. a send's cursor).
+     */
     @GetMapping("/conversations/{conversationId}/messages")
-    public List<ChatMessage> getMessagesByConversationId(@PathVariable Long conversationId) {
-        return chatMessageService.getMessagesByConversationId(conversationId);
+    public ResponseEntity<?> getMessagesByConversationId(@PathVariable Long conversationId,
+                                                         @RequestParam(required = false) Long before,
+                                                         @RequestParam(required = false) Long after,
+                                                         @RequestParam(required = false) Integer limit) {
+        if (before == null && after == null && limit == null) {
+            return ResponseEntity.ok(chatMessageService.getMessagesByConversationId(conversationId));
+        }
+        try {
+            return ResponseEntity.ok(chatMessageService.getMessagePage(conversationId, before, after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 }
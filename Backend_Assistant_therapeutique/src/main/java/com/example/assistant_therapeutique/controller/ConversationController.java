@@ -1,19 +1,35 @@
 package com.example.assistant_therapeutique.controller;
 
+import com.example.assistant_therapeutique.ai.Deadline;
+import com.example.assistant_therapeutique.dto.ChatTurnResponseDTO;
 import com.example.assistant_therapeutique.dto.ConversationRequestDTO;
+import com.example.assistant_therapeutique.model.AiReplyJob;
 import com.example.assistant_therapeutique.model.Conversation;
 import com.example.assistant_therapeutique.model.ChatMessage;
+import com.example.assistant_therapeutique.service.ConversationContextService;
 import com.example.assistant_therapeutique.service.ConversationService;
 import com.example.assistant_therapeutique.service.ChatMessageService;
 import com.example.assistant_therapeutique.service.AiService;
+import com.example.assistant_therapeutique.service.AiReplyJobService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.net.URI;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/conversations")
@@ -28,6 +44,25 @@ public class ConversationController {
     @Autowired
     private AiService aiService;
 
+    @Autowired
+    private ConversationContextService conversationContextService;
+
+    @Autowired
+    private AiReplyJobService aiReplyJobService;
+
+    @Autowired
+    @Qualifier("aiExecutor")
+    private Executor aiExecutor;
+
+    // Saving the reply never runs on the thread that completed the AI call
+    @Autowired
+    @Qualifier("aiCallbackExecutor")
+    private Executor aiCallbackExecutor;
+
+    // User account the AI replies are saved under
+    @Value("${ai.assistant.user-id:1}")
+    private Long assistantUserId;
+
     @PostMapping
     public ResponseEntity<Conversation> createConversation(@RequestBody ConversationRequestDTO conversationRequestDTO) {
         Conversation savedConversation = conversationService.createConversation(
@@ -42,6 +77,22 @@ public class ConversationController {
         return conversationService.getConversationsByUserId(userId);
     }
 
+    /**
+     * The user's conversations for the sidebar, most recently active first: id, title, dates,
+     * message count and a preview of the last message, without loading any message.
+     * Paged with {@code ?limit=} and the previous page's {@code next} as {@code ?cursor=}.
+     */
+    @GetMapping("/user/{userId}/summaries")
+    public ResponseEntity<?> getConversationSummaries(@PathVariable Long userId,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(conversationService.getConversationSummaries(userId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Conversation> getConversationById(@PathVariable Long id) {
         Optional<Conversation> conversation = conversationService.getConversationById(id);
@@ -49,55 +100,231 @@ public class ConversationController {
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
     
+    /**
+     * Save the user's message, then get the AI reply and save it.
+     * The work runs on the AI bulkhead ({@code aiExecutor}), not on the request thread, so a
+     * backlog of AI calls never holds the threads the CRUD endpoints need. When the bulkhead
+     * is full the request is answered 503 with a Retry-After at once.
+     * @param delta true to answer with only this turn's messages and a cursor
+     * ({@link ChatTurnResponseDTO}) instead of the whole conversation
+     */
     @PostMapping("/send")
-    public ResponseEntity<?> sendMessage(@RequestBody Map<String, Object> request) {
+    public CompletableFuture<ResponseEntity<?>> sendMessage(@RequestBody Map<String, Object> request,
+                                                            @RequestParam(defaultValue = "false") boolean delta) {
+        Deadline deadline = aiService.newSendDeadline();
+        try {
+            return CompletableFuture.supplyAsync(() -> send(request, deadline, delta), aiExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", "Trop de messages en cours de traitement, veuillez réessayer.")));
+        }
+    }
+
+    private ResponseEntity<?> send(Map<String, Object> request, Deadline deadline, boolean delta) {
         try {
-            Long userId = ((Number) request.get("userId")).longValue();
-            Long conversationId = request.get("conversationId") != null 
-                ? ((Number) request.get("conversationId")).longValue() 
-                : null;
             String message = (String) request.get("message");
-            String conversationTitle = (String) request.get("conversationTitle");
-            
-            // If no conversationId, create new conversation
-            Conversation conversation;
-            if (conversationId == null) {
-                String title = conversationTitle != null ? conversationTitle : "Nouvelle conversation";
-                conversation = conversationService.createConversation(userId, title);
-                conversationId = conversation.getId();
-            } else {
-                conversation = conversationService.getConversationById(conversationId)
-                    .orElseThrow(() -> new RuntimeException("Conversation not found"));
-            }
-            
-            // Save user message
-            ChatMessage userMessage = chatMessageService.saveMessage(
-                userId,
-                conversationId,
-                message
-            );
+            UserTurn turn = saveUserMessage(request);
+            Long conversationId = turn.conversationId();
             
             // Generate AI response using the fine-tuned model
-            String aiResponseText = aiService.getAiResponse(message);
+            String aiResponseText = aiService.getAiResponse(turn.userId(), message, turn.context(), deadline);
             
-            // Save AI response (using userId 1 as AI user)
+            // Save AI response
             ChatMessage aiMessage = chatMessageService.saveMessage(
-                1L, // AI user ID
+                assistantUserId,
                 conversationId,
                 aiResponseText
             );
             
-            // Reload conversation with updated messages
-            conversation = conversationService.getConversationById(conversationId)
-                .orElseThrow(() -> new RuntimeException("Conversation not found"));
-            
-            return ResponseEntity.ok(conversation);
+            return ResponseEntity.ok(turnResponse(turn, aiMessage, delta));
             
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
         }
     }
+
+    /**
+     * Same contract as {@link #sendMessage(Map, boolean)}, but the request thread is released
+     * while the AI reply is generated; the response is written once the reply is saved.
+     */
+    @PostMapping("/send/async")
+    public CompletableFuture<ResponseEntity<?>> sendMessageAsync(@RequestBody Map<String, Object> request,
+                                                                 @RequestParam(defaultValue = "false") boolean delta) {
+        Deadline deadline = aiService.newSendDeadline();
+        String message = (String) request.get("message");
+        UserTurn turn;
+        try {
+            turn = saveUserMessage(request);
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage())));
+        }
+
+        Long conversationId = turn.conversationId();
+        return aiService.getAiResponseAsync(turn.userId(), message, turn.context(), deadline)
+            .<ResponseEntity<?>>thenApplyAsync(aiResponseText -> {
+                ChatMessage aiMessage = chatMessageService.saveMessage(assistantUserId, conversationId, aiResponseText);
+                return ResponseEntity.ok(turnResponse(turn, aiMessage, delta));
+            }, aiCallbackExecutor)
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", String.valueOf(cause.getMessage())));
+            });
+    }
+
+    /**
+     * Streaming variant of {@link #sendMessage(Map, boolean)}: the AI reply is pushed to the client as
+     * Server-Sent Events while it is generated ("token" per chunk, then "done" with the saved
+     * message), and saved as a single message once the stream completes. If the send deadline
+     * passes first, the part generated so far is saved.
+     */
+    @PostMapping(value = "/send/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter sendMessageStream(@RequestBody Map<String, Object> request) {
+        Deadline deadline = aiService.newSendDeadline();
+        SseEmitter emitter = new SseEmitter();
+        String message = (String) request.get("message");
+        UserTurn turn;
+        try {
+            turn = saveUserMessage(request);
+        } catch (Exception e) {
+            sendEvent(emitter, "error", Map.of("error", String.valueOf(e.getMessage())));
+            emitter.complete();
+            return emitter;
+        }
+
+        Long conversationId = turn.conversationId();
+        StringBuilder reply = new StringBuilder();
+        aiService.streamAiResponse(turn.userId(), message, turn.context(), deadline).subscribe(
+            token -> {
+                reply.append(token);
+                sendEvent(emitter, "token", token);
+            },
+            error -> {
+                System.err.println("Error streaming AI reply: " + error.getMessage());
+                String text = reply.length() > 0 ? reply.toString() : AiService.ERROR_REPLY;
+                aiCallbackExecutor.execute(() -> finishStream(emitter, conversationId, text));
+            },
+            () -> {
+                // A stream cut off by the deadline keeps what was generated so far
+                String fallback = deadline.isExpired() ? AiService.DEADLINE_REPLY : AiService.UNAVAILABLE_REPLY;
+                String text = reply.length() > 0 ? reply.toString() : fallback;
+                aiCallbackExecutor.execute(() -> finishStream(emitter, conversationId, text));
+            }
+        );
+        return emitter;
+    }
+
+    /**
+     * Queue the AI reply instead of waiting for it: the user's message and a pending reply job
+     * are committed together, and the request is answered 202 at once with the job, to be polled
+     * at its Location ({@link #getReplyJob(Long)}). The reply is generated in the background,
+     * retried if the model fails, and still generated after a restart.
+     */
+    @PostMapping("/send/jobs")
+    public ResponseEntity<?> sendMessageJob(@RequestBody Map<String, Object> request) {
+        try {
+            Long userId = ((Number) request.get("userId")).longValue();
+            Long conversationId = request.get("conversationId") != null
+                ? ((Number) request.get("conversationId")).longValue()
+                : null;
+            AiReplyJob job = aiReplyJobService.submit(
+                userId,
+                conversationId,
+                (String) request.get("conversationTitle"),
+                (String) request.get("message")
+            );
+            return ResponseEntity.accepted()
+                .location(URI.create("/api/conversations/jobs/" + job.getId()))
+                .body(job);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * Status of a queued AI reply; once DONE, {@code replyMessageId} is the saved reply.
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<AiReplyJob> getReplyJob(@PathVariable Long jobId) {
+        return aiReplyJobService.getJob(jobId)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private void finishStream(SseEmitter emitter, Long conversationId, String reply) {
+        try {
+            ChatMessage aiMessage = chatMessageService.saveMessage(assistantUserId, conversationId, reply);
+            sendEvent(emitter, "done", Map.of(
+                "conversationId", conversationId,
+                "messageId", aiMessage.getId(),
+                "content", reply
+            ));
+            emitter.complete();
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away: keep consuming the stream so the full reply is still saved
+        }
+    }
+
+    /**
+     * The body of a send response: the whole conversation, reloaded with its messages, or in
+     * delta mode only the two messages of this turn, whatever the length of the conversation.
+     */
+    private Object turnResponse(UserTurn turn, ChatMessage aiMessage, boolean delta) {
+        if (delta) {
+            return new ChatTurnResponseDTO(turn.conversationId(), List.of(turn.message(), aiMessage), aiMessage.getId());
+        }
+        return conversationService.getConversationWithMessages(turn.conversationId())
+            .orElseThrow(() -> new RuntimeException("Conversation not found"));
+    }
+
+    /**
+     * Resolve (or create) the target conversation and save the user's message.
+     * @return the id of the conversation the message was saved to, the saved message, and
+     * the conversation context from before that message
+     */
+    private UserTurn saveUserMessage(Map<String, Object> request) {
+        Long userId = ((Number) request.get("userId")).longValue();
+        Long conversationId = request.get("conversationId") != null 
+            ? ((Number) request.get("conversationId")).longValue() 
+            : null;
+        String message = (String) request.get("message");
+        String conversationTitle = (String) request.get("conversationTitle");
+        
+        // If no conversationId, create new conversation
+        if (conversationId == null) {
+            String title = conversationTitle != null ? conversationTitle : "Nouvelle conversation";
+            Conversation conversation = conversationService.createConversation(userId, title);
+            conversationId = conversation.getId();
+        } else {
+            conversationService.requireConversationOf(conversationId, userId);
+        }
+        
+        // Context is taken before saving, so the message is not part of its own context
+        String context = conversationContextService.promptContext(conversationId);
+
+        // Save user message
+        ChatMessage userMessage = chatMessageService.saveMessage(
+            userId,
+            conversationId,
+            message
+        );
+        return new UserTurn(userId, conversationId, userMessage, context);
+    }
+
+    private record UserTurn(Long userId, Long conversationId, ChatMessage message, String context) {
+    }
     
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteConversation(@PathVariable Long id) {
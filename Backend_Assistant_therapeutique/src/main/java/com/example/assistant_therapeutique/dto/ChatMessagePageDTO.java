@@ -0,0 +1,71 @@
+package com.example.assistant_therapeutique.dto;
+
+import com.example.assistant_therapeutique.model.ChatMessage;
+
+import java.util.List;
+
+/**
+ * A page of a conversation's history, oldest message first. {@code before} and {@code after}
+ * are the ids of the page's first and last messages: pass them back as
+ * {@code ?before=} for older messages and {@code ?after=} for newer ones.
+ */
+public class ChatMessagePageDTO {
+    private List<ChatMessage> messages;
+    private Long before;
+    private Long after;
+    private boolean hasOlder;
+    private boolean hasNewer;
+
+    // Constructors
+    public ChatMessagePageDTO() {
+    }
+
+    public ChatMessagePageDTO(List<ChatMessage> messages, Long before, Long after, boolean hasOlder, boolean hasNewer) {
+        this.messages = messages;
+        this.before = before;
+        this.after = after;
+        this.hasOlder = hasOlder;
+        this.hasNewer = hasNewer;
+    }
+
+    // Getters and Setters
+    public List<ChatMessage> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<ChatMessage> messages) {
+        this.messages = messages;
+    }
+
+    public Long getBefore() {
+        return before;
+    }
+
+    public void setBefore(Long before) {
+        this.before = before;
+    }
+
+    public Long getAfter() {
+        return after;
+    }
+
+    public void setAfter(Long after) {
+        this.after = after;
+    }
+
+    public boolean isHasOlder() {
+        return hasOlder;
+    }
+
+    public void setHasOlder(boolean hasOlder) {
+        this.hasOlder = hasOlder;
+    }
+
+    public boolean isHasNewer() {
+        return hasNewer;
+    }
+
+    public void setHasNewer(boolean hasNewer) {
+        this.hasNewer = hasNewer;
+    }
+}
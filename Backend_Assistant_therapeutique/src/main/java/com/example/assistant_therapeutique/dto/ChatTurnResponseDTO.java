@@ -0,0 +1,51 @@
+package com.example.assistant_therapeutique.dto;
+
+import com.example.assistant_therapeutique.model.ChatMessage;
+
+import java.util.List;
+
+/**
+ * Delta response of a send: only the messages saved during this turn, plus a cursor
+ * (the id of the conversation's latest message) to fetch what came after it with
+ * {@code GET /api/chat/conversations/{conversationId}/messages?after={cursor}}.
+ */
+public class ChatTurnResponseDTO {
+    private Long conversationId;
+    private List<ChatMessage> messages;
+    private Long cursor;
+
+    // Constructors
+    public ChatTurnResponseDTO() {
+    }
+
+    public ChatTurnResponseDTO(Long conversationId, List<ChatMessage> messages, Long cursor) {
+        this.conversationId = conversationId;
+        this.messages = messages;
+        this.cursor = cursor;
+    }
+
+    // Getters and Setters
+    public Long getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(Long conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public List<ChatMessage> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<ChatMessage> messages) {
+        this.messages = messages;
+    }
+
+    public Long getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(Long cursor) {
+        this.cursor = cursor;
+    }
+}
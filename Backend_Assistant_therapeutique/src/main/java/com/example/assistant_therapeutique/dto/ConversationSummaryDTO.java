@@ -0,0 +1,79 @@
+package com.example.assistant_therapeutique.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A conversation as listed in the sidebar, read from the conversation row alone
+ * (no messages are loaded).
+ */
+public class ConversationSummaryDTO {
+    private Long id;
+    private String titre;
+    private LocalDateTime createdAt;
+    private LocalDateTime lastActivityAt;
+    private int messageCount;
+    private String lastMessagePreview;
+
+    // Constructors
+    public ConversationSummaryDTO() {
+    }
+
+    public ConversationSummaryDTO(Long id, String titre, LocalDateTime createdAt, LocalDateTime lastActivityAt,
+                                  int messageCount, String lastMessagePreview) {
+        this.id = id;
+        this.titre = titre;
+        this.createdAt = createdAt;
+        this.lastActivityAt = lastActivityAt;
+        this.messageCount = messageCount;
+        this.lastMessagePreview = lastMessagePreview;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTitre() {
+        return titre;
+    }
+
+    public void setTitre(String titre) {
+        this.titre = titre;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getLastActivityAt() {
+        return lastActivityAt;
+    }
+
+    public void setLastActivityAt(LocalDateTime lastActivityAt) {
+        this.lastActivityAt = lastActivityAt;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(int messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public String getLastMessagePreview() {
+        return lastMessagePreview;
+    }
+
+    public void setLastMessagePreview(String lastMessagePreview) {
+        this.lastMessagePreview = lastMessagePreview;
+    }
+}
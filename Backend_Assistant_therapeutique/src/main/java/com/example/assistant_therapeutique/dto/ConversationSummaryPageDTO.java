@@ -0,0 +1,38 @@
+package com.example.assistant_therapeutique.dto;
+
+import java.util.List;
+
+/**
+ * A page of a user's conversations, most recently active first. {@code next} is the cursor
+ * of the following page (pass it back as {@code ?cursor=}), null on the last page.
+ */
+public class ConversationSummaryPageDTO {
+    private List<ConversationSummaryDTO> conversations;
+    private String next;
+
+    // Constructors
+    public ConversationSummaryPageDTO() {
+    }
+
+    public ConversationSummaryPageDTO(List<ConversationSummaryDTO> conversations, String next) {
+        this.conversations = conversations;
+        this.next = next;
+    }
+
+    // Getters and Setters
+    public List<ConversationSummaryDTO> getConversations() {
+        return conversations;
+    }
+
+    public void setConversations(List<ConversationSummaryDTO> conversations) {
+        this.conversations = conversations;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.assistant_therapeutique.id;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Time-ordered ids generated in the application, unique across nodes without coordination
+ * (Snowflake-style), so that Hibernate can assign ids before inserting and batch the inserts.
+ * <pre>
+ *   41 bits  milliseconds since 2024-01-01T00:00Z (until 2093)
+ *    4 bits  node, one per instance sharing the database (0-15)
+ *    8 bits  sequence within the millisecond
+ * </pre>
+ * 53 bits in all, so ids stay exact as JavaScript numbers in the frontend.
+ * Ids of a node strictly increase: after 256 ids in one millisecond, or when the clock
+ * goes back, the node moves on to the next millisecond ahead of the clock instead of waiting.
+ */
+public final class TimeOrderedId {
+
+    public static final long EPOCH_MILLIS = 1_704_067_200_000L;
+    public static final int NODE_BITS = 4;
+    public static final int SEQUENCE_BITS = 8;
+    public static final int TIMESTAMP_BITS = 41;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_TICK = (1L << (TIMESTAMP_BITS + SEQUENCE_BITS)) - 1;
+
+    // One generator per node for the whole JVM, shared by every entity
+    private static final Map<Integer, TimeOrderedId> NODES = new ConcurrentHashMap<>();
+
+    private final int node;
+    private final LongSupplier clock;
+
+    // Last (timestamp << SEQUENCE_BITS | sequence) handed out
+    private final AtomicLong lastTick = new AtomicLong();
+
+    TimeOrderedId(int node, LongSupplier clock) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node must be between 0 and " + MAX_NODE + ": " + node);
+        }
+        this.node = node;
+        this.clock = clock;
+    }
+
+    public static TimeOrderedId forNode(int node) {
+        return NODES.computeIfAbsent(node, n -> new TimeOrderedId(n, System::currentTimeMillis));
+    }
+
+    public long next() {
+        long now = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long tick = lastTick.accumulateAndGet(now, (last, clockTick) -> Math.max(last + 1, clockTick));
+        if (tick > MAX_TICK || tick < 0) {
+            throw new IllegalStateException("Time-ordered ids exhausted: timestamp out of range");
+        }
+        long timestamp = tick >>> SEQUENCE_BITS;
+        return timestamp << (NODE_BITS + SEQUENCE_BITS) | (long) node << SEQUENCE_BITS | (tick & SEQUENCE_MASK);
+    }
+
+    /**
+     * @return when the id was generated, in epoch milliseconds (ahead of the clock under bursts)
+     */
+    public static long timestampMillis(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    public static int node(long id) {
+        return (int) (id >>> SEQUENCE_BITS) & MAX_NODE;
+    }
+}
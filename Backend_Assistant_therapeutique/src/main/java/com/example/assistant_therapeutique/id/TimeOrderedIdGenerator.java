@@ -0,0 +1,64 @@
+package com.example.assistant_therapeutique.id;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Hibernate id generator for entities, backed by {@link TimeOrderedId}. The node is read from
+ * the {@code app.id.node} Hibernate setting ({@code spring.jpa.properties.app.id.node}).
+ * It may only be left out when {@code app.id.instances} says a single instance writes to the
+ * database: replicas on the same node would generate the same ids.
+ * <pre>
+ * &#64;Id
+ * &#64;GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
+ * &#64;GenericGenerator(name = TimeOrderedIdGenerator.NAME, strategy = TimeOrderedIdGenerator.STRATEGY)
+ * </pre>
+ */
+public class TimeOrderedIdGenerator implements IdentifierGenerator {
+
+    public static final String NAME = "time-ordered-id";
+    public static final String STRATEGY = "com.example.assistant_therapeutique.id.TimeOrderedIdGenerator";
+    public static final String NODE_SETTING = "app.id.node";
+    public static final String INSTANCES_SETTING = "app.id.instances";
+
+    private TimeOrderedId ids;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        try {
+            ids = TimeOrderedId.forNode(node(serviceRegistry.getService(ConfigurationService.class).getSettings()));
+        } catch (IllegalArgumentException e) {
+            throw new MappingException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the configured node, or 0 if none is set and this is the only instance
+     * @throws IllegalArgumentException if none is set for several instances, or it is out of range
+     */
+    static int node(Map<?, ?> settings) {
+        if (settings.get(NODE_SETTING) == null) {
+            int instances = ConfigurationHelper.getInt(INSTANCES_SETTING, settings, 1);
+            if (instances > 1) {
+                throw new IllegalArgumentException(INSTANCES_SETTING + " is " + instances
+                        + ": every instance needs its own " + NODE_SETTING);
+            }
+            return 0;
+        }
+        return ConfigurationHelper.getInt(NODE_SETTING, settings, 0);
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        return ids.next();
+    }
+}
@@ -1,26 +1,41 @@
 package com.example.assistant_therapeutique.model;
 
+import com.example.assistant_therapeutique.compression.CompressedTextConverter;
+import com.example.assistant_therapeutique.id.TimeOrderedIdGenerator;
+import org.hibernate.annotations.GenericGenerator;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToOne;
 import javax.persistence.JoinColumn;
 import javax.persistence.Lob;
 import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Table;
 import java.time.LocalDateTime;
 
+/**
+ * A message of a conversation. History is paged by (createdAt, id) within a conversation,
+ * which the index covers, so any page is an index range scan whatever the conversation's length.
+ * Long contents are stored compressed ({@link CompressedTextConverter}).
+ */
 @Entity
+@Table(indexes = @Index(name = "idx_chat_message_conversation_created", columnList = "conversation_id, created_at, id"))
 public class ChatMessage {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedIdGenerator.NAME, strategy = TimeOrderedIdGenerator.STRATEGY)
     private Long id;
 
     @Lob
     @Column(columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.class)
     private String content;
+
+    @Column(name = "created_at")
     private LocalDateTime createdAt;
 
     @ManyToOne
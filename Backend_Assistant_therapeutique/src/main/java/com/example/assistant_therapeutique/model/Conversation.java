@@ -1,15 +1,31 @@
 package com.example.assistant_therapeutique.model;
 
+import com.example.assistant_therapeutique.id.TimeOrderedIdGenerator;
+import org.hibernate.annotations.GenericGenerator;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import org.hibernate.annotations.DynamicUpdate;
 import javax.persistence.*;
 import java.time.LocalDateTime;
 import java.util.List; // Import List
 
+/**
+ * A conversation of a user. The last activity time, message count and last message preview
+ * are denormalized: they are updated with each message saved, so the conversation list reads
+ * them from the conversation rows alone (sorted by activity over idx_conversation_user_activity).
+ * Updates only write the changed columns, so renaming a conversation never overwrites a
+ * message count recorded meanwhile.
+ */
 @Entity
+@DynamicUpdate
+@Table(indexes = @Index(name = "idx_conversation_user_activity", columnList = "user_id, last_activity_at, id"))
 public class Conversation {
 
+    // Characters of the last message kept in lastMessagePreview, before an ellipsis
+    public static final int PREVIEW_LENGTH = 120;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedIdGenerator.NAME, strategy = TimeOrderedIdGenerator.STRATEGY)
     private Long id;
 
     private String titre; // Title of the conversation
@@ -20,6 +36,15 @@ public class Conversation {
 
     private LocalDateTime createdAt;
 
+    @Column(name = "last_activity_at")
+    private LocalDateTime lastActivityAt;
+
+    @Column(name = "message_count", nullable = false)
+    private int messageCount;
+
+    @Column(name = "last_message_preview", length = PREVIEW_LENGTH + 1)
+    private String lastMessagePreview;
+
     @OneToMany(mappedBy = "conversation", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference
     private List<ChatMessage> messages; // List of messages in this conversation
@@ -34,6 +59,13 @@ public class Conversation {
         this.createdAt = createdAt;
     }
 
+    @PrePersist
+    void onCreate() {
+        if (lastActivityAt == null) {
+            lastActivityAt = createdAt != null ? createdAt : LocalDateTime.now();
+        }
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -67,6 +99,30 @@ public class Conversation {
         this.createdAt = createdAt;
     }
 
+    public LocalDateTime getLastActivityAt() {
+        return lastActivityAt;
+    }
+
+    public void setLastActivityAt(LocalDateTime lastActivityAt) {
+        this.lastActivityAt = lastActivityAt;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(int messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public String getLastMessagePreview() {
+        return lastMessagePreview;
+    }
+
+    public void setLastMessagePreview(String lastMessagePreview) {
+        this.lastMessagePreview = lastMessagePreview;
+    }
+
     public List<ChatMessage> getMessages() {
         return messages;
     }
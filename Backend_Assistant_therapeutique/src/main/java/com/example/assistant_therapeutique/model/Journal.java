@@ -1,8 +1,9 @@
 package com.example.assistant_therapeutique.model;
 
+import com.example.assistant_therapeutique.id.TimeOrderedIdGenerator;
+import org.hibernate.annotations.GenericGenerator;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
 import javax.persistence.JoinColumn;
@@ -12,7 +13,8 @@ import java.time.LocalDateTime;
 public class Journal {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedIdGenerator.NAME, strategy = TimeOrderedIdGenerator.STRATEGY)
     private Long id;
 
     private String title;
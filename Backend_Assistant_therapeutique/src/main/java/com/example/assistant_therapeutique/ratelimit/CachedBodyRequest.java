@@ -0,0 +1,134 @@
+package com.example.assistant_therapeutique.ratelimit;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A request whose body has been read up front, up to a limit, so the filter can look into it
+ * and the controller can still read it. A longer body is not buffered whole: the controller
+ * reads the buffered prefix, then the rest straight from the original request.
+ */
+final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+    private final byte[] prefix;
+    private final int length;
+    private final boolean complete;
+    private ServletInputStream in;
+
+    /**
+     * @param maxBytes most bytes buffered, whatever length the client declares
+     */
+    CachedBodyRequest(HttpServletRequest request, int maxBytes) throws IOException {
+        super(request);
+        int declared = request.getContentLength();
+        // The declared length only sizes the buffer down, never up
+        this.prefix = new byte[declared >= 0 ? Math.min(declared, maxBytes) : maxBytes];
+        ServletInputStream original = request.getInputStream();
+        int read = 0;
+        int count = 0;
+        while (read < prefix.length && (count = original.read(prefix, read, prefix.length - read)) >= 0) {
+            read += count;
+        }
+        this.length = read;
+        // Read to the end within the limit, or exactly the declared length
+        this.complete = count < 0 || (declared >= 0 && read == declared);
+    }
+
+    /**
+     * @return true if the whole body is buffered, false if only a prefix is
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    byte[] getPrefix() {
+        return prefix;
+    }
+
+    int getPrefixLength() {
+        return length;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (in == null) {
+            in = new ReplayingInputStream(super.getInputStream());
+        }
+        return in;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        String encoding = getCharacterEncoding();
+        Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+        return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+    }
+
+    /**
+     * The buffered prefix, then what is left of the original stream
+     */
+    private final class ReplayingInputStream extends ServletInputStream {
+
+        private final ServletInputStream rest;
+        private int position;
+
+        private ReplayingInputStream(ServletInputStream rest) {
+            this.rest = rest;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position < length) {
+                return prefix[position++] & 0xff;
+            }
+            return complete ? -1 : rest.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            if (count == 0) {
+                return 0;
+            }
+            if (position < length) {
+                int n = Math.min(count, length - position);
+                System.arraycopy(prefix, position, buffer, offset, n);
+                position += n;
+                return n;
+            }
+            return complete ? -1 : rest.read(buffer, offset, count);
+        }
+
+        @Override
+        public boolean isFinished() {
+            return position >= length && (complete || rest.isFinished());
+        }
+
+        @Override
+        public boolean isReady() {
+            return position < length || complete || rest.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener listener) {
+            if (!complete) {
+                // The container calls back as the rest arrives; reads start with the prefix
+                rest.setReadListener(listener);
+                return;
+            }
+            // Everything is in memory already
+            try {
+                listener.onDataAvailable();
+                listener.onAllDataRead();
+            } catch (IOException e) {
+                listener.onError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.assistant_therapeutique.ratelimit;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects requests to the configured routes with 429 and {@code Retry-After} once the
+ * client's user or IP bucket is empty (see {@link RateLimitProperties}).
+ * The user is the id the route's controller acts for, read from the JSON body, so it cannot
+ * be dropped or changed without changing the request itself; the body is buffered, up to
+ * {@code rate-limit.max-body-bytes}, and replayed to the controller. A longer body is only
+ * limited by IP. Buckets live in concurrent maps and are updated without locks;
+ * idle buckets are dropped periodically. Requests to other routes only pay for the route lookup.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final int MAX_USER_KEY_LENGTH = 64;
+
+    private static final byte[] REJECTED_BODY =
+            "{\"error\":\"Trop de requêtes. Veuillez réessayer dans quelques instants.\"}"
+                    .getBytes(StandardCharsets.UTF_8);
+
+    private final List<LimitedRoute> routes;
+    private final long idleNanos;
+    private final int maxBodyBytes;
+
+    public RateLimitFilter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.routes = properties.isEnabled()
+                ? properties.getRoutes().stream().map(route -> new LimitedRoute(route, meterRegistry)).toList()
+                : List.of();
+        this.idleNanos = TimeUnit.SECONDS.toNanos(properties.getIdleSeconds());
+        this.maxBodyBytes = properties.getMaxBodyBytes();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        LimitedRoute route = match(request);
+        if (route != null) {
+            long now = System.nanoTime();
+            // IP first, so spoofed user ids cannot create buckets faster than the IP limit
+            long wait = route.take(route.byIp, request.getRemoteAddr(), route.ipBurst, route.ipPerMinute, now);
+            if (wait > 0) {
+                route.ipRejected.increment();
+                reject(response, wait);
+                return;
+            }
+            // Only requests that got through the IP limit pay for reading the body
+            CachedBodyRequest cached = new CachedBodyRequest(request, maxBodyBytes);
+            String user = cached.isComplete()
+                    ? userId(cached.getPrefix(), cached.getPrefixLength(), route.userField)
+                    : null;
+            if (user != null) {
+                wait = route.take(route.byUser, user, route.userBurst, route.userPerMinute, now);
+                if (wait > 0) {
+                    route.userRejected.increment();
+                    reject(response, wait);
+                    return;
+                }
+            }
+            request = cached;
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * The value of a field of a JSON object body, e.g. {@code userId} or {@code user.id} for a
+     * nested object, if it is a number or a short string. If the field appears more than once,
+     * the last one counts, as for the controller's data binding.
+     * @return the value as text, or null if the body has none (only the IP limit applies)
+     */
+    static String userId(byte[] body, int length, String[] field) {
+        if (length == 0) {
+            return null;
+        }
+        try (JsonParser json = JSON.createParser(body, 0, length)) {
+            if (json.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            String user = null;
+            // Depth within the objects on the field's path; -1 once out of them
+            int depth = 0;
+            JsonToken token;
+            while ((token = json.nextToken()) != null) {
+                if (token == JsonToken.END_OBJECT) {
+                    depth--;
+                    continue;
+                }
+                boolean wanted = depth >= 0 && depth < field.length && field[depth].equals(json.getCurrentName());
+                JsonToken value = json.nextToken();
+                if (wanted && depth == field.length - 1) {
+                    boolean scalar = value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_STRING;
+                    user = scalar ? json.getText() : null;
+                    json.skipChildren();
+                } else if (wanted && value == JsonToken.START_OBJECT) {
+                    depth++;
+                } else {
+                    json.skipChildren();
+                }
+            }
+            return user == null || user.isEmpty() || user.length() > MAX_USER_KEY_LENGTH ? null : user;
+        } catch (IOException e) {
+            // Not JSON: the controller rejects it anyway
+            return null;
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limit.sweep-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        evictIdleBuckets(System.nanoTime());
+    }
+
+    void evictIdleBuckets(long now) {
+        for (LimitedRoute route : routes) {
+            route.byIp.values().removeIf(bucket -> bucket.isIdle(now, idleNanos));
+            route.byUser.values().removeIf(bucket -> bucket.isIdle(now, idleNanos));
+        }
+    }
+
+    int bucketCount() {
+        int count = 0;
+        for (LimitedRoute route : routes) {
+            count += route.byIp.size() + route.byUser.size();
+        }
+        return count;
+    }
+
+    private LimitedRoute match(HttpServletRequest request) {
+        if (routes.isEmpty()) {
+            return null;
+        }
+        String method = request.getMethod();
+        String path = request.getRequestURI();
+        for (LimitedRoute route : routes) {
+            if (route.matches(method, path)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private static void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(REJECTED_BODY.length);
+        response.getOutputStream().write(REJECTED_BODY);
+    }
+
+    private static final class LimitedRoute {
+
+        private final String method;
+        private final String path;
+        private final boolean prefix;
+        private final String[] userField;
+        private final int userBurst;
+        private final double userPerMinute;
+        private final int ipBurst;
+        private final double ipPerMinute;
+        private final ConcurrentMap<String, TokenBucket> byUser = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, TokenBucket> byIp = new ConcurrentHashMap<>();
+        private final Counter userRejected;
+        private final Counter ipRejected;
+
+        private LimitedRoute(RateLimitProperties.Route route, MeterRegistry meterRegistry) {
+            this.method = route.getMethod();
+            this.prefix = route.getPath().endsWith("/**");
+            this.path = prefix ? route.getPath().substring(0, route.getPath().length() - 3) : route.getPath();
+            this.userField = route.getUserField().split("\\.");
+            this.userBurst = route.getUserBurst();
+            this.userPerMinute = route.getUserPerMinute();
+            this.ipBurst = route.getIpBurst();
+            this.ipPerMinute = route.getIpPerMinute();
+            this.userRejected = rejectedCounter(meterRegistry, route, "user");
+            this.ipRejected = rejectedCounter(meterRegistry, route, "ip");
+        }
+
+        private boolean matches(String requestMethod, String requestPath) {
+            if (!method.equalsIgnoreCase(requestMethod) || !requestPath.startsWith(path)) {
+                return false;
+            }
+            // "/a/**" matches "/a" and "/a/...", not "/ab"
+            return requestPath.length() == path.length()
+                    || (prefix && requestPath.charAt(path.length()) == '/');
+        }
+
+        private long take(ConcurrentMap<String, TokenBucket> buckets, String key, int burst, double perMinute, long now) {
+            TokenBucket bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(burst, perMinute, now));
+            }
+            return bucket.tryConsume(now);
+        }
+
+        private static Counter rejectedCounter(MeterRegistry meterRegistry, RateLimitProperties.Route route, String key) {
+            return Counter.builder("http.server.requests.rate.limited")
+                    .description("Requests rejected by the rate limiter")
+                    .tag("route", route.getMethod() + " " + route.getPath())
+                    .tag("key", key)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.assistant_therapeutique.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rate limits per route, under {@code rate-limit.*}.
+ * Each route has a bucket per user (the id its controller reads from the JSON body) and a
+ * bucket per client IP; a request must get a token from both.
+ */
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    // Buckets untouched (and full) for this long are dropped
+    private long idleSeconds = 600;
+
+    // Most of a request body read to find the user; a longer body is only limited by IP
+    private int maxBodyBytes = 8192;
+
+    private List<Route> routes = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getIdleSeconds() {
+        return idleSeconds;
+    }
+
+    public void setIdleSeconds(long idleSeconds) {
+        this.idleSeconds = idleSeconds;
+    }
+
+    public int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    public void setMaxBodyBytes(int maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(List<Route> routes) {
+        this.routes = routes;
+    }
+
+    public static class Route {
+
+        private String method = "POST";
+
+        // Exact path, or a prefix ending in "/**"
+        private String path;
+
+        // Body field holding the user id, "user.id" for a nested object
+        private String userField = "userId";
+
+        private int userBurst = 10;
+        private double userPerMinute = 30;
+        private int ipBurst = 30;
+        private double ipPerMinute = 120;
+
+        public String getMethod() {
+            return method;
+        }
+
+        public void setMethod(String method) {
+            this.method = method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public String getUserField() {
+            return userField;
+        }
+
+        public void setUserField(String userField) {
+            this.userField = userField;
+        }
+
+        public int getUserBurst() {
+            return userBurst;
+        }
+
+        public void setUserBurst(int userBurst) {
+            this.userBurst = userBurst;
+        }
+
+        public double getUserPerMinute() {
+            return userPerMinute;
+        }
+
+        public void setUserPerMinute(double userPerMinute) {
+            this.userPerMinute = userPerMinute;
+        }
+
+        public int getIpBurst() {
+            return ipBurst;
+        }
+
+        public void setIpBurst(int ipBurst) {
+            this.ipBurst = ipBurst;
+        }
+
+        public double getIpPerMinute() {
+            return ipPerMinute;
+        }
+
+        public void setIpPerMinute(double ipPerMinute) {
+            this.ipPerMinute = ipPerMinute;
+        }
+    }
+}
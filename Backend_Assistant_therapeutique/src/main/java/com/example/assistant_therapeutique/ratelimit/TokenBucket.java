@@ -0,0 +1,56 @@
+package com.example.assistant_therapeutique.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket, stored as a single timestamp (the generic cell rate algorithm):
+ * the time at which the bucket would be full again. Taking a token pushes that time one
+ * refill interval later; a request is rejected when it would be pushed more than a
+ * burst's worth into the future. Checking and updating is one compare-and-set.
+ * Times are {@link System#nanoTime()} values.
+ */
+final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+
+    // Theoretical arrival time of the next request if the bucket were drained at exactly the refill rate
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param capacity tokens available at once (burst size), at least 1
+     * @param perMinute tokens added per minute
+     * @param nowNanos creation time; the bucket starts full
+     */
+    TokenBucket(int capacity, double perMinute, long nowNanos) {
+        this.intervalNanos = Math.max(1, (long) (60_000_000_000L / perMinute));
+        this.burstNanos = (Math.max(1, capacity) - 1) * intervalNanos;
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Take one token if available.
+     * @return 0 if the token was taken, otherwise the nanoseconds to wait for the next one
+     */
+    long tryConsume(long nowNanos) {
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long start = arrival - nowNanos > 0 ? arrival : nowNanos;
+            long wait = start - burstNanos - nowNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, start + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return true if the bucket has been full for longer than {@code idleNanos}, so
+     * dropping it and starting a new full one changes nothing
+     */
+    boolean isIdle(long nowNanos, long idleNanos) {
+        return nowNanos - theoreticalArrival.get() > idleNanos;
+    }
+}
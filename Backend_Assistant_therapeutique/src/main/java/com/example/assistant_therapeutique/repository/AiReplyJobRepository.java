@@ -0,0 +1,35 @@
+package com.example.assistant_therapeutique.repository;
+
+import com.example.assistant_therapeutique.model.AiReplyJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AiReplyJobRepository extends JpaRepository<AiReplyJob, Long> {
+
+    /**
+     * Jobs in one of the given states that are due, oldest first, locked for update.
+     * Rows already locked by another worker are skipped rather than waited for
+     * (lock timeout -2: {@code FOR UPDATE SKIP LOCKED} on MySQL 8).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    @Query("select j from AiReplyJob j where j.status in :statuses and j.nextAttemptAt <= :now order by j.nextAttemptAt")
+    List<AiReplyJob> findDueForUpdate(@Param("statuses") Collection<AiReplyJob.Status> statuses,
+                                      @Param("now") LocalDateTime now, Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<AiReplyJob> findForUpdateById(Long id);
+}
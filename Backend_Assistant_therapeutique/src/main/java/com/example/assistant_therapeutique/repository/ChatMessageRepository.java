@@ -1,13 +1,47 @@
 package com.example.assistant_therapeutique.repository;
 
 import com.example.assistant_therapeutique.model.ChatMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
     List<ChatMessage> findBySenderId(Long senderId);
     List<ChatMessage> findByConversationId(Long conversationId);
+    long countByConversationId(Long conversationId);
+
+    // Keyset pages over the (conversation_id, created_at, id) index, newest first or oldest first
+
+    @EntityGraph(attributePaths = "sender")
+    List<ChatMessage> findByConversationIdOrderByCreatedAtDescIdDesc(Long conversationId, Pageable pageable);
+
+    @EntityGraph(attributePaths = "sender")
+    @Query("select m from ChatMessage m where m.conversation.id = :conversationId"
+            + " and (m.createdAt < :createdAt or (m.createdAt = :createdAt and m.id < :id))"
+            + " order by m.createdAt desc, m.id desc")
+    List<ChatMessage> findPageBefore(@Param("conversationId") Long conversationId,
+                                     @Param("createdAt") LocalDateTime createdAt,
+                                     @Param("id") Long id,
+                                     Pageable pageable);
+
+    @EntityGraph(attributePaths = "sender")
+    @Query("select m from ChatMessage m where m.conversation.id = :conversationId"
+            + " and (m.createdAt > :createdAt or (m.createdAt = :createdAt and m.id > :id))"
+            + " order by m.createdAt asc, m.id asc")
+    List<ChatMessage> findPageAfter(@Param("conversationId") Long conversationId,
+                                    @Param("createdAt") LocalDateTime createdAt,
+                                    @Param("id") Long id,
+                                    Pageable pageable);
+
+    @Query("select m.createdAt from ChatMessage m where m.id = :id and m.conversation.id = :conversationId")
+    Optional<LocalDateTime> findCreatedAtByIdAndConversationId(@Param("id") Long id,
+                                                               @Param("conversationId") Long conversationId);
 }
@@ -1,12 +1,50 @@
 package com.example.assistant_therapeutique.repository;
 
+import com.example.assistant_therapeutique.dto.ConversationSummaryDTO;
 import com.example.assistant_therapeutique.model.Conversation;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ConversationRepository extends JpaRepository<Conversation, Long> {
     List<Conversation> findByUserId(Long userId);
+
+    @Query("select c.user.id from Conversation c where c.id = :id")
+    Optional<Long> findOwnerIdById(@Param("id") Long id);
+
+    /**
+     * Count a new message in the conversation's summary, without loading the conversation.
+     */
+    @Modifying
+    @Query("update Conversation c set c.messageCount = c.messageCount + 1, c.lastActivityAt = :at,"
+            + " c.lastMessagePreview = :preview where c.id = :id")
+    int recordMessage(@Param("id") Long id, @Param("at") LocalDateTime at, @Param("preview") String preview);
+
+    // Keyset pages of summaries over the (user_id, last_activity_at, id) index, most recent first
+
+    @Query("select new com.example.assistant_therapeutique.dto.ConversationSummaryDTO(c.id, c.titre, c.createdAt,"
+            + " c.lastActivityAt, c.messageCount, c.lastMessagePreview) from Conversation c"
+            + " where c.user.id = :userId order by c.lastActivityAt desc, c.id desc")
+    List<ConversationSummaryDTO> findSummaries(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("select new com.example.assistant_therapeutique.dto.ConversationSummaryDTO(c.id, c.titre, c.createdAt,"
+            + " c.lastActivityAt, c.messageCount, c.lastMessagePreview) from Conversation c"
+            + " where c.user.id = :userId"
+            + " and (c.lastActivityAt < :at or (c.lastActivityAt = :at and c.id < :id))"
+            + " order by c.lastActivityAt desc, c.id desc")
+    List<ConversationSummaryDTO> findSummariesBefore(@Param("userId") Long userId,
+                                                     @Param("at") LocalDateTime at,
+                                                     @Param("id") Long id,
+                                                     Pageable pageable);
+
+    @Query("select c.id from Conversation c where c.lastActivityAt is null")
+    List<Long> findIdsWithoutSummary();
 }
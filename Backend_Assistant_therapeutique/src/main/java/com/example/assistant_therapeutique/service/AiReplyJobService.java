@@ -0,0 +1,217 @@
+package com.example.assistant_therapeutique.service;
+
+import com.example.assistant_therapeutique.model.AiReplyJob;
+import com.example.assistant_therapeutique.model.ChatMessage;
+import com.example.assistant_therapeutique.model.Conversation;
+import com.example.assistant_therapeutique.repository.AiReplyJobRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Persistent AI reply jobs: a user's message is saved together with a PENDING job, and
+ * {@link AiReplyJobWorker} later claims the job, calls the model and saves the reply.
+ * Messages are saved with {@link ChatMessageService#saveMessageNow}, never through the
+ * write-behind log, so they commit or roll back with the job.
+ * <ul>
+ *     <li>Claiming locks due rows with SKIP LOCKED, so several workers (or instances) never
+ *     take the same job, and marks them RUNNING with a lease of {@code ai.jobs.lease-ms}.
+ *     A job whose worker died (e.g. on restart) is claimed again once its lease is over.</li>
+ *     <li>A failed attempt (error or fallback reply) is retried after an exponential backoff
+ *     from {@code ai.jobs.backoff-ms}, up to {@code ai.jobs.max-attempts}. After the last one
+ *     the fallback reply is saved, as for a direct send, and the job is FAILED; so is a job
+ *     whose lease ran out on its last attempt.</li>
+ *     <li>Each outcome is only recorded for the attempt that currently holds the job, so a
+ *     worker whose lease ran out cannot save a second reply.</li>
+ * </ul>
+ */
+@Service
+public class AiReplyJobService {
+
+    private static final Set<AiReplyJob.Status> CLAIMABLE = EnumSet.of(AiReplyJob.Status.PENDING, AiReplyJob.Status.RUNNING);
+
+    @Autowired
+    private AiReplyJobRepository aiReplyJobRepository;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private ChatMessageService chatMessageService;
+
+    @Autowired
+    private ConversationContextService conversationContextService;
+
+    @Autowired
+    private EntityReferenceCache entityReferenceCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // User account the AI replies are saved under
+    @Value("${ai.assistant.user-id:1}")
+    private Long assistantUserId;
+
+    @Value("${ai.jobs.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${ai.jobs.backoff-ms:2000}")
+    private long backoffMs;
+
+    @Value("${ai.jobs.max-backoff-ms:60000}")
+    private long maxBackoffMs;
+
+    // Longer than an attempt may take (ai.jobs.timeout-ms)
+    @Value("${ai.jobs.lease-ms:90000}")
+    private long leaseMs;
+
+    /**
+     * Save the user's message, in a new conversation if none is given, and queue its AI reply,
+     * in one transaction.
+     * @return the PENDING job
+     */
+    @Transactional
+    public AiReplyJob submit(Long userId, Long conversationId, String conversationTitle, String message) {
+        if (conversationId == null) {
+            String title = conversationTitle != null ? conversationTitle : "Nouvelle conversation";
+            Conversation conversation = conversationService.createConversation(userId, title);
+            conversationId = conversation.getId();
+        } else {
+            conversationService.requireConversationOf(conversationId, userId);
+        }
+
+        // Context is taken before saving, so the message is not part of its own context
+        String context = conversationContextService.promptContext(conversationId);
+        chatMessageService.saveMessageNow(userId, conversationId, message);
+
+        LocalDateTime now = LocalDateTime.now();
+        AiReplyJob job = new AiReplyJob();
+        job.setUserId(userId);
+        job.setConversationId(conversationId);
+        job.setMessage(message);
+        job.setContext(context);
+        job.setStatus(AiReplyJob.Status.PENDING);
+        job.setNextAttemptAt(now);
+        job.setCreatedAt(now);
+        job.setUpdatedAt(now);
+        return aiReplyJobRepository.save(job);
+    }
+
+    public Optional<AiReplyJob> getJob(Long id) {
+        return aiReplyJobRepository.findById(id);
+    }
+
+    /**
+     * Take up to {@code limit} due jobs: pending ones, and running ones whose lease is over.
+     * @return the claimed jobs, RUNNING, with their attempt counted
+     */
+    @Transactional
+    public List<AiReplyJob> claim(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<AiReplyJob> claimed = new ArrayList<>();
+        for (AiReplyJob job : aiReplyJobRepository.findDueForUpdate(CLAIMABLE, now, PageRequest.of(0, limit))) {
+            job.setUpdatedAt(now);
+            if (job.getAttempts() >= maxAttempts) {
+                // Its last worker died without recording an outcome
+                job.setLastError("Lease expired on the last attempt");
+                saveFallbackReply(job, AiService.ERROR_REPLY);
+                finish(job, AiReplyJob.Status.FAILED);
+                count("failed");
+                continue;
+            }
+            job.setStatus(AiReplyJob.Status.RUNNING);
+            job.setAttempts(job.getAttempts() + 1);
+            job.setNextAttemptAt(now.plusNanos(leaseMs * 1_000_000));
+            claimed.add(job);
+        }
+        return claimed;
+    }
+
+    /**
+     * Save the model's reply and mark the job DONE.
+     * @param attempt the attempt the reply comes from, as counted when claimed
+     */
+    @Transactional
+    public void complete(Long jobId, int attempt, String reply) {
+        AiReplyJob job = current(jobId, attempt);
+        if (job == null) {
+            return;
+        }
+        ChatMessage saved = chatMessageService.saveMessageNow(assistantUserId, job.getConversationId(), reply);
+        job.setReplyMessageId(saved.getId());
+        job.setLastError(null);
+        finish(job, AiReplyJob.Status.DONE);
+        count("done");
+    }
+
+    /**
+     * Record a failed attempt: the job is retried after a backoff, or FAILED after the last attempt.
+     * @param fallbackReply saved as the reply when giving up, or null to save none
+     */
+    @Transactional
+    public void fail(Long jobId, int attempt, String error, String fallbackReply) {
+        AiReplyJob job = current(jobId, attempt);
+        if (job == null) {
+            return;
+        }
+        job.setLastError(error != null && error.length() > 500 ? error.substring(0, 500) : error);
+        if (attempt < maxAttempts) {
+            job.setStatus(AiReplyJob.Status.PENDING);
+            job.setNextAttemptAt(LocalDateTime.now().plusNanos(backoffMillis(attempt) * 1_000_000));
+            job.setUpdatedAt(LocalDateTime.now());
+            count("retry");
+            return;
+        }
+        if (fallbackReply != null) {
+            saveFallbackReply(job, fallbackReply);
+        }
+        finish(job, AiReplyJob.Status.FAILED);
+        count("failed");
+    }
+
+    /**
+     * Save the reply of a job given up on, unless its conversation was deleted meanwhile.
+     */
+    private void saveFallbackReply(AiReplyJob job, String reply) {
+        if (entityReferenceCache.conversationOwnerId(job.getConversationId()) == null) {
+            return;
+        }
+        job.setReplyMessageId(chatMessageService.saveMessageNow(assistantUserId, job.getConversationId(), reply).getId());
+    }
+
+    /**
+     * @return the job, locked, if this attempt still holds it
+     */
+    private AiReplyJob current(Long jobId, int attempt) {
+        AiReplyJob job = aiReplyJobRepository.findForUpdateById(jobId).orElse(null);
+        if (job == null || job.getStatus() != AiReplyJob.Status.RUNNING || job.getAttempts() != attempt) {
+            return null;
+        }
+        return job;
+    }
+
+    private void finish(AiReplyJob job, AiReplyJob.Status status) {
+        LocalDateTime now = LocalDateTime.now();
+        job.setStatus(status);
+        job.setNextAttemptAt(now);
+        job.setUpdatedAt(now);
+    }
+
+    long backoffMillis(int attempt) {
+        return Math.min(maxBackoffMs, backoffMs << Math.min(attempt - 1, 20));
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("ai.jobs.attempts", "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.assistant_therapeutique.service;
+
+import com.example.assistant_therapeutique.ai.Deadline;
+import com.example.assistant_therapeutique.model.AiReplyJob;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs queued AI reply jobs (see {@link AiReplyJobService}). Every {@code ai.jobs.poll-ms}
+ * it claims as many due jobs as it has free slots, out of {@code ai.jobs.workers}, and asks
+ * the model for each without blocking; the fair scheduler still bounds the calls upstream.
+ * Set {@code ai.jobs.enabled=false} to stop running jobs on this instance.
+ */
+@Component
+public class AiReplyJobWorker {
+
+    @Autowired
+    private AiReplyJobService aiReplyJobService;
+
+    @Autowired
+    private AiService aiService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Outcomes are saved on the bulkhead's threads, not on the thread that completed the call
+    @Autowired
+    @Qualifier("aiCallbackExecutor")
+    private Executor callbackExecutor;
+
+    @Value("${ai.jobs.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.jobs.workers:16}")
+    private int workers;
+
+    // Deadline of one attempt
+    @Value("${ai.jobs.timeout-ms:60000}")
+    private long timeoutMs;
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("ai.jobs.running", running, AtomicInteger::get)
+                .description("AI reply jobs being run by this instance")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${ai.jobs.initial-delay-ms:5000}", fixedDelayString = "${ai.jobs.poll-ms:1000}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        int free = workers - running.get();
+        if (free <= 0) {
+            return;
+        }
+        List<AiReplyJob> jobs;
+        try {
+            jobs = aiReplyJobService.claim(free);
+        } catch (RuntimeException e) {
+            System.err.println("Error claiming AI reply jobs: " + e.getMessage());
+            return;
+        }
+        jobs.forEach(this::run);
+    }
+
+    private void run(AiReplyJob job) {
+        running.incrementAndGet();
+        Long jobId = job.getId();
+        int attempt = job.getAttempts();
+        Deadline deadline = Deadline.after(Duration.ofMillis(timeoutMs));
+        aiService.getAiResponseAsync(job.getUserId(), job.getMessage(), job.getContext(), deadline)
+            .handleAsync((reply, e) -> {
+                if (e != null) {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    System.err.println("Error running AI reply job " + jobId + ": " + cause.getMessage());
+                    aiReplyJobService.fail(jobId, attempt, String.valueOf(cause.getMessage()), null);
+                } else if (AiService.isFallbackReply(reply)) {
+                    aiReplyJobService.fail(jobId, attempt, "AI fallback reply", reply);
+                } else {
+                    aiReplyJobService.complete(jobId, attempt, reply);
+                }
+                return null;
+            }, callbackExecutor)
+            .whenComplete((ignored, e) -> {
+                running.decrementAndGet();
+                if (e != null) {
+                    // Not recorded: the job is claimed again once its lease is over
+                    System.err.println("Error saving outcome of AI reply job " + jobId + ": " + e.getMessage());
+                }
+            });
+    }
+}
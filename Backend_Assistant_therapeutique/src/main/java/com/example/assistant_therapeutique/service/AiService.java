@@ -1,73 +1,361 @@
 package com.example.assistant_therapeutique.service;
 
+import com.example.assistant_therapeutique.ai.AiBatchDispatcher;
+import com.example.assistant_therapeutique.ai.AiCircuitBreaker;
+import com.example.assistant_therapeutique.ai.AiCircuitOpenException;
+import com.example.assistant_therapeutique.ai.AiClient;
+import com.example.assistant_therapeutique.ai.AiEmptyResponseException;
+import com.example.assistant_therapeutique.ai.AiFairScheduler;
+import com.example.assistant_therapeutique.ai.AiHealthProber;
+import com.example.assistant_therapeutique.ai.AiPromptKey;
+import com.example.assistant_therapeutique.ai.AiRequest;
+import com.example.assistant_therapeutique.ai.AiResponseCache;
+import com.example.assistant_therapeutique.ai.Deadline;
+import com.example.assistant_therapeutique.ai.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class AiService {
-    
-    @Value("${ai.service.url:http://localhost:8000}")
-    private String aiServiceUrl;
-    
-    private final RestTemplate restTemplate = new RestTemplate();
-    
+
+    public static final String UNAVAILABLE_REPLY = "Je suis désolé, je ne peux pas répondre pour le moment. Veuillez réessayer.";
+    public static final String ERROR_REPLY = "Je suis désolé, une erreur s'est produite. Veuillez réessayer plus tard.";
+    public static final String DEADLINE_REPLY = "Je suis désolé, je mets trop de temps à répondre. Pouvez-vous renvoyer votre message dans un instant ?";
+
+    @Autowired
+    private AiClient aiClient;
+
+    @Autowired
+    private AiResponseCache responseCache;
+
+    @Autowired
+    private AiBatchDispatcher batchDispatcher;
+
+    @Autowired
+    private AiHealthProber healthProber;
+
+    @Autowired
+    private AiFairScheduler scheduler;
+
+    @Autowired
+    private AiCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Replies and fallbacks are handed over on the bulkhead's threads (see BulkheadConfig)
+    @Autowired
+    @Qualifier("aiCallbackExecutor")
+    private Executor callbackExecutor;
+
+    // End-to-end budget of a send request, also the SLO the reply latency is measured against
+    @Value("${ai.deadline.send-ms:20000}")
+    private long sendBudgetMs;
+
+    // Rough generation cost, used to fit max_tokens into the time left
+    @Value("${ai.deadline.ms-per-token:50}")
+    private long msPerToken;
+
+    @Value("${ai.deadline.min-tokens:32}")
+    private int minTokens;
+
+    // Kept back from the budget for saving the reply and writing the response
+    @Value("${ai.deadline.reserve-ms:500}")
+    private long reserveMs;
+
+    // Identical prompts asked concurrently share one upstream call
+    private final SingleFlight<AiPromptKey, String> inFlight = new SingleFlight<>();
+
+    /**
+     * Start the deadline of a send request, from {@code ai.deadline.send-ms}.
+     */
+    public Deadline newSendDeadline() {
+        return Deadline.after(Duration.ofMillis(sendBudgetMs));
+    }
+
+    /**
+     * @return true if the reply is one of the fallback messages rather than the model's
+     */
+    public static boolean isFallbackReply(String reply) {
+        return UNAVAILABLE_REPLY.equals(reply) || ERROR_REPLY.equals(reply) || DEADLINE_REPLY.equals(reply);
+    }
+
     /**
      * Get AI response from the FastAPI server
      * @param userMessage The user's message
      * @return AI generated response
      */
     public String getAiResponse(String userMessage) {
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("message", userMessage);
-            requestBody.put("max_tokens", 200);
-            requestBody.put("temperature", 0.4);
-            
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-            
-            ResponseEntity<Map> response = restTemplate.postForEntity(
-                aiServiceUrl + "/chat",
-                request,
-                Map.class
-            );
-            
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                Map<String, Object> responseBody = response.getBody();
-                return (String) responseBody.get("response");
-            } else {
-                return "Je suis désolé, je ne peux pas répondre pour le moment. Veuillez réessayer.";
+        return getAiResponseAsync(userMessage).join();
+    }
+
+    /**
+     * Get AI response from the FastAPI server without blocking the calling thread.
+     * Once the call is over, the returned future completes on {@code aiCallbackExecutor}
+     * (never the timer thread of the deadline or an HTTP client thread). Callers that chain
+     * blocking work should still hop there themselves: a cached reply completes at once.
+     * Replies are served from the cache when possible, and concurrent identical prompts
+     * share a single upstream call.
+     * @param userMessage The user's message
+     * @return future of the AI generated response, never completed exceptionally
+     */
+    public CompletableFuture<String> getAiResponseAsync(String userMessage) {
+        return getAiResponseAsync(null, userMessage, null, Deadline.none());
+    }
+
+    /**
+     * Get AI response for a message sent within a conversation.
+     * @param userId The user the reply is for, who waits for their turn (see {@link AiFairScheduler})
+     * @param userMessage The user's message
+     * @param context The conversation so far (see {@link ConversationContextService}), or empty
+     * @param deadline When the caller stops waiting for the reply
+     * @return AI generated response
+     */
+    public String getAiResponse(Long userId, String userMessage, String context, Deadline deadline) {
+        return getAiResponseAsync(userId, userMessage, context, deadline).join();
+    }
+
+    /**
+     * Same as {@link #getAiResponseAsync(String)}, for a user's message within a conversation.
+     * Model calls wait for the user's turn, so one user cannot starve the others.
+     * A reply that depends on its conversation is neither cached nor shared between callers.
+     * The less time is left, the fewer tokens are asked for; once the deadline passes the
+     * future completes with {@link #DEADLINE_REPLY} instead of waiting any longer.
+     * @param userId The user the reply is for, or null not to schedule the call
+     * @param userMessage The user's message
+     * @param context The conversation so far, or null/empty for a first message
+     * @param deadline When the caller stops waiting for the reply
+     * @return future of the AI generated response, never completed exceptionally
+     */
+    public CompletableFuture<String> getAiResponseAsync(Long userId, String userMessage, String context, Deadline deadline) {
+        long start = System.nanoTime();
+        int maxTokens = tokenBudget(deadline);
+        if (maxTokens == 0) {
+            record(start, "deadline");
+            return CompletableFuture.completedFuture(DEADLINE_REPLY);
+        }
+        AiRequest request = new AiRequest(userId, userMessage, context, maxTokens, deadline);
+
+        CompletableFuture<String> reply;
+        if (request.hasContext()) {
+            reply = callModel(request);
+        } else {
+            String cached = cachedReply(request);
+            if (cached != null) {
+                record(start, "cache");
+                return CompletableFuture.completedFuture(cached);
             }
-            
-        } catch (Exception e) {
-            System.err.println("Error calling AI API: " + e.getMessage());
-            return "Je suis désolé, une erreur s'est produite. Veuillez réessayer plus tard.";
+            AiPromptKey key = request.promptKey();
+            reply = inFlight.execute(key, () -> callModel(request)
+                    .thenApply(response -> {
+                        // Cached before the flight is released, so no caller falls in between.
+                        // Only real replies are cached, never the fallback messages
+                        responseCache.put(key, response);
+                        return response;
+                    }));
+        }
+        if (deadline.isBounded()) {
+            // A late shared reply still lands in the cache. The timeout completes the future on
+            // the JDK's single timer thread, so withFallback hands over to callbackExecutor.
+            // One more millisecond so the timeout never fires before the deadline has passed
+            reply = reply.orTimeout(deadline.remainingMillis() + 1, TimeUnit.MILLISECONDS);
         }
+        return withFallback(reply, deadline, start);
     }
-    
+
     /**
-     * Check if AI service is available
-     * @return true if AI service is running
+     * A reply with the full token budget is good for any request; a shorter one only
+     * for requests with the same budget.
      */
-    public boolean isAiServiceAvailable() {
+    private String cachedReply(AiRequest request) {
+        String cached = responseCache.get(AiPromptKey.of(request.message()));
+        if (cached == null && request.maxTokens() != AiClient.MAX_TOKENS) {
+            cached = responseCache.get(request.promptKey());
+        }
+        return cached;
+    }
+
+    /**
+     * Tokens that can still be generated before the deadline, halved from the default
+     * down to {@code ai.deadline.min-tokens} so that shortened prompts still share cache
+     * entries and flights.
+     * @return the max_tokens to ask for, or 0 if there is no time left for a call
+     */
+    int tokenBudget(Deadline deadline) {
+        if (!deadline.isBounded()) {
+            return AiClient.MAX_TOKENS;
+        }
+        long usable = deadline.remainingMillis() - reserveMs;
+        if (usable <= 0) {
+            return 0;
+        }
+        long affordable = usable / Math.max(1, msPerToken);
+        int tokens = AiClient.MAX_TOKENS;
+        while (tokens > affordable && tokens / 2 >= minTokens) {
+            tokens /= 2;
+        }
+        return tokens;
+    }
+
+    private CompletableFuture<String> withFallback(CompletableFuture<String> reply, Deadline deadline, long start) {
+        return reply.handleAsync((response, error) -> {
+            if (error == null) {
+                record(start, "model");
+                return response;
+            }
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            if (deadline.isExpired()) {
+                record(start, "deadline");
+                return DEADLINE_REPLY;
+            }
+            if (cause instanceof AiCircuitOpenException) {
+                record(start, "circuit_open");
+                return UNAVAILABLE_REPLY;
+            }
+            if (cause instanceof AiEmptyResponseException) {
+                record(start, "unavailable");
+                return UNAVAILABLE_REPLY;
+            }
+            System.err.println("Error calling AI API: " + cause.getMessage());
+            record(start, "error");
+            return ERROR_REPLY;
+        }, callbackExecutor);
+    }
+
+    /**
+     * Call the model once it is the user's turn, through the circuit breaker.
+     * A coalesced call is scheduled for the user who started it.
+     * While the circuit is open the call fails at once, without queueing for a turn.
+     */
+    private CompletableFuture<String> callModel(AiRequest request) {
+        if (!circuitBreaker.isCallPermitted()) {
+            return CompletableFuture.failedFuture(new AiCircuitOpenException());
+        }
+        return scheduler.acquire(request.userId(), request.deadline())
+                .thenCompose(permit -> circuitBreaker.execute(() -> callUpstream(request))
+                        .whenComplete((response, error) -> permit.release()));
+    }
+
+    private CompletableFuture<String> callUpstream(AiRequest request) {
         try {
-            ResponseEntity<Map> response = restTemplate.getForEntity(
-                aiServiceUrl + "/health",
-                Map.class
-            );
-            return response.getStatusCode().is2xxSuccessful();
+            // Batches are generated with the default parameters only
+            boolean batchable = batchDispatcher.isEnabled()
+                    && !request.hasContext()
+                    && request.maxTokens() == AiClient.MAX_TOKENS;
+            return batchable
+                    ? batchDispatcher.submit(request.message())
+                    : aiClient.chat(request);
         } catch (Exception e) {
-            return false;
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Stream the AI response from the FastAPI server token by token.
+     * Tokens are emitted on a worker thread (never the Netty event loop).
+     * Unlike {@link #getAiResponse(String)}, failures are signalled as errors so the
+     * caller can decide what to keep of a partially streamed reply.
+     * @param userMessage The user's message
+     * @return the generated tokens, in order
+     */
+    public Flux<String> streamAiResponse(String userMessage) {
+        return streamAiResponse(null, userMessage, null, Deadline.none());
+    }
+
+    /**
+     * Same as {@link #streamAiResponse(String)}, for a user's message within a conversation.
+     * The stream starts once it is the user's turn, and holds that turn until it ends.
+     * A reply that depends on its conversation is never cached. When the deadline passes
+     * the stream simply completes, so the tokens received so far can be kept as a partial
+     * reply; it completes empty if nothing arrived in time, or if the circuit breaker is open.
+     * @param userId The user the reply is for, or null not to schedule the call
+     * @param userMessage The user's message
+     * @param context The conversation so far, or null/empty for a first message
+     * @param deadline When the caller stops waiting for the reply
+     * @return the generated tokens, in order
+     */
+    public Flux<String> streamAiResponse(Long userId, String userMessage, String context, Deadline deadline) {
+        long start = System.nanoTime();
+        int maxTokens = tokenBudget(deadline);
+        if (maxTokens == 0) {
+            record(start, "deadline");
+            return Flux.empty();
+        }
+        AiRequest request = new AiRequest(userId, userMessage, context, maxTokens, deadline);
+
+        Flux<String> tokens;
+        if (request.hasContext()) {
+            tokens = streamModel(request);
+        } else {
+            String cached = cachedReply(request);
+            if (cached != null) {
+                record(start, "cache");
+                return Flux.just(cached);
+            }
+            AiPromptKey key = request.promptKey();
+            tokens = Flux.defer(() -> {
+                StringBuilder reply = new StringBuilder();
+                return streamModel(request)
+                        .doOnNext(reply::append)
+                        .doOnComplete(() -> {
+                            if (reply.length() > 0) {
+                                responseCache.put(key, reply.toString());
+                            }
+                        });
+            });
         }
+        if (deadline.isBounded()) {
+            // Cuts the upstream off at the deadline: a truncated reply never reaches the cache
+            tokens = tokens.take(Duration.ofMillis(deadline.remainingMillis()), Schedulers.boundedElastic());
+        }
+        return tokens
+                .doOnComplete(() -> record(start, deadline.isExpired() ? "deadline" : "model"))
+                .onErrorResume(AiCircuitOpenException.class, error -> {
+                    record(start, "circuit_open");
+                    return Flux.empty();
+                })
+                .doOnError(error -> record(start, "error"));
+    }
+
+    private Flux<String> streamModel(AiRequest request) {
+        return Flux.defer(() -> {
+            if (!circuitBreaker.isCallPermitted()) {
+                return Flux.error(new AiCircuitOpenException());
+            }
+            // Cancelling before the turn comes gives it up
+            return Mono.fromFuture(() -> scheduler.acquire(request.userId(), request.deadline()))
+                    .flatMapMany(permit -> circuitBreaker.executeMany(() -> aiClient.chatStream(request))
+                            .doFinally(signal -> permit.release()));
+        });
+    }
+
+    /**
+     * Check if AI service is available, from the background prober's last result (no network call)
+     * @return true if at least one AI backend is up
+     */
+    public boolean isAiServiceAvailable() {
+        return healthProber.isAvailable();
+    }
+
+    private void record(long startNanos, String outcome) {
+        Timer.builder("ai.reply.duration")
+                .description("Time to get an AI reply, against the send deadline")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .serviceLevelObjectives(Duration.ofMillis(sendBudgetMs))
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
     }
 }
@@ -1,15 +1,21 @@
 package com.example.assistant_therapeutique.service;
 
+import com.example.assistant_therapeutique.dto.ChatMessagePageDTO;
 import com.example.assistant_therapeutique.model.ChatMessage;
 import com.example.assistant_therapeutique.model.Conversation;
 import com.example.assistant_therapeutique.model.User;
 import com.example.assistant_therapeutique.repository.ChatMessageRepository;
 import com.example.assistant_therapeutique.repository.ConversationRepository;
-import com.example.assistant_therapeutique.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,34 +26,162 @@ public class ChatMessageService {
     private ChatMessageRepository chatMessageRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private ConversationRepository conversationRepository;
 
     @Autowired
-    private ConversationRepository conversationRepository;
+    private EntityReferenceCache entityReferenceCache;
+
+    @Autowired
+    private ConversationContextService conversationContextService;
+
+    @Autowired
+    private ChatMessageWriteBehind writeBehind;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${chat.history.page-size:50}")
+    private int defaultPageSize;
 
+    @Value("${chat.history.max-page-size:200}")
+    private int maxPageSize;
+
+    /**
+     * Save a message as a single INSERT: the sender and the conversation are checked against
+     * {@link EntityReferenceCache} and referenced by id, without being loaded. The conversation's
+     * summary (message count, last activity, preview) is updated in the same transaction.
+     * In write-behind mode ({@link ChatMessageWriteBehind}) the message is only written to the
+     * local log, and both are done by the next flush.
+     */
     public ChatMessage saveMessage(Long senderId, Long conversationId, String content) {
-        Optional<User> senderOptional = userRepository.findById(senderId);
-        if (senderOptional.isEmpty()) {
+        return save(senderId, conversationId, content, writeBehind.isEnabled());
+    }
+
+    /**
+     * Save a message with an INSERT, even in write-behind mode, joining the caller's transaction
+     * if there is one: for callers that must commit the message together with their own rows.
+     */
+    public ChatMessage saveMessageNow(Long senderId, Long conversationId, String content) {
+        return save(senderId, conversationId, content, false);
+    }
+
+    private ChatMessage save(Long senderId, Long conversationId, String content, boolean behind) {
+        User sender = entityReferenceCache.sender(senderId);
+        if (sender == null) {
             throw new RuntimeException("Sender user not found with ID: " + senderId);
         }
-        User sender = senderOptional.get();
-
-        Optional<Conversation> conversationOptional = conversationRepository.findById(conversationId);
-        if (conversationOptional.isEmpty()) {
+        if (entityReferenceCache.conversationOwnerId(conversationId) == null) {
             throw new RuntimeException("Conversation not found with ID: " + conversationId);
         }
-        Conversation conversation = conversationOptional.get();
 
         ChatMessage message = new ChatMessage();
         message.setSender(sender);
-        message.setConversation(conversation);
+        message.setConversation(EntityReferenceCache.conversation(conversationId));
         message.setContent(content);
         message.setCreatedAt(LocalDateTime.now());
 
-        return chatMessageRepository.save(message);
+        ChatMessage saved;
+        if (behind) {
+            saved = writeBehind.append(message);
+        } else {
+            saved = new TransactionTemplate(transactionManager).execute(status -> {
+                ChatMessage inserted = chatMessageRepository.save(message);
+                conversationRepository.recordMessage(conversationId, inserted.getCreatedAt(), preview(content));
+                return inserted;
+            });
+        }
+        conversationContextService.onMessageSaved(saved);
+        return saved;
     }
 
     public List<ChatMessage> getMessagesByConversationId(Long conversationId) {
-        return chatMessageRepository.findByConversationId(conversationId);
+        List<ChatMessage> tail = writeBehind.pendingMessages(conversationId);
+        return ChatMessageWriteBehind.merge(chatMessageRepository.findByConversationId(conversationId), tail);
+    }
+
+    /**
+     * A page of a conversation's history by keyset: the newest messages, or those just before
+     * or just after a cursor (the id of a message of the conversation). One index range scan
+     * of at most {@code limit + 1} rows, whatever the length of the conversation.
+     * @param limit page size, {@code chat.history.page-size} if null, capped at {@code chat.history.max-page-size}
+     */
+    public ChatMessagePageDTO getMessagePage(Long conversationId, Long before, Long after, Integer limit) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Use either before or after, not both");
+        }
+        int size = Math.max(1, Math.min(limit != null ? limit : defaultPageSize, maxPageSize));
+        PageRequest firstRows = PageRequest.of(0, size + 1);
+        // Messages not flushed yet by the write-behind mode, merged in on either side of the cursor
+        List<ChatMessage> tail = writeBehind.pendingMessages(conversationId);
+
+        if (after != null) {
+            LocalDateTime createdAt = cursorCreatedAt(conversationId, after);
+            List<ChatMessage> newer = ChatMessageWriteBehind.merge(
+                chatMessageRepository.findPageAfter(conversationId, createdAt, after, firstRows),
+                tail.stream().filter(message -> compare(message, createdAt, after) > 0).toList());
+            boolean hasNewer = newer.size() > size;
+            return page(hasNewer ? newer.subList(0, size) : newer, true, hasNewer, after);
+        }
+
+        List<ChatMessage> older;
+        if (before != null) {
+            LocalDateTime createdAt = cursorCreatedAt(conversationId, before);
+            older = new ArrayList<>(chatMessageRepository.findPageBefore(conversationId, createdAt, before, firstRows));
+            tail = tail.stream().filter(message -> compare(message, createdAt, before) < 0).toList();
+        } else {
+            older = new ArrayList<>(chatMessageRepository.findByConversationIdOrderByCreatedAtDescIdDesc(conversationId, firstRows));
+        }
+        Collections.reverse(older);
+        older = ChatMessageWriteBehind.merge(older, tail);
+        boolean hasOlder = older.size() > size;
+        List<ChatMessage> messages = hasOlder ? older.subList(older.size() - size, older.size()) : older;
+        return page(messages, hasOlder, before != null, before);
+    }
+
+    private LocalDateTime cursorCreatedAt(Long conversationId, Long messageId) {
+        Optional<ChatMessage> pending = writeBehind.pendingMessage(conversationId, messageId);
+        if (pending.isPresent()) {
+            return pending.get().getCreatedAt();
+        }
+        return chatMessageRepository.findCreatedAtByIdAndConversationId(messageId, conversationId)
+            .orElseThrow(() -> new IllegalArgumentException(
+                "Message " + messageId + " not found in conversation " + conversationId));
+    }
+
+    /**
+     * Order of a message relative to a cursor, by (createdAt, id) like the history queries
+     */
+    private static int compare(ChatMessage message, LocalDateTime createdAt, Long id) {
+        int byDate = message.getCreatedAt().compareTo(createdAt);
+        return byDate != 0 ? byDate : message.getId().compareTo(id);
+    }
+
+    /**
+     * @param cursor the request's cursor, kept by an empty page so that the client can keep polling from it
+     */
+    private static ChatMessagePageDTO page(List<ChatMessage> messages, boolean hasOlder, boolean hasNewer, Long cursor) {
+        if (messages.isEmpty()) {
+            return new ChatMessagePageDTO(messages, cursor, cursor, hasOlder, hasNewer);
+        }
+        return new ChatMessagePageDTO(messages, messages.get(0).getId(),
+            messages.get(messages.size() - 1).getId(), hasOlder, hasNewer);
+    }
+
+    /**
+     * @return the content on one line, cut to {@link Conversation#PREVIEW_LENGTH} characters with an ellipsis
+     */
+    static String preview(String content) {
+        if (content == null) {
+            return null;
+        }
+        String line = content.replaceAll("\\s+", " ").trim();
+        if (line.length() <= Conversation.PREVIEW_LENGTH) {
+            return line;
+        }
+        int end = Conversation.PREVIEW_LENGTH;
+        if (Character.isHighSurrogate(line.charAt(end - 1))) {
+            end--;
+        }
+        return line.substring(0, end) + "…";
     }
 }
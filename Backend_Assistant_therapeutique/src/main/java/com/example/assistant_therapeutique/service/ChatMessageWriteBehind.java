@@ -0,0 +1,355 @@
+package com.example.assistant_therapeutique.service;
+
+import com.example.assistant_therapeutique.compression.CompressedTextConverter;
+import com.example.assistant_therapeutique.id.TimeOrderedId;
+import com.example.assistant_therapeutique.model.ChatMessage;
+import com.example.assistant_therapeutique.wal.WriteAheadLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind persistence of chat messages ({@code chat.write-behind.enabled}).
+ * A message is acknowledged once it is in a local {@link WriteAheadLog}, forced to disk with
+ * the other messages saved at the same moment; every {@code chat.write-behind.flush-ms} the
+ * log is rotated and its sealed segments are inserted with JDBC batches, along with one
+ * summary update per conversation, in one transaction, then deleted.
+ * Until then, the messages are kept in memory per conversation so that reads can merge them
+ * with the database ({@link #pendingMessages(Long)}). Segments left by a crash are replayed
+ * into memory at startup and inserted by the next flush. A flush skips messages already in
+ * the database, so replaying a segment whose flush committed just before a crash is harmless.
+ */
+@Service
+public class ChatMessageWriteBehind {
+
+    private static final String LOG_NAME = "chat-messages";
+    private static final byte RECORD_VERSION = 1;
+    // Ids per "in (...)" lookup
+    private static final int LOOKUP_CHUNK = 1000;
+
+    private static final String INSERT = "insert into chat_message (id, content, created_at, sender_id, conversation_id)"
+            + " values (?, ?, ?, ?, ?)";
+    private static final String RECORD_MESSAGES = "update conversation set message_count = message_count + ?,"
+            + " last_activity_at = ?, last_message_preview = ? where id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Rows are inserted without Hibernate: the content is stored the way the entity would store it
+    @Autowired
+    private CompressedTextConverter contentConverter;
+
+    @Value("${chat.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${chat.write-behind.dir:data/wal}")
+    private String directory;
+
+    // Most messages forced to disk at once
+    @Value("${chat.write-behind.group-size:256}")
+    private int groupSize;
+
+    // Rows per JDBC batch when flushing
+    @Value("${chat.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${spring.jpa.properties.app.id.node:0}")
+    private int node;
+
+    private WriteAheadLog log;
+    private TimeOrderedId ids;
+    private Counter flushed;
+
+    // Acknowledged messages not in the database yet: conversation id -> message id -> message
+    private final Map<Long, ConcurrentSkipListMap<Long, ChatMessage>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Object flushLock = new Object();
+
+    @PostConstruct
+    void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        ids = TimeOrderedId.forNode(node);
+        log = WriteAheadLog.open(Paths.get(directory), LOG_NAME, groupSize);
+        int replayed = 0;
+        for (Path segment : log.rotate()) {
+            for (byte[] record : WriteAheadLog.read(segment)) {
+                addPending(decode(record));
+                replayed++;
+            }
+        }
+        if (replayed > 0) {
+            System.out.println("Replayed " + replayed + " chat messages from the write-ahead log in " + directory);
+        }
+        Gauge.builder("chat.write-behind.pending", pendingCount, AtomicInteger::get)
+                .description("Chat messages acknowledged but not yet in the database")
+                .register(meterRegistry);
+        flushed = Counter.builder("chat.write-behind.flushed")
+                .description("Chat messages inserted by the write-behind flush")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Assign the message an id and write it to the log; returns once it is on disk.
+     * The sender and the conversation must have been checked by the caller.
+     */
+    public ChatMessage append(ChatMessage message) {
+        message.setId(ids.next());
+        addPending(message);
+        try {
+            log.append(encode(message)).join();
+        } catch (CompletionException e) {
+            removePending(message);
+            throw new RuntimeException("Could not write the message to the write-ahead log", e.getCause());
+        }
+        return message;
+    }
+
+    /**
+     * The conversation's messages not in the database yet, by id (so by creation time).
+     * Call it before reading the database: a flush removes messages from here only after
+     * committing them, so nothing can be missed between the two reads.
+     */
+    public List<ChatMessage> pendingMessages(Long conversationId) {
+        ConcurrentSkipListMap<Long, ChatMessage> messages = pending.get(conversationId);
+        return messages == null ? List.of() : new ArrayList<>(messages.values());
+    }
+
+    public Optional<ChatMessage> pendingMessage(Long conversationId, Long messageId) {
+        ConcurrentSkipListMap<Long, ChatMessage> messages = pending.get(conversationId);
+        return Optional.ofNullable(messages == null ? null : messages.get(messageId));
+    }
+
+    /**
+     * Forget a deleted conversation's pending messages. Their records stay in the log;
+     * the flush drops them, as the conversation is gone.
+     */
+    public void discard(Long conversationId) {
+        ConcurrentSkipListMap<Long, ChatMessage> messages = pending.remove(conversationId);
+        if (messages != null) {
+            pendingCount.addAndGet(-messages.size());
+        }
+    }
+
+    /**
+     * Insert the messages of the sealed segments, then delete the segments. On failure the
+     * segments are kept and the next flush tries again.
+     */
+    @Scheduled(initialDelayString = "${chat.write-behind.flush-ms:200}", fixedDelayString = "${chat.write-behind.flush-ms:200}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (flushLock) {
+            try {
+                List<Path> segments = log.rotate();
+                if (segments.isEmpty()) {
+                    return;
+                }
+                List<ChatMessage> messages = new ArrayList<>();
+                for (Path segment : segments) {
+                    for (byte[] record : WriteAheadLog.read(segment)) {
+                        messages.add(decode(record));
+                    }
+                }
+                if (!messages.isEmpty()) {
+                    int inserted = new TransactionTemplate(transactionManager).execute(status -> insert(messages));
+                    flushed.increment(inserted);
+                }
+                log.delete(segments);
+                messages.forEach(this::removePending);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error flushing chat messages from the write-ahead log, will retry: " + e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        flush();
+        log.close();
+    }
+
+    /**
+     * @return how many messages were inserted: those already in the database (a replayed
+     * segment) or whose conversation or sender was deleted meanwhile are left out
+     */
+    private int insert(List<ChatMessage> messages) {
+        Map<Long, ChatMessage> byId = new LinkedHashMap<>();
+        messages.forEach(message -> byId.put(message.getId(), message));
+        byId.keySet().removeAll(existing("select id from chat_message where id in (:ids)", byId.keySet()));
+        Set<Long> conversations = existing("select id from conversation where id in (:ids)",
+                byId.values().stream().map(message -> message.getConversation().getId()).collect(Collectors.toSet()));
+        Set<Long> senders = existing("select id from users where id in (:ids)",
+                byId.values().stream().map(message -> message.getSender().getId()).collect(Collectors.toSet()));
+
+        List<ChatMessage> rows = byId.values().stream()
+                .filter(message -> conversations.contains(message.getConversation().getId()))
+                .filter(message -> senders.contains(message.getSender().getId()))
+                .sorted(Comparator.comparing(ChatMessage::getId))
+                .toList();
+        if (rows.size() < byId.size()) {
+            System.err.println("Dropped " + (byId.size() - rows.size())
+                    + " logged chat messages whose conversation or sender no longer exists");
+        }
+        jdbcTemplate.batchUpdate(INSERT, rows, batchSize, (statement, message) -> {
+            statement.setLong(1, message.getId());
+            statement.setString(2, contentConverter.convertToDatabaseColumn(message.getContent()));
+            statement.setTimestamp(3, Timestamp.valueOf(message.getCreatedAt()));
+            statement.setLong(4, message.getSender().getId());
+            statement.setLong(5, message.getConversation().getId());
+        });
+
+        // Rows are by id, so by creation time: the last message of each conversation comes last
+        Map<Long, List<ChatMessage>> byConversation = rows.stream()
+                .collect(Collectors.groupingBy(message -> message.getConversation().getId(), LinkedHashMap::new, Collectors.toList()));
+        jdbcTemplate.batchUpdate(RECORD_MESSAGES, byConversation.values(), batchSize, (statement, conversationMessages) -> {
+            ChatMessage last = conversationMessages.get(conversationMessages.size() - 1);
+            statement.setInt(1, conversationMessages.size());
+            statement.setTimestamp(2, Timestamp.valueOf(last.getCreatedAt()));
+            statement.setString(3, ChatMessageService.preview(last.getContent()));
+            statement.setLong(4, last.getConversation().getId());
+        });
+        return rows.size();
+    }
+
+    private Set<Long> existing(String sql, Collection<Long> ids) {
+        NamedParameterJdbcTemplate named = new NamedParameterJdbcTemplate(jdbcTemplate);
+        List<Long> all = new ArrayList<>(ids);
+        Set<Long> found = new HashSet<>();
+        for (int from = 0; from < all.size(); from += LOOKUP_CHUNK) {
+            List<Long> chunk = all.subList(from, Math.min(from + LOOKUP_CHUNK, all.size()));
+            found.addAll(named.queryForList(sql, Map.of("ids", chunk), Long.class));
+        }
+        return found;
+    }
+
+    private void addPending(ChatMessage message) {
+        pending.compute(message.getConversation().getId(), (id, messages) -> {
+            ConcurrentSkipListMap<Long, ChatMessage> tail = messages != null ? messages : new ConcurrentSkipListMap<>();
+            if (tail.put(message.getId(), message) == null) {
+                pendingCount.incrementAndGet();
+            }
+            return tail;
+        });
+    }
+
+    private void removePending(ChatMessage message) {
+        pending.computeIfPresent(message.getConversation().getId(), (id, messages) -> {
+            if (messages.remove(message.getId()) != null) {
+                pendingCount.decrementAndGet();
+            }
+            return messages.isEmpty() ? null : messages;
+        });
+    }
+
+    static byte[] encode(ChatMessage message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(RECORD_VERSION);
+            out.writeLong(message.getId());
+            out.writeLong(message.getConversation().getId());
+            out.writeLong(message.getSender().getId());
+            out.writeUTF(message.getCreatedAt().toString());
+            if (message.getContent() == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] content = message.getContent().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(content.length);
+                out.write(content);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static ChatMessage decode(byte[] record) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            byte version = in.readByte();
+            if (version != RECORD_VERSION) {
+                throw new IOException("Unknown chat message record version " + version);
+            }
+            ChatMessage message = new ChatMessage();
+            message.setId(in.readLong());
+            message.setConversation(EntityReferenceCache.conversation(in.readLong()));
+            message.setSender(EntityReferenceCache.user(in.readLong()));
+            message.setCreatedAt(LocalDateTime.parse(in.readUTF()));
+            int length = in.readInt();
+            if (length >= 0) {
+                byte[] content = new byte[length];
+                in.readFully(content);
+                message.setContent(new String(content, StandardCharsets.UTF_8));
+            }
+            return message;
+        }
+    }
+
+    /**
+     * Merge messages read from the database with pending ones, without duplicates (a message
+     * flushed between the two reads), oldest first.
+     * @param stored messages read from the database, oldest first
+     * @param tail pending messages, from {@link #pendingMessages(Long)} called before reading the database
+     */
+    public static List<ChatMessage> merge(List<ChatMessage> stored, List<ChatMessage> tail) {
+        if (tail.isEmpty()) {
+            return stored;
+        }
+        Map<Long, ChatMessage> byId = new LinkedHashMap<>();
+        stored.forEach(message -> byId.put(message.getId(), message));
+        tail.forEach(message -> byId.putIfAbsent(message.getId(), message));
+        List<ChatMessage> merged = new ArrayList<>(byId.values());
+        merged.sort(Comparator.comparing(ChatMessage::getCreatedAt).thenComparing(ChatMessage::getId));
+        return merged;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.assistant_therapeutique.service;
+
+import com.example.assistant_therapeutique.ai.ConversationWindow;
+import com.example.assistant_therapeutique.model.ChatMessage;
+import com.example.assistant_therapeutique.repository.ChatMessageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Keeps a cached {@link ConversationWindow} per conversation so the model can be given
+ * the conversation so far without reloading every message on each turn.
+ * A window is built once from the latest {@code ai.context.rebuild-messages} messages,
+ * then updated incrementally as messages are saved.
+ */
+@Service
+public class ConversationContextService {
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private ChatMessageWriteBehind writeBehind;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${ai.assistant.user-id:1}")
+    private Long assistantUserId;
+
+    @Value("${ai.context.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.context.max-turns:8}")
+    private int maxTurns;
+
+    @Value("${ai.context.max-tokens:600}")
+    private int maxTokens;
+
+    @Value("${ai.context.summary-max-tokens:150}")
+    private int summaryMaxTokens;
+
+    @Value("${ai.context.rebuild-messages:32}")
+    private int rebuildMessages;
+
+    @Value("${ai.context.max-conversations:10000}")
+    private long maxConversations;
+
+    @Value("${ai.context.idle-minutes:60}")
+    private long idleMinutes;
+
+    private Cache<Long, ConversationWindow> windows;
+
+    @PostConstruct
+    void init() {
+        windows = Caffeine.newBuilder()
+                .maximumSize(maxConversations)
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, windows, "ai.context");
+    }
+
+    /**
+     * Context to send along with the next message of a conversation.
+     * Call it before saving that message, so the message is not part of its own context.
+     * @return the rendered window, or an empty string for a new conversation or when disabled
+     */
+    public String promptContext(Long conversationId) {
+        if (!enabled || conversationId == null) {
+            return "";
+        }
+        return windows.get(conversationId, this::load).render();
+    }
+
+    /**
+     * Append a just-saved message to its conversation's window, if that window is cached.
+     * An uncached window will include the message when it is next built.
+     */
+    public void onMessageSaved(ChatMessage message) {
+        if (!enabled || message.getId() == null || message.getConversation() == null) {
+            return;
+        }
+        ConversationWindow window = windows.getIfPresent(message.getConversation().getId());
+        if (window != null) {
+            window.append(message.getId(), isFromAssistant(message), message.getContent());
+        }
+    }
+
+    public void evict(Long conversationId) {
+        windows.invalidate(conversationId);
+    }
+
+    private ConversationWindow load(Long conversationId) {
+        ConversationWindow window = new ConversationWindow(maxTurns, maxTokens, summaryMaxTokens);
+        List<ChatMessage> tail = writeBehind.pendingMessages(conversationId);
+        List<ChatMessage> latest = new ArrayList<>(chatMessageRepository.findByConversationIdOrderByCreatedAtDescIdDesc(
+                conversationId, PageRequest.of(0, rebuildMessages)));
+        Collections.reverse(latest);
+        latest = ChatMessageWriteBehind.merge(latest, tail);
+        for (ChatMessage message : latest.subList(Math.max(0, latest.size() - rebuildMessages), latest.size())) {
+            window.append(message.getId(), isFromAssistant(message), message.getContent());
+        }
+        return window;
+    }
+
+    private boolean isFromAssistant(ChatMessage message) {
+        return message.getSender() != null && Objects.equals(message.getSender().getId(), assistantUserId);
+    }
+}
@@ -1,13 +1,27 @@
 package com.example.assistant_therapeutique.service;
 
+import com.example.assistant_therapeutique.dto.ConversationSummaryDTO;
+import com.example.assistant_therapeutique.dto.ConversationSummaryPageDTO;
+import com.example.assistant_therapeutique.model.ChatMessage;
 import com.example.assistant_therapeutique.model.Conversation;
 import com.example.assistant_therapeutique.model.User;
+import com.example.assistant_therapeutique.repository.ChatMessageRepository;
 import com.example.assistant_therapeutique.repository.ConversationRepository;
 import com.example.assistant_therapeutique.repository.UserRepository;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,14 +34,110 @@ public class ConversationService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ConversationContextService conversationContextService;
+
+    @Autowired
+    private EntityReferenceCache entityReferenceCache;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private ChatMessageWriteBehind writeBehind;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${conversation.summaries.page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${conversation.summaries.max-page-size:100}")
+    private int maxPageSize;
+
     public List<Conversation> getConversationsByUserId(Long userId) {
         return conversationRepository.findByUserId(userId);
     }
 
+    /**
+     * A page of the user's conversation summaries, most recently active first, read from the
+     * denormalized columns of the conversation rows: no message is loaded.
+     * @param cursor the {@code next} cursor of the previous page, null for the first page
+     * @param limit page size, {@code conversation.summaries.page-size} if null, capped at
+     * {@code conversation.summaries.max-page-size}
+     */
+    public ConversationSummaryPageDTO getConversationSummaries(Long userId, String cursor, Integer limit) {
+        int size = Math.max(1, Math.min(limit != null ? limit : defaultPageSize, maxPageSize));
+        PageRequest firstRows = PageRequest.of(0, size + 1);
+        List<ConversationSummaryDTO> summaries;
+        if (cursor == null) {
+            summaries = conversationRepository.findSummaries(userId, firstRows);
+        } else {
+            int separator = cursor.lastIndexOf('_');
+            try {
+                LocalDateTime at = LocalDateTime.parse(cursor.substring(0, Math.max(0, separator)));
+                Long id = Long.valueOf(cursor.substring(separator + 1));
+                summaries = conversationRepository.findSummariesBefore(userId, at, id, firstRows);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+        if (summaries.size() <= size) {
+            return new ConversationSummaryPageDTO(summaries, null);
+        }
+        ConversationSummaryDTO last = summaries.get(size - 1);
+        return new ConversationSummaryPageDTO(summaries.subList(0, size), last.getLastActivityAt() + "_" + last.getId());
+    }
+
+    /**
+     * Fill the summary columns of conversations created before they existed, once, at startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillSummaries() {
+        List<Long> ids = conversationRepository.findIdsWithoutSummary();
+        for (Long id : ids) {
+            conversationRepository.findById(id).ifPresent(conversation -> {
+                List<ChatMessage> newest = chatMessageRepository.findByConversationIdOrderByCreatedAtDescIdDesc(
+                    id, PageRequest.of(0, 1));
+                conversation.setMessageCount((int) chatMessageRepository.countByConversationId(id));
+                if (newest.isEmpty()) {
+                    conversation.setLastActivityAt(conversation.getCreatedAt() != null
+                        ? conversation.getCreatedAt() : LocalDateTime.now());
+                } else {
+                    conversation.setLastActivityAt(newest.get(0).getCreatedAt());
+                    conversation.setLastMessagePreview(ChatMessageService.preview(newest.get(0).getContent()));
+                }
+                conversationRepository.save(conversation);
+            });
+        }
+        if (!ids.isEmpty()) {
+            System.out.println("Conversation summaries filled in for " + ids.size() + " conversations");
+        }
+    }
+
     public Optional<Conversation> getConversationById(Long id) {
         return conversationRepository.findById(id);
     }
 
+    /**
+     * Load a conversation with its messages initialized, so it can be serialized
+     * outside of the persistence context (e.g. when completing an async request).
+     * Messages not flushed yet by the write-behind mode are added to the detached copy.
+     */
+    @Transactional(readOnly = true)
+    public Optional<Conversation> getConversationWithMessages(Long id) {
+        List<ChatMessage> tail = writeBehind.pendingMessages(id);
+        Optional<Conversation> conversation = conversationRepository.findById(id);
+        conversation.ifPresent(c -> {
+            Hibernate.initialize(c.getMessages());
+            if (!tail.isEmpty()) {
+                entityManager.detach(c);
+                c.setMessages(ChatMessageWriteBehind.merge(new ArrayList<>(c.getMessages()), tail));
+            }
+        });
+        return conversation;
+    }
+
     public Conversation createConversation(Long userId, String titre) {
         Optional<User> userOptional = userRepository.findById(userId);
         if (userOptional.isEmpty()) {
@@ -40,7 +150,20 @@ public class ConversationService {
         conversation.setUser(user);
         conversation.setCreatedAt(LocalDateTime.now());
 
-        return conversationRepository.save(conversation);
+        Conversation saved = conversationRepository.save(conversation);
+        entityReferenceCache.onConversationCreated(saved);
+        return saved;
+    }
+
+    /**
+     * Check that a conversation exists and belongs to the user, without loading it.
+     * A conversation of another user is reported as not found.
+     */
+    public void requireConversationOf(Long conversationId, Long userId) {
+        Long ownerId = entityReferenceCache.conversationOwnerId(conversationId);
+        if (ownerId == null || !ownerId.equals(userId)) {
+            throw new RuntimeException("Conversation not found");
+        }
     }
     
     public Conversation saveConversation(Conversation conversation) {
@@ -49,6 +172,9 @@ public class ConversationService {
 
     public void deleteConversation(Long id) {
         conversationRepository.deleteById(id);
+        writeBehind.discard(id);
+        conversationContextService.evict(id);
+        entityReferenceCache.onConversationDeleted(id);
     }
     
     public Conversation updateTitle(Long id, String newTitle) {
@@ -0,0 +1,174 @@
+package com.example.assistant_therapeutique.service;
+
+import com.example.assistant_therapeutique.model.Conversation;
+import com.example.assistant_therapeutique.model.User;
+import com.example.assistant_therapeutique.repository.ConversationRepository;
+import com.example.assistant_therapeutique.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+
+/**
+ * Users and conversations known to exist, with each conversation's owner, so that message
+ * writes can check them without loading the rows on every save. Rows are looked up once and
+ * then served from memory, once the transaction that read or created them commits; deleted
+ * conversations and saved users are evicted. The foreign keys still guard
+ * against anything deleted behind the cache's back.
+ * A saved message's sender is a copy of the cached user ({@link #sender(Long)}), so it is
+ * returned to clients whole. Its conversation is never serialized and only needs its id,
+ * hence {@link #conversation(Long)}: unlike {@code getReferenceById} proxies, neither triggers
+ * a lazy load, even when the saved message is serialized outside of a session.
+ */
+@Service
+public class EntityReferenceCache {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${entity-cache.max-size:100000}")
+    private long maxSize;
+
+    @Value("${entity-cache.idle-minutes:60}")
+    private long idleMinutes;
+
+    private Cache<Long, User> users;
+    private Cache<Long, Long> conversationOwners;
+
+    @PostConstruct
+    void init() {
+        users = newCache();
+        conversationOwners = newCache();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "entity.users");
+        CaffeineCacheMetrics.monitor(meterRegistry, conversationOwners, "entity.conversations");
+    }
+
+    private <V> Cache<Long, V> newCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .recordStats()
+                .build();
+    }
+
+    public boolean userExists(Long userId) {
+        return sender(userId) != null;
+    }
+
+    /**
+     * @return a copy of the user, to be the sender of a new message, or null if there is no such user
+     */
+    public User sender(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        User user = users.getIfPresent(userId);
+        if (user == null) {
+            user = userRepository.findById(userId).map(EntityReferenceCache::copy).orElse(null);
+            if (user != null) {
+                User loaded = user;
+                afterCommit(() -> users.put(userId, loaded));
+            }
+        }
+        return user != null ? copy(user) : null;
+    }
+
+    /**
+     * @return the id of the user owning the conversation, or null if there is no such conversation
+     */
+    public Long conversationOwnerId(Long conversationId) {
+        if (conversationId == null) {
+            return null;
+        }
+        Long ownerId = conversationOwners.getIfPresent(conversationId);
+        if (ownerId == null) {
+            ownerId = conversationRepository.findOwnerIdById(conversationId).orElse(null);
+            if (ownerId != null) {
+                Long owner = ownerId;
+                afterCommit(() -> conversationOwners.put(conversationId, owner));
+            }
+        }
+        return ownerId;
+    }
+
+    public void onConversationCreated(Conversation conversation) {
+        Long conversationId = conversation.getId();
+        User owner = copy(conversation.getUser());
+        afterCommit(() -> {
+            conversationOwners.put(conversationId, owner.getId());
+            users.put(owner.getId(), owner);
+        });
+    }
+
+    /**
+     * Forget a user whose row changed, so new messages are sent by its current version.
+     */
+    public void onUserSaved(Long userId) {
+        if (userId != null) {
+            users.invalidate(userId);
+        }
+    }
+
+    public void onConversationDeleted(Long conversationId) {
+        conversationOwners.invalidate(conversationId);
+    }
+
+    /**
+     * Run a cache update once the current transaction commits, or now outside of one: a row
+     * read or written by a transaction that rolls back must not be served from the cache.
+     */
+    private static void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+
+    /**
+     * @return a user carrying only its id, to reference an existing user from a new entity
+     * that is not returned to clients
+     */
+    public static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    // Callers get their own instance: entities are not shared between threads and sessions
+    private static User copy(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setUsername(user.getUsername());
+        copy.setPassword(user.getPassword());
+        return copy;
+    }
+
+    /**
+     * @return a conversation carrying only its id, to reference an existing conversation from a new entity
+     */
+    public static Conversation conversation(Long id) {
+        Conversation conversation = new Conversation();
+        conversation.setId(id);
+        return conversation;
+    }
+}
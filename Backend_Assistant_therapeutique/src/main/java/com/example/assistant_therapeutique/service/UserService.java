@@ -13,8 +13,13 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private EntityReferenceCache entityReferenceCache;
+
     public User saveUser(User user) {
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        entityReferenceCache.onUserSaved(saved.getId());
+        return saved;
     }
 
     public Optional<User> findByUsername(String username) {
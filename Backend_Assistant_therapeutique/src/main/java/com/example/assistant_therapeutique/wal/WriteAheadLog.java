@@ -0,0 +1,290 @@
+package com.example.assistant_therapeutique.wal;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of records on local disk, so that writes can be acknowledged before they
+ * reach the database and still survive a crash.
+ * <ul>
+ *     <li>Each record is framed as its length, its CRC32 and its bytes. Reading stops at the
+ *     first incomplete or corrupt record, which is where a crash cut the last write.</li>
+ *     <li>Group commit: appends are queued and written by a single thread, which forces each
+ *     batch to disk with one fsync. The more concurrent appends, the more records per fsync.</li>
+ *     <li>The log is a series of segment files ({@code <name>-<sequence>.wal}). {@link #rotate()}
+ *     seals the current segment and starts a new one; sealed segments are read back and deleted
+ *     by the caller once their records are stored elsewhere. Segments found when opening the
+ *     log are sealed: they hold the records to replay.</li>
+ * </ul>
+ */
+public final class WriteAheadLog implements Closeable {
+
+    public static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+    private static final String SUFFIX = ".wal";
+    private static final int HEADER_BYTES = 8;
+
+    private record Append(byte[] payload, CompletableFuture<Void> done) {
+    }
+
+    private static final Append CLOSE = new Append(new byte[0], new CompletableFuture<>());
+
+    private final Path directory;
+    private final String name;
+    private final int maxBatch;
+    private final BlockingQueue<Append> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final AtomicLong syncs = new AtomicLong();
+
+    // Guarded by this
+    private FileChannel channel;
+    private long sequence;
+    private boolean written;
+
+    private volatile boolean closed;
+
+    private WriteAheadLog(Path directory, String name, int maxBatch) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.maxBatch = Math.max(1, maxBatch);
+        Files.createDirectories(directory);
+        List<Path> existing = segments();
+        sequence = existing.isEmpty() ? 0 : sequenceOf(existing.get(existing.size() - 1));
+        openNextSegment();
+        writer = new Thread(this::writeLoop, "wal-" + name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @param maxBatch most records written per fsync
+     */
+    public static WriteAheadLog open(Path directory, String name, int maxBatch) throws IOException {
+        return new WriteAheadLog(directory, name, maxBatch);
+    }
+
+    /**
+     * Queue a record for writing.
+     * @return a future completed once the record is on disk, or failed if it could not be written
+     */
+    public CompletableFuture<Void> append(byte[] payload) {
+        if (payload.length > MAX_RECORD_BYTES) {
+            return CompletableFuture.failedFuture(new IOException("Record of " + payload.length + " bytes is too large"));
+        }
+        Append append = new Append(payload, new CompletableFuture<>());
+        if (closed) {
+            return CompletableFuture.failedFuture(new IOException("Write-ahead log " + name + " is closed"));
+        }
+        queue.add(append);
+        if (closed) {
+            // Raced with close(): failing twice is harmless, being left pending is not
+            append.done().completeExceptionally(new IOException("Write-ahead log " + name + " is closed"));
+        }
+        return append.done();
+    }
+
+    /**
+     * Seal the current segment, unless nothing was written to it since it was opened.
+     * @return every sealed segment, oldest first: the ones sealed now and by earlier calls
+     * whose segments were not deleted yet, and the ones found when opening the log
+     */
+    public synchronized List<Path> rotate() throws IOException {
+        if (written) {
+            channel.close();
+            openNextSegment();
+        }
+        Path current = segment(sequence);
+        List<Path> sealed = new ArrayList<>(segments());
+        sealed.remove(current);
+        return sealed;
+    }
+
+    public void delete(List<Path> segments) throws IOException {
+        for (Path segment : segments) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    /**
+     * @return the records of a segment, up to the first incomplete or corrupt one
+     */
+    public static List<byte[]> read(Path segment) throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        try (InputStream file = Files.newInputStream(segment);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            while (true) {
+                int length;
+                int crc;
+                try {
+                    length = in.readInt();
+                    crc = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || length > MAX_RECORD_BYTES) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                try {
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (crc(payload) != crc) {
+                    break;
+                }
+                records.add(payload);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * @return how many times the log was forced to disk, one per batch of records
+     */
+    public long syncCount() {
+        return syncs.get();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Append> left = new ArrayList<>();
+        queue.drainTo(left);
+        left.forEach(append -> append.done().completeExceptionally(new IOException("Write-ahead log " + name + " is closed")));
+        synchronized (this) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Could not close write-ahead log " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<Append> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, maxBatch - 1);
+            boolean stop = batch.remove(CLOSE);
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+            batch.clear();
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    private void write(List<Append> batch) {
+        int size = 0;
+        for (Append append : batch) {
+            size += HEADER_BYTES + append.payload().length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (Append append : batch) {
+            buffer.putInt(append.payload().length).putInt(crc(append.payload())).put(append.payload());
+        }
+        buffer.flip();
+        try {
+            synchronized (this) {
+                written = true;
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            syncs.incrementAndGet();
+            batch.forEach(append -> append.done().complete(null));
+        } catch (IOException e) {
+            batch.forEach(append -> append.done().completeExceptionally(e));
+            // Later records must not land behind a torn one, which would hide them from read()
+            try {
+                rotate();
+            } catch (IOException rotateError) {
+                System.err.println("Could not start a new segment of write-ahead log " + name + ": " + rotateError.getMessage());
+            }
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        sequence++;
+        channel = FileChannel.open(segment(sequence),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        written = false;
+        syncDirectory();
+    }
+
+    /**
+     * Make the new segment's directory entry durable too. Not supported on every platform,
+     * where the segment's own fsyncs are all there is.
+     */
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Best effort
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(this::isSegment)
+                    .sorted(Comparator.comparingLong(WriteAheadLog::sequenceOf))
+                    .toList();
+        }
+    }
+
+    private boolean isSegment(Path file) {
+        String fileName = file.getFileName().toString();
+        return fileName.startsWith(name + "-") && fileName.endsWith(SUFFIX)
+                && fileName.substring(name.length() + 1, fileName.length() - SUFFIX.length()).chars().allMatch(Character::isDigit);
+    }
+
+    private Path segment(long sequence) {
+        return directory.resolve(String.format("%s-%012d%s", name, sequence, SUFFIX));
+    }
+
+    private static long sequenceOf(Path segment) {
+        String fileName = segment.getFileName().toString();
+        return Long.parseLong(fileName.substring(fileName.lastIndexOf('-') + 1, fileName.length() - SUFFIX.length()));
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.assistant_therapeutique.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests pour AiBatchDispatcher contre un faux endpoint /chat/batch
+ * Couvre : regroupement par fenêtre, lot plein, ordre des réponses, erreurs
+ */
+class AiBatchDispatcherTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private HttpServer server;
+    private AiClient aiClient;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<List<String>> receivedBatches = new CopyOnWriteArrayList<>();
+    private volatile int batchStatus = 200;
+    private volatile boolean dropLastReply;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/chat/batch", this::handleBatch);
+        server.start();
+
+        aiClient = AiTestSupport.newClient(5_000, "http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    void tearDown() {
+        aiClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("submit - prompts dans la même fenêtre -> un seul lot, réponses dans l'ordre")
+    void submit_WithinWindow_ShouldSendOneBatch() {
+        AiBatchDispatcher dispatcher = newDispatcher(200, 16);
+        try {
+            List<CompletableFuture<String>> replies = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                replies.add(dispatcher.submit("message " + i));
+            }
+
+            for (int i = 0; i < 5; i++) {
+                assertThat(replies.get(i).join()).isEqualTo("réponse à message " + i);
+            }
+            assertThat(receivedBatches).hasSize(1);
+            assertThat(receivedBatches.get(0)).hasSize(5);
+            assertThat(meterRegistry.get("ai.batch.size").summary().totalAmount()).isEqualTo(5);
+        } finally {
+            dispatcher.close();
+        }
+    }
+
+    @Test
+    @DisplayName("submit - lot plein -> envoyé sans attendre la fenêtre")
+    void submit_WhenBatchFull_ShouldDispatchImmediately() throws Exception {
+        AiBatchDispatcher dispatcher = newDispatcher(60_000, 3);
+        try {
+            List<CompletableFuture<String>> replies = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                replies.add(dispatcher.submit("message " + i));
+            }
+
+            CompletableFuture.allOf(replies.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+            assertThat(receivedBatches).hasSize(1);
+        } finally {
+            dispatcher.close();
+        }
+    }
+
+    @Test
+    @DisplayName("submit - erreur HTTP -> tous les appelants du lot échouent")
+    void submit_WhenBatchFails_ShouldFailEveryCaller() {
+        batchStatus = 500;
+        AiBatchDispatcher dispatcher = newDispatcher(50, 16);
+        try {
+            CompletableFuture<String> first = dispatcher.submit("a");
+            CompletableFuture<String> second = dispatcher.submit("b");
+
+            assertThatThrownBy(first::join).isInstanceOf(CompletionException.class);
+            assertThatThrownBy(second::join).isInstanceOf(CompletionException.class);
+        } finally {
+            dispatcher.close();
+        }
+    }
+
+    @Test
+    @DisplayName("submit - nombre de réponses incorrect -> échec")
+    void submit_WhenReplyCountMismatch_ShouldFail() {
+        dropLastReply = true;
+        AiBatchDispatcher dispatcher = newDispatcher(50, 16);
+        try {
+            CompletableFuture<String> first = dispatcher.submit("a");
+            CompletableFuture<String> second = dispatcher.submit("b");
+
+            assertThatThrownBy(first::join).hasCauseInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(second::join).hasCauseInstanceOf(IllegalStateException.class);
+        } finally {
+            dispatcher.close();
+        }
+    }
+
+    private AiBatchDispatcher newDispatcher(long windowMs, int maxSize) {
+        AiBatchDispatcher dispatcher = new AiBatchDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "enabled", true);
+        ReflectionTestUtils.setField(dispatcher, "windowMs", windowMs);
+        ReflectionTestUtils.setField(dispatcher, "maxSize", maxSize);
+        ReflectionTestUtils.setField(dispatcher, "aiClient", aiClient);
+        ReflectionTestUtils.setField(dispatcher, "meterRegistry", meterRegistry);
+        dispatcher.init();
+        return dispatcher;
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+        List<String> messages = new ArrayList<>();
+        request.get("messages").forEach(message -> messages.add(message.asText()));
+        receivedBatches.add(messages);
+
+        List<String> responses = new ArrayList<>();
+        for (String message : messages) {
+            responses.add("réponse à " + message);
+        }
+        if (dropLastReply) {
+            responses.remove(responses.size() - 1);
+        }
+        byte[] body = MAPPER.writeValueAsBytes(Map.of("responses", responses, "status", "success"));
+        exchange.getResponseHeaders().put("Content-Type", List.of("application/json"));
+        exchange.sendResponseHeaders(batchStatus, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.assistant_therapeutique.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests pour AiCircuitBreaker
+ * Couvre : ouverture sur taux d'échec et appels lents, rejet rapide, demi-ouverture,
+ * fermeture et réouverture, erreurs et échéances dépassées non comptées, événements et métriques
+ */
+class AiCircuitBreakerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private List<Object> events;
+    private AiCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        events = new ArrayList<>();
+        breaker = new AiCircuitBreaker();
+        ReflectionTestUtils.setField(breaker, "enabled", true);
+        ReflectionTestUtils.setField(breaker, "window", 10);
+        ReflectionTestUtils.setField(breaker, "minCalls", 4);
+        ReflectionTestUtils.setField(breaker, "failureRateThreshold", 0.5);
+        ReflectionTestUtils.setField(breaker, "slowCallMs", 1_000L);
+        ReflectionTestUtils.setField(breaker, "slowCallRateThreshold", 0.8);
+        ReflectionTestUtils.setField(breaker, "openMs", 100L);
+        ReflectionTestUtils.setField(breaker, "halfOpenCalls", 2);
+        ReflectionTestUtils.setField(breaker, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(breaker, "eventPublisher", (ApplicationEventPublisher) events::add);
+        breaker.init();
+    }
+
+    @Test
+    @DisplayName("execute - taux d'échec atteint -> circuit ouvert, appels rejetés sans être lancés")
+    void execute_WhenFailureRateReached_ShouldOpenAndRejectFast() {
+        succeed(2);
+        fail(1);
+        assertThat(breaker.getState()).isEqualTo(AiCircuitBreaker.State.CLOSED);
+        fail(1);
+
+        assertThat(breaker.getState()).isEqualTo(AiCircuitBreaker.State.OPEN);
+        assertThat(breaker.isCallPermitted()).isFalse();
+        AtomicInteger started = new AtomicInteger();
+        long start = System.nanoTime();
+        CompletableFuture<String> rejected = breaker.execute(() -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture("ok");
+        });
+        long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+
+        assertThatThrownBy(rejected::join).hasCauseInstanceOf(AiCircuitOpenException.class);
+        assertThat(started).hasValue(0);
+        assertThat(elapsedMicros).isLessThan(10_000);
+        assertThat(meterRegistry.get("ai.circuit.rejected").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("ai.circuit.state").gauge().value()).isEqualTo(1);
+        assertThat(events).containsExactly(new AiCircuitStateChangedEvent(
+                AiCircuitBreaker.State.CLOSED, AiCircuitBreaker.State.OPEN, 0.5, 0.0));
+    }
+
+    @Test
+    @DisplayName("execute - appels lents -> circuit ouvert")
+    void execute_WhenMostCallsSlow_ShouldOpen() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onResult(TimeUnit.SECONDS.toNanos(2), false);
+        }
+
+        assertThat(breaker.getState()).isEqualTo(AiCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    @DisplayName("execute - réponses vides et erreurs 4xx -> ne comptent pas comme échecs")
+    void execute_ClientErrors_ShouldNotCountAsFailures() {
+        for (int i = 0; i < 4; i++) {
+            breaker.execute(() -> CompletableFuture.failedFuture(new AiEmptyResponseException()));
+            breaker.execute(() -> CompletableFuture.failedFuture(
+                    WebClientResponseException.create(HttpStatus.BAD_REQUEST.value(), "Bad Request", null, null, null)));
+        }
+
+        assertThat(breaker.getState()).isEqualTo(AiCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    @DisplayName("execute - délai coupé par l'échéance de l'appelant -> ni échec ni succès, délai complet -> échec")
+    void execute_DeadlineShortenedTimeouts_ShouldBeIgnored() {
+        for (int i = 0; i < 10; i++) {
+            breaker.execute(() -> CompletableFuture.failedFuture(new AiDeadlineExceededException(100)));
+        }
+        assertThat(breaker.getState()).isEqualTo(AiCircuitBreaker.State.CLOSED);
+
+        // Nothing was recorded: four timeouts at the configured ceiling still open the circuit
+        for (int i = 0; i < 4; i++) {
+            breaker.execute(() -> CompletableFuture.failedFuture(new TimeoutException("Did not observe any item")));
+        }
+        assertThat(breaker.getState()).isEqualTo(AiCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    @DisplayName("execute - après open-ms : essais limités, fermeture s'ils réussissent, réouverture sinon")
+    void execute_AfterOpenDuration_ShouldProbeThenCloseOrReopen() throws InterruptedException {
+        fail(4);
+        Thread.sleep(150);
+        assertThat(breaker.isCallPermitted()).isTrue();
+
+        // Two trial slots: a third concurrent call is rejected
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        CompletableFuture<String> trial1 = breaker.execute(() -> first);
+        CompletableFuture<String> trial2 = breaker.execute(() -> second);
+        assertThat(breaker.getState()).isEqualTo(AiCircuitBreaker.State.HALF_OPEN);
+        assertThatThrownBy(() -> breaker.execute(() -> CompletableFuture.completedFuture("ok")).join())
+                .hasCauseInstanceOf(AiCircuitOpenException.class);
+
+        first.complete("ok");
+        second.complete("ok");
+        assertThat(trial1.join()).isEqualTo("ok");
+        assertThat(trial2.join()).isEqualTo("ok");
+        assertThat(breaker.getState()).isEqualTo(AiCircuitBreaker.State.CLOSED);
+
+        fail(4);
+        Thread.sleep(150);
+        fail(1);
+        assertThat(breaker.getState()).isEqualTo(AiCircuitBreaker.State.OPEN);
+        assertThat(events).extracting(event -> ((AiCircuitStateChangedEvent) event).to()).containsExactly(
+                AiCircuitBreaker.State.OPEN, AiCircuitBreaker.State.HALF_OPEN, AiCircuitBreaker.State.CLOSED,
+                AiCircuitBreaker.State.OPEN, AiCircuitBreaker.State.HALF_OPEN, AiCircuitBreaker.State.OPEN);
+        assertThat(meterRegistry.get("ai.circuit.transitions").tag("from", "half_open").tag("to", "open")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("executeMany - flux rejeté quand ouvert, essai rendu s'il est annulé avant le premier token")
+    void executeMany_ShouldRejectWhenOpenAndReleaseCancelledTrials() throws InterruptedException {
+        // Longer than loading Reactor's classes on a cold JVM
+        ReflectionTestUtils.setField(breaker, "openMs", 1_000L);
+        fail(4);
+        assertThat(breaker.executeMany(() -> Flux.just("a")).collectList().onErrorReturn(List.of("rejected")).block())
+                .containsExactly("rejected");
+
+        Thread.sleep(1_100);
+        breaker.executeMany(Flux::never).subscribe().dispose();
+        breaker.executeMany(Flux::never).subscribe().dispose();
+        // Both cancelled trials gave their slot back
+        assertThat(breaker.executeMany(() -> Flux.just("a", "b")).collectList().block()).containsExactly("a", "b");
+        assertThat(breaker.executeMany(() -> Flux.just("c")).collectList().block()).containsExactly("c");
+        assertThat(breaker.getState()).isEqualTo(AiCircuitBreaker.State.CLOSED);
+    }
+
+    private void succeed(int calls) {
+        for (int i = 0; i < calls; i++) {
+            breaker.execute(() -> CompletableFuture.completedFuture("ok")).join();
+        }
+    }
+
+    private void fail(int calls) {
+        for (int i = 0; i < calls; i++) {
+            breaker.execute(() -> CompletableFuture.failedFuture(new ConnectException("Connection refused")));
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.assistant_therapeutique.ai;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests pour AiClient contre un serveur HTTP local
+ * Couvre : réponse, réutilisation des connexions, délais, erreurs HTTP, santé
+ */
+class AiClientTest {
+
+    private HttpServer server;
+    private AiClient aiClient;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private volatile long chatDelayMs;
+    private volatile int chatStatus = 200;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/chat", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            sleep(chatDelayMs);
+            respond(exchange, chatStatus, "{\"response\":\"Bonjour!\",\"status\":\"success\"}");
+        });
+        server.createContext("/health", exchange -> respond(exchange, 200, "{\"model_loaded\":true}"));
+        server.start();
+
+        aiClient = newClient("http://127.0.0.1:" + server.getAddress().getPort(), 5_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        aiClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("chat - réponse réussie")
+    void chat_WhenSuccessful_ShouldReturnResponse() {
+        assertThat(aiClient.chat("Salut").join()).isEqualTo("Bonjour!");
+    }
+
+    @Test
+    @DisplayName("chat - connexions keep-alive réutilisées")
+    void chat_SequentialCalls_ShouldReuseConnection() {
+        for (int i = 0; i < 5; i++) {
+            aiClient.chat("Salut").join();
+            // The connection goes back to the pool just after the reply is delivered
+            sleep(50);
+        }
+
+        assertThat(clientPorts).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("chat - délai total dépassé -> échec rapide")
+    void chat_WhenServerHangs_ShouldFailAfterTotalDeadline() {
+        aiClient.chat("Salut").join();
+        chatDelayMs = 3_000;
+        AiClient impatient = newClient("http://127.0.0.1:" + server.getAddress().getPort(), 500);
+        try {
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> impatient.chat("Salut").join())
+                    .isInstanceOf(CompletionException.class)
+                    .hasCauseInstanceOf(TimeoutException.class);
+            assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(2_500);
+        } finally {
+            impatient.close();
+        }
+    }
+
+    @Test
+    @DisplayName("chat - échéance de l'appelant plus courte que le délai total -> AiDeadlineExceededException")
+    void chat_WhenCallerDeadlineShorter_ShouldFailWithDeadlineExceeded() {
+        aiClient.chat("Salut").join();
+        chatDelayMs = 3_000;
+        AiRequest request = new AiRequest(null, "Salut", null, AiClient.MAX_TOKENS, Deadline.after(Duration.ofMillis(300)));
+
+        assertThatThrownBy(() -> aiClient.chat(request).join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(AiDeadlineExceededException.class);
+    }
+
+    @Test
+    @DisplayName("chat - erreur HTTP -> future en échec")
+    void chat_WhenServerError_ShouldFail() {
+        chatStatus = 503;
+
+        assertThatThrownBy(() -> aiClient.chat("Salut").join())
+                .isInstanceOf(CompletionException.class);
+    }
+
+    @Test
+    @DisplayName("health - serveur disponible / injoignable")
+    void health_ShouldReflectServerAvailability() {
+        AiBackend backend = new AiBackend("http://127.0.0.1:" + server.getAddress().getPort(), 20);
+        assertThat(aiClient.health(backend).block()).containsEntry("model_loaded", true);
+
+        AiBackend unreachable = new AiBackend("http://127.0.0.1:1", 20);
+        assertThatThrownBy(() -> aiClient.health(unreachable).block()).isInstanceOf(Exception.class);
+    }
+
+    @Test
+    @DisplayName("chat - backend en erreur éjecté, trafic reporté sur l'autre")
+    void chat_WhenOneBackendFails_ShouldEjectItAndUseTheOther() throws IOException {
+        AtomicInteger brokenCalls = new AtomicInteger();
+        HttpServer broken = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        broken.createContext("/chat", exchange -> {
+            brokenCalls.incrementAndGet();
+            respond(exchange, 503, "{\"detail\":\"Model not loaded\"}");
+        });
+        broken.start();
+        AiClient balanced = AiTestSupport.newClient(5_000,
+                "http://127.0.0.1:" + broken.getAddress().getPort(),
+                "http://127.0.0.1:" + server.getAddress().getPort());
+        try {
+            for (int i = 0; i < 20; i++) {
+                balanced.chat("Salut").exceptionally(e -> null).join();
+            }
+            brokenCalls.set(0);
+            for (int i = 0; i < 10; i++) {
+                assertThat(balanced.chat("Salut").join()).isEqualTo("Bonjour!");
+            }
+            assertThat(brokenCalls).hasValue(0);
+        } finally {
+            balanced.close();
+            broken.stop(0);
+        }
+    }
+
+    private static AiClient newClient(String url, long totalTimeoutMs) {
+        return AiTestSupport.newClient(totalTimeoutMs, url);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().put("Content-Type", List.of("application/json"));
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.assistant_therapeutique.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests pour AiFairScheduler
+ * Couvre : un appel en cours par utilisateur, tourniquet entre utilisateurs, limite globale,
+ * délais expirés, abandon, métriques
+ */
+class AiFairSchedulerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AiFairScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = newScheduler(1);
+    }
+
+    @Test
+    @DisplayName("acquire - un seul appel en cours par utilisateur")
+    void acquire_SameUser_ShouldRunOneAtATime() {
+        scheduler = newScheduler(4);
+        CompletableFuture<AiFairScheduler.Permit> first = scheduler.acquire(1L, Deadline.none());
+        CompletableFuture<AiFairScheduler.Permit> second = scheduler.acquire(1L, Deadline.none());
+
+        assertThat(first).isDone();
+        assertThat(second).isNotDone();
+
+        first.join().release();
+        assertThat(second).isDone();
+    }
+
+    @Test
+    @DisplayName("acquire - utilisateur bavard -> les autres passent à tour de rôle")
+    void acquire_ChattyUser_ShouldNotStarveOthers() {
+        List<Long> order = new ArrayList<>();
+        List<CompletableFuture<AiFairScheduler.Permit>> permits = new ArrayList<>();
+        // User 1 floods the queue before users 2 and 3 send anything
+        for (int i = 0; i < 5; i++) {
+            permits.add(track(scheduler.acquire(1L, Deadline.none()), 1L, order));
+        }
+        permits.add(track(scheduler.acquire(2L, Deadline.none()), 2L, order));
+        permits.add(track(scheduler.acquire(3L, Deadline.none()), 3L, order));
+
+        while (!permits.isEmpty()) {
+            releaseNextGranted(permits);
+        }
+
+        assertThat(order).containsExactly(1L, 2L, 3L, 1L, 1L, 1L, 1L);
+    }
+
+    @Test
+    @DisplayName("acquire - limite globale d'appels simultanés")
+    void acquire_ShouldRespectGlobalLimit() {
+        scheduler = newScheduler(2);
+        CompletableFuture<AiFairScheduler.Permit> a = scheduler.acquire(1L, Deadline.none());
+        CompletableFuture<AiFairScheduler.Permit> b = scheduler.acquire(2L, Deadline.none());
+        CompletableFuture<AiFairScheduler.Permit> c = scheduler.acquire(3L, Deadline.none());
+
+        assertThat(a).isDone();
+        assertThat(b).isDone();
+        assertThat(c).isNotDone();
+        assertThat(scheduler.getRunning()).isEqualTo(2);
+        assertThat(meterRegistry.get("ai.scheduler.queued").gauge().value()).isEqualTo(1.0);
+
+        a.join().release();
+        a.join().release();
+        assertThat(c).isDone();
+        assertThat(scheduler.getRunning()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("acquire - délai dépassé dans la file -> abandonné sans prendre de place")
+    void acquire_WhenDeadlinePassesWhileQueued_ShouldBeDropped() {
+        CompletableFuture<AiFairScheduler.Permit> running = scheduler.acquire(1L, Deadline.none());
+        CompletableFuture<AiFairScheduler.Permit> late = scheduler.acquire(2L, Deadline.after(Duration.ZERO));
+        CompletableFuture<AiFairScheduler.Permit> next = scheduler.acquire(3L, Deadline.none());
+
+        running.join().release();
+
+        assertThatThrownBy(late::join).hasCauseInstanceOf(TimeoutException.class);
+        assertThat(next).isDone();
+        assertThat(meterRegistry.get("ai.scheduler.expired").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("acquire - attente annulée -> place donnée au suivant")
+    void acquire_WhenCancelledWhileQueued_ShouldGiveTurnAway() {
+        CompletableFuture<AiFairScheduler.Permit> running = scheduler.acquire(1L, Deadline.none());
+        CompletableFuture<AiFairScheduler.Permit> cancelled = scheduler.acquire(2L, Deadline.none());
+        CompletableFuture<AiFairScheduler.Permit> next = scheduler.acquire(3L, Deadline.none());
+
+        cancelled.cancel(false);
+        running.join().release();
+
+        assertThat(next).isDone();
+        next.join().release();
+        assertThat(scheduler.getRunning()).isZero();
+        assertThat(scheduler.getQueued()).isZero();
+    }
+
+    @Test
+    @DisplayName("acquire - sans utilisateur ou désactivé -> pas de file")
+    void acquire_WithoutUserOrDisabled_ShouldNotQueue() {
+        scheduler.acquire(1L, Deadline.none());
+
+        assertThat(scheduler.acquire(null, Deadline.none())).isDone();
+        ReflectionTestUtils.setField(scheduler, "enabled", false);
+        assertThat(scheduler.acquire(1L, Deadline.none())).isDone();
+        assertThat(meterRegistry.get("ai.scheduler.wait").timer().count()).isEqualTo(1);
+    }
+
+    private AiFairScheduler newScheduler(int maxConcurrent) {
+        meterRegistry = new SimpleMeterRegistry();
+        AiFairScheduler created = new AiFairScheduler();
+        ReflectionTestUtils.setField(created, "enabled", true);
+        ReflectionTestUtils.setField(created, "maxConcurrent", maxConcurrent);
+        ReflectionTestUtils.setField(created, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.invokeMethod(created, "init");
+        return created;
+    }
+
+    private static CompletableFuture<AiFairScheduler.Permit> track(
+            CompletableFuture<AiFairScheduler.Permit> permit, Long user, List<Long> order) {
+        permit.thenRun(() -> order.add(user));
+        return permit;
+    }
+
+    private static void releaseNextGranted(List<CompletableFuture<AiFairScheduler.Permit>> permits) {
+        for (CompletableFuture<AiFairScheduler.Permit> permit : permits) {
+            if (permit.isDone()) {
+                permits.remove(permit);
+                permit.join().release();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.assistant_therapeutique.ai;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests pour AiHealthProber et AiHealthIndicator
+ * Couvre : instantanés par backend, échecs consécutifs, modèle non chargé, lecture sans I/O,
+ * sonde planifiée non bloquante
+ */
+class AiHealthProberTest {
+
+    private static final String UNREACHABLE = "http://127.0.0.1:1";
+
+    private HttpServer server;
+    private String serverUrl;
+    private volatile boolean modelLoaded = true;
+    private AiClient aiClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/health", exchange -> {
+            byte[] body = ("{\"model_loaded\":" + modelLoaded + "}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().put("Content-Type", List.of("application/json"));
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        serverUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (aiClient != null) {
+            aiClient.close();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("probeAll - instantané publié pour chaque backend")
+    void probeAll_ShouldPublishSnapshotPerBackend() {
+        AiLoadBalancer loadBalancer = AiTestSupport.newLoadBalancer(new SimpleMeterRegistry(), serverUrl, UNREACHABLE);
+        AiHealthProber prober = newProber(loadBalancer);
+
+        prober.probeRound().block();
+        prober.probeRound().block();
+
+        AiHealthSnapshot up = loadBalancer.getBackends().get(0).getHealth();
+        assertThat(up.up()).isTrue();
+        assertThat(up.modelLoaded()).isTrue();
+        assertThat(up.latencyMs()).isGreaterThanOrEqualTo(0);
+        assertThat(up.consecutiveFailures()).isZero();
+        assertThat(up.checkedAt()).isNotNull();
+
+        AiHealthSnapshot down = loadBalancer.getBackends().get(1).getHealth();
+        assertThat(down.up()).isFalse();
+        assertThat(down.consecutiveFailures()).isEqualTo(2);
+        assertThat(prober.isAvailable()).isTrue();
+    }
+
+    @Test
+    @DisplayName("probeAll - modèle non chargé -> backend down et évité par le load balancer")
+    void probeAll_WhenModelNotLoaded_ShouldMarkDownAndSkip() throws IOException {
+        HttpServer other = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        other.createContext("/health", exchange -> {
+            byte[] body = "{\"model_loaded\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().put("Content-Type", List.of("application/json"));
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        other.start();
+        try {
+            modelLoaded = false;
+            String otherUrl = "http://127.0.0.1:" + other.getAddress().getPort();
+            AiLoadBalancer loadBalancer = AiTestSupport.newLoadBalancer(new SimpleMeterRegistry(), serverUrl, otherUrl);
+            newProber(loadBalancer).probeRound().block();
+
+            assertThat(loadBalancer.getBackends().get(0).getHealth().up()).isFalse();
+            for (int i = 0; i < 5; i++) {
+                assertThat(loadBalancer.choose().getUrl()).isEqualTo(otherUrl);
+            }
+        } finally {
+            other.stop(0);
+        }
+    }
+
+    @Test
+    @DisplayName("isAvailable - lit l'instantané, sans appel réseau")
+    void isAvailable_ShouldReadCachedSnapshotWithoutIo() {
+        AiLoadBalancer loadBalancer = AiTestSupport.newLoadBalancer(new SimpleMeterRegistry(), serverUrl);
+        AiHealthProber prober = newProber(loadBalancer);
+        assertThat(prober.isAvailable()).isFalse();
+
+        prober.probeRound().block();
+        server.stop(0);
+
+        assertThat(prober.isAvailable()).isTrue();
+        prober.probeRound().block();
+        assertThat(prober.isAvailable()).isFalse();
+    }
+
+    @Test
+    @DisplayName("health - UNKNOWN avant la première sonde, puis UP / DOWN")
+    @SuppressWarnings("unchecked")
+    void healthIndicator_ShouldFollowSnapshots() {
+        AiLoadBalancer loadBalancer = AiTestSupport.newLoadBalancer(new SimpleMeterRegistry(), serverUrl, UNREACHABLE);
+        AiHealthProber prober = newProber(loadBalancer);
+        AiHealthIndicator indicator = new AiHealthIndicator();
+        ReflectionTestUtils.setField(indicator, "loadBalancer", loadBalancer);
+
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.UNKNOWN);
+
+        prober.probeRound().block();
+        Health health = indicator.health();
+        assertThat(health.getStatus()).isEqualTo(Status.UP);
+        assertThat((Map<String, Object>) health.getDetails().get("backends")).containsOnlyKeys(serverUrl, UNREACHABLE);
+
+        server.stop(0);
+        prober.probeRound().block();
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.DOWN);
+    }
+
+    @Test
+    @DisplayName("probeAll - backend qui ne répond pas -> rend la main tout de suite, pas de tour en double")
+    void probeAll_WhenBackendHangs_ShouldNotBlockSchedulerThread() throws Exception {
+        HttpServer hanging = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        hanging.setExecutor(Executors.newCachedThreadPool());
+        AtomicInteger probes = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        hanging.createContext("/health", exchange -> {
+            probes.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"model_loaded\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().put("Content-Type", List.of("application/json"));
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        hanging.start();
+        try {
+            String hangingUrl = "http://127.0.0.1:" + hanging.getAddress().getPort();
+            AiLoadBalancer loadBalancer = AiTestSupport.newLoadBalancer(new SimpleMeterRegistry(), hangingUrl);
+            AiHealthProber prober = newProber(loadBalancer);
+
+            long start = System.nanoTime();
+            prober.probeAll();
+            prober.probeAll();
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(500));
+
+            release.countDown();
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (!prober.isAvailable() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(prober.isAvailable()).isTrue();
+            assertThat(probes.get()).isEqualTo(1);
+        } finally {
+            hanging.stop(0);
+        }
+    }
+
+    private AiHealthProber newProber(AiLoadBalancer loadBalancer) {
+        aiClient = AiTestSupport.newClient(loadBalancer, 5_000, 4);
+        AiHealthProber prober = new AiHealthProber();
+        ReflectionTestUtils.setField(prober, "aiClient", aiClient);
+        ReflectionTestUtils.setField(prober, "loadBalancer", loadBalancer);
+        return prober;
+    }
+}
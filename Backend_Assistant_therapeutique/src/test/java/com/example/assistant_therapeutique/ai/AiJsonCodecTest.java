@@ -0,0 +1,83 @@
+package com.example.assistant_therapeutique.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests pour AiJsonCodec
+ * Couvre : corps de requête /chat et /chat/batch, lecture des réponses en ignorant les champs
+ * inconnus, valeurs absentes ou mal typées, événements de flux, échappement
+ */
+class AiJsonCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("writeChat - message, contexte éventuel, max_tokens et température")
+    void writeChat_ShouldWriteTheRequestFields() throws IOException {
+        JsonNode first = write(new AiRequest(1L, "J'ai \"peur\"\n", null, 100, Deadline.none()));
+        JsonNode followUp = write(new AiRequest(1L, "Et toi ?", "User: Salut", AiClient.MAX_TOKENS, Deadline.none()));
+
+        assertThat(first.get("message").asText()).isEqualTo("J'ai \"peur\"\n");
+        assertThat(first.has("context")).isFalse();
+        assertThat(first.get("max_tokens").asInt()).isEqualTo(100);
+        assertThat(first.get("temperature").asDouble()).isEqualTo(AiClient.TEMPERATURE);
+        assertThat(followUp.get("context").asText()).isEqualTo("User: Salut");
+        assertThat(followUp.get("max_tokens").asInt()).isEqualTo(AiClient.MAX_TOKENS);
+    }
+
+    @Test
+    @DisplayName("writeBatch - messages dans l'ordre avec les paramètres par défaut")
+    void writeBatch_ShouldWriteMessagesInOrder() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AiJsonCodec.writeBatch(List.of("un", "deux"), out);
+        JsonNode body = objectMapper.readTree(out.toByteArray());
+
+        assertThat(body.get("messages")).extracting(JsonNode::asText).containsExactly("un", "deux");
+        assertThat(body.get("max_tokens").asInt()).isEqualTo(AiClient.MAX_TOKENS);
+    }
+
+    @Test
+    @DisplayName("readChat - champs utiles extraits, le reste ignoré")
+    void readChat_ShouldExtractOnlyNeededFields() throws IOException {
+        AiChatResponse response = AiJsonCodec.readChat(in("{\"usage\":{\"tokens\":[1,2,{\"a\":null}]},"
+                + "\"response\":\"Je suis l\\u00e0 \\\"pour\\\" vous.\",\"model\":\"therapist\",\"status\":\"success\"}"));
+
+        assertThat(response).isEqualTo(new AiChatResponse("Je suis là \"pour\" vous.", "success"));
+        assertThat(AiJsonCodec.readChat(in("{\"response\":null,\"status\":\"error\"}")).response()).isNull();
+        assertThat(AiJsonCodec.readChat(in("{\"response\":{\"text\":\"x\"}}")).response()).isNull();
+        assertThatThrownBy(() -> AiJsonCodec.readChat(in("[\"response\"]"))).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    @DisplayName("readBatch et readToken - réponses groupées et tokens de flux")
+    void readBatchAndToken_ShouldParseArraysAndEvents() throws IOException {
+        assertThat(AiJsonCodec.readBatch(in("{\"model\":{\"id\":1},\"responses\":[\"a\",\"b\"]}")).responses())
+                .containsExactly("a", "b");
+        assertThat(AiJsonCodec.readBatch(in("{\"detail\":\"x\"}")).responses()).isNull();
+        assertThat(AiJsonCodec.readToken("{\"index\":3,\"token\":\" là\"}")).isEqualTo(" là");
+        assertThat(AiJsonCodec.readToken("{}")).isNull();
+    }
+
+    private JsonNode write(AiRequest request) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AiJsonCodec.writeChat(request, out);
+        return objectMapper.readTree(out.toByteArray());
+    }
+
+    private static InputStream in(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.assistant_therapeutique.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests pour AiLoadBalancer
+ * Couvre : routage au moins chargé, éjection sur taux d'erreur, échéances dépassées ignorées,
+ * réadmission, métriques, requêtes couvertes (hedging) et leur budget
+ */
+class AiLoadBalancerTest {
+
+    private static final String A = "http://a:8000";
+    private static final String B = "http://b:8000";
+    private static final String C = "http://c:8000";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("route - choisit le backend avec le moins de requêtes en cours")
+    void route_ShouldPickLeastOutstandingBackend() {
+        AiLoadBalancer loadBalancer = AiTestSupport.newLoadBalancer(meterRegistry, A, B, C);
+        List<Disposable> pending = new ArrayList<>();
+        List<String> busy = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            pending.add(loadBalancer.route(backend -> {
+                busy.add(backend.getUrl());
+                return Mono.never();
+            }).subscribe());
+        }
+
+        String chosen = routedUrl(loadBalancer, Mono.just("ok"));
+
+        assertThat(busy).doesNotHaveDuplicates();
+        assertThat(chosen).isNotIn(busy);
+        assertThat(inFlightGauge(busy.get(0))).isEqualTo(1);
+        pending.forEach(Disposable::dispose);
+        assertThat(inFlightGauge(busy.get(0))).isZero();
+    }
+
+    @Test
+    @DisplayName("route - taux d'erreur élevé -> backend éjecté")
+    void route_WhenErrorRateHigh_ShouldEjectBackend() {
+        AiLoadBalancer loadBalancer = AiTestSupport.newLoadBalancer(meterRegistry, A, B);
+        AiBackend a = loadBalancer.getBackends().get(0);
+
+        for (int i = 0; i < 5; i++) {
+            a.recordOutcome(true);
+        }
+        runOn(loadBalancer, A, Mono.error(new IllegalStateException("boom")));
+
+        assertThat(a.isEjected()).isTrue();
+        assertThat(meterRegistry.get("ai.backend.ejected").tag("backend", A).gauge().value()).isEqualTo(1);
+        for (int i = 0; i < 10; i++) {
+            assertThat(routedUrl(loadBalancer, Mono.just("ok"))).isEqualTo(B);
+        }
+    }
+
+    @Test
+    @DisplayName("route - réadmission après la durée d'éjection")
+    void route_AfterEjectionDuration_ShouldReadmitBackend() throws InterruptedException {
+        AiLoadBalancer loadBalancer = AiTestSupport.newLoadBalancer(meterRegistry, A, B);
+        ReflectionTestUtils.setField(loadBalancer, "ejectDurationMs", 100L);
+        AiBackend a = loadBalancer.getBackends().get(0);
+        for (int i = 0; i < 5; i++) {
+            a.recordOutcome(true);
+        }
+        runOn(loadBalancer, A, Mono.error(new IllegalStateException("boom")));
+        assertThat(a.isEjected()).isTrue();
+
+        Thread.sleep(200);
+        loadBalancer.choose();
+
+        assertThat(a.isEjected()).isFalse();
+        assertThat(a.getErrorRate()).isZero();
+    }
+
+    @Test
+    @DisplayName("route - erreurs 4xx et réponses vides ne comptent pas comme pannes")
+    void route_ClientErrorsAndEmptyReplies_ShouldNotCountAsFailures() {
+        AiLoadBalancer loadBalancer = AiTestSupport.newLoadBalancer(meterRegistry, A);
+        WebClientResponseException badRequest = WebClientResponseException.create(
+                HttpStatus.BAD_REQUEST.value(), "Bad Request", null, null, null);
+
+        for (int i = 0; i < 10; i++) {
+            routedUrl(loadBalancer, Mono.error(badRequest));
+            routedUrl(loadBalancer, Mono.error(new AiEmptyResponseException()));
+        }
+
+        AiBackend a = loadBalancer.getBackends().get(0);
+        assertThat(a.getErrorRate()).isZero();
+        assertThat(a.isEjected()).isFalse();
+        assertThat(meterRegistry.get("ai.backend.requests").tag("backend", A).tag("outcome", "success")
+                .timer().count()).isEqualTo(20);
+    }
+
+    @Test
+    @DisplayName("route - délai coupé par l'échéance de l'appelant -> ignoré, délai complet -> panne")
+    void route_DeadlineShortenedTimeouts_ShouldBeIgnored() {
+        AiLoadBalancer loadBalancer = AiTestSupport.newLoadBalancer(meterRegistry, A);
+
+        for (int i = 0; i < 10; i++) {
+            routedUrl(loadBalancer, Mono.error(new AiDeadlineExceededException(100)));
+        }
+
+        AiBackend a = loadBalancer.getBackends().get(0);
+        assertThat(a.getRecentCalls()).isZero();
+        assertThat(a.isEjected()).isFalse();
+        assertThat(meterRegistry.get("ai.backend.requests").tag("backend", A).tag("outcome", "ignored")
+                .timer().count()).isEqualTo(10);
+
+        for (int i = 0; i < 5; i++) {
+            routedUrl(loadBalancer, Mono.error(new TimeoutException("Did not observe any item")));
+        }
+        assertThat(a.isEjected()).isTrue();
+    }
+
+    @Test
+    @DisplayName("route - tous les backends éjectés -> le trafic continue")
+    void route_WhenAllEjected_ShouldStillRoute() {
+        AiLoadBalancer loadBalancer = AiTestSupport.newLoadBalancer(meterRegistry, A, B);
+        loadBalancer.getBackends().forEach(backend -> backend.eject(System.nanoTime() + 60_000_000_000L));
+
+        assertThat(routedUrl(loadBalancer, Mono.just("ok"))).isIn(A, B);
+    }
+
+    @Test
+    @DisplayName("routeHedged - premier backend lent -> second essai ailleurs, le plus rapide gagne")
+    void routeHedged_WhenFirstAttemptSlow_ShouldHedgeAndCancelLoser() {
+        AiLoadBalancer loadBalancer = AiTestSupport.newHedgedLoadBalancer(meterRegistry, 1.0, A, B);
+        loadBalancer.routeHedged(backend -> Mono.just("warm-up")).block();
+
+        for (int i = 0; i < 4; i++) {
+            long start = System.nanoTime();
+            String reply = loadBalancer.routeHedged(backend -> A.equals(backend.getUrl())
+                    ? Mono.delay(Duration.ofSeconds(5)).thenReturn("A")
+                    : Mono.just("B")).block(Duration.ofSeconds(2));
+
+            assertThat(reply).isEqualTo("B");
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        }
+
+        double fired = meterRegistry.get("ai.hedge.fired").counter().count();
+        assertThat(fired).isPositive();
+        assertThat(meterRegistry.get("ai.hedge.won").counter().count()).isEqualTo(fired);
+        // The slow attempts were cancelled
+        assertThat(inFlightGauge(A)).isZero();
+        assertThat(inFlightGauge(B)).isZero();
+    }
+
+    @Test
+    @DisplayName("routeHedged - second essai en échec rapide -> le premier, plus lent, répond quand même")
+    void routeHedged_WhenHedgeFailsFirst_ShouldWaitForSlowerPrimary() {
+        AiLoadBalancer loadBalancer = AiTestSupport.newHedgedLoadBalancer(meterRegistry, 1.0, A, B);
+        loadBalancer.routeHedged(backend -> Mono.just("warm-up")).block();
+
+        for (int i = 0; i < 4; i++) {
+            AtomicInteger attempts = new AtomicInteger();
+            String reply = loadBalancer.routeHedged(backend -> attempts.getAndIncrement() == 0
+                    ? Mono.delay(Duration.ofMillis(300)).thenReturn("primary")
+                    : Mono.<String>error(new IllegalStateException("Connection refused"))).block(Duration.ofSeconds(2));
+
+            assertThat(reply).isEqualTo("primary");
+            assertThat(attempts.get()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    @DisplayName("routeHedged - les deux essais échouent -> erreur du premier essai")
+    void routeHedged_WhenBothAttemptsFail_ShouldReportPrimaryError() {
+        AiLoadBalancer loadBalancer = AiTestSupport.newHedgedLoadBalancer(meterRegistry, 1.0, A, B);
+        loadBalancer.routeHedged(backend -> Mono.just("warm-up")).block();
+
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> call = loadBalancer.routeHedged(backend -> attempts.getAndIncrement() == 0
+                ? Mono.delay(Duration.ofMillis(200)).then(Mono.<String>error(new AiEmptyResponseException()))
+                : Mono.<String>error(new IllegalStateException("Connection refused")));
+
+        assertThatThrownBy(() -> call.block(Duration.ofSeconds(2))).isInstanceOf(AiEmptyResponseException.class);
+        assertThat(attempts.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("routeHedged - premier essai en échec avant le délai -> pas de second essai")
+    void routeHedged_WhenPrimaryFailsBeforeDelay_ShouldFailWithoutHedging() {
+        AiLoadBalancer loadBalancer = AiTestSupport.newHedgedLoadBalancer(meterRegistry, 1.0, A, B);
+        loadBalancer.routeHedged(backend -> Mono.just("warm-up")).block();
+
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> call = loadBalancer.routeHedged(backend -> {
+            attempts.incrementAndGet();
+            return Mono.error(new AiEmptyResponseException());
+        });
+
+        assertThatThrownBy(() -> call.block(Duration.ofSeconds(2))).isInstanceOf(AiEmptyResponseException.class);
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("ai.hedge.fired").counter().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("routeHedged - budget épuisé -> pas de second essai")
+    void routeHedged_WhenBudgetSpent_ShouldNotHedge() {
+        AiLoadBalancer loadBalancer = AiTestSupport.newHedgedLoadBalancer(meterRegistry, 0.0, A, B);
+        loadBalancer.routeHedged(backend -> Mono.just("warm-up")).block();
+
+        List<String> replies = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            replies.add(loadBalancer.routeHedged(backend -> A.equals(backend.getUrl())
+                    ? Mono.delay(Duration.ofMillis(100)).thenReturn("A")
+                    : Mono.just("B")).block(Duration.ofSeconds(2)));
+        }
+
+        assertThat(replies).contains("A");
+        assertThat(meterRegistry.get("ai.hedge.fired").counter().count()).isZero();
+        assertThat(meterRegistry.get("ai.hedge.throttled").counter().count()).isPositive();
+    }
+
+    @Test
+    @DisplayName("AiHedgePolicy - délai au p95 observé, plancher et budget plafonné")
+    void hedgePolicy_ShouldTrackPercentileAndCapBudget() {
+        AiHedgePolicy policy = new AiHedgePolicy(0.95, 0.05, 100, 20, 5);
+        for (int i = 1; i <= 19; i++) {
+            policy.record(i * 10L);
+        }
+        assertThat(policy.delayNanos()).isEqualTo(-1);
+        for (int i = 20; i <= 100; i++) {
+            policy.record(i * 10L);
+        }
+        // Recomputed every window / 8 samples, so from a slightly older view of the latencies
+        assertThat(policy.delayNanos()).isBetween(850L, 950L);
+        AiHedgePolicy floored = new AiHedgePolicy(0.95, 0.05, 100, 1, 5_000);
+        floored.record(10);
+        assertThat(floored.delayNanos()).isEqualTo(5_000);
+
+        // 20 calls at 5% earn one hedge
+        for (int i = 0; i < 19; i++) {
+            policy.earn();
+        }
+        assertThat(policy.trySpend()).isFalse();
+        policy.earn();
+        assertThat(policy.trySpend()).isTrue();
+        assertThat(policy.trySpend()).isFalse();
+        // Unspent credit is capped
+        for (int i = 0; i < 1_000; i++) {
+            policy.earn();
+        }
+        int spent = 0;
+        while (policy.trySpend()) {
+            spent++;
+        }
+        assertThat(spent).isEqualTo(AiHedgePolicy.MAX_CREDITS);
+    }
+
+    private static String routedUrl(AiLoadBalancer loadBalancer, Mono<String> result) {
+        AtomicReference<String> url = new AtomicReference<>();
+        loadBalancer.route(backend -> {
+            url.set(backend.getUrl());
+            return result;
+        }).onErrorResume(e -> Mono.empty()).block();
+        return url.get();
+    }
+
+    // Route calls until one lands on the given backend, succeeding elsewhere
+    private static void runOn(AiLoadBalancer loadBalancer, String url, Mono<String> result) {
+        for (int i = 0; i < 10; i++) {
+            AtomicReference<String> chosen = new AtomicReference<>();
+            loadBalancer.route(backend -> {
+                chosen.set(backend.getUrl());
+                return backend.getUrl().equals(url) ? result : Mono.just("ok");
+            }).onErrorResume(e -> Mono.empty()).block();
+            if (url.equals(chosen.get())) {
+                return;
+            }
+        }
+        throw new AssertionError("Never routed to " + url);
+    }
+
+    private double inFlightGauge(String url) {
+        return meterRegistry.get("ai.backend.in.flight").tag("backend", url).gauge().value();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.assistant_therapeutique.ai;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests pour AiResponseCache et la normalisation des prompts
+ * Couvre : normalisation, hits/misses, expiration, éviction par poids, désactivation
+ */
+class AiResponseCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    @DisplayName("AiPromptKey - variantes triviales -> même clé")
+    void promptKey_TrivialVariants_ShouldBeEqual() {
+        assertThat(AiPromptKey.of("  Je me sens   stressé !"))
+                .isEqualTo(AiPromptKey.of("je me sens stressé"))
+                .isNotEqualTo(AiPromptKey.of("je me sens stresse"))
+                .isNotEqualTo(AiPromptKey.of("je me sens stressé", 100, AiClient.TEMPERATURE));
+        assertThat(AiPromptKey.of(null)).isEqualTo(AiPromptKey.of(""));
+    }
+
+    @Test
+    @DisplayName("get - hit et miss comptabilisés dans les métriques")
+    void get_ShouldRecordHitsAndMisses() {
+        AiResponseCache cache = newCache(true, 3600, 1_000_000);
+
+        assertThat(cache.get(AiPromptKey.of("Salut"))).isNull();
+        cache.put(AiPromptKey.of("Salut"), "Bonjour!");
+        assertThat(cache.get(AiPromptKey.of("salut !"))).isEqualTo("Bonjour!");
+
+        assertThat(meterRegistry.get("cache.gets").tag("cache", AiResponseCache.CACHE_NAME)
+                .tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", AiResponseCache.CACHE_NAME)
+                .tag("result", "miss").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("get - entrée expirée après le TTL")
+    void get_AfterTtl_ShouldMiss() {
+        AiResponseCache cache = newCache(true, 60, 1_000_000);
+        cache.put(AiPromptKey.of("Salut"), "Bonjour!");
+
+        nanos.addAndGet(Duration.ofSeconds(59).toNanos());
+        assertThat(cache.get(AiPromptKey.of("Salut"))).isEqualTo("Bonjour!");
+
+        nanos.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertThat(cache.get(AiPromptKey.of("Salut"))).isNull();
+    }
+
+    @Test
+    @DisplayName("put - poids maximal respecté par éviction")
+    void put_BeyondMaxWeight_ShouldEvict() {
+        AiResponseCache cache = newCache(true, 3600, 10_000);
+        String reply = "x".repeat(500);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(AiPromptKey.of("message " + i), reply);
+        }
+        cache.cleanUp();
+
+        // Each entry weighs a little over 1 KB, so at most ~9 fit in 10 KB
+        assertThat(cache.size()).isBetween(1L, 9L);
+    }
+
+    @Test
+    @DisplayName("cache désactivé -> toujours un miss")
+    void disabledCache_ShouldNeverHit() {
+        AiResponseCache cache = newCache(false, 3600, 1_000_000);
+        cache.put(AiPromptKey.of("Salut"), "Bonjour!");
+
+        assertThat(cache.isEnabled()).isFalse();
+        assertThat(cache.get(AiPromptKey.of("Salut"))).isNull();
+    }
+
+    private AiResponseCache newCache(boolean enabled, long ttlSeconds, long maxWeightBytes) {
+        AiResponseCache cache = new AiResponseCache();
+        ReflectionTestUtils.setField(cache, "enabled", enabled);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", ttlSeconds);
+        ReflectionTestUtils.setField(cache, "maxWeightBytes", maxWeightBytes);
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(cache, "ticker", (Ticker) nanos::get);
+        cache.init();
+        return cache;
+    }
+}
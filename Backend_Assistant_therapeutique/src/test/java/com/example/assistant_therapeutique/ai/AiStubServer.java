@@ -0,0 +1,443 @@
+package com.example.assistant_therapeutique.ai;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for the FastAPI model server ({@code api_server.py}), for tests, benchmarks
+ * and offline load tests: {@code /health}, {@code /chat}, {@code /chat/batch} and
+ * {@code /chat/stream}, with a configurable latency distribution, error rate, stalls and
+ * token streaming rate.
+ * Delays are scheduled rather than slept, so thousands of requests can be pending at once
+ * on a handful of threads.
+ * <p>
+ * Standalone, e.g. {@code java ... AiStubServer --port=8000 --latency=lognormal:200:0.6
+ * --error-rate=0.01 --stall-rate=0.001 --tokens-per-second=40}, then point
+ * {@code ai.service.url} at it.
+ */
+public final class AiStubServer implements AutoCloseable {
+
+    private static final Pattern MESSAGE = Pattern.compile("\"message\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern MESSAGES = Pattern.compile("\"messages\"\\s*:\\s*\\[(.*?)]", Pattern.DOTALL);
+    private static final Pattern STRING = Pattern.compile("\"((?:[^\"\\\\]|\\\\.)*)\"");
+
+    private final Builder config;
+    private final Random random;
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ScheduledExecutorService timer;
+    private final Set<HttpExchange> stalled = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private AiStubServer(Builder config) throws IOException {
+        this.config = config;
+        this.random = new Random(config.seed);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", config.port), 4096);
+        this.handlers = Executors.newFixedThreadPool(config.threads);
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(config.threads);
+        scheduler.setRemoveOnCancelPolicy(true);
+        this.timer = scheduler;
+        server.setExecutor(handlers);
+        server.createContext("/health", this::health);
+        server.createContext("/chat", this::chat);
+        server.createContext("/chat/batch", this::chatBatch);
+        server.createContext("/chat/stream", this::chatStream);
+        server.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return chat requests received (health checks excluded)
+     */
+    public long requestCount() {
+        return requests.get();
+    }
+
+    public long errorCount() {
+        return errors.get();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public int maxInFlight() {
+        return maxInFlight.get();
+    }
+
+    public void resetCounters() {
+        requests.set(0);
+        errors.set(0);
+        maxInFlight.set(inFlight.get());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        timer.shutdownNow();
+        handlers.shutdownNow();
+        stalled.forEach(HttpExchange::close);
+    }
+
+    private void health(HttpExchange exchange) throws IOException {
+        drain(exchange);
+        send(exchange, 200, "{\"model_loaded\":" + config.modelLoaded + ",\"tokenizer_loaded\":true,"
+                + "\"device\":\"stub\",\"cuda_available\":false}");
+    }
+
+    private void chat(HttpExchange exchange) throws IOException {
+        String body = drain(exchange);
+        begin(exchange, () -> {
+            send(exchange, 200, "{\"response\":\"" + json(config.reply.apply(field(MESSAGE, body)))
+                    + "\",\"status\":\"success\"}");
+            end();
+        });
+    }
+
+    private void chatBatch(HttpExchange exchange) throws IOException {
+        String body = drain(exchange);
+        List<String> messages = new ArrayList<>();
+        Matcher array = MESSAGES.matcher(body);
+        if (array.find()) {
+            Matcher item = STRING.matcher(array.group(1));
+            while (item.find()) {
+                messages.add(item.group(1));
+            }
+        }
+        begin(exchange, () -> {
+            StringBuilder responses = new StringBuilder("{\"responses\":[");
+            for (int i = 0; i < messages.size(); i++) {
+                responses.append(i == 0 ? "\"" : ",\"").append(json(config.reply.apply(messages.get(i)))).append('"');
+            }
+            send(exchange, 200, responses.append("]}").toString());
+            end();
+        });
+    }
+
+    private void chatStream(HttpExchange exchange) throws IOException {
+        String body = drain(exchange);
+        List<String> tokens = tokens(config.reply.apply(field(MESSAGE, body)));
+        begin(exchange, () -> {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            streamToken(exchange, tokens, 0);
+        });
+    }
+
+    private void streamToken(HttpExchange exchange, List<String> tokens, int index) {
+        try {
+            OutputStream out = exchange.getResponseBody();
+            if (index == tokens.size()) {
+                out.write("event: done\ndata: {}\n\n".getBytes(StandardCharsets.UTF_8));
+                out.close();
+                end();
+                return;
+            }
+            out.write(("event: token\ndata: {\"token\":\"" + json(tokens.get(index)) + "\"}\n\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            long gapMicros = config.tokensPerSecond > 0 ? (long) (1_000_000 / config.tokensPerSecond) : 0;
+            timer.schedule(() -> streamToken(exchange, tokens, index + 1), gapMicros, TimeUnit.MICROSECONDS);
+        } catch (IOException e) {
+            // Client went away
+            exchange.close();
+            end();
+        }
+    }
+
+    /**
+     * Count the request, then fail it, stall it or run {@code respond} after a sampled latency.
+     * {@code respond} calls {@link #end()} once the reply is complete.
+     */
+    private void begin(HttpExchange exchange, Response respond) {
+        requests.incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        double roll = random.nextDouble();
+        long latencyMicros = Math.round(config.latency.sampleMillis(random) * 1000);
+        if (roll < config.stallRate) {
+            // Never answers: the client's deadline has to fire
+            stalled.add(exchange);
+            return;
+        }
+        boolean fail = roll < config.stallRate + config.errorRate;
+        timer.schedule(() -> {
+            try {
+                if (fail) {
+                    errors.incrementAndGet();
+                    send(exchange, 500, "{\"detail\":\"Stub failure\"}");
+                    end();
+                } else {
+                    respond.run();
+                }
+            } catch (IOException e) {
+                exchange.close();
+                end();
+            }
+        }, latencyMicros, TimeUnit.MICROSECONDS);
+    }
+
+    private void end() {
+        inFlight.decrementAndGet();
+    }
+
+    private void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String drain(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String field(Pattern pattern, String body) {
+        Matcher matcher = pattern.matcher(body);
+        return matcher.find() ? matcher.group(1) : "";
+    }
+
+    // Splits before each space, so the tokens concatenate back to the reply
+    private static List<String> tokens(String reply) {
+        List<String> tokens = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i < reply.length(); i++) {
+            if (reply.charAt(i) == ' ') {
+                tokens.add(reply.substring(start, i));
+                start = i;
+            }
+        }
+        if (start < reply.length()) {
+            tokens.add(reply.substring(start));
+        }
+        return tokens;
+    }
+
+    private static String json(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    @FunctionalInterface
+    private interface Response {
+        void run() throws IOException;
+    }
+
+    /**
+     * Latency of a reply (time to the first byte), in milliseconds.
+     */
+    @FunctionalInterface
+    public interface LatencyModel {
+
+        double sampleMillis(Random random);
+
+        static LatencyModel fixed(double millis) {
+            return random -> millis;
+        }
+
+        /**
+         * Log-normal latency, the usual shape of model serving times: most replies near the
+         * median and a long right tail. {@code sigma} 0.5 gives a p99 of about 3.2 times the median.
+         */
+        static LatencyModel logNormal(double medianMillis, double sigma) {
+            double mu = Math.log(medianMillis);
+            return random -> Math.exp(mu + sigma * random.nextGaussian());
+        }
+
+        /**
+         * Replay a latency histogram, for example exported from {@code ai.backend.requests}:
+         * a bucket is drawn with probability proportional to its count, then a latency
+         * uniformly within it.
+         * @param upperBoundsMillis increasing bucket upper bounds; the first bucket starts at 0
+         * @param counts observations per bucket
+         */
+        static LatencyModel histogram(double[] upperBoundsMillis, long[] counts) {
+            if (upperBoundsMillis.length != counts.length || counts.length == 0) {
+                throw new IllegalArgumentException("One count per bucket is required");
+            }
+            long[] cumulative = new long[counts.length];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                total += counts[i];
+                cumulative[i] = total;
+            }
+            long observations = total;
+            return random -> {
+                long pick = (long) (random.nextDouble() * observations);
+                int bucket = 0;
+                while (cumulative[bucket] <= pick) {
+                    bucket++;
+                }
+                double low = bucket == 0 ? 0 : upperBoundsMillis[bucket - 1];
+                return low + random.nextDouble() * (upperBoundsMillis[bucket] - low);
+            };
+        }
+
+        /**
+         * Parse {@code fixed:50}, {@code lognormal:200:0.6} or {@code histogram:50=10,100=30,500=5}
+         * (upper bound = count, per bucket).
+         */
+        static LatencyModel parse(String spec) {
+            String[] parts = spec.split(":");
+            switch (parts[0].toLowerCase(Locale.ROOT)) {
+                case "fixed":
+                    return fixed(Double.parseDouble(parts[1]));
+                case "lognormal":
+                    return logNormal(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                case "histogram":
+                    String[] buckets = parts[1].split(",");
+                    double[] bounds = new double[buckets.length];
+                    long[] counts = new long[buckets.length];
+                    for (int i = 0; i < buckets.length; i++) {
+                        String[] bucket = buckets[i].split("=");
+                        bounds[i] = Double.parseDouble(bucket[0]);
+                        counts[i] = Long.parseLong(bucket[1]);
+                    }
+                    return histogram(bounds, counts);
+                default:
+                    throw new IllegalArgumentException("Unknown latency model: " + spec);
+            }
+        }
+    }
+
+    public static final class Builder {
+
+        private int port;
+        private int threads = 4;
+        private long seed = 42;
+        private LatencyModel latency = LatencyModel.fixed(0);
+        private double errorRate;
+        private double stallRate;
+        private double tokensPerSecond;
+        private boolean modelLoaded = true;
+        private Function<String, String> reply = message -> "Je suis là pour vous.";
+
+        private Builder() {
+        }
+
+        /**
+         * @param port 0 for any free port
+         */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Builder latency(LatencyModel latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * @param errorRate share of chat requests answered with HTTP 500, after the sampled latency
+         */
+        public Builder errorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * @param stallRate share of chat requests never answered
+         */
+        public Builder stallRate(double stallRate) {
+            this.stallRate = stallRate;
+            return this;
+        }
+
+        /**
+         * @param tokensPerSecond streaming rate of {@code /chat/stream} after the first token; 0 for no delay
+         */
+        public Builder tokensPerSecond(double tokensPerSecond) {
+            this.tokensPerSecond = tokensPerSecond;
+            return this;
+        }
+
+        public Builder modelLoaded(boolean modelLoaded) {
+            this.modelLoaded = modelLoaded;
+            return this;
+        }
+
+        public Builder reply(String reply) {
+            this.reply = message -> reply;
+            return this;
+        }
+
+        /**
+         * @param reply computes the reply from the (JSON-escaped) message
+         */
+        public Builder reply(Function<String, String> reply) {
+            this.reply = reply;
+            return this;
+        }
+
+        public AiStubServer start() throws IOException {
+            return new AiStubServer(this);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Builder builder = builder().port(8000);
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            switch (option[0]) {
+                case "port" -> builder.port(Integer.parseInt(option[1]));
+                case "threads" -> builder.threads(Integer.parseInt(option[1]));
+                case "seed" -> builder.seed(Long.parseLong(option[1]));
+                case "latency" -> builder.latency(LatencyModel.parse(option[1]));
+                case "error-rate" -> builder.errorRate(Double.parseDouble(option[1]));
+                case "stall-rate" -> builder.stallRate(Double.parseDouble(option[1]));
+                case "tokens-per-second" -> builder.tokensPerSecond(Double.parseDouble(option[1]));
+                case "reply" -> builder.reply(option[1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        AiStubServer stub = builder.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(stub::close));
+        System.out.println("AI stub server listening on " + stub.url());
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.assistant_therapeutique.ai;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests pour AiStubServer, le faux serveur de modèle des tests de charge
+ * Couvre : compatibilité avec AiClient (/chat, /chat/stream, /health), erreurs, blocages,
+ * débit de tokens, modèles de latence
+ */
+class AiStubServerTest {
+
+    private AiStubServer stub;
+    private AiClient aiClient;
+
+    @AfterEach
+    void tearDown() {
+        if (aiClient != null) {
+            AiTestSupport.close(aiClient);
+        }
+        if (stub != null) {
+            stub.close();
+        }
+    }
+
+    @Test
+    @DisplayName("chat et chatStream - réponses lues par AiClient")
+    void stub_ShouldSpeakTheModelServerProtocol() throws IOException {
+        stub = AiStubServer.builder().reply(message -> "Vous avez dit : " + message).start();
+        aiClient = AiTestSupport.newClient(5_000, stub.url());
+
+        assertThat(aiClient.chat("Bonjour").join()).isEqualTo("Vous avez dit : Bonjour");
+        List<String> tokens = aiClient.chatStream("Salut").collectList().block();
+        assertThat(tokens).containsExactly("Vous", " avez", " dit", " :", " Salut");
+        assertThat(aiClient.health(new AiBackend(stub.url(), 20)).block()).containsEntry("model_loaded", true);
+        assertThat(stub.requestCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("errorRate et stallRate - erreurs HTTP 500 et requêtes sans réponse")
+    void stub_ShouldFailAndStallOnDemand() throws IOException {
+        stub = AiStubServer.builder().errorRate(1.0).start();
+        aiClient = AiTestSupport.newClient(1_000, stub.url());
+        assertThatThrownBy(() -> aiClient.chat("Bonjour").join()).hasMessageContaining("500");
+        assertThat(stub.errorCount()).isEqualTo(1);
+        AiTestSupport.close(aiClient);
+        stub.close();
+
+        stub = AiStubServer.builder().stallRate(1.0).start();
+        aiClient = AiTestSupport.newClient(300, stub.url());
+        assertThatThrownBy(() -> aiClient.chat("Bonjour").join()).hasMessageContaining("Timeout");
+        assertThat(stub.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("tokensPerSecond - flux cadencé au débit configuré")
+    void stub_ShouldPaceStreamedTokens() throws IOException {
+        stub = AiStubServer.builder().reply("un deux trois quatre cinq six").tokensPerSecond(20).start();
+        aiClient = AiTestSupport.newClient(5_000, stub.url());
+
+        long start = System.nanoTime();
+        List<String> tokens = aiClient.chatStream("Bonjour").collectList().block();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(String.join("", tokens)).isEqualTo("un deux trois quatre cinq six");
+        // Six tokens, 50 ms apart after the first
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(250);
+    }
+
+    @Test
+    @DisplayName("LatencyModel - fixe, log-normale et histogramme rejoué")
+    void latencyModels_ShouldSampleFromTheirDistribution() {
+        Random random = new Random(1);
+        assertThat(AiStubServer.LatencyModel.parse("fixed:50").sampleMillis(random)).isEqualTo(50.0);
+
+        AiStubServer.LatencyModel logNormal = AiStubServer.LatencyModel.parse("lognormal:100:0.5");
+        double[] samples = new double[10_001];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = logNormal.sampleMillis(random);
+        }
+        java.util.Arrays.sort(samples);
+        assertThat(samples[5_000]).isBetween(95.0, 105.0);
+        assertThat(samples[9_900]).isBetween(280.0, 360.0);
+
+        AiStubServer.LatencyModel histogram = AiStubServer.LatencyModel.parse("histogram:10=1,1000=0,2000=1");
+        for (int i = 0; i < 1_000; i++) {
+            double sample = histogram.sampleMillis(random);
+            assertThat(sample < 10 || (sample >= 1_000 && sample < 2_000)).isTrue();
+        }
+    }
+}
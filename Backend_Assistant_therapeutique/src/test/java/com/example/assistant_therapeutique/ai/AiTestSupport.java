@@ -0,0 +1,72 @@
+package com.example.assistant_therapeutique.ai;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+/**
+ * Construction des composants IA hors contexte Spring, pour les tests et benchmarks
+ */
+public final class AiTestSupport {
+
+    private AiTestSupport() {
+    }
+
+    public static AiLoadBalancer newLoadBalancer(MeterRegistry meterRegistry, String... urls) {
+        AiLoadBalancer loadBalancer = configure(new AiLoadBalancer(), meterRegistry, urls);
+        loadBalancer.init();
+        return loadBalancer;
+    }
+
+    /**
+     * Load balancer hedging after the p95 of the latencies seen so far (from the first success),
+     * never sooner than 20 ms.
+     * @param budget hedges allowed per call
+     */
+    public static AiLoadBalancer newHedgedLoadBalancer(MeterRegistry meterRegistry, double budget, String... urls) {
+        AiLoadBalancer loadBalancer = configure(new AiLoadBalancer(), meterRegistry, urls);
+        ReflectionTestUtils.setField(loadBalancer, "hedgeEnabled", true);
+        ReflectionTestUtils.setField(loadBalancer, "hedgePercentile", 0.95);
+        ReflectionTestUtils.setField(loadBalancer, "hedgeBudget", budget);
+        ReflectionTestUtils.setField(loadBalancer, "hedgeWindow", 100);
+        ReflectionTestUtils.setField(loadBalancer, "hedgeMinSamples", 1);
+        ReflectionTestUtils.setField(loadBalancer, "hedgeMinDelayMs", 20L);
+        loadBalancer.init();
+        return loadBalancer;
+    }
+
+    private static AiLoadBalancer configure(AiLoadBalancer loadBalancer, MeterRegistry meterRegistry, String... urls) {
+        ReflectionTestUtils.setField(loadBalancer, "backendUrls", List.of(urls));
+        ReflectionTestUtils.setField(loadBalancer, "errorWindow", 20);
+        ReflectionTestUtils.setField(loadBalancer, "minCalls", 5);
+        ReflectionTestUtils.setField(loadBalancer, "ejectErrorRate", 0.5);
+        ReflectionTestUtils.setField(loadBalancer, "ejectDurationMs", 30_000L);
+        ReflectionTestUtils.setField(loadBalancer, "meterRegistry", meterRegistry);
+        return loadBalancer;
+    }
+
+    public static AiClient newClient(long totalTimeoutMs, String... urls) {
+        return newClient(newLoadBalancer(new SimpleMeterRegistry(), urls), totalTimeoutMs, 4);
+    }
+
+    public static AiClient newClient(AiLoadBalancer loadBalancer, long totalTimeoutMs, int maxConnections) {
+        AiClient client = new AiClient();
+        ReflectionTestUtils.setField(client, "loadBalancer", loadBalancer);
+        ReflectionTestUtils.setField(client, "maxConnections", maxConnections);
+        ReflectionTestUtils.setField(client, "pendingAcquireMax", 1_000);
+        ReflectionTestUtils.setField(client, "pendingAcquireTimeoutMs", 30_000L);
+        ReflectionTestUtils.setField(client, "maxIdleTimeMs", 30_000L);
+        ReflectionTestUtils.setField(client, "connectTimeoutMs", 500);
+        ReflectionTestUtils.setField(client, "readTimeoutMs", Math.max(5_000L, totalTimeoutMs));
+        ReflectionTestUtils.setField(client, "totalTimeoutMs", totalTimeoutMs);
+        ReflectionTestUtils.setField(client, "healthTimeoutMs", 3_000L);
+        client.init();
+        return client;
+    }
+
+    public static void close(AiClient client) {
+        client.close();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.assistant_therapeutique.ai;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests pour ConversationWindow
+ * Couvre : derniers tours, résumé glissant, budget de tokens, doublons
+ */
+class ConversationWindowTest {
+
+    @Test
+    @DisplayName("render - fenêtre vide -> contexte vide")
+    void render_WhenEmpty_ShouldReturnEmptyString() {
+        assertThat(new ConversationWindow(4, 600, 150).render()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("render - derniers tours dans l'ordre avec leur rôle")
+    void render_ShouldListRecentTurnsInOrder() {
+        ConversationWindow window = new ConversationWindow(4, 600, 150);
+        window.append(1, false, "Je dors mal.");
+        window.append(2, true, "Depuis quand ?");
+
+        assertThat(window.render()).isEqualTo("User: Je dors mal.\nAssistant: Depuis quand ?");
+    }
+
+    @Test
+    @DisplayName("append - au-delà de N tours -> les plus anciens passent dans le résumé")
+    void append_BeyondMaxTurns_ShouldSummarizeOldestTurns() {
+        ConversationWindow window = new ConversationWindow(2, 600, 150);
+        window.append(1, false, "Je dors mal. Je me réveille à trois heures du matin.");
+        window.append(2, true, "Depuis quand ? Avez-vous changé quelque chose ?");
+        window.append(3, false, "Depuis une semaine.");
+
+        assertThat(window.size()).isEqualTo(2);
+        assertThat(window.render()).isEqualTo("""
+                Earlier in the conversation:
+                - User: Je dors mal.
+
+                Assistant: Depuis quand ? Avez-vous changé quelque chose ?
+                User: Depuis une semaine.""");
+    }
+
+    @Test
+    @DisplayName("append - budget de tokens respecté quelle que soit la longueur")
+    void append_ManyMessages_ShouldStayWithinTokenBudget() {
+        ConversationWindow window = new ConversationWindow(8, 200, 60);
+        for (int i = 1; i <= 500; i++) {
+            window.append(i, i % 2 == 0, "Message numéro " + i + ". " + "bla ".repeat(30));
+        }
+
+        assertThat(window.tokens()).isLessThanOrEqualTo(200);
+        assertThat(window.size()).isGreaterThanOrEqualTo(1);
+        assertThat(window.render()).endsWith("bla").contains("Message numéro 500.");
+    }
+
+    @Test
+    @DisplayName("append - message déjà ajouté -> ignoré")
+    void append_SameMessageTwice_ShouldBeIgnored() {
+        ConversationWindow window = new ConversationWindow(4, 600, 150);
+        window.append(1, false, "Bonjour");
+        window.append(1, false, "Bonjour");
+
+        assertThat(window.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("firstSentence - première phrase, tronquée si trop longue")
+    void firstSentence_ShouldKeepFirstSentenceOnly() {
+        assertThat(ConversationWindow.firstSentence("Je suis fatigué. Et stressé.")).isEqualTo("Je suis fatigué.");
+        assertThat(ConversationWindow.firstSentence("Pas de ponctuation")).isEqualTo("Pas de ponctuation");
+        assertThat(ConversationWindow.firstSentence("a".repeat(300))).hasSize(160).endsWith("…");
+    }
+}
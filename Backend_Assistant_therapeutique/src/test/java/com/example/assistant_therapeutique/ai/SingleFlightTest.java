@@ -0,0 +1,117 @@
+package com.example.assistant_therapeutique.ai;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests pour SingleFlight
+ * Couvre : appels concurrents fusionnés, libération de la clé, erreurs, annulation
+ */
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    @DisplayName("execute - appels concurrents identiques -> un seul appel")
+    void execute_ConcurrentSameKey_ShouldCallOnce() throws Exception {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        int callers = 32;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<CompletableFuture<String>>> submitted = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                submitted.add(pool.submit(() -> {
+                    start.await();
+                    return singleFlight.execute("salut", () -> {
+                        calls.incrementAndGet();
+                        return upstream;
+                    });
+                }));
+            }
+            start.countDown();
+            List<CompletableFuture<String>> results = new ArrayList<>();
+            for (Future<CompletableFuture<String>> future : submitted) {
+                results.add(future.get(5, TimeUnit.SECONDS));
+            }
+
+            upstream.complete("Bonjour!");
+
+            assertThat(calls).hasValue(1);
+            assertThat(results).allSatisfy(result -> assertThat(result.join()).isEqualTo("Bonjour!"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("execute - clés différentes -> appels distincts")
+    void execute_DifferentKeys_ShouldCallEach() {
+        singleFlight.execute("a", this::pending);
+        singleFlight.execute("b", this::pending);
+
+        assertThat(calls).hasValue(2);
+        assertThat(singleFlight.inFlightCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("execute - après complétion -> nouvel appel")
+    void execute_AfterCompletion_ShouldStartNewCall() {
+        singleFlight.execute("salut", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("Bonjour!");
+        }).join();
+        singleFlight.execute("salut", this::pending);
+
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("execute - échec partagé puis clé libérée")
+    void execute_WhenCallFails_ShouldFailAllAndRelease() {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.execute("salut", () -> upstream);
+        CompletableFuture<String> second = singleFlight.execute("salut", this::pending);
+
+        upstream.completeExceptionally(new IllegalStateException("boom"));
+
+        assertThatThrownBy(first::join).isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(second::join).isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(singleFlight.inFlightCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("execute - annulation d'un appelant n'affecte pas les autres")
+    void execute_WhenOneCallerCancels_OthersShouldComplete() {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.execute("salut", () -> upstream);
+        CompletableFuture<String> second = singleFlight.execute("salut", () -> upstream);
+
+        first.cancel(true);
+        upstream.complete("Bonjour!");
+
+        assertThat(second.join()).isEqualTo("Bonjour!");
+    }
+
+    private CompletableFuture<String> pending() {
+        calls.incrementAndGet();
+        return new CompletableFuture<>();
+    }
+}
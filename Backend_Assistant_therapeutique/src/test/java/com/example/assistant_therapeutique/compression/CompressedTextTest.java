@@ -0,0 +1,90 @@
+package com.example.assistant_therapeutique.compression;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests unitaires pour CompressedText
+ * Couvre : compression au-delà du seuil, textes courts ou incompressibles laissés tels quels,
+ * échappement du préfixe, lignes anciennes (y compris commençant par le préfixe), données corrompues
+ */
+class CompressedTextTest {
+
+    private static final String VENTING = "Je n'arrive plus à dormir depuis que j'ai changé de poste. "
+            + "Le soir je repense à toutes les réunions, à ce que j'aurais dû dire, et je me sens épuisé. ";
+
+    private final CompressedText format = new CompressedText(100, 6);
+
+    @Test
+    @DisplayName("encode - texte long -> en-tête deflate, plus court, relu à l'identique")
+    void encode_LongText_ShouldCompressAndRoundTrip() {
+        String text = VENTING.repeat(10) + "Merci de m'écouter 🙏";
+
+        String stored = format.encode(text);
+
+        assertThat(stored).startsWith("~ZD1:");
+        assertThat(stored.length()).isLessThan(text.length() / 2);
+        assertThat(CompressedText.decode(stored)).isEqualTo(text);
+    }
+
+    @Test
+    @DisplayName("encode - texte court ou incompressible -> stocké tel quel")
+    void encode_ShortOrIncompressibleText_ShouldStayPlain() {
+        assertThat(format.encode("Bonjour")).isEqualTo("Bonjour");
+
+        StringBuilder noise = new StringBuilder();
+        Random random = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            noise.append((char) ('!' + random.nextInt(90)));
+        }
+        assertThat(format.encode(noise.toString())).isEqualTo(noise.toString());
+        assertThat(format.encode(null)).isNull();
+    }
+
+    @Test
+    @DisplayName("encode - texte commençant par le préfixe -> échappé, jamais pris pour un en-tête")
+    void encode_TextStartingWithPrefix_ShouldBeEscaped() {
+        String stored = format.encode("~ZD1:pas un en-tête");
+
+        assertThat(stored).isEqualTo("~ZR1:~ZD1:pas un en-tête");
+        assertThat(CompressedText.decode(stored)).isEqualTo("~ZD1:pas un en-tête");
+    }
+
+    @Test
+    @DisplayName("decode - ligne écrite avant la compression -> relue telle quelle")
+    void decode_PlainRow_ShouldBeReturnedAsIs() {
+        assertThat(CompressedText.decode(VENTING)).isEqualTo(VENTING);
+        assertThat(CompressedText.decode("")).isEmpty();
+        assertThat(CompressedText.decode(null)).isNull();
+    }
+
+    @Test
+    @DisplayName("decode - ligne ancienne commençant par le préfixe, sans en-tête connu -> relue telle quelle")
+    void decode_PlainRowStartingWithPrefix_ShouldBeReturnedAsIs() {
+        assertThat(CompressedText.decode("~Zut alors")).isEqualTo("~Zut alors");
+        assertThat(CompressedText.decode("~ZX1:abc")).isEqualTo("~ZX1:abc");
+        assertThat(CompressedText.decode("~Z")).isEqualTo("~Z");
+    }
+
+    @Test
+    @DisplayName("decode - en-tête deflate, longueur fausse ou données corrompues -> exception")
+    void decode_CorruptDeflateValue_ShouldThrowException() {
+        String stored = format.encode(VENTING.repeat(5));
+        int length = VENTING.repeat(5).getBytes(StandardCharsets.UTF_8).length;
+
+        assertThatThrownBy(() -> CompressedText.decode("~ZD1:abc"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CompressedText.decode(stored.replace(":" + length + ":", ":" + (length - 1) + ":")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CompressedText.decode(stored.substring(0, stored.length() - 8)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CompressedText(100, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
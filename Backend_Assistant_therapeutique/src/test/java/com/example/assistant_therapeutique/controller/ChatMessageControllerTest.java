@@ -1,5 +1,6 @@
 package com.example.assistant_therapeutique.controller;
 
+import com.example.assistant_therapeutique.dto.ChatMessagePageDTO;
 import com.example.assistant_therapeutique.dto.ChatMessageRequestDTO;
 import com.example.assistant_therapeutique.model.ChatMessage;
 import com.example.assistant_therapeutique.model.User;
@@ -20,13 +21,15 @@ import java.util.Arrays;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 /**
  * Tests pour ChatMessageController
- * Couvre : envoi et récupération de messages
+ * Couvre : envoi, historique complet sans paramètre, récupération par pages (curseurs before / after, erreurs)
  */
 @WebMvcTest(ChatMessageController.class)
 class ChatMessageControllerTest {
@@ -77,13 +80,51 @@ class ChatMessageControllerTest {
     }
 
     @Test
-    @DisplayName("GET /chat/conversations/{id}/messages - doit retourner les messages")
-    void getMessagesByConversationId_ShouldReturnMessages() throws Exception {
-        when(chatMessageService.getMessagesByConversationId(1L))
-                .thenReturn(Arrays.asList(testMessage));
+    @DisplayName("GET /chat/conversations/{id}/messages - sans paramètre -> historique complet, tableau JSON")
+    void getMessagesByConversationId_WithoutParameters_ShouldReturnPlainArray() throws Exception {
+        when(chatMessageService.getMessagesByConversationId(1L)).thenReturn(Arrays.asList(testMessage));
 
         mockMvc.perform(get("/api/chat/conversations/1/messages"))
                 .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$[0].content").value("Hello!"));
+        verify(chatMessageService, never()).getMessagePage(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("GET /chat/conversations/{id}/messages?limit= - page la plus récente et ses curseurs")
+    void getMessagesByConversationId_WithLimit_ShouldReturnNewestPage() throws Exception {
+        when(chatMessageService.getMessagePage(1L, null, null, 50))
+                .thenReturn(new ChatMessagePageDTO(Arrays.asList(testMessage), 1L, 1L, true, false));
+
+        mockMvc.perform(get("/api/chat/conversations/1/messages").param("limit", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages[0].content").value("Hello!"))
+                .andExpect(jsonPath("$.before").value(1))
+                .andExpect(jsonPath("$.hasOlder").value(true))
+                .andExpect(jsonPath("$.hasNewer").value(false));
+    }
+
+    @Test
+    @DisplayName("GET /chat/conversations/{id}/messages?after=&limit= - page après le curseur")
+    void getMessagesByConversationId_WithCursor_ShouldReturnNewerPage() throws Exception {
+        when(chatMessageService.getMessagePage(1L, null, 0L, 20))
+                .thenReturn(new ChatMessagePageDTO(Arrays.asList(testMessage), 1L, 1L, true, false));
+
+        mockMvc.perform(get("/api/chat/conversations/1/messages").param("after", "0").param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages[0].content").value("Hello!"))
+                .andExpect(jsonPath("$.after").value(1));
+    }
+
+    @Test
+    @DisplayName("GET /chat/conversations/{id}/messages - curseur invalide -> 400")
+    void getMessagesByConversationId_WithInvalidCursor_ShouldReturn400() throws Exception {
+        when(chatMessageService.getMessagePage(1L, 42L, null, null))
+                .thenThrow(new IllegalArgumentException("Message 42 not found in conversation 1"));
+
+        mockMvc.perform(get("/api/chat/conversations/1/messages").param("before", "42"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Message 42 not found in conversation 1"));
     }
 }
@@ -1,11 +1,18 @@
 package com.example.assistant_therapeutique.controller;
 
+import com.example.assistant_therapeutique.ai.Deadline;
 import com.example.assistant_therapeutique.dto.ConversationRequestDTO;
+import com.example.assistant_therapeutique.dto.ConversationSummaryDTO;
+import com.example.assistant_therapeutique.dto.ConversationSummaryPageDTO;
+import com.example.assistant_therapeutique.model.AiReplyJob;
+import com.example.assistant_therapeutique.model.ChatMessage;
 import com.example.assistant_therapeutique.model.Conversation;
 import com.example.assistant_therapeutique.model.User;
+import com.example.assistant_therapeutique.service.ConversationContextService;
 import com.example.assistant_therapeutique.service.ConversationService;
 import com.example.assistant_therapeutique.service.ChatMessageService;
 import com.example.assistant_therapeutique.service.AiService;
+import com.example.assistant_therapeutique.service.AiReplyJobService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -15,13 +22,21 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -29,7 +44,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 /**
  * Tests pour ConversationController
- * Couvre : CRUD + logique complexe sendMessage (création conv + AI)
+ * Couvre : CRUD + logique complexe sendMessage (création conv + AI), bulkhead IA,
+ * réponses IA en file (202 + suivi du job), résumés paginés
  */
 @WebMvcTest(ConversationController.class)
 class ConversationControllerTest {
@@ -46,6 +62,18 @@ class ConversationControllerTest {
     @MockBean
     private AiService aiService;
 
+    @MockBean
+    private ConversationContextService conversationContextService;
+
+    @MockBean
+    private AiReplyJobService aiReplyJobService;
+
+    @MockBean(name = "aiExecutor")
+    private Executor aiExecutor;
+
+    @MockBean(name = "aiCallbackExecutor")
+    private Executor aiCallbackExecutor;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -62,6 +90,16 @@ class ConversationControllerTest {
         testConversation.setTitre("Test Conv");
         testConversation.setUser(testUser);
         testConversation.setCreatedAt(LocalDateTime.now());
+
+        when(aiService.newSendDeadline()).thenReturn(Deadline.none());
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(aiExecutor).execute(any());
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(aiCallbackExecutor).execute(any());
     }
 
     @Test
@@ -89,6 +127,33 @@ class ConversationControllerTest {
                 .andExpect(jsonPath("$[0].titre").value("Test Conv"));
     }
 
+    @Test
+    @DisplayName("GET /conversations/user/{userId}/summaries - résumés paginés, sans messages")
+    void getConversationSummaries_ShouldReturnPage() throws Exception {
+        LocalDateTime now = LocalDateTime.of(2025, 3, 1, 9, 30);
+        when(conversationService.getConversationSummaries(1L, null, 10)).thenReturn(new ConversationSummaryPageDTO(
+                List.of(new ConversationSummaryDTO(1L, "Test Conv", now, now, 4, "Depuis quand ?")), "next"));
+
+        mockMvc.perform(get("/api/conversations/user/1/summaries").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.conversations[0].titre").value("Test Conv"))
+                .andExpect(jsonPath("$.conversations[0].messageCount").value(4))
+                .andExpect(jsonPath("$.conversations[0].lastMessagePreview").value("Depuis quand ?"))
+                .andExpect(jsonPath("$.conversations[0].messages").doesNotExist())
+                .andExpect(jsonPath("$.next").value("next"));
+    }
+
+    @Test
+    @DisplayName("GET /conversations/user/{userId}/summaries - curseur invalide -> 400")
+    void getConversationSummaries_WithInvalidCursor_ShouldReturn400() throws Exception {
+        when(conversationService.getConversationSummaries(1L, "hier", null))
+                .thenThrow(new IllegalArgumentException("Invalid cursor: hier"));
+
+        mockMvc.perform(get("/api/conversations/user/1/summaries").param("cursor", "hier"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid cursor: hier"));
+    }
+
     @Test
     @DisplayName("GET /conversations/{id} - existant -> 200")
     void getConversationById_WhenExists_ShouldReturn() throws Exception {
@@ -136,4 +201,304 @@ class ConversationControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.titre").value("Nouveau titre"));
     }
+
+    @Test
+    @DisplayName("POST /conversations/send - réponse AI générée sur le bulkhead IA")
+    void sendMessage_ShouldRunOnAiExecutorAndReturnConversation() throws Exception {
+        when(conversationService.getConversationById(1L)).thenReturn(Optional.of(testConversation));
+        when(conversationService.getConversationWithMessages(1L)).thenReturn(Optional.of(testConversation));
+        when(aiService.getAiResponse(any(), eq("Bonjour"), any(), any())).thenReturn("Salut!");
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("userId", 1);
+        request.put("conversationId", 1);
+        request.put("message", "Bonjour");
+
+        MvcResult result = mockMvc.perform(post("/api/conversations/send")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titre").value("Test Conv"));
+
+        verify(aiExecutor).execute(any());
+        verify(chatMessageService).saveMessage(1L, 1L, "Salut!");
+    }
+
+    @Test
+    @DisplayName("POST /conversations/send?delta=true - seulement les messages du tour et le curseur")
+    void sendMessage_WithDelta_ShouldReturnOnlyThisTurn() throws Exception {
+        ChatMessage userMessage = new ChatMessage();
+        userMessage.setId(41L);
+        userMessage.setContent("Bonjour");
+        ChatMessage aiMessage = new ChatMessage();
+        aiMessage.setId(42L);
+        aiMessage.setContent("Salut!");
+        when(conversationService.getConversationById(1L)).thenReturn(Optional.of(testConversation));
+        when(chatMessageService.saveMessage(1L, 1L, "Bonjour")).thenReturn(userMessage);
+        when(chatMessageService.saveMessage(1L, 1L, "Salut!")).thenReturn(aiMessage);
+        when(aiService.getAiResponse(any(), eq("Bonjour"), any(), any())).thenReturn("Salut!");
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("userId", 1);
+        request.put("conversationId", 1);
+        request.put("message", "Bonjour");
+
+        MvcResult result = mockMvc.perform(post("/api/conversations/send?delta=true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.conversationId").value(1))
+                .andExpect(jsonPath("$.messages[0].content").value("Bonjour"))
+                .andExpect(jsonPath("$.messages[1].content").value("Salut!"))
+                .andExpect(jsonPath("$.cursor").value(42));
+
+        verify(conversationService, never()).getConversationWithMessages(any());
+    }
+
+    @Test
+    @DisplayName("POST /conversations/send - bulkhead IA plein -> 503 immédiat, rien d'enregistré")
+    void sendMessage_WhenBulkheadFull_ShouldReturn503() throws Exception {
+        doThrow(new RejectedExecutionException("full")).when(aiExecutor).execute(any());
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("userId", 1);
+        request.put("conversationId", 1);
+        request.put("message", "Bonjour");
+
+        MvcResult result = mockMvc.perform(post("/api/conversations/send")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.error").exists());
+
+        verifyNoInteractions(chatMessageService);
+        verify(aiService, never()).getAiResponse(any(), anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("POST /conversations/send/async - réponse AI asynchrone")
+    void sendMessageAsync_ShouldSaveReplyAndReturnConversation() throws Exception {
+        when(conversationService.getConversationById(1L)).thenReturn(Optional.of(testConversation));
+        when(conversationService.getConversationWithMessages(1L)).thenReturn(Optional.of(testConversation));
+        when(aiService.getAiResponseAsync(any(), eq("Bonjour"), any(), any())).thenReturn(CompletableFuture.completedFuture("Salut!"));
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("userId", 1);
+        request.put("conversationId", 1);
+        request.put("message", "Bonjour");
+
+        MvcResult result = mockMvc.perform(post("/api/conversations/send/async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titre").value("Test Conv"));
+
+        verify(chatMessageService).saveMessage(1L, 1L, "Bonjour");
+        verify(chatMessageService).saveMessage(1L, 1L, "Salut!");
+        // The reply is saved on the callback executor, not on the thread that completed the AI call
+        verify(aiCallbackExecutor).execute(any());
+    }
+
+    @Test
+    @DisplayName("POST /conversations/send/async - conversation inexistante -> 500")
+    void sendMessageAsync_WhenConversationNotFound_ShouldReturn500() throws Exception {
+        doThrow(new RuntimeException("Conversation not found")).when(conversationService).requireConversationOf(999L, 1L);
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("userId", 1);
+        request.put("conversationId", 999);
+        request.put("message", "Bonjour");
+
+        MvcResult result = mockMvc.perform(post("/api/conversations/send/async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.error").value("Conversation not found"));
+
+        verify(aiService, never()).getAiResponseAsync(any(), anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("POST /conversations/send/stream - tokens SSE puis message unique sauvegardé")
+    void sendMessageStream_ShouldStreamTokensAndSaveSingleMessage() throws Exception {
+        ChatMessage saved = new ChatMessage();
+        saved.setId(42L);
+        when(conversationService.getConversationById(1L)).thenReturn(Optional.of(testConversation));
+        when(aiService.streamAiResponse(any(), eq("Bonjour"), any(), any())).thenReturn(Flux.just("Je suis ", "là ", "pour vous."));
+        when(chatMessageService.saveMessage(1L, 1L, "Je suis là pour vous.")).thenReturn(saved);
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("userId", 1);
+        request.put("conversationId", 1);
+        request.put("message", "Bonjour");
+
+        MvcResult result = mockMvc.perform(post("/api/conversations/send/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("event:token\ndata:Je suis \n")))
+                .andExpect(content().string(containsString("event:done")))
+                .andExpect(content().string(containsString("\"messageId\":42")));
+
+        verify(chatMessageService).saveMessage(1L, 1L, "Je suis là pour vous.");
+    }
+
+    @Test
+    @DisplayName("POST /conversations/send/stream - erreur IA -> réponse de repli sauvegardée")
+    void sendMessageStream_WhenAiFails_ShouldSaveFallbackReply() throws Exception {
+        ChatMessage saved = new ChatMessage();
+        saved.setId(43L);
+        when(conversationService.getConversationById(1L)).thenReturn(Optional.of(testConversation));
+        when(aiService.streamAiResponse(any(), eq("Bonjour"), any(), any())).thenReturn(Flux.error(new RuntimeException("Connection refused")));
+        when(chatMessageService.saveMessage(1L, 1L, AiService.ERROR_REPLY)).thenReturn(saved);
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("userId", 1);
+        request.put("conversationId", 1);
+        request.put("message", "Bonjour");
+
+        MvcResult result = mockMvc.perform(post("/api/conversations/send/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(content().string(containsString("event:done")));
+
+        verify(chatMessageService).saveMessage(1L, 1L, AiService.ERROR_REPLY);
+    }
+
+    @Test
+    @DisplayName("POST /conversations/send/async - contexte pris avant l'enregistrement du message")
+    void sendMessageAsync_ShouldPassConversationContextToAi() throws Exception {
+        when(conversationService.getConversationById(1L)).thenReturn(Optional.of(testConversation));
+        when(conversationService.getConversationWithMessages(1L)).thenReturn(Optional.of(testConversation));
+        when(conversationContextService.promptContext(1L)).thenReturn("User: Je dors mal.\nAssistant: Depuis quand ?");
+        when(aiService.getAiResponseAsync(any(), eq("Depuis une semaine"), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture("C'est récent, bonne nouvelle."));
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("userId", 1);
+        request.put("conversationId", 1);
+        request.put("message", "Depuis une semaine");
+
+        MvcResult result = mockMvc.perform(post("/api/conversations/send/async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+        var inOrder = inOrder(conversationContextService, chatMessageService, aiService);
+        inOrder.verify(conversationContextService).promptContext(1L);
+        inOrder.verify(chatMessageService).saveMessage(1L, 1L, "Depuis une semaine");
+        inOrder.verify(aiService).getAiResponseAsync(eq(1L), eq("Depuis une semaine"), eq("User: Je dors mal.\nAssistant: Depuis quand ?"), any());
+    }
+
+    @Test
+    @DisplayName("POST /conversations/send/stream - délai dépassé -> début de réponse sauvegardé")
+    void sendMessageStream_WhenDeadlinePasses_ShouldSavePartialReply() throws Exception {
+        ChatMessage saved = new ChatMessage();
+        saved.setId(44L);
+        when(aiService.newSendDeadline()).thenReturn(Deadline.after(Duration.ZERO));
+        when(conversationService.getConversationById(1L)).thenReturn(Optional.of(testConversation));
+        when(aiService.streamAiResponse(any(), eq("Bonjour"), any(), any())).thenReturn(Flux.just("Je suis "));
+        when(chatMessageService.saveMessage(eq(1L), eq(1L), anyString())).thenReturn(saved);
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("userId", 1);
+        request.put("conversationId", 1);
+        request.put("message", "Bonjour");
+
+        MvcResult result = mockMvc.perform(post("/api/conversations/send/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(content().string(containsString("event:done")));
+
+        verify(chatMessageService).saveMessage(1L, 1L, "Je suis ");
+    }
+
+    @Test
+    @DisplayName("POST /conversations/send/stream - délai dépassé sans token -> réponse dégradée sauvegardée")
+    void sendMessageStream_WhenDeadlinePassesBeforeFirstToken_ShouldSaveDeadlineReply() throws Exception {
+        ChatMessage saved = new ChatMessage();
+        saved.setId(45L);
+        when(aiService.newSendDeadline()).thenReturn(Deadline.after(Duration.ZERO));
+        when(conversationService.getConversationById(1L)).thenReturn(Optional.of(testConversation));
+        when(aiService.streamAiResponse(any(), eq("Bonjour"), any(), any())).thenReturn(Flux.empty());
+        when(chatMessageService.saveMessage(eq(1L), eq(1L), anyString())).thenReturn(saved);
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("userId", 1);
+        request.put("conversationId", 1);
+        request.put("message", "Bonjour");
+
+        MvcResult result = mockMvc.perform(post("/api/conversations/send/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(content().string(containsString("event:done")));
+
+        verify(chatMessageService).saveMessage(1L, 1L, AiService.DEADLINE_REPLY);
+    }
+
+    @Test
+    @DisplayName("POST /conversations/send/jobs - message et job enregistrés -> 202 avec le job à suivre")
+    void sendMessageJob_ShouldQueueReplyAndReturn202() throws Exception {
+        AiReplyJob job = new AiReplyJob();
+        job.setId(7L);
+        job.setConversationId(1L);
+        job.setMessage("Bonjour");
+        job.setStatus(AiReplyJob.Status.PENDING);
+        when(aiReplyJobService.submit(1L, null, "Ma conv", "Bonjour")).thenReturn(job);
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("userId", 1);
+        request.put("conversationTitle", "Ma conv");
+        request.put("message", "Bonjour");
+
+        mockMvc.perform(post("/api/conversations/send/jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/conversations/jobs/7"))
+                .andExpect(jsonPath("$.status").value("PENDING"))
+                .andExpect(jsonPath("$.conversationId").value(1))
+                .andExpect(jsonPath("$.message").doesNotExist());
+
+        verify(aiService, never()).getAiResponseAsync(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("GET /conversations/jobs/{id} - job inexistant -> 404")
+    void getReplyJob_WhenNotFound_ShouldReturn404() throws Exception {
+        when(aiReplyJobService.getJob(99L)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/conversations/jobs/99"))
+                .andExpect(status().isNotFound());
+    }
 }
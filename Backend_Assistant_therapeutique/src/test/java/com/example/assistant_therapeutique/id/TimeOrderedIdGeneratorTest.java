@@ -0,0 +1,33 @@
+package com.example.assistant_therapeutique.id;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests pour TimeOrderedIdGenerator
+ * Couvre : nœud configuré, nœud par défaut pour une instance seule, refus sans nœud pour plusieurs instances
+ */
+class TimeOrderedIdGeneratorTest {
+
+    @Test
+    @DisplayName("node - nœud configuré, ou 0 pour une instance seule")
+    void node_ShouldUseConfiguredNodeOrZeroForSingleInstance() {
+        assertThat(TimeOrderedIdGenerator.node(Map.of(TimeOrderedIdGenerator.NODE_SETTING, "7",
+                TimeOrderedIdGenerator.INSTANCES_SETTING, "3"))).isEqualTo(7);
+        assertThat(TimeOrderedIdGenerator.node(Map.of())).isZero();
+        assertThat(TimeOrderedIdGenerator.node(Map.of(TimeOrderedIdGenerator.INSTANCES_SETTING, "1"))).isZero();
+    }
+
+    @Test
+    @DisplayName("node - plusieurs instances sans nœud -> refus de démarrer")
+    void node_WhenSeveralInstancesWithoutNode_ShouldThrow() {
+        assertThatThrownBy(() -> TimeOrderedIdGenerator.node(Map.of(TimeOrderedIdGenerator.INSTANCES_SETTING, "2")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(TimeOrderedIdGenerator.NODE_SETTING);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.assistant_therapeutique.id;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests pour TimeOrderedId
+ * Couvre : format (horodatage, nœud, séquence), ids croissants en rafale et si l'horloge
+ * recule, unicité entre threads et entre nœuds, limite JavaScript de 2^53
+ */
+class TimeOrderedIdTest {
+
+    private static final long NOW = 1_760_000_000_000L;
+
+    @Test
+    @DisplayName("next - horodatage et nœud lisibles dans l'id, moins de 2^53")
+    void next_ShouldEncodeTimestampAndNode() {
+        TimeOrderedId ids = new TimeOrderedId(5, () -> NOW);
+
+        long id = ids.next();
+
+        assertThat(TimeOrderedId.timestampMillis(id)).isEqualTo(NOW);
+        assertThat(TimeOrderedId.node(id)).isEqualTo(5);
+        assertThat(id).isLessThan(1L << 53);
+        long lastMillis = TimeOrderedId.EPOCH_MILLIS + (1L << TimeOrderedId.TIMESTAMP_BITS) - 1;
+        assertThat(new TimeOrderedId(TimeOrderedId.MAX_NODE, () -> lastMillis).next()).isLessThan(1L << 53);
+    }
+
+    @Test
+    @DisplayName("next - rafale dans la même milliseconde ou horloge qui recule -> ids toujours croissants")
+    void next_ShouldStayMonotonicUnderBurstsAndClockSkew() {
+        AtomicLong clock = new AtomicLong(NOW);
+        TimeOrderedId ids = new TimeOrderedId(1, clock::get);
+
+        List<Long> generated = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            generated.add(ids.next());
+        }
+        // 1000 ids in one millisecond: the node runs a few milliseconds ahead of the clock
+        assertThat(TimeOrderedId.timestampMillis(generated.get(999))).isEqualTo(NOW + 3);
+        clock.set(NOW - 10_000);
+        generated.add(ids.next());
+        clock.set(NOW + 1_000);
+        generated.add(ids.next());
+
+        assertThat(generated).isSorted().doesNotHaveDuplicates();
+        assertThat(TimeOrderedId.timestampMillis(generated.get(generated.size() - 1))).isEqualTo(NOW + 1_000);
+    }
+
+    @Test
+    @DisplayName("next - uniques entre threads et entre nœuds à la même milliseconde")
+    void next_ShouldBeUniqueAcrossThreadsAndNodes() throws InterruptedException {
+        TimeOrderedId node0 = new TimeOrderedId(0, () -> NOW);
+        TimeOrderedId node1 = new TimeOrderedId(1, () -> NOW);
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            TimeOrderedId ids = t % 2 == 0 ? node0 : node1;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    seen.add(ids.next());
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(seen).hasSize(40_000);
+    }
+
+    @Test
+    @DisplayName("forNode - un générateur par nœud, nœud hors limites refusé")
+    void forNode_ShouldShareGeneratorsAndRejectInvalidNodes() {
+        assertThat(TimeOrderedId.forNode(3)).isSameAs(TimeOrderedId.forNode(3));
+        assertThatThrownBy(() -> TimeOrderedId.forNode(TimeOrderedId.MAX_NODE + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.assistant_therapeutique.integration;
+
+import com.example.assistant_therapeutique.model.AiReplyJob;
+import com.example.assistant_therapeutique.model.ChatMessage;
+import com.example.assistant_therapeutique.model.Conversation;
+import com.example.assistant_therapeutique.model.User;
+import com.example.assistant_therapeutique.repository.AiReplyJobRepository;
+import com.example.assistant_therapeutique.repository.ChatMessageRepository;
+import com.example.assistant_therapeutique.repository.ConversationRepository;
+import com.example.assistant_therapeutique.repository.UserRepository;
+import com.example.assistant_therapeutique.service.AiReplyJobService;
+import com.example.assistant_therapeutique.service.AiReplyJobWorker;
+import com.example.assistant_therapeutique.service.AiService;
+import com.example.assistant_therapeutique.service.EntityReferenceCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.qameta.allure.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Réponses IA en file (AiReplyJob) sur H2 : le worker est lancé à la main (poll)
+ */
+@SpringBootTest(properties = {
+        "ai.jobs.enabled=true",
+        "ai.jobs.initial-delay-ms=3600000",
+        "ai.jobs.backoff-ms=0",
+        "ai.jobs.max-attempts=3"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_CLASS)
+@Epic("Conversations")
+@Feature("AI Reply Jobs Integration Tests")
+public class AiReplyJobIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AiReplyJobRepository aiReplyJobRepository;
+
+    @Autowired
+    private AiReplyJobService aiReplyJobService;
+
+    @Autowired
+    private AiReplyJobWorker aiReplyJobWorker;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EntityReferenceCache entityReferenceCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private AiService aiService;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        aiReplyJobRepository.deleteAll();
+        chatMessageRepository.deleteAll();
+        conversationRepository.deleteAll();
+        userRepository.deleteAll();
+
+        testUser = new User();
+        testUser.setUsername("job_user");
+        testUser.setPassword("password123");
+        testUser = userRepository.save(testUser);
+
+        User assistant = new User();
+        assistant.setUsername("assistant");
+        assistant.setPassword("password123");
+        assistant = userRepository.save(assistant);
+        AiReplyJobService target = AopTestUtils.getTargetObject(aiReplyJobService);
+        ReflectionTestUtils.setField(target, "assistantUserId", assistant.getId());
+    }
+
+    @Test
+    @DisplayName("Send Job - 202, then reply saved by the worker")
+    @Story("AI Reply Jobs")
+    @Description("The message and a pending job are saved at once; the worker saves the reply and the job is DONE")
+    @Severity(SeverityLevel.CRITICAL)
+    void sendJob_ShouldAnswer202AndSaveReplyInBackground() throws Exception {
+        when(aiService.getAiResponseAsync(eq(testUser.getId()), eq("Je dors mal"), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture("Depuis quand ?"));
+
+        String location = mockMvc.perform(post("/api/conversations/send/jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(sendRequest(null, "Je dors mal"))))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status").value("PENDING"))
+                .andReturn().getResponse().getHeader("Location");
+        assertThat(chatMessageRepository.findAll()).extracting(ChatMessage::getContent).containsExactly("Je dors mal");
+
+        poll();
+
+        String body = mockMvc.perform(get(location))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("DONE"))
+                .andExpect(jsonPath("$.attempts").value(1))
+                .andReturn().getResponse().getContentAsString();
+        JsonNode job = objectMapper.readTree(body);
+        ChatMessage reply = chatMessageRepository.findById(job.get("replyMessageId").asLong()).orElseThrow();
+        assertThat(reply.getContent()).isEqualTo("Depuis quand ?");
+        assertThat(reply.getConversation().getId()).isEqualTo(job.get("conversationId").asLong());
+    }
+
+    @Test
+    @DisplayName("Send Job - fallback replies retried, then the job fails with the fallback saved")
+    @Story("AI Reply Jobs")
+    @Description("Failed attempts are retried up to max-attempts; the last fallback reply is kept")
+    @Severity(SeverityLevel.NORMAL)
+    void sendJob_WhenModelFails_ShouldRetryThenFail() throws Exception {
+        Conversation conversation = conversation();
+        when(aiService.getAiResponseAsync(any(), eq("Un"), any(), any())).thenReturn(
+                CompletableFuture.completedFuture(AiService.UNAVAILABLE_REPLY),
+                CompletableFuture.completedFuture(AiService.ERROR_REPLY),
+                CompletableFuture.completedFuture("Enfin"));
+        when(aiService.getAiResponseAsync(any(), eq("Deux"), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(AiService.DEADLINE_REPLY));
+
+        aiReplyJobService.submit(testUser.getId(), conversation.getId(), null, "Un");
+        aiReplyJobService.submit(testUser.getId(), conversation.getId(), null, "Deux");
+        for (int i = 0; i < 3; i++) {
+            poll();
+        }
+
+        List<AiReplyJob> jobs = aiReplyJobRepository.findAll();
+        assertThat(jobs).extracting(AiReplyJob::getStatus)
+                .containsExactlyInAnyOrder(AiReplyJob.Status.DONE, AiReplyJob.Status.FAILED);
+        assertThat(jobs).extracting(AiReplyJob::getAttempts).containsExactly(3, 3);
+        assertThat(chatMessageRepository.findAll()).extracting(ChatMessage::getContent)
+                .containsExactlyInAnyOrder("Un", "Deux", "Enfin", AiService.DEADLINE_REPLY);
+    }
+
+    @Test
+    @DisplayName("Send Job - expired lease claimed again, late outcome of the old attempt ignored")
+    @Story("AI Reply Jobs")
+    @Description("A job left RUNNING by a dead worker is run again after its lease, and only one reply is saved")
+    @Severity(SeverityLevel.NORMAL)
+    void sendJob_WhenLeaseExpired_ShouldRunAgainOnce() {
+        Conversation conversation = conversation();
+        AiReplyJob job = aiReplyJobService.submit(testUser.getId(), conversation.getId(), null, "Bonjour");
+        job.setStatus(AiReplyJob.Status.RUNNING);
+        job.setAttempts(1);
+        job.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        aiReplyJobRepository.save(job);
+        when(aiService.getAiResponseAsync(any(), eq("Bonjour"), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture("Bonjour !"));
+
+        poll();
+        aiReplyJobService.complete(job.getId(), 1, "Réponse tardive");
+
+        AiReplyJob done = aiReplyJobRepository.findById(job.getId()).orElseThrow();
+        assertThat(done.getStatus()).isEqualTo(AiReplyJob.Status.DONE);
+        assertThat(done.getAttempts()).isEqualTo(2);
+        assertThat(chatMessageRepository.findAll()).extracting(ChatMessage::getContent)
+                .containsExactlyInAnyOrder("Bonjour", "Bonjour !");
+    }
+
+    @Test
+    @DisplayName("Send Job - lease expired on the last attempt -> FAILED with the fallback reply saved")
+    @Story("AI Reply Jobs")
+    @Description("A job whose last worker died is given up on like any other, and the user still gets a reply")
+    @Severity(SeverityLevel.NORMAL)
+    void sendJob_WhenLastLeaseExpired_ShouldFailWithFallbackReply() {
+        Conversation conversation = conversation();
+        AiReplyJob job = aiReplyJobService.submit(testUser.getId(), conversation.getId(), null, "Bonjour");
+        job.setStatus(AiReplyJob.Status.RUNNING);
+        job.setAttempts(3);
+        job.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        aiReplyJobRepository.save(job);
+
+        poll();
+
+        AiReplyJob failed = aiReplyJobRepository.findById(job.getId()).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo(AiReplyJob.Status.FAILED);
+        assertThat(failed.getAttempts()).isEqualTo(3);
+        ChatMessage reply = chatMessageRepository.findById(failed.getReplyMessageId()).orElseThrow();
+        assertThat(reply.getContent()).isEqualTo(AiService.ERROR_REPLY);
+        assertThat(chatMessageRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Send Job - rolled back submit -> new conversation not cached")
+    @Story("AI Reply Jobs")
+    @Description("The conversation's owner is only cached once the submitting transaction commits")
+    @Severity(SeverityLevel.NORMAL)
+    void sendJob_WhenSubmitRolledBack_ShouldNotCacheConversation() {
+        Long conversationId = new TransactionTemplate(transactionManager).execute(status -> {
+            Long id = aiReplyJobService.submit(testUser.getId(), null, "Annulée", "Bonjour").getConversationId();
+            status.setRollbackOnly();
+            return id;
+        });
+
+        assertThat(conversationRepository.existsById(conversationId)).isFalse();
+        assertThat(entityReferenceCache.conversationOwnerId(conversationId)).isNull();
+        assertThat(aiReplyJobRepository.count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Send Job - unknown conversation -> 500, nothing saved")
+    @Story("AI Reply Jobs")
+    @Description("The message and its job are saved in one transaction")
+    @Severity(SeverityLevel.MINOR)
+    void sendJob_WhenConversationNotFound_ShouldSaveNothing() throws Exception {
+        mockMvc.perform(post("/api/conversations/send/jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(sendRequest(99999L, "Bonjour"))))
+                .andExpect(status().isInternalServerError());
+
+        assertThat(aiReplyJobRepository.count()).isZero();
+        assertThat(chatMessageRepository.count()).isZero();
+    }
+
+    // Outcomes are saved on the callback executor: wait until the claimed jobs are done
+    private void poll() {
+        aiReplyJobWorker.poll();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("ai.jobs.running").gauge().value() > 0) {
+            assertThat(System.nanoTime()).as("AI reply jobs still running").isLessThan(deadline);
+            Thread.yield();
+        }
+    }
+
+    private Conversation conversation() {
+        Conversation conversation = new Conversation();
+        conversation.setTitre("Jobs");
+        conversation.setUser(testUser);
+        conversation.setCreatedAt(LocalDateTime.now());
+        return conversationRepository.save(conversation);
+    }
+
+    private Map<String, Object> sendRequest(Long conversationId, String message) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("userId", testUser.getId());
+        request.put("conversationId", conversationId);
+        request.put("message", message);
+        return request;
+    }
+}
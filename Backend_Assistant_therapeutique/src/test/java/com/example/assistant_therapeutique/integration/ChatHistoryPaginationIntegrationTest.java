@@ -0,0 +1,162 @@
+package com.example.assistant_therapeutique.integration;
+
+import com.example.assistant_therapeutique.model.ChatMessage;
+import com.example.assistant_therapeutique.model.Conversation;
+import com.example.assistant_therapeutique.model.User;
+import com.example.assistant_therapeutique.repository.ChatMessageRepository;
+import com.example.assistant_therapeutique.repository.ConversationRepository;
+import com.example.assistant_therapeutique.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.qameta.allure.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Historique paginé par curseur sur H2 : parcours complet dans les deux sens,
+ * y compris quand plusieurs messages ont la même date
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Epic("Chat")
+@Feature("Chat History Pagination Integration Tests")
+public class ChatHistoryPaginationIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Conversation conversation;
+    private List<Long> messageIds;
+
+    @BeforeEach
+    void setUp() {
+        chatMessageRepository.deleteAll();
+        conversationRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("history_user");
+        user.setPassword("password123");
+        user = userRepository.save(user);
+
+        conversation = new Conversation();
+        conversation.setTitre("Historique");
+        conversation.setUser(user);
+        conversation.setCreatedAt(LocalDateTime.now());
+        conversation = conversationRepository.save(conversation);
+
+        // 7 messages, by pairs sharing the same date: only the id breaks the tie
+        LocalDateTime start = LocalDateTime.of(2025, 3, 1, 9, 0);
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            ChatMessage message = new ChatMessage();
+            message.setContent("Message " + i);
+            message.setSender(user);
+            message.setConversation(conversation);
+            message.setCreatedAt(start.plusMinutes(i / 2));
+            messages.add(message);
+        }
+        messageIds = chatMessageRepository.saveAll(messages).stream().map(ChatMessage::getId).toList();
+    }
+
+    @Test
+    @DisplayName("GET /chat/conversations/{id}/messages - pages before jusqu'au début, puis after jusqu'à la fin")
+    @Story("Chat History")
+    @Description("Walking the history backwards then forwards returns every message once, in order")
+    @Severity(SeverityLevel.CRITICAL)
+    void walkHistory_BothDirections_ShouldReturnEveryMessageOnceInOrder() throws Exception {
+        List<Long> backwards = new ArrayList<>();
+        JsonNode page = page("limit=3");
+        assertThat(page.get("hasNewer").asBoolean()).isFalse();
+        while (true) {
+            backwards.addAll(0, ids(page));
+            if (!page.get("hasOlder").asBoolean()) {
+                break;
+            }
+            page = page("limit=3&before=" + page.get("before").asLong());
+        }
+        assertThat(backwards).isEqualTo(messageIds);
+
+        List<Long> forwards = new ArrayList<>();
+        page = page("limit=2&after=" + messageIds.get(0));
+        while (true) {
+            forwards.addAll(ids(page));
+            if (!page.get("hasNewer").asBoolean()) {
+                break;
+            }
+            page = page("limit=2&after=" + page.get("after").asLong());
+        }
+        assertThat(forwards).isEqualTo(messageIds.subList(1, messageIds.size()));
+
+        // Nothing new yet: the cursor is kept for the next poll
+        JsonNode empty = page("after=" + messageIds.get(6));
+        assertThat(empty.get("messages")).isEmpty();
+        assertThat(empty.get("after").asLong()).isEqualTo(messageIds.get(6));
+    }
+
+    @Test
+    @DisplayName("GET /chat/conversations/{id}/messages - sans paramètre -> tout l'historique en tableau JSON")
+    @Story("Chat History")
+    @Description("Clients that do not page keep getting the whole history as a plain array")
+    @Severity(SeverityLevel.CRITICAL)
+    void getMessages_WithoutParameters_ShouldReturnWholeHistoryAsArray() throws Exception {
+        JsonNode history = page("");
+
+        assertThat(history.isArray()).isTrue();
+        List<Long> ids = new ArrayList<>();
+        history.forEach(message -> ids.add(message.get("id").asLong()));
+        assertThat(ids).containsExactlyInAnyOrderElementsOf(messageIds);
+    }
+
+    @Test
+    @DisplayName("GET /chat/conversations/{id}/messages - curseur d'une autre conversation -> 400")
+    @Story("Chat History")
+    @Description("A cursor must be a message of the conversation")
+    @Severity(SeverityLevel.MINOR)
+    void getMessages_WithCursorOfAnotherConversation_ShouldReturn400() throws Exception {
+        mockMvc.perform(get("/api/chat/conversations/" + (conversation.getId() + 1) + "/messages")
+                        .param("before", String.valueOf(messageIds.get(3))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").exists());
+    }
+
+    private JsonNode page(String query) throws Exception {
+        String body = mockMvc.perform(get("/api/chat/conversations/" + conversation.getId() + "/messages?" + query))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private static List<Long> ids(JsonNode page) {
+        List<Long> ids = new ArrayList<>();
+        page.get("messages").forEach(message -> ids.add(message.get("id").asLong()));
+        return ids;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.assistant_therapeutique.integration;
+
+import com.example.assistant_therapeutique.model.ChatMessage;
+import com.example.assistant_therapeutique.model.Conversation;
+import com.example.assistant_therapeutique.model.User;
+import com.example.assistant_therapeutique.repository.ChatMessageRepository;
+import com.example.assistant_therapeutique.repository.ConversationRepository;
+import com.example.assistant_therapeutique.repository.UserRepository;
+import com.example.assistant_therapeutique.service.ChatMessageService;
+import io.qameta.allure.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compression du contenu des messages sur H2 : les messages longs sont stockés compressés
+ * et relus en clair, les lignes écrites avant restent lisibles
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Epic("Chat")
+@Feature("Chat Message Compression Integration Tests")
+public class ChatMessageCompressionIntegrationTest {
+
+    private static final String LONG_MESSAGE = ("Depuis mon licenciement je tourne en rond à la maison, "
+            + "j'ai l'impression de ne servir à rien et j'ai honte d'en parler à mes proches. ").repeat(12);
+
+    @Autowired
+    private ChatMessageService chatMessageService;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private Conversation conversation;
+
+    @BeforeEach
+    void setUp() {
+        chatMessageRepository.deleteAll();
+        conversationRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = new User();
+        user.setUsername("compression_user");
+        user.setPassword("password123");
+        user = userRepository.save(user);
+
+        conversation = new Conversation();
+        conversation.setTitre("Compression");
+        conversation.setUser(user);
+        conversation.setCreatedAt(LocalDateTime.now());
+        conversation = conversationRepository.save(conversation);
+    }
+
+    @Test
+    @DisplayName("saveMessage - message long stocké compressé, relu en clair ; message court stocké tel quel")
+    @Story("Compression")
+    @Description("Long contents are deflated in the column and inflated transparently when read")
+    @Severity(SeverityLevel.NORMAL)
+    void saveMessage_LongContent_ShouldBeStoredCompressedAndReadPlain() {
+        ChatMessage longMessage = chatMessageService.saveMessage(user.getId(), conversation.getId(), LONG_MESSAGE);
+        ChatMessage shortMessage = chatMessageService.saveMessage(user.getId(), conversation.getId(), "Merci.");
+
+        String stored = storedContent(longMessage.getId());
+        assertThat(stored).startsWith("~ZD1:");
+        assertThat(stored.length()).isLessThan(LONG_MESSAGE.length() / 3);
+        assertThat(storedContent(shortMessage.getId())).isEqualTo("Merci.");
+
+        assertThat(chatMessageService.getMessagesByConversationId(conversation.getId()))
+                .extracting(ChatMessage::getContent)
+                .containsExactlyInAnyOrder(LONG_MESSAGE, "Merci.");
+        assertThat(conversationRepository.findById(conversation.getId()).orElseThrow().getLastMessagePreview())
+                .isEqualTo("Merci.");
+    }
+
+    @Test
+    @DisplayName("lecture - ligne longue écrite avant la compression -> relue telle quelle")
+    @Story("Compression")
+    @Description("Rows written before the compressed format existed are plain text and read back unchanged")
+    @Severity(SeverityLevel.CRITICAL)
+    void read_PlainRowWrittenBefore_ShouldBeReadUnchanged() {
+        jdbcTemplate.update("insert into chat_message (id, content, created_at, sender_id, conversation_id) values (?, ?, ?, ?, ?)",
+                1L, LONG_MESSAGE, Timestamp.valueOf(LocalDateTime.now()), user.getId(), conversation.getId());
+
+        assertThat(chatMessageRepository.findById(1L).orElseThrow().getContent()).isEqualTo(LONG_MESSAGE);
+    }
+
+    @Test
+    @DisplayName("lecture - ligne ancienne commençant par le préfixe de compression -> relue telle quelle")
+    @Story("Compression")
+    @Description("A row written before the compressed format that happens to start with the prefix is not a header and reads back unchanged")
+    @Severity(SeverityLevel.CRITICAL)
+    void read_PlainRowStartingWithPrefix_ShouldBeReadUnchanged() {
+        jdbcTemplate.update("insert into chat_message (id, content, created_at, sender_id, conversation_id) values (?, ?, ?, ?, ?)",
+                2L, "~Zut alors", Timestamp.valueOf(LocalDateTime.now()), user.getId(), conversation.getId());
+
+        assertThat(chatMessageRepository.findById(2L).orElseThrow().getContent()).isEqualTo("~Zut alors");
+    }
+
+    @Test
+    @DisplayName("lecture - ligne ancienne commençant par l'en-tête de compression -> relue telle quelle, conversation chargée")
+    @Story("Compression")
+    @Description("A plain row that happens to start with the deflate header does not decode; it reads back as stored instead of failing the whole conversation")
+    @Severity(SeverityLevel.CRITICAL)
+    void read_PlainRowStartingWithDeflateHeader_ShouldBeReadUnchanged() {
+        chatMessageService.saveMessage(user.getId(), conversation.getId(), "Merci.");
+        jdbcTemplate.update("insert into chat_message (id, content, created_at, sender_id, conversation_id) values (?, ?, ?, ?, ?)",
+                3L, "~ZD1: c'est le code de ma porte", Timestamp.valueOf(LocalDateTime.now()), user.getId(), conversation.getId());
+
+        assertThat(chatMessageService.getMessagesByConversationId(conversation.getId()))
+                .extracting(ChatMessage::getContent)
+                .containsExactlyInAnyOrder("Merci.", "~ZD1: c'est le code de ma porte");
+    }
+
+    private String storedContent(Long messageId) {
+        return jdbcTemplate.queryForObject("select content from chat_message where id = ?", String.class, messageId);
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.assistant_therapeutique.integration;
+
+import com.example.assistant_therapeutique.compression.CompressedTextConverter;
+import com.example.assistant_therapeutique.model.AiReplyJob;
+import com.example.assistant_therapeutique.model.ChatMessage;
+import com.example.assistant_therapeutique.model.Conversation;
+import com.example.assistant_therapeutique.model.User;
+import com.example.assistant_therapeutique.repository.AiReplyJobRepository;
+import com.example.assistant_therapeutique.repository.ChatMessageRepository;
+import com.example.assistant_therapeutique.repository.ConversationRepository;
+import com.example.assistant_therapeutique.repository.UserRepository;
+import com.example.assistant_therapeutique.service.AiReplyJobService;
+import com.example.assistant_therapeutique.service.ChatMessageService;
+import com.example.assistant_therapeutique.service.ChatMessageWriteBehind;
+import com.example.assistant_therapeutique.service.ConversationService;
+import com.example.assistant_therapeutique.service.EntityReferenceCache;
+import com.example.assistant_therapeutique.wal.WriteAheadLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Mode write-behind sur H2 : messages lisibles avant d'être en base, insérés par le flush,
+ * relus depuis le journal après un arrêt brutal, et écrits directement avec les réponses IA en file
+ */
+@SpringBootTest(properties = {
+        "chat.write-behind.enabled=true",
+        // Flushed by the tests only
+        "chat.write-behind.flush-ms=3600000"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@Epic("Chat")
+@Feature("Chat Write-Behind Integration Tests")
+public class ChatWriteBehindIntegrationTest {
+
+    private static final Path LOG_DIR = temporaryDirectory();
+
+    @DynamicPropertySource
+    static void writeBehindProperties(DynamicPropertyRegistry registry) {
+        registry.add("chat.write-behind.dir", LOG_DIR::toString);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ChatMessageService chatMessageService;
+
+    @Autowired
+    private ChatMessageWriteBehind writeBehind;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private AiReplyJobService aiReplyJobService;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private AiReplyJobRepository aiReplyJobRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CompressedTextConverter contentConverter;
+
+    private User user;
+    private Conversation conversation;
+
+    @BeforeEach
+    void setUp() {
+        writeBehind.flush();
+        aiReplyJobRepository.deleteAll();
+        chatMessageRepository.deleteAll();
+        conversationRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = new User();
+        user.setUsername("write_behind_user");
+        user.setPassword("password123");
+        user = userRepository.save(user);
+
+        conversation = conversationService.createConversation(user.getId(), "Journal");
+    }
+
+    @Test
+    @DisplayName("saveMessage - lisible avant le flush, inséré une seule fois par le flush")
+    @Story("Write-Behind")
+    @Description("Acknowledged messages are read from memory until the flush inserts them and updates the summary")
+    @Severity(SeverityLevel.CRITICAL)
+    void saveMessage_ShouldBeReadableBeforeFlushAndInsertedByFlush() throws Exception {
+        ChatMessage first = chatMessageService.saveMessage(user.getId(), conversation.getId(), "Je dors mal");
+        chatMessageService.saveMessage(user.getId(), conversation.getId(), "depuis une semaine");
+        ChatMessage last = chatMessageService.saveMessage(user.getId(), conversation.getId(), "et je suis fatigué");
+
+        assertThat(chatMessageRepository.countByConversationId(conversation.getId())).isZero();
+        mockMvc.perform(get("/api/chat/conversations/" + conversation.getId() + "/messages"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[2].id").value(last.getId()));
+        mockMvc.perform(get("/api/chat/conversations/" + conversation.getId() + "/messages")
+                        .param("after", String.valueOf(first.getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages.length()").value(2));
+        assertThat(conversationService.getConversationWithMessages(conversation.getId()).orElseThrow().getMessages())
+                .extracting(ChatMessage::getContent)
+                .containsExactly("Je dors mal", "depuis une semaine", "et je suis fatigué");
+
+        writeBehind.flush();
+
+        assertThat(chatMessageRepository.countByConversationId(conversation.getId())).isEqualTo(3);
+        assertThat(writeBehind.pendingMessages(conversation.getId())).isEmpty();
+        Conversation stored = conversationRepository.findById(conversation.getId()).orElseThrow();
+        assertThat(stored.getMessageCount()).isEqualTo(3);
+        assertThat(stored.getLastMessagePreview()).isEqualTo("et je suis fatigué");
+        mockMvc.perform(get("/api/chat/conversations/" + conversation.getId() + "/messages"))
+                .andExpect(jsonPath("$.length()").value(3));
+        // Only the current, empty segment is left
+        try (Stream<Path> segments = Files.list(LOG_DIR)) {
+            assertThat(segments.filter(segment -> segment.toFile().length() > 0)).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("redémarrage - les messages du journal sont relus puis insérés")
+    @Story("Write-Behind")
+    @Description("Messages acknowledged before a crash are replayed from the log at startup and inserted by the next flush")
+    @Severity(SeverityLevel.CRITICAL)
+    void restart_ShouldReplayLoggedMessagesAndInsertThem() throws IOException {
+        Path directory = Files.createTempDirectory("chat-wal-restart");
+        ChatMessageWriteBehind crashed = newWriteBehind(directory);
+        crashed.append(message("Avant l'arrêt"));
+        crashed.append(message("Toujours là ?"));
+        // The process dies: nothing is flushed, the log file is all that is left
+        ((WriteAheadLog) ReflectionTestUtils.getField(crashed, "log")).close();
+
+        ChatMessageWriteBehind restarted = newWriteBehind(directory);
+        assertThat(restarted.pendingMessages(conversation.getId()))
+                .extracting(ChatMessage::getContent)
+                .containsExactly("Avant l'arrêt", "Toujours là ?");
+        assertThat(chatMessageRepository.countByConversationId(conversation.getId())).isZero();
+
+        restarted.flush();
+        // Flushing again, e.g. after a crash between the commit and the deletion of the segments, inserts nothing twice
+        restarted.flush();
+
+        assertThat(chatMessageRepository.countByConversationId(conversation.getId())).isEqualTo(2);
+        assertThat(conversationRepository.findById(conversation.getId()).orElseThrow().getMessageCount()).isEqualTo(2);
+        ReflectionTestUtils.invokeMethod(restarted, "shutdown");
+    }
+
+    @Test
+    @DisplayName("submit - message de l'utilisateur inséré dans la transaction du job, sans passer par le journal")
+    @Story("Write-Behind")
+    @Description("A queued AI reply commits the user's message together with its PENDING job, or neither")
+    @Severity(SeverityLevel.CRITICAL)
+    void submit_ShouldCommitMessageWithJobBypassingLog() {
+        AiReplyJob job = aiReplyJobService.submit(user.getId(), conversation.getId(), null, "Je n'arrive pas à dormir");
+
+        assertThat(writeBehind.pendingMessages(conversation.getId())).isEmpty();
+        assertThat(chatMessageRepository.findByConversationId(conversation.getId()))
+                .extracting(ChatMessage::getContent)
+                .containsExactly("Je n'arrive pas à dormir");
+        assertThat(aiReplyJobRepository.findById(job.getId()).orElseThrow().getStatus())
+                .isEqualTo(AiReplyJob.Status.PENDING);
+        assertThat(conversationRepository.findById(conversation.getId()).orElseThrow().getMessageCount()).isEqualTo(1);
+
+        // Rolled back with its caller: neither the message nor the job is left, in the table or the log
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            aiReplyJobService.submit(user.getId(), conversation.getId(), null, "Annulé");
+            status.setRollbackOnly();
+        });
+
+        assertThat(writeBehind.pendingMessages(conversation.getId())).isEmpty();
+        assertThat(chatMessageRepository.countByConversationId(conversation.getId())).isEqualTo(1);
+        assertThat(aiReplyJobRepository.count()).isEqualTo(1);
+    }
+
+    private ChatMessageWriteBehind newWriteBehind(Path directory) {
+        ChatMessageWriteBehind instance = new ChatMessageWriteBehind();
+        ReflectionTestUtils.setField(instance, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(instance, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(instance, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(instance, "contentConverter", contentConverter);
+        ReflectionTestUtils.setField(instance, "enabled", true);
+        ReflectionTestUtils.setField(instance, "directory", directory.toString());
+        ReflectionTestUtils.setField(instance, "groupSize", 16);
+        ReflectionTestUtils.setField(instance, "batchSize", 100);
+        ReflectionTestUtils.invokeMethod(instance, "init");
+        return instance;
+    }
+
+    private ChatMessage message(String content) {
+        ChatMessage message = new ChatMessage();
+        message.setSender(EntityReferenceCache.user(user.getId()));
+        message.setConversation(EntityReferenceCache.conversation(conversation.getId()));
+        message.setContent(content);
+        message.setCreatedAt(LocalDateTime.now());
+        return message;
+    }
+
+    private static Path temporaryDirectory() {
+        try {
+            return Files.createTempDirectory("chat-wal");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.assistant_therapeutique.integration;
+
+import com.example.assistant_therapeutique.ai.AiHealthProber;
+import io.qameta.allure.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Groupes de santé Actuator : l'instance reste prête quand le service IA est injoignable,
+ * l'état des backends IA est exposé dans le groupe upstream
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Epic("Monitoring")
+@Feature("Health Groups Integration Tests")
+public class HealthGroupsIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AiHealthProber aiHealthProber;
+
+    @Test
+    @DisplayName("readiness - backend IA injoignable -> instance toujours prête, upstream DOWN")
+    @Story("Health")
+    @Description("An AI outage must not take the instance out of rotation: journals, moods and history keep working")
+    @Severity(SeverityLevel.CRITICAL)
+    void readiness_WhenAiBackendDown_ShouldStayUp() throws Exception {
+        // Nothing listens on the test AI URL: every backend is probed DOWN
+        aiHealthProber.probeRound().block();
+
+        mockMvc.perform(get("/actuator/health/readiness"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("UP"));
+        mockMvc.perform(get("/actuator/health/upstream"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.status").value("DOWN"))
+                .andExpect(jsonPath("$.components.ai.details.backends").exists());
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.assistant_therapeutique.integration;
+
+import com.example.assistant_therapeutique.controller.ConversationController;
+import com.example.assistant_therapeutique.model.Conversation;
+import com.example.assistant_therapeutique.model.User;
+import com.example.assistant_therapeutique.repository.ChatMessageRepository;
+import com.example.assistant_therapeutique.repository.ConversationRepository;
+import com.example.assistant_therapeutique.repository.UserRepository;
+import com.example.assistant_therapeutique.service.AiService;
+import com.example.assistant_therapeutique.service.ChatMessageService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.qameta.allure.*;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Nombre de requêtes SQL par tour de conversation, compté par les statistiques Hibernate
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_CLASS)
+@Epic("Conversations")
+@Feature("Send Query Count Integration Tests")
+public class SendQueryCountIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ChatMessageService chatMessageService;
+
+    @Autowired
+    private ConversationController conversationController;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private AiService aiService;
+
+    private Statistics statistics;
+    private User testUser;
+    private Conversation conversation;
+
+    @BeforeEach
+    void setUp() {
+        chatMessageRepository.deleteAll();
+        conversationRepository.deleteAll();
+        userRepository.deleteAll();
+
+        testUser = new User();
+        testUser.setUsername("count_user");
+        testUser.setPassword("password123");
+        testUser = userRepository.save(testUser);
+
+        User assistant = new User();
+        assistant.setUsername("assistant");
+        assistant.setPassword("password123");
+        assistant = userRepository.save(assistant);
+        ReflectionTestUtils.setField(conversationController, "assistantUserId", assistant.getId());
+
+        conversation = new Conversation();
+        conversation.setTitre("Comptage");
+        conversation.setUser(testUser);
+        conversation.setCreatedAt(LocalDateTime.now());
+        conversation = conversationRepository.save(conversation);
+
+        when(aiService.getAiResponseAsync(any(), anyString(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture("Je vous écoute."));
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    @DisplayName("saveMessage - références en cache -> un INSERT et la mise à jour du résumé")
+    @Story("Query Count")
+    @Description("Sender and conversation are known: the message is saved without loading them")
+    @Severity(SeverityLevel.NORMAL)
+    void saveMessage_WhenReferencesCached_ShouldIssueInsertAndSummaryUpdate() {
+        chatMessageService.saveMessage(testUser.getId(), conversation.getId(), "Premier");
+
+        statistics.clear();
+        chatMessageService.saveMessage(testUser.getId(), conversation.getId(), "Second");
+
+        System.out.println("saveMessage, warm: " + statistics.getPrepareStatementCount() + " statements");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("POST /send/async - tour complet : deux INSERT et deux mises à jour du résumé une fois le cache chaud")
+    @Story("Query Count")
+    @Description("A turn saves the user message and the reply; nothing else reaches the database once warm")
+    @Severity(SeverityLevel.NORMAL)
+    void sendTurn_WhenWarm_ShouldIssueTwoInsertsAndTwoSummaryUpdates() throws Exception {
+        statistics.clear();
+        sendTurn("Bonjour");
+        long cold = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        sendTurn("Encore");
+        long warm = statistics.getPrepareStatementCount();
+
+        System.out.println("send turn: " + cold + " statements cold, " + warm + " warm");
+        assertThat(warm).isEqualTo(4);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(chatMessageRepository.count()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("POST /send/async - expéditeurs complets dans la réponse, sans les charger une fois le cache chaud")
+    @Story("Query Count")
+    @Description("Saved messages carry the cached sender, so the response shows who sent each message")
+    @Severity(SeverityLevel.NORMAL)
+    void sendTurn_ShouldReturnCompleteSenders() throws Exception {
+        sendTurn("Bonjour");
+
+        statistics.clear();
+        sendTurn("Encore")
+                .andExpect(jsonPath("$.messages[0].sender.id").value(testUser.getId()))
+                .andExpect(jsonPath("$.messages[0].sender.username").value("count_user"))
+                .andExpect(jsonPath("$.messages[1].sender.username").value("assistant"));
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("GET /conversations/user/{userId}/summaries - une requête, aucun message chargé")
+    @Story("Query Count")
+    @Description("Summaries are read from the conversation rows; the counters are kept up to date by each message")
+    @Severity(SeverityLevel.NORMAL)
+    void summaries_ShouldIssueOneQueryWithoutLoadingMessages() throws Exception {
+        sendTurn("Je dors mal depuis une semaine");
+
+        statistics.clear();
+        mockMvc.perform(get("/api/conversations/user/" + testUser.getId() + "/summaries"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.conversations[0].id").value(conversation.getId()))
+                .andExpect(jsonPath("$.conversations[0].messageCount").value(2))
+                .andExpect(jsonPath("$.conversations[0].lastMessagePreview").value("Je vous écoute."));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    private ResultActions sendTurn(String message) throws Exception {
+        Map<String, Object> request = new HashMap<>();
+        request.put("userId", testUser.getId());
+        request.put("conversationId", conversation.getId());
+        request.put("message", message);
+
+        MvcResult result = mockMvc.perform(post("/api/conversations/send/async?delta=true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.assistant_therapeutique.performance;
+
+import com.example.assistant_therapeutique.ai.AiBatchDispatcher;
+import com.example.assistant_therapeutique.ai.AiClient;
+import com.example.assistant_therapeutique.ai.AiLoadBalancer;
+import com.example.assistant_therapeutique.ai.AiTestSupport;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark : micro-batching des prompts, débit vs latence
+ * Le serveur simulé traite une génération à la fois (comme un GPU unique) ;
+ * un lot coûte un temps fixe plus un petit coût par prompt.
+ * Lancer avec : mvn test -Pperformance
+ */
+@Tag("performance")
+class AiBatchingBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long GENERATION_MS = 40;
+    private static final long PER_PROMPT_MS = 5;
+    private static final int BURST = 64;
+    private static final int MAX_BATCH = 16;
+
+    private static HttpServer aiStub;
+    private static AiClient aiClient;
+
+    @BeforeAll
+    static void startAiStub() throws IOException {
+        aiStub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), BURST);
+        // One generation at a time, like a single GPU
+        aiStub.setExecutor(Executors.newSingleThreadExecutor());
+        aiStub.createContext("/chat", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            sleep(GENERATION_MS);
+            respond(exchange, Map.of("response", "Je suis là pour vous.", "status", "success"));
+        });
+        aiStub.createContext("/chat/batch", exchange -> {
+            JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+            int size = request.get("messages").size();
+            sleep(GENERATION_MS + PER_PROMPT_MS * size);
+            respond(exchange, Map.of("responses", Collections.nCopies(size, "Je suis là pour vous."), "status", "success"));
+        });
+        aiStub.start();
+
+        AiLoadBalancer loadBalancer = AiTestSupport.newLoadBalancer(new SimpleMeterRegistry(),
+                "http://127.0.0.1:" + aiStub.getAddress().getPort());
+        aiClient = AiTestSupport.newClient(loadBalancer, 60_000, BURST);
+    }
+
+    @AfterAll
+    static void stopAiStub() {
+        AiTestSupport.close(aiClient);
+        aiStub.stop(0);
+    }
+
+    @Test
+    @DisplayName("batching - débit en rafale et latence à faible charge selon la fenêtre")
+    void batching_ShouldTradeLatencyForThroughput() {
+        // Warm-up (JIT, connection pool)
+        burst(aiClient::chat, 8);
+
+        Result unbatched = burst(aiClient::chat, BURST);
+        Result idleUnbatched = sequential(aiClient::chat, 10);
+        System.out.printf("%d prompts, generation %d ms + %d ms/prompt, max batch %d%n",
+                BURST, GENERATION_MS, PER_PROMPT_MS, MAX_BATCH);
+        System.out.printf("  %-12s burst: %5d ms, %6.1f req/s, p50 %4d ms, p95 %4d ms | idle p50 %4d ms%n",
+                "unbatched", unbatched.totalMs, unbatched.throughput(), unbatched.p50(), unbatched.p95(), idleUnbatched.p50());
+
+        Result bestBatched = null;
+        for (long windowMs : new long[]{5, 20, 50}) {
+            AiBatchDispatcher dispatcher = newDispatcher(windowMs);
+            try {
+                Result batched = burst(dispatcher::submit, BURST);
+                Result idleBatched = sequential(dispatcher::submit, 10);
+                System.out.printf("  %-12s burst: %5d ms, %6.1f req/s, p50 %4d ms, p95 %4d ms | idle p50 %4d ms%n",
+                        "window " + windowMs + "ms", batched.totalMs, batched.throughput(), batched.p50(), batched.p95(), idleBatched.p50());
+                if (bestBatched == null || batched.totalMs < bestBatched.totalMs) {
+                    bestBatched = batched;
+                }
+                // At low load a prompt waits for its window before being sent
+                assertThat(idleBatched.p50()).isGreaterThanOrEqualTo(windowMs);
+            } finally {
+                ReflectionTestUtils.invokeMethod(dispatcher, "close");
+            }
+        }
+
+        assertThat(bestBatched.throughput()).isGreaterThan(2 * unbatched.throughput());
+    }
+
+    private static AiBatchDispatcher newDispatcher(long windowMs) {
+        AiBatchDispatcher dispatcher = new AiBatchDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "enabled", true);
+        ReflectionTestUtils.setField(dispatcher, "windowMs", windowMs);
+        ReflectionTestUtils.setField(dispatcher, "maxSize", MAX_BATCH);
+        ReflectionTestUtils.setField(dispatcher, "aiClient", aiClient);
+        ReflectionTestUtils.setField(dispatcher, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(dispatcher, "init");
+        return dispatcher;
+    }
+
+    private static Result burst(Function<String, CompletableFuture<String>> call, int prompts) {
+        long start = System.nanoTime();
+        List<CompletableFuture<Long>> latencies = new ArrayList<>();
+        for (int i = 0; i < prompts; i++) {
+            long sent = System.nanoTime();
+            latencies.add(call.apply("message " + i).thenApply(reply -> (System.nanoTime() - sent) / 1_000_000));
+        }
+        List<Long> millis = latencies.stream().map(CompletableFuture::join).sorted().toList();
+        return new Result((System.nanoTime() - start) / 1_000_000, millis);
+    }
+
+    private static Result sequential(Function<String, CompletableFuture<String>> call, int prompts) {
+        long start = System.nanoTime();
+        List<Long> millis = new ArrayList<>();
+        for (int i = 0; i < prompts; i++) {
+            long sent = System.nanoTime();
+            call.apply("message " + i).join();
+            millis.add((System.nanoTime() - sent) / 1_000_000);
+        }
+        Collections.sort(millis);
+        return new Result((System.nanoTime() - start) / 1_000_000, millis);
+    }
+
+    private record Result(long totalMs, List<Long> latenciesMs) {
+
+        double throughput() {
+            return latenciesMs.size() * 1000.0 / Math.max(1, totalMs);
+        }
+
+        long p50() {
+            return latenciesMs.get(latenciesMs.size() / 2);
+        }
+
+        long p95() {
+            return latenciesMs.get((int) Math.ceil(latenciesMs.size() * 0.95) - 1);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, Map<String, Object> json) throws IOException {
+        byte[] body = MAPPER.writeValueAsBytes(json);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
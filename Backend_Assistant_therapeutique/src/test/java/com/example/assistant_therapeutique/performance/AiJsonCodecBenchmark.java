@@ -0,0 +1,114 @@
+package com.example.assistant_therapeutique.performance;
+
+import com.example.assistant_therapeutique.ai.AiClient;
+import com.example.assistant_therapeutique.ai.AiJsonCodec;
+import com.example.assistant_therapeutique.ai.AiRequest;
+import com.example.assistant_therapeutique.ai.Deadline;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Micro-benchmark : allocations par appel du codec JSON de l'IA
+ * Compare l'ancien aller-retour par Map (ObjectMapper, corps Map.of, réponse lue en
+ * Map puis cast) au codec en flux AiJsonCodec, pour un corps de requête avec contexte et
+ * une réponse typique du serveur de modèle (avec des champs inutilisés).
+ * Octets alloués mesurés par thread (com.sun.management.ThreadMXBean).
+ * Lancer avec : mvn test -Pperformance -Dtest=AiJsonCodecBenchmark
+ */
+@Tag("performance")
+class AiJsonCodecBenchmark {
+
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 500_000;
+
+    private static final AiRequest REQUEST = new AiRequest(1L,
+            "Je n'arrive pas à dormir depuis une semaine, j'ai beaucoup de pensées qui tournent le soir.",
+            "User: Bonjour, je me sens stressé en ce moment.\nAssistant: Je suis là pour vous écouter. "
+                    + "Qu'est-ce qui vous préoccupe le plus ?\nUser: Le travail, surtout.",
+            AiClient.MAX_TOKENS, Deadline.none());
+
+    private static final byte[] RESPONSE = ("{\"response\":\"Je comprends, les pensées qui tournent le soir "
+            + "rendent l'endormissement difficile. Essayer d'écrire ce qui vous préoccupe avant de vous coucher "
+            + "peut aider à mettre ces pensées de côté. Voulez-vous qu'on en parle un peu plus ?\","
+            + "\"status\":\"success\",\"model\":\"assistant-therapeutique-ft\","
+            + "\"usage\":{\"prompt_tokens\":142,\"completion_tokens\":61,\"total_tokens\":203},"
+            + "\"timings\":{\"queue_ms\":3.2,\"generate_ms\":1840.7}}").getBytes(StandardCharsets.UTF_8);
+
+    private static final TypeReference<Map<String, Object>> JSON_OBJECT = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Keeps the results alive so the JIT cannot drop the work
+    private long sink;
+
+    @Test
+    @DisplayName("AiJsonCodec - moins d'allocations par appel que l'aller-retour par Map")
+    void streamingCodec_ShouldAllocateLessThanMapRoundTrip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+
+        for (int i = 0; i < WARMUP; i++) {
+            mapRoundTrip(out);
+            codecRoundTrip(out);
+        }
+        long[] map = measure(() -> mapRoundTrip(out));
+        long[] codec = measure(() -> codecRoundTrip(out));
+
+        System.out.printf("AI JSON round trip (request with context + typical response), %d calls%n", ITERATIONS);
+        System.out.printf("  Map + ObjectMapper: %d bytes/call, %d ns/call%n", map[0], map[1]);
+        System.out.printf("  AiJsonCodec:        %d bytes/call, %d ns/call%n", codec[0], codec[1]);
+
+        assertThat(sink).isNotZero();
+        assertThat(codec[0]).isLessThan(map[0]);
+    }
+
+    private void mapRoundTrip(ByteArrayOutputStream out) throws IOException {
+        out.reset();
+        objectMapper.writeValue(out, Map.of(
+                "message", REQUEST.message(),
+                "context", REQUEST.context(),
+                "max_tokens", REQUEST.maxTokens(),
+                "temperature", AiClient.TEMPERATURE));
+        Map<String, Object> body = objectMapper.readValue(new ByteArrayInputStream(RESPONSE), JSON_OBJECT);
+        sink += out.size() + ((String) body.get("response")).length();
+    }
+
+    private void codecRoundTrip(ByteArrayOutputStream out) throws IOException {
+        out.reset();
+        AiJsonCodec.writeChat(REQUEST, out);
+        sink += out.size() + AiJsonCodec.readChat(new ByteArrayInputStream(RESPONSE)).response().length();
+    }
+
+    /**
+     * @return bytes allocated and nanoseconds per call
+     */
+    private long[] measure(Call call) throws IOException {
+        long thread = Thread.currentThread().getId();
+        long bytesBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            call.run();
+        }
+        long nanos = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+        return new long[]{bytes / ITERATIONS, nanos / ITERATIONS};
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        void run() throws IOException;
+    }
+}
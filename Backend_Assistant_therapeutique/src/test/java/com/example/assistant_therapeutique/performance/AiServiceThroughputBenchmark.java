@@ -0,0 +1,116 @@
+package com.example.assistant_therapeutique.performance;
+
+import com.example.assistant_therapeutique.ai.AiStubServer;
+import com.example.assistant_therapeutique.ai.Deadline;
+import com.example.assistant_therapeutique.service.AiService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark : débit de AiService contre le serveur de modèle simulé (AiStubServer)
+ * Latence log-normale (médiane 20 ms), 0,5 % d'erreurs, prompts distincts (ni cache ni
+ * mise en commun), 1 000 utilisateurs.
+ * Lancer avec : mvn test -Pperformance -Dtest=AiServiceThroughputBenchmark
+ */
+@Tag("performance")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "ai.scheduler.max-concurrent=" + AiServiceThroughputBenchmark.CONCURRENCY,
+        "ai.client.max-connections=" + AiServiceThroughputBenchmark.CONCURRENCY
+})
+@ActiveProfiles("test")
+class AiServiceThroughputBenchmark {
+
+    static final int CONCURRENCY = 256;
+    private static final int WARMUP = 5_000;
+    private static final int REQUESTS = 20_000;
+    private static final int USERS = 1_000;
+
+    private static AiStubServer stub;
+
+    @Autowired
+    private AiService aiService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void startStub() throws IOException {
+        stub = AiStubServer.builder()
+                .latency(AiStubServer.LatencyModel.logNormal(20, 0.5))
+                .errorRate(0.005)
+                .start();
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    @DynamicPropertySource
+    static void aiProperties(DynamicPropertyRegistry registry) {
+        registry.add("ai.service.url", stub::url);
+    }
+
+    @Test
+    @DisplayName("AiService - des milliers de requêtes par seconde contre le serveur simulé")
+    void aiService_ShouldSustainThousandsOfRequestsPerSecond() throws InterruptedException {
+        run("warm-up", WARMUP);
+        stub.resetCounters();
+
+        AtomicInteger replies = new AtomicInteger();
+        long start = System.nanoTime();
+        run("run", REQUESTS, replies);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double perSecond = REQUESTS / seconds;
+
+        System.out.printf("AiService vs stub: %d requests, %d in flight, %d users%n", REQUESTS, CONCURRENCY, USERS);
+        System.out.printf("  %.0f req/s, max upstream concurrency %d, stub errors %d, model replies %d%n",
+                perSecond, stub.maxInFlight(), stub.errorCount(), replies.get());
+
+        meterRegistry.get("ai.reply.duration").timers().forEach(timer ->
+                System.out.printf("  outcome %s: %d%n", timer.getId().getTag("outcome"), timer.count()));
+
+        // A few requests may fail client-side when the stub closes an idle keep-alive connection
+        assertThat(replies.get()).isGreaterThan(REQUESTS * 98 / 100);
+        // Thousands per second on a multi-core box; the floor keeps a single-CPU runner green
+        assertThat(perSecond).isGreaterThan(250);
+    }
+
+    private void run(String phase, int requests) throws InterruptedException {
+        run(phase, requests, new AtomicInteger());
+    }
+
+    private void run(String phase, int requests, AtomicInteger replies) throws InterruptedException {
+        Semaphore window = new Semaphore(CONCURRENCY);
+        CountDownLatch done = new CountDownLatch(requests);
+        for (int i = 0; i < requests; i++) {
+            window.acquire();
+            aiService.getAiResponseAsync((long) (i % USERS), phase + " message " + i, null, Deadline.none())
+                    .whenComplete((reply, error) -> {
+                        if ("Je suis là pour vous.".equals(reply)) {
+                            replies.incrementAndGet();
+                        }
+                        window.release();
+                        done.countDown();
+                    });
+        }
+        assertThat(done.await(2, TimeUnit.MINUTES)).isTrue();
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.assistant_therapeutique.performance;
+
+import com.example.assistant_therapeutique.model.Conversation;
+import com.example.assistant_therapeutique.service.ChatMessageService;
+import com.example.assistant_therapeutique.service.ConversationService;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test de charge : POST /api/conversations/send vs /send/async
+ * Même nombre de threads Tomcat et de threads du bulkhead IA, IA simulée avec une latence fixe.
+ * Les services JPA sont mockés pour ne mesurer que l'occupation des threads.
+ * Lancer avec : mvn test -Pperformance
+ */
+@Tag("performance")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"server.tomcat.threads.max=" + AsyncSendLoadTest.TOMCAT_THREADS,
+                // Every send comes from the same user: measure the threads, not the fair-share
+                // scheduler or the rate limiter
+                "ai.scheduler.enabled=false", "rate-limit.enabled=false",
+                // Blocking sends get as many threads as Tomcat has, and may all queue
+                "ai.bulkhead.threads=" + AsyncSendLoadTest.TOMCAT_THREADS,
+                "ai.bulkhead.queue=" + AsyncSendLoadTest.CONCURRENT_SENDS})
+@ActiveProfiles("test")
+class AsyncSendLoadTest {
+
+    static final int TOMCAT_THREADS = 4;
+    static final int CONCURRENT_SENDS = 32;
+    private static final long AI_LATENCY_MS = 500;
+
+    private static HttpServer aiStub;
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final AtomicInteger maxInFlight = new AtomicInteger();
+    private static final AtomicInteger prompts = new AtomicInteger();
+
+    @LocalServerPort
+    private int port;
+
+    @MockBean
+    private ConversationService conversationService;
+
+    @MockBean
+    private ChatMessageService chatMessageService;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newFixedThreadPool(CONCURRENT_SENDS))
+            .build();
+
+    @BeforeAll
+    static void startAiStub() throws IOException {
+        aiStub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), CONCURRENT_SENDS);
+        aiStub.setExecutor(Executors.newCachedThreadPool());
+        aiStub.createContext("/chat", exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(AI_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            byte[] body = "{\"response\":\"Je suis là pour vous.\",\"status\":\"success\"}"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        aiStub.start();
+    }
+
+    @AfterAll
+    static void stopAiStub() {
+        aiStub.stop(0);
+    }
+
+    @DynamicPropertySource
+    static void aiProperties(DynamicPropertyRegistry registry) {
+        registry.add("ai.service.url", () -> "http://127.0.0.1:" + aiStub.getAddress().getPort());
+    }
+
+    @BeforeEach
+    void setUp() {
+        Conversation conversation = new Conversation("Charge", null, LocalDateTime.now());
+        conversation.setId(1L);
+        when(conversationService.getConversationById(1L)).thenReturn(Optional.of(conversation));
+        when(conversationService.getConversationWithMessages(1L)).thenReturn(Optional.of(conversation));
+    }
+
+    @Test
+    @DisplayName("send/async - plus d'envois simultanés avec le même nombre de threads")
+    void asyncSend_ShouldServeMoreConcurrentSendsThanBlockingSend() {
+        // Warm-up both paths (JIT, connection pools)
+        runBurst("/api/conversations/send", TOMCAT_THREADS);
+        runBurst("/api/conversations/send/async", TOMCAT_THREADS);
+
+        maxInFlight.set(0);
+        long blockingMs = runBurst("/api/conversations/send", CONCURRENT_SENDS);
+        int blockingConcurrency = maxInFlight.getAndSet(0);
+
+        long asyncMs = runBurst("/api/conversations/send/async", CONCURRENT_SENDS);
+        int asyncConcurrency = maxInFlight.get();
+
+        System.out.printf("%d sends, %d Tomcat threads, AI latency %d ms%n", CONCURRENT_SENDS, TOMCAT_THREADS, AI_LATENCY_MS);
+        System.out.printf("  blocking: %d ms, max concurrent AI calls %d%n", blockingMs, blockingConcurrency);
+        System.out.printf("  async:    %d ms, max concurrent AI calls %d%n", asyncMs, asyncConcurrency);
+
+        // Blocking path holds one bulkhead thread per AI call
+        assertThat(blockingConcurrency).isLessThanOrEqualTo(TOMCAT_THREADS);
+        // Async path keeps more sends in flight than there are Tomcat threads
+        assertThat(asyncConcurrency).isGreaterThan(TOMCAT_THREADS);
+        assertThat(asyncMs).isLessThan(blockingMs);
+    }
+
+    private long runBurst(String path, int sends) {
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < sends; i++) {
+            // Distinct prompts, so replies are neither cached nor coalesced
+            String body = "{\"userId\":1,\"conversationId\":1,\"message\":\"Je n'arrive pas à dormir "
+                    + prompts.incrementAndGet() + "\"}";
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofSeconds(60))
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertThat(response.join().statusCode()).isEqualTo(200);
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
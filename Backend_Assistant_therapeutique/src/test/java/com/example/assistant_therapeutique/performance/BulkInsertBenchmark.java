@@ -0,0 +1,136 @@
+package com.example.assistant_therapeutique.performance;
+
+import com.example.assistant_therapeutique.id.TimeOrderedId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark : insertions en masse, ids AUTO_INCREMENT vs ids générés par l'application
+ * Reproduit en JDBC ce que fait Hibernate : avec IDENTITY, un INSERT par ligne suivi de la
+ * lecture de la clé générée ; avec TimeOrderedId, des lots de hibernate.jdbc.batch_size.
+ * H2 en mémoire par défaut ; pour MySQL :
+ *   mvn test -Pperformance -Dtest=BulkInsertBenchmark
+ *     -Dbenchmark.jdbc.url="jdbc:mysql://localhost:3306/bench?rewriteBatchedStatements=true"
+ *     -Dbenchmark.jdbc.user=root -Dbenchmark.jdbc.password=
+ */
+@Tag("performance")
+class BulkInsertBenchmark {
+
+    private static final String URL = System.getProperty("benchmark.jdbc.url",
+            "jdbc:h2:mem:bulkinsert;MODE=MySQL;DB_CLOSE_DELAY=-1");
+    private static final String USER = System.getProperty("benchmark.jdbc.user", "sa");
+    private static final String PASSWORD = System.getProperty("benchmark.jdbc.password", "");
+
+    private static final int ROWS = 20_000;
+    private static final int BATCH_SIZE = 50;
+    private static final String CONTENT = "Je comprends. Qu'est-ce qui vous vient en tête quand vous êtes couché ?";
+
+    private final TimeOrderedId ids = TimeOrderedId.forNode(0);
+
+    @Test
+    @DisplayName("TimeOrderedId + lots JDBC - plus de lignes par seconde qu'IDENTITY")
+    void batchedInserts_ShouldBeFasterThanIdentityInserts() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD)) {
+            connection.setAutoCommit(false);
+            createTables(connection);
+
+            // Warm-up, then measured run
+            identityInserts(connection, ROWS / 4);
+            batchedInserts(connection, ROWS / 4);
+            long identityNanos = identityInserts(connection, ROWS);
+            long batchedNanos = batchedInserts(connection, ROWS);
+
+            double identityRate = ROWS / (identityNanos / 1e9);
+            double batchedRate = ROWS / (batchedNanos / 1e9);
+            System.out.printf("Bulk insert of %d messages on %s%n", ROWS, connection.getMetaData().getDatabaseProductName());
+            System.out.printf("  IDENTITY, one INSERT per row:      %8.0f rows/s%n", identityRate);
+            System.out.printf("  TimeOrderedId, batches of %d:      %8.0f rows/s (x%.1f)%n",
+                    BATCH_SIZE, batchedRate, batchedRate / identityRate);
+
+            assertThat(count(connection, "bench_time_ordered_message")).isEqualTo(ROWS + ROWS / 4);
+            assertThat(batchedRate).isGreaterThan(identityRate);
+            dropTables(connection);
+        }
+    }
+
+    private long identityInserts(Connection connection, int rows) throws SQLException {
+        long start = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement(
+                "insert into bench_identity_message (conversation_id, content, created_at) values (?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < rows; i++) {
+                bind(insert, 1, i);
+                insert.executeUpdate();
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    keys.next();
+                    keys.getLong(1);
+                }
+            }
+        }
+        connection.commit();
+        return System.nanoTime() - start;
+    }
+
+    private long batchedInserts(Connection connection, int rows) throws SQLException {
+        long start = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement(
+                "insert into bench_time_ordered_message (id, conversation_id, content, created_at) values (?, ?, ?, ?)")) {
+            for (int i = 0; i < rows; i++) {
+                insert.setLong(1, ids.next());
+                bind(insert, 2, i);
+                insert.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        return System.nanoTime() - start;
+    }
+
+    private static void bind(PreparedStatement insert, int first, int row) throws SQLException {
+        insert.setLong(first, row % 100);
+        insert.setString(first + 1, CONTENT);
+        insert.setTimestamp(first + 2, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private static void createTables(Connection connection) throws SQLException {
+        dropTables(connection);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table bench_identity_message (id bigint not null auto_increment primary key, "
+                    + "conversation_id bigint not null, content text, created_at timestamp)");
+            statement.execute("create table bench_time_ordered_message (id bigint not null primary key, "
+                    + "conversation_id bigint not null, content text, created_at timestamp)");
+        }
+        connection.commit();
+    }
+
+    private static void dropTables(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists bench_identity_message");
+            statement.execute("drop table if exists bench_time_ordered_message");
+        }
+        connection.commit();
+    }
+
+    private static long count(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("select count(*) from " + table)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.assistant_therapeutique.performance;
+
+import com.example.assistant_therapeutique.ai.AiStubServer;
+import com.example.assistant_therapeutique.model.Conversation;
+import com.example.assistant_therapeutique.service.ChatMessageService;
+import com.example.assistant_therapeutique.service.ConversationService;
+import com.example.assistant_therapeutique.service.JournalService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test de charge mixte : envois IA bloquants et lectures CRUD en même temps
+ * L'IA simulée répond en 2 s ; plus d'envois que le bulkhead IA n'en accepte, pendant que
+ * GET /api/journals/user/{id} est appelé en boucle avec peu de threads Tomcat.
+ * Les services JPA sont mockés pour ne mesurer que l'occupation des threads.
+ * Lancer avec : mvn test -Pperformance -Dtest=BulkheadMixedLoadTest
+ */
+@Tag("performance")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=" + BulkheadMixedLoadTest.TOMCAT_THREADS,
+        "ai.bulkhead.threads=" + BulkheadMixedLoadTest.AI_THREADS,
+        "ai.bulkhead.queue=" + BulkheadMixedLoadTest.AI_QUEUE,
+        "ai.scheduler.enabled=false", "rate-limit.enabled=false", "ai.circuit.enabled=false"
+})
+@ActiveProfiles("test")
+class BulkheadMixedLoadTest {
+
+    static final int TOMCAT_THREADS = 8;
+    static final int AI_THREADS = 2;
+    static final int AI_QUEUE = 2;
+    private static final int SENDS = 24;
+    private static final int READS = 200;
+    private static final long AI_LATENCY_MS = 2_000;
+
+    private static AiStubServer aiStub;
+
+    @LocalServerPort
+    private int port;
+
+    @MockBean
+    private ConversationService conversationService;
+
+    @MockBean
+    private ChatMessageService chatMessageService;
+
+    @MockBean
+    private JournalService journalService;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newFixedThreadPool(SENDS + TOMCAT_THREADS))
+            .build();
+
+    @BeforeAll
+    static void startAiStub() throws IOException {
+        aiStub = AiStubServer.builder().latency(AiStubServer.LatencyModel.fixed(AI_LATENCY_MS)).start();
+    }
+
+    @AfterAll
+    static void stopAiStub() {
+        aiStub.close();
+    }
+
+    @DynamicPropertySource
+    static void aiProperties(DynamicPropertyRegistry registry) {
+        registry.add("ai.service.url", aiStub::url);
+    }
+
+    @BeforeEach
+    void setUp() {
+        Conversation conversation = new Conversation("Charge", null, LocalDateTime.now());
+        conversation.setId(1L);
+        when(conversationService.getConversationById(1L)).thenReturn(Optional.of(conversation));
+        when(conversationService.getConversationWithMessages(1L)).thenReturn(Optional.of(conversation));
+        when(journalService.getJournalsByUserId(1L)).thenReturn(List.of());
+    }
+
+    @Test
+    @DisplayName("bulkhead IA - les lectures CRUD restent rapides pendant un afflux d'envois IA")
+    void crudEndpoints_ShouldKeepCapacityDuringAiBacklog() {
+        // Warm-up (JIT, connection pools)
+        for (int i = 0; i < 50; i++) {
+            assertThat(get("/api/journals/user/1").join().statusCode()).isEqualTo(200);
+        }
+
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> sends = new ArrayList<>();
+        List<Long> sendMillis = new ArrayList<>();
+        for (int i = 0; i < SENDS; i++) {
+            long sent = System.nanoTime();
+            sends.add(post("/api/conversations/send", "{\"userId\":1,\"conversationId\":1,\"message\":\"Message " + i + "\"}")
+                    .whenComplete((response, error) -> {
+                        synchronized (sendMillis) {
+                            sendMillis.add((System.nanoTime() - sent) / 1_000_000);
+                        }
+                    }));
+        }
+
+        // Reads while every AI thread is busy and the queue is full
+        long maxReadMs = 0;
+        for (int i = 0; i < READS; i++) {
+            long read = System.nanoTime();
+            assertThat(get("/api/journals/user/1").join().statusCode()).isEqualTo(200);
+            maxReadMs = Math.max(maxReadMs, (System.nanoTime() - read) / 1_000_000);
+        }
+        long readPhaseMs = (System.nanoTime() - start) / 1_000_000;
+
+        int accepted = 0;
+        int rejected = 0;
+        for (CompletableFuture<HttpResponse<String>> send : sends) {
+            int status = send.join().statusCode();
+            if (status == 200) {
+                accepted++;
+            } else if (status == 503) {
+                rejected++;
+            }
+        }
+        long fastestMs;
+        synchronized (sendMillis) {
+            fastestMs = sendMillis.stream().mapToLong(Long::longValue).min().orElse(0);
+        }
+
+        System.out.printf("%d AI sends (%d AI threads, queue %d, AI latency %d ms), %d reads, %d Tomcat threads%n",
+                SENDS, AI_THREADS, AI_QUEUE, AI_LATENCY_MS, READS, TOMCAT_THREADS);
+        System.out.printf("  sends: %d accepted, %d rejected with 503 (fastest answer %d ms)%n", accepted, rejected, fastestMs);
+        System.out.printf("  reads: %d in %d ms, slowest %d ms%n", READS, readPhaseMs, maxReadMs);
+
+        assertThat(accepted).isGreaterThanOrEqualTo(AI_THREADS + AI_QUEUE);
+        assertThat(accepted + rejected).isEqualTo(SENDS);
+        assertThat(rejected).isPositive();
+        // Rejections are immediate, and reads never wait for an AI call
+        assertThat(fastestMs).isLessThan(AI_LATENCY_MS / 2);
+        assertThat(maxReadMs).isLessThan(AI_LATENCY_MS / 2);
+    }
+
+    private CompletableFuture<HttpResponse<String>> get(String path) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private CompletableFuture<HttpResponse<String>> post(String path, String body) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.assistant_therapeutique.performance;
+
+import com.example.assistant_therapeutique.compression.CompressedText;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark : taux de compression et coût d'encodage / décodage du contenu des messages
+ * Messages en français de longueurs typiques (court, paragraphe, message long, longue réponse
+ * de l'IA), composés de phrases variées tirées au hasard pour ne pas flatter le taux de
+ * compression par des répétitions, à chaque niveau de deflate proposé :
+ *   mvn test -Pperformance -Dtest=ChatContentCompressionBenchmark
+ */
+@Tag("performance")
+class ChatContentCompressionBenchmark {
+
+    private static final int[] LENGTHS = {200, 600, 2_000, 8_000};
+    private static final int[] LEVELS = {1, 6, 9};
+    private static final int MESSAGES = 200;
+    private static final int ROUNDS = 5;
+    private static final int WARM_UP_ROUNDS = 20;
+
+    private static final String[] SENTENCES = {
+        "Je n'arrive plus à dormir depuis que j'ai changé de poste.",
+        "Le soir, je repense à toutes les réunions et à ce que j'aurais dû dire.",
+        "Ma sœur me dit que je m'inquiète trop, mais je n'arrive pas à m'arrêter.",
+        "J'ai l'impression que tout le monde attend quelque chose de moi.",
+        "Hier, j'ai pleuré dans la voiture avant d'aller au travail.",
+        "Je me sens seul, même quand je suis entouré de mes amis.",
+        "Est-ce que c'est normal d'avoir le cœur qui bat aussi vite avant une réunion ?",
+        "Je ne sais pas si je dois en parler à mon médecin ou attendre que ça passe.",
+        "Ce que vous décrivez ressemble à de l'anxiété, et c'est une réaction fréquente face au stress.",
+        "Il peut être utile de noter vos pensées le soir pour les déposer quelque part.",
+        "Essayons un exercice de respiration : inspirez pendant quatre secondes, puis expirez lentement.",
+        "Vous avez le droit de prendre du temps pour vous, sans vous sentir coupable.",
+        "Qu'est-ce qui vous aide habituellement à vous sentir un peu mieux ?",
+        "Si ces symptômes durent, parler à un professionnel de santé est une bonne idée.",
+        "Mon père est malade et je dois m'occuper de lui tous les week-ends.",
+        "Je culpabilise de ne pas en faire assez, alors que je suis déjà épuisée.",
+        "Parfois j'ai envie de tout quitter et de partir loin, sans prévenir personne.",
+        "Merci de m'écouter, ça me fait du bien d'écrire tout ça.",
+    };
+
+    @Test
+    @DisplayName("Compression du contenu - taux et coût par longueur de message et niveau")
+    void compression_ShouldShrinkLongFrenchMessagesCheaply() {
+        Random random = new Random(7);
+        System.out.printf("Chat content compression, %d messages per length (median of %d rounds)%n", MESSAGES, ROUNDS);
+        System.out.printf("  %6s %5s %8s %8s %10s %10s%n", "chars", "level", "ratio", "stored", "encode µs", "decode µs");
+        double longRatio = 0;
+        for (int length : LENGTHS) {
+            List<String> messages = new ArrayList<>();
+            for (int i = 0; i < MESSAGES; i++) {
+                messages.add(message(random, length));
+            }
+            long utf8Bytes = messages.stream().mapToLong(text -> text.getBytes(StandardCharsets.UTF_8).length).sum();
+            for (int level : LEVELS) {
+                CompressedText format = new CompressedText(0, level);
+                List<String> stored = messages.stream().map(format::encode).toList();
+                long storedBytes = stored.stream().mapToLong(String::length).sum();
+                double ratio = (double) utf8Bytes / storedBytes;
+
+                double encodeMicros = median(() -> messages.forEach(format::encode)) / MESSAGES;
+                double decodeMicros = median(() -> stored.forEach(CompressedText::decode)) / MESSAGES;
+                System.out.printf("  %6d %5d %7.2fx %7.0f%% %10.1f %10.1f%n",
+                        length, level, ratio, 100.0 * storedBytes / utf8Bytes, encodeMicros, decodeMicros);
+
+                for (int i = 0; i < MESSAGES; i++) {
+                    assertThat(CompressedText.decode(stored.get(i))).isEqualTo(messages.get(i));
+                }
+                if (length == 2_000 && level == 6) {
+                    longRatio = ratio;
+                }
+                // Never larger than the plain text
+                assertThat(storedBytes).isLessThanOrEqualTo(utf8Bytes);
+            }
+        }
+        // Long messages, the ones that fill the table, at least halve
+        assertThat(longRatio).isGreaterThan(2.0);
+    }
+
+    private static String message(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            text.append(SENTENCES[random.nextInt(SENTENCES.length)]).append(' ');
+        }
+        return text.substring(0, length).trim();
+    }
+
+    private static double median(Runnable round) {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            round.run();
+        }
+        long[] micros = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            round.run();
+            micros[i] = (System.nanoTime() - start) / 1_000;
+        }
+        Arrays.sort(micros);
+        return micros[ROUNDS / 2];
+    }
+}
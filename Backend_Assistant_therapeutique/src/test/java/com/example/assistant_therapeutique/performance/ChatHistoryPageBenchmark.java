@@ -0,0 +1,215 @@
+package com.example.assistant_therapeutique.performance;
+
+import com.example.assistant_therapeutique.id.TimeOrderedId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark : coût d'une page d'historique selon la longueur de la conversation
+ * Reproduit en JDBC les requêtes keyset de ChatMessageRepository sur l'index
+ * (conversation_id, created_at, id) : page la plus récente pour 10 et 100 000 messages,
+ * page avant un curseur au milieu de l'historique, et chargement de tout l'historique
+ * (ancien comportement). H2 en mémoire par défaut ; sur MySQL le plan est aussi vérifié
+ * (parcours de l'index à l'envers, sans filesort) :
+ *   mvn test -Pperformance -Dtest=ChatHistoryPageBenchmark
+ *     -Dbenchmark.jdbc.url="jdbc:mysql://localhost:3306/bench" -Dbenchmark.jdbc.user=root -Dbenchmark.jdbc.password=
+ */
+@Tag("performance")
+class ChatHistoryPageBenchmark {
+
+    private static final String URL = System.getProperty("benchmark.jdbc.url",
+            "jdbc:h2:mem:chathistory;MODE=MySQL;DB_CLOSE_DELAY=-1");
+    private static final String USER = System.getProperty("benchmark.jdbc.user", "sa");
+    private static final String PASSWORD = System.getProperty("benchmark.jdbc.password", "");
+
+    private static final long SHORT_CONVERSATION = 1;
+    private static final long LONG_CONVERSATION = 2;
+    private static final long OTHER_CONVERSATION = 3;
+    private static final int SHORT_HISTORY = 10;
+    private static final int LONG_HISTORY = 100_000;
+    private static final int PAGE_SIZE = 50;
+    private static final int ITERATIONS = 300;
+
+    private static final String NEWEST = "select id, content, created_at from bench_history_message"
+            + " where conversation_id = ? order by created_at desc, id desc limit ?";
+    private static final String BEFORE = "select id, content, created_at from bench_history_message"
+            + " where conversation_id = ? and (created_at < ? or (created_at = ? and id < ?))"
+            + " order by created_at desc, id desc limit ?";
+    private static final String WHOLE = "select id, content, created_at from bench_history_message"
+            + " where conversation_id = ?";
+
+    private final TimeOrderedId ids = TimeOrderedId.forNode(0);
+
+    @Test
+    @DisplayName("Page d'historique - même coût pour 10 et 100 000 messages")
+    void historyPage_ShouldCostTheSameWhateverTheHistoryLength() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD)) {
+            connection.setAutoCommit(false);
+            createTable(connection);
+            insert(connection, SHORT_CONVERSATION, SHORT_HISTORY);
+            insert(connection, LONG_CONVERSATION, LONG_HISTORY);
+            // Another long conversation, so the index has rows of other conversations around
+            insert(connection, OTHER_CONVERSATION, LONG_HISTORY / 2);
+            boolean mysql = connection.getMetaData().getDatabaseProductName().equalsIgnoreCase("MySQL");
+
+            LocalDateTime middleAt = LocalDateTime.of(2024, 1, 1, 8, 0).plusSeconds(LONG_HISTORY / 2);
+            long middleId = idAt(connection, LONG_CONVERSATION, middleAt);
+
+            // Warm-up, then measured runs
+            newest(connection, SHORT_CONVERSATION);
+            newest(connection, LONG_CONVERSATION);
+            double shortMicros = median(() -> newest(connection, SHORT_CONVERSATION));
+            double longMicros = median(() -> newest(connection, LONG_CONVERSATION));
+            double middleMicros = median(() -> before(connection, LONG_CONVERSATION, middleAt, middleId));
+            long start = System.nanoTime();
+            int whole = rows(connection, WHOLE, LONG_CONVERSATION);
+            double wholeMicros = (System.nanoTime() - start) / 1e3;
+
+            System.out.printf("Chat history on %s, pages of %d messages (median of %d)%n",
+                    connection.getMetaData().getDatabaseProductName(), PAGE_SIZE, ITERATIONS);
+            System.out.printf("  newest page, %6d messages:    %8.0f µs%n", SHORT_HISTORY, shortMicros);
+            System.out.printf("  newest page, %6d messages:    %8.0f µs%n", LONG_HISTORY, longMicros);
+            System.out.printf("  page before a middle cursor:    %8.0f µs%n", middleMicros);
+            System.out.printf("  whole history, %6d messages:  %8.0f µs%n", whole, wholeMicros);
+
+            assertThat(newest(connection, LONG_CONVERSATION)).isEqualTo(PAGE_SIZE + 1);
+            assertThat(before(connection, LONG_CONVERSATION, middleAt, middleId)).isEqualTo(PAGE_SIZE + 1);
+            assertThat(whole).isEqualTo(LONG_HISTORY);
+            assertThat(longMicros).isLessThan(wholeMicros / 10);
+            // Same order of magnitude; the margin absorbs timer noise on a shared runner
+            assertThat(longMicros).isLessThan(shortMicros * 3 + 200);
+            assertThat(middleMicros).isLessThan(shortMicros * 3 + 200);
+            if (mysql) {
+                assertBackwardIndexScan(connection);
+            }
+            dropTable(connection);
+        }
+    }
+
+    private interface Query {
+        int run() throws SQLException;
+    }
+
+    private static double median(Query query) throws SQLException {
+        long[] micros = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            query.run();
+            micros[i] = (System.nanoTime() - start) / 1_000;
+        }
+        Arrays.sort(micros);
+        return micros[ITERATIONS / 2];
+    }
+
+    private static int newest(Connection connection, long conversationId) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement(NEWEST)) {
+            query.setLong(1, conversationId);
+            query.setInt(2, PAGE_SIZE + 1);
+            return count(query);
+        }
+    }
+
+    private static int before(Connection connection, long conversationId, LocalDateTime createdAt, long id)
+            throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement(BEFORE)) {
+            query.setLong(1, conversationId);
+            query.setTimestamp(2, Timestamp.valueOf(createdAt));
+            query.setTimestamp(3, Timestamp.valueOf(createdAt));
+            query.setLong(4, id);
+            query.setInt(5, PAGE_SIZE + 1);
+            return count(query);
+        }
+    }
+
+    private static int rows(Connection connection, String sql, long conversationId) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement(sql)) {
+            query.setLong(1, conversationId);
+            return count(query);
+        }
+    }
+
+    private static int count(PreparedStatement query) throws SQLException {
+        int rows = 0;
+        try (ResultSet result = query.executeQuery()) {
+            while (result.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static long idAt(Connection connection, long conversationId, LocalDateTime createdAt) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement(
+                "select id from bench_history_message where conversation_id = ? and created_at = ?")) {
+            query.setLong(1, conversationId);
+            query.setTimestamp(2, Timestamp.valueOf(createdAt));
+            try (ResultSet result = query.executeQuery()) {
+                result.next();
+                return result.getLong(1);
+            }
+        }
+    }
+
+    private static void assertBackwardIndexScan(Connection connection) throws SQLException {
+        try (PreparedStatement explain = connection.prepareStatement("explain " + NEWEST)) {
+            explain.setLong(1, LONG_CONVERSATION);
+            explain.setInt(2, PAGE_SIZE + 1);
+            try (ResultSet plan = explain.executeQuery()) {
+                plan.next();
+                System.out.println("  plan: key " + plan.getString("key") + ", " + plan.getString("Extra"));
+                assertThat(plan.getString("key")).isEqualTo("idx_bench_history_conversation_created");
+                assertThat(String.valueOf(plan.getString("Extra"))).doesNotContain("filesort");
+            }
+        }
+    }
+
+    private void insert(Connection connection, long conversationId, int messages) throws SQLException {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 8, 0);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "insert into bench_history_message (id, conversation_id, content, created_at) values (?, ?, ?, ?)")) {
+            for (int i = 0; i < messages; i++) {
+                insert.setLong(1, ids.next());
+                insert.setLong(2, conversationId);
+                insert.setString(3, "Message " + i);
+                insert.setTimestamp(4, Timestamp.valueOf(start.plusSeconds(i)));
+                insert.addBatch();
+                if ((i + 1) % 1_000 == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+    }
+
+    private static void createTable(Connection connection) throws SQLException {
+        dropTable(connection);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table bench_history_message (id bigint not null primary key, "
+                    + "conversation_id bigint not null, content text, created_at timestamp(6))");
+            statement.execute("create index idx_bench_history_conversation_created "
+                    + "on bench_history_message (conversation_id, created_at, id)");
+        }
+        connection.commit();
+    }
+
+    private static void dropTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists bench_history_message");
+        }
+        connection.commit();
+    }
+}
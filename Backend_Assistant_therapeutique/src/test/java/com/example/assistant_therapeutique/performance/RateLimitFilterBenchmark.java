@@ -0,0 +1,104 @@
+package com.example.assistant_therapeutique.performance;
+
+import com.example.assistant_therapeutique.ratelimit.RateLimitFilter;
+import com.example.assistant_therapeutique.ratelimit.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.DelegatingServletInputStream;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletInputStream;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Micro-benchmark : coût du RateLimitFilter par requête
+ * Requêtes limitées (bucket IP + bucket utilisateur lu dans le corps JSON) réparties sur
+ * 1 000 utilisateurs, et requêtes vers une route non limitée.
+ * Lancer avec : mvn test -Pperformance -Dtest=RateLimitFilterBenchmark
+ */
+@Tag("performance")
+class RateLimitFilterBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final int WARMUP = 500_000;
+    private static final int ITERATIONS = 2_000_000;
+
+    private static final FilterChain NO_OP = (request, response) -> { };
+
+    @Test
+    @DisplayName("RateLimitFilter - surcoût de quelques centaines de nanosecondes par requête")
+    void rateLimitFilter_OverheadShouldStayUnderMicroseconds() throws Exception {
+        RateLimitFilter filter = newFilter();
+        MockHttpServletRequest[] limited = new MockHttpServletRequest[USERS];
+        for (int i = 0; i < USERS; i++) {
+            limited[i] = new ReplayableRequest("POST", "/api/conversations/send");
+            limited[i].setRemoteAddr("10.0." + (i / 256) + "." + (i % 256));
+            limited[i].setContentType("application/json");
+            limited[i].setContent(("{\"userId\":" + i + ",\"conversationId\":12,"
+                    + "\"message\":\"Je n'arrive plus à dormir depuis une semaine\"}").getBytes(StandardCharsets.UTF_8));
+        }
+        MockHttpServletRequest unlimited = new MockHttpServletRequest("GET", "/api/conversations/1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        run(filter, limited, response, WARMUP);
+        long limitedNanos = run(filter, limited, response, ITERATIONS);
+
+        MockHttpServletRequest[] other = {unlimited};
+        run(filter, other, response, WARMUP);
+        long unlimitedNanos = run(filter, other, response, ITERATIONS);
+
+        double limitedPerRequest = (double) limitedNanos / ITERATIONS;
+        double unlimitedPerRequest = (double) unlimitedNanos / ITERATIONS;
+        System.out.printf("RateLimitFilter, %d requests over %d users%n", ITERATIONS, USERS);
+        System.out.printf("  limited route:   %.0f ns/request%n", limitedPerRequest);
+        System.out.printf("  unlimited route: %.0f ns/request%n", unlimitedPerRequest);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        // Limited requests also buffer and scan the JSON body for the user id
+        assertThat(limitedPerRequest).isLessThan(2_000);
+        assertThat(unlimitedPerRequest).isLessThan(1_000);
+    }
+
+    // A mock request hands out its body once; this one can be sent again and again
+    private static final class ReplayableRequest extends MockHttpServletRequest {
+
+        private ReplayableRequest(String method, String path) {
+            super(method, path);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return new DelegatingServletInputStream(new ByteArrayInputStream(getContentAsByteArray()));
+        }
+    }
+
+    private static long run(RateLimitFilter filter, MockHttpServletRequest[] requests,
+                            MockHttpServletResponse response, int iterations) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            filter.doFilter(requests[i % requests.length], response, NO_OP);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static RateLimitFilter newFilter() {
+        RateLimitProperties.Route route = new RateLimitProperties.Route();
+        route.setPath("/api/conversations/send/**");
+        // High enough that no request is rejected: measures the accepting path
+        route.setUserBurst(1_000_000);
+        route.setUserPerMinute(1_000_000_000);
+        route.setIpBurst(1_000_000);
+        route.setIpPerMinute(1_000_000_000);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRoutes(List.of(route));
+        return new RateLimitFilter(properties, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.assistant_therapeutique.performance;
+
+import com.example.assistant_therapeutique.dto.ChatTurnResponseDTO;
+import com.example.assistant_therapeutique.model.ChatMessage;
+import com.example.assistant_therapeutique.model.Conversation;
+import com.example.assistant_therapeutique.model.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Benchmark : taille et coût de sérialisation de la réponse d'un envoi
+ * Conversation complète (mode par défaut) vs réponse delta (messages du tour + curseur),
+ * pour des conversations de 10 à 500 messages.
+ * Lancer avec : mvn test -Pperformance -Dtest=SendDeltaPayloadBenchmark
+ */
+@Tag("performance")
+class SendDeltaPayloadBenchmark {
+
+    private static final int[] HISTORY_SIZES = {10, 100, 500};
+    private static final int ITERATIONS = 2_000;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    @DisplayName("delta - taille et temps de sérialisation constants quel que soit l'historique")
+    void deltaResponse_ShouldNotGrowWithHistory() throws JsonProcessingException {
+        long[] deltaBytes = new long[HISTORY_SIZES.length];
+        long[] fullBytes = new long[HISTORY_SIZES.length];
+
+        System.out.println("Send response: full conversation vs delta");
+        for (int i = 0; i < HISTORY_SIZES.length; i++) {
+            Conversation conversation = conversation(HISTORY_SIZES[i]);
+            List<ChatMessage> messages = conversation.getMessages();
+            ChatMessage aiMessage = messages.get(messages.size() - 1);
+            ChatTurnResponseDTO delta = new ChatTurnResponseDTO(conversation.getId(),
+                    List.of(messages.get(messages.size() - 2), aiMessage), aiMessage.getId());
+
+            fullBytes[i] = objectMapper.writeValueAsBytes(conversation).length;
+            deltaBytes[i] = objectMapper.writeValueAsBytes(delta).length;
+            long fullNanos = nanosPerWrite(conversation);
+            long deltaNanos = nanosPerWrite(delta);
+            System.out.printf("  %3d messages: full %7d bytes %8d ns | delta %4d bytes %6d ns%n",
+                    HISTORY_SIZES[i], fullBytes[i], fullNanos, deltaBytes[i], deltaNanos);
+        }
+
+        int last = HISTORY_SIZES.length - 1;
+        // Only ids and timestamps vary in length
+        assertThat(deltaBytes[last]).isCloseTo(deltaBytes[0], within(16L));
+        assertThat(fullBytes[last]).isGreaterThan(fullBytes[0] * 10);
+        assertThat(deltaBytes[last] * 100).isLessThan(fullBytes[last]);
+    }
+
+    private long nanosPerWrite(Object value) throws JsonProcessingException {
+        for (int i = 0; i < ITERATIONS; i++) {
+            objectMapper.writeValueAsBytes(value);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            objectMapper.writeValueAsBytes(value);
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    private static Conversation conversation(int size) {
+        User user = new User();
+        user.setId(2L);
+        user.setUsername("patient");
+        User assistant = new User();
+        assistant.setId(1L);
+        assistant.setUsername("assistant");
+
+        Conversation conversation = new Conversation("Sommeil", user, LocalDateTime.of(2024, 1, 1, 20, 0));
+        conversation.setId(7L);
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            ChatMessage message = new ChatMessage();
+            message.setId(1_000L + i);
+            message.setSender(i % 2 == 0 ? user : assistant);
+            message.setConversation(conversation);
+            message.setCreatedAt(LocalDateTime.of(2024, 1, 1, 20, 0).plusMinutes(i));
+            message.setContent(i % 2 == 0
+                    ? "Je n'arrive toujours pas à dormir, les pensées tournent en boucle le soir."
+                    : "Je comprends. Qu'est-ce qui vous vient en tête quand vous êtes couché ? "
+                            + "Écrire ces pensées avant de dormir peut aider à les mettre de côté.");
+            messages.add(message);
+        }
+        conversation.setMessages(messages);
+        return conversation;
+    }
+}
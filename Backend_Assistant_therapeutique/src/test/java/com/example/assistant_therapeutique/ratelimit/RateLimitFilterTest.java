@@ -0,0 +1,293 @@
+package com.example.assistant_therapeutique.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests pour RateLimitFilter et TokenBucket
+ * Couvre : rafale puis 429 + Retry-After, clés utilisateur (lue dans le corps) et IP, corps
+ * trop longs ou longueur annoncée abusive, routes non limitées, recharge, accès concurrents,
+ * éviction des buckets inactifs
+ */
+class RateLimitFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        RateLimitProperties.Route send = new RateLimitProperties.Route();
+        send.setPath("/api/conversations/send/**");
+        send.setUserBurst(3);
+        send.setUserPerMinute(6);
+        send.setIpBurst(5);
+        send.setIpPerMinute(6);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRoutes(List.of(send));
+        properties.setMaxBodyBytes(256);
+        filter = new RateLimitFilter(properties, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("doFilter - rafale utilisateur épuisée -> 429 avec Retry-After")
+    void doFilter_WhenUserBurstExhausted_ShouldReturn429() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertThat(send("/api/conversations/send", "10.0.0.1", "7").getStatus()).isEqualTo(200);
+        }
+
+        MockHttpServletResponse rejected = send("/api/conversations/send/async", "10.0.0.1", "7");
+
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("10");
+        assertThat(rejected.getContentAsString()).contains("error");
+        assertThat(meterRegistry.get("http.server.requests.rate.limited").tag("key", "user").counter().count())
+                .isEqualTo(1.0);
+        // Another user behind the same IP still gets through
+        assertThat(send("/api/conversations/send", "10.0.0.1", "8").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("doFilter - utilisateur lu dans le corps, sans en-tête -> limité par utilisateur, corps relu par le contrôleur")
+    void doFilter_UserIdInBody_ShouldLimitPerUserAndReplayBody() throws Exception {
+        String body = "{\"message\":\"Je n'arrive pas à dormir\",\"conversationId\":3,\"userId\":7}";
+        List<String> forwarded = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest request = request("/api/conversations/send", "10.0.0.6", body);
+            // A header naming another user changes nothing
+            request.addHeader("X-User-Id", Integer.toString(100 + i));
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, (req, res) -> forwarded.add(new String(
+                    req.getInputStream().readAllBytes(), StandardCharsets.UTF_8)));
+            assertThat(response.getStatus()).isEqualTo(200);
+        }
+
+        assertThat(forwarded).containsOnly(body);
+        assertThat(send("/api/conversations/send", "10.0.0.6", "7").getStatus()).isEqualTo(429);
+        assertThat(meterRegistry.get("http.server.requests.rate.limited").tag("key", "user").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("userId - champ configuré, imbriqué, absent ou corps invalide")
+    void userId_ShouldReadConfiguredFieldOnly() {
+        String[] userId = {"userId"};
+        String[] nested = {"user", "id"};
+
+        assertThat(userId("{\"userId\":7}", userId)).isEqualTo("7");
+        assertThat(userId("{\"userId\":\"7\"}", userId)).isEqualTo("7");
+        assertThat(userId("{\"user\":{\"name\":\"x\",\"id\":7},\"id\":9}", nested))
+                .isEqualTo("7");
+        // Fields with the same name elsewhere in the body are not the user
+        assertThat(userId("{\"context\":{\"userId\":7},\"items\":[{\"userId\":8}]}", userId))
+                .isNull();
+        assertThat(userId("{\"id\":7}", nested)).isNull();
+        assertThat(userId("{\"userId\":{\"id\":7}}", userId)).isNull();
+        assertThat(userId("{\"userId\":\"" + "x".repeat(65) + "\"}", userId)).isNull();
+        assertThat(userId("{\"userId\":", userId)).isNull();
+        assertThat(userId("userId=7", userId)).isNull();
+        // The last occurrence counts, as for the controller: a decoy placed first changes nothing
+        assertThat(userId("{\"userId\":\"decoy\",\"message\":\"Bonjour\",\"userId\":7}", userId)).isEqualTo("7");
+        assertThat(userId("{\"user\":{\"id\":1},\"user\":{\"id\":7}}", nested)).isEqualTo("7");
+        assertThat(userId("", userId)).isNull();
+    }
+
+    @Test
+    @DisplayName("doFilter - corps plus long que max-body-bytes -> limité par IP seulement, corps transmis en entier")
+    void doFilter_BodyLongerThanLimit_ShouldLimitByIpAndStreamWholeBody() throws Exception {
+        String body = "{\"userId\":7,\"message\":\"" + "Je n'arrive pas à dormir. ".repeat(40) + "\"}";
+        List<String> forwarded = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request("/api/conversations/send", "10.0.0.7", body), response, (req, res) -> forwarded.add(
+                    new String(req.getInputStream().readAllBytes(), StandardCharsets.UTF_8)));
+            assertThat(response.getStatus()).isEqualTo(200);
+        }
+
+        assertThat(forwarded).hasSize(5).containsOnly(body);
+        assertThat(filter.bucketCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("doFilter - longueur annoncée énorme -> tampon borné, corps réel relu")
+    void doFilter_HugeDeclaredLength_ShouldBufferAtMostTheLimit() throws Exception {
+        String body = "{\"userId\":7}";
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/conversations/send") {
+            @Override
+            public int getContentLength() {
+                return Integer.MAX_VALUE;
+            }
+        };
+        request.setRemoteAddr("10.0.0.8");
+        request.setContent(bytes(body));
+        List<String> forwarded = new ArrayList<>();
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> forwarded.add(
+                new String(req.getInputStream().readAllBytes(), StandardCharsets.UTF_8)));
+
+        assertThat(forwarded).containsExactly(body);
+        CachedBodyRequest cached = new CachedBodyRequest(request(
+                "/api/conversations/send", "10.0.0.8", "x".repeat(1_000)), 256);
+        assertThat(cached.getPrefix()).hasSize(256);
+        assertThat(cached.isComplete()).isFalse();
+    }
+
+    @Test
+    @DisplayName("setReadListener - corps entièrement en mémoire -> données puis fin signalées au listener")
+    void cachedBody_ReadListener_ShouldBeToldOfDataThenEnd() throws Exception {
+        CachedBodyRequest cached = new CachedBodyRequest(request("/api/conversations/send", "10.0.0.9", "{\"userId\":7}"), 256);
+        ServletInputStream in = cached.getInputStream();
+        List<String> events = new ArrayList<>();
+
+        in.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                events.add(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public void onAllDataRead() {
+                events.add("fin");
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                events.add("erreur");
+            }
+        });
+
+        assertThat(events).containsExactly("{\"userId\":7}", "fin");
+        assertThat(in.isFinished()).isTrue();
+    }
+
+    @Test
+    @DisplayName("doFilter - sans identifiant utilisateur dans le corps -> limité par IP")
+    void doFilter_WithoutUserId_ShouldLimitByIp() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertThat(send("/api/conversations/send", "10.0.0.2", null).getStatus()).isEqualTo(200);
+        }
+
+        assertThat(send("/api/conversations/send", "10.0.0.2", null).getStatus()).isEqualTo(429);
+        assertThat(send("/api/conversations/send", "10.0.0.3", null).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("doFilter - route non configurée ou autre méthode -> jamais limitée")
+    void doFilter_UnlimitedRoute_ShouldPassThrough() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            assertThat(send("/api/conversations/1", "10.0.0.4", "7").getStatus()).isEqualTo(200);
+            assertThat(send("/api/conversations/sender", "10.0.0.4", "7").getStatus()).isEqualTo(200);
+        }
+        MockHttpServletRequest get = new MockHttpServletRequest("GET", "/api/conversations/send");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(get, response, new MockFilterChain());
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(filter.bucketCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("tryConsume - jetons rendus au rythme configuré")
+    void tokenBucket_ShouldRefillAtConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(2, 60, 0);
+
+        assertThat(bucket.tryConsume(0)).isZero();
+        assertThat(bucket.tryConsume(0)).isZero();
+        assertThat(bucket.tryConsume(0)).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+        assertThat(bucket.tryConsume(TimeUnit.MILLISECONDS.toNanos(500))).isEqualTo(TimeUnit.MILLISECONDS.toNanos(500));
+        assertThat(bucket.tryConsume(TimeUnit.SECONDS.toNanos(1))).isZero();
+        // A long pause refills the bucket, but never beyond its capacity
+        assertThat(bucket.tryConsume(TimeUnit.MINUTES.toNanos(5))).isZero();
+        assertThat(bucket.tryConsume(TimeUnit.MINUTES.toNanos(5))).isZero();
+        assertThat(bucket.tryConsume(TimeUnit.MINUTES.toNanos(5))).isPositive();
+    }
+
+    @Test
+    @DisplayName("tryConsume - accès concurrents -> jamais plus de jetons que la capacité")
+    void tokenBucket_ConcurrentConsumers_ShouldNotOverspend() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, 0.001, System.nanoTime());
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> granted = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                granted.add(pool.submit(() -> {
+                    start.await();
+                    int taken = 0;
+                    for (int i = 0; i < 1_000; i++) {
+                        if (bucket.tryConsume(System.nanoTime()) == 0) {
+                            taken++;
+                        }
+                    }
+                    return taken;
+                }));
+            }
+            start.countDown();
+            int total = 0;
+            for (Future<Integer> future : granted) {
+                total += future.get(10, TimeUnit.SECONDS);
+            }
+            assertThat(total).isEqualTo(100);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("evictIdleBuckets - seuls les buckets pleins depuis idle-seconds sont supprimés")
+    void evictIdleBuckets_ShouldDropOnlyIdleBuckets() throws Exception {
+        send("/api/conversations/send", "10.0.0.5", "7");
+        assertThat(filter.bucketCount()).isEqualTo(2);
+
+        filter.evictIdleBuckets();
+        assertThat(filter.bucketCount()).isEqualTo(2);
+
+        filter.evictIdleBuckets(System.nanoTime() + TimeUnit.HOURS.toNanos(1));
+        assertThat(filter.bucketCount()).isZero();
+    }
+
+    private MockHttpServletResponse send(String path, String ip, String user) throws Exception {
+        String body = user != null
+                ? "{\"userId\":" + user + ",\"message\":\"Bonjour\"}"
+                : "{\"message\":\"Bonjour\"}";
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(path, ip, body), response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String path, String ip, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setRemoteAddr(ip);
+        request.setContentType("application/json");
+        request.setContent(bytes(body));
+        return request;
+    }
+
+    private static String userId(String body, String[] field) {
+        byte[] bytes = bytes(body);
+        return RateLimitFilter.userId(bytes, bytes.length, field);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
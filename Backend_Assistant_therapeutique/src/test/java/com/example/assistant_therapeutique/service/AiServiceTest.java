@@ -1,56 +1,105 @@
 package com.example.assistant_therapeutique.service;
 
+import com.example.assistant_therapeutique.ai.AiBatchDispatcher;
+import com.example.assistant_therapeutique.ai.AiCircuitBreaker;
+import com.example.assistant_therapeutique.ai.AiClient;
+import com.example.assistant_therapeutique.ai.AiEmptyResponseException;
+import com.example.assistant_therapeutique.ai.AiFairScheduler;
+import com.example.assistant_therapeutique.ai.AiHealthProber;
+import com.example.assistant_therapeutique.ai.AiPromptKey;
+import com.example.assistant_therapeutique.ai.AiRequest;
+import com.example.assistant_therapeutique.ai.AiResponseCache;
+import com.example.assistant_therapeutique.ai.Deadline;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.test.util.ReflectionTestUtils;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Flux;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.net.ConnectException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
  * Tests unitaires pour AiService
- * Couvre : appel API réussi, gestion erreurs, vérification disponibilité
+ * Couvre : appel API réussi, gestion erreurs, vérification disponibilité, délais, circuit ouvert
  */
 @ExtendWith(MockitoExtension.class)
 class AiServiceTest {
 
     @Mock
-    private RestTemplate restTemplate;
+    private AiClient aiClient;
+
+    @Mock
+    private AiResponseCache responseCache;
+
+    @Mock
+    private AiBatchDispatcher batchDispatcher;
+
+    @Mock
+    private AiHealthProber healthProber;
+
+    @Spy
+    private AiFairScheduler scheduler = new AiFairScheduler();
+
+    @Spy
+    private AiCircuitBreaker circuitBreaker = new AiCircuitBreaker();
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @InjectMocks
     private AiService aiService;
 
-    private static final String AI_SERVICE_URL = "http://15.236.232.37:8000";
+    private ExecutorService callbackExecutor;
 
     @BeforeEach
     void setUp() {
-        ReflectionTestUtils.setField(aiService, "restTemplate", restTemplate);
-        ReflectionTestUtils.setField(aiService, "aiServiceUrl", AI_SERVICE_URL);
+        callbackExecutor = Executors.newSingleThreadExecutor(task -> new Thread(task, "ai-callback"));
+        ReflectionTestUtils.setField(aiService, "callbackExecutor", callbackExecutor);
+        ReflectionTestUtils.setField(aiService, "sendBudgetMs", 20_000L);
+        ReflectionTestUtils.setField(aiService, "msPerToken", 50L);
+        ReflectionTestUtils.setField(aiService, "minTokens", 32);
+        ReflectionTestUtils.setField(aiService, "reserveMs", 500L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callbackExecutor.shutdownNow();
     }
 
     @Test
     @DisplayName("getAiResponse - réponse réussie")
     void getAiResponse_WhenSuccessful_ShouldReturnResponse() {
-        Map<String, Object> responseBody = new HashMap<>();
-        responseBody.put("response", "Bonjour!");
-        ResponseEntity<Map> response = new ResponseEntity<>(responseBody, HttpStatus.OK);
-
-        when(restTemplate.postForEntity(eq(AI_SERVICE_URL + "/chat"), any(HttpEntity.class), eq(Map.class)))
-                .thenReturn(response);
+        when(aiClient.chat(request("Salut"))).thenReturn(CompletableFuture.completedFuture("Bonjour!"));
 
         String result = aiService.getAiResponse("Salut");
 
@@ -58,36 +107,61 @@ class AiServiceTest {
     }
 
     @Test
-    @DisplayName("getAiResponse - erreur serveur -> message d'erreur")
-    void getAiResponse_WhenServerError_ShouldReturnErrorMessage() {
-        ResponseEntity<Map> response = new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
-
-        when(restTemplate.postForEntity(eq(AI_SERVICE_URL + "/chat"), any(HttpEntity.class), eq(Map.class)))
-                .thenReturn(response);
+    @DisplayName("getAiResponse - réponse vide -> message d'indisponibilité")
+    void getAiResponse_WhenEmptyResponse_ShouldReturnUnavailableMessage() {
+        when(aiClient.chat(request("Salut"))).thenReturn(CompletableFuture.failedFuture(new AiEmptyResponseException()));
 
         String result = aiService.getAiResponse("Salut");
 
-        assertThat(result).contains("désolé");
+        assertThat(result).contains("désolé").isEqualTo(AiService.UNAVAILABLE_REPLY);
     }
 
     @Test
     @DisplayName("getAiResponse - exception réseau -> message d'erreur")
     void getAiResponse_WhenNetworkError_ShouldReturnErrorMessage() {
-        when(restTemplate.postForEntity(eq(AI_SERVICE_URL + "/chat"), any(HttpEntity.class), eq(Map.class)))
-                .thenThrow(new RestClientException("Connection refused"));
+        when(aiClient.chat(request("Salut"))).thenReturn(CompletableFuture.failedFuture(
+                new WebClientRequestException(new ConnectException("Connection refused"),
+                        HttpMethod.POST, URI.create("http://localhost:8000/chat"), new HttpHeaders())));
 
         String result = aiService.getAiResponse("Salut");
 
         assertThat(result).contains("erreur");
     }
 
+    @Test
+    @DisplayName("getAiResponse - délai dépassé -> message d'erreur")
+    void getAiResponse_WhenDeadlineExceeded_ShouldReturnErrorMessage() {
+        when(aiClient.chat(request("Salut"))).thenReturn(CompletableFuture.failedFuture(new TimeoutException("Did not observe any item")));
+
+        String result = aiService.getAiResponse("Salut");
+
+        assertThat(result).isEqualTo(AiService.ERROR_REPLY);
+    }
+
+    @Test
+    @DisplayName("getAiResponseAsync - réponse réussie")
+    void getAiResponseAsync_WhenSuccessful_ShouldCompleteWithResponse() {
+        when(aiClient.chat(request("Salut"))).thenReturn(CompletableFuture.completedFuture("Bonjour!"));
+
+        String result = aiService.getAiResponseAsync("Salut").join();
+
+        assertThat(result).isEqualTo("Bonjour!");
+    }
+
+    @Test
+    @DisplayName("streamAiResponse - délègue au client IA")
+    void streamAiResponse_ShouldEmitClientTokens() {
+        when(aiClient.chatStream(request("Salut"))).thenReturn(Flux.just("Je suis ", "là."));
+
+        List<String> tokens = aiService.streamAiResponse("Salut").collectList().block();
+
+        assertThat(tokens).containsExactly("Je suis ", "là.");
+    }
+
     @Test
     @DisplayName("isAiServiceAvailable - service disponible")
     void isAiServiceAvailable_WhenAvailable_ShouldReturnTrue() {
-        ResponseEntity<Map> response = new ResponseEntity<>(new HashMap<>(), HttpStatus.OK);
-
-        when(restTemplate.getForEntity(eq(AI_SERVICE_URL + "/health"), eq(Map.class)))
-                .thenReturn(response);
+        when(healthProber.isAvailable()).thenReturn(true);
 
         boolean result = aiService.isAiServiceAvailable();
 
@@ -97,11 +171,209 @@ class AiServiceTest {
     @Test
     @DisplayName("isAiServiceAvailable - service indisponible")
     void isAiServiceAvailable_WhenUnavailable_ShouldReturnFalse() {
-        when(restTemplate.getForEntity(eq(AI_SERVICE_URL + "/health"), eq(Map.class)))
-                .thenThrow(new RestClientException("Connection refused"));
+        when(healthProber.isAvailable()).thenReturn(false);
 
         boolean result = aiService.isAiServiceAvailable();
 
         assertThat(result).isFalse();
     }
+
+    @Test
+    @DisplayName("getAiResponse - prompt en cache -> pas d'appel au modèle")
+    void getAiResponse_WhenCached_ShouldNotCallClient() {
+        when(responseCache.get(AiPromptKey.of("Bonjour"))).thenReturn("Bonjour, comment allez-vous ?");
+
+        String result = aiService.getAiResponse("  BONJOUR ! ");
+
+        assertThat(result).isEqualTo("Bonjour, comment allez-vous ?");
+        verify(aiClient, never()).chat(any(AiRequest.class));
+    }
+
+    @Test
+    @DisplayName("getAiResponse - réponse réussie -> mise en cache")
+    void getAiResponse_WhenSuccessful_ShouldCacheReply() {
+        when(aiClient.chat(request("Salut"))).thenReturn(CompletableFuture.completedFuture("Bonjour!"));
+
+        aiService.getAiResponse("Salut");
+
+        verify(responseCache).put(AiPromptKey.of("Salut"), "Bonjour!");
+    }
+
+    @Test
+    @DisplayName("getAiResponse - erreur -> réponse de repli non mise en cache")
+    void getAiResponse_WhenError_ShouldNotCacheFallback() {
+        when(aiClient.chat(request("Salut"))).thenReturn(CompletableFuture.failedFuture(new TimeoutException()));
+
+        aiService.getAiResponse("Salut");
+
+        verify(responseCache, never()).put(any(), anyString());
+    }
+
+    @Test
+    @DisplayName("streamAiResponse - réponse complète mise en cache")
+    void streamAiResponse_WhenCompleted_ShouldCacheFullReply() {
+        when(aiClient.chatStream(request("Salut"))).thenReturn(Flux.just("Je suis ", "là."));
+
+        aiService.streamAiResponse("Salut").blockLast();
+
+        verify(responseCache).put(AiPromptKey.of("Salut"), "Je suis là.");
+    }
+
+    @Test
+    @DisplayName("getAiResponseAsync - prompts identiques concurrents -> un seul appel au modèle")
+    void getAiResponseAsync_ConcurrentIdenticalPrompts_ShouldCallClientOnce() throws Exception {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        when(aiClient.chat(any(AiRequest.class))).thenReturn(upstream);
+        int callers = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<CompletableFuture<String>>> submitted = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                String message = i % 2 == 0 ? "Je suis stressé" : "  je suis STRESSÉ ! ";
+                submitted.add(pool.submit(() -> {
+                    start.await();
+                    return aiService.getAiResponseAsync(message);
+                }));
+            }
+            start.countDown();
+            List<CompletableFuture<String>> replies = new ArrayList<>();
+            for (Future<CompletableFuture<String>> future : submitted) {
+                replies.add(future.get(5, TimeUnit.SECONDS));
+            }
+
+            upstream.complete("Respirons ensemble.");
+
+            verify(aiClient, times(1)).chat(any(AiRequest.class));
+            verify(responseCache, times(1)).put(AiPromptKey.of("je suis stressé"), "Respirons ensemble.");
+            assertThat(replies).allSatisfy(reply -> assertThat(reply.join()).isEqualTo("Respirons ensemble."));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("getAiResponse - batching activé -> passe par le dispatcher")
+    void getAiResponse_WhenBatchingEnabled_ShouldUseDispatcher() {
+        when(batchDispatcher.isEnabled()).thenReturn(true);
+        when(batchDispatcher.submit("Salut")).thenReturn(CompletableFuture.completedFuture("Bonjour!"));
+
+        String result = aiService.getAiResponse("Salut");
+
+        assertThat(result).isEqualTo("Bonjour!");
+        verify(aiClient, never()).chat(any(AiRequest.class));
+    }
+
+    @Test
+    @DisplayName("getAiResponse - avec contexte -> ni cache ni mise en commun")
+    void getAiResponse_WithContext_ShouldBypassCache() {
+        when(aiClient.chat(argThat((AiRequest r) -> r != null && "User: Je dors mal.".equals(r.context()))))
+                .thenReturn(CompletableFuture.completedFuture("C'est récent."));
+
+        String result = aiService.getAiResponse(2L, "Depuis une semaine", "User: Je dors mal.", Deadline.none());
+
+        assertThat(result).isEqualTo("C'est récent.");
+        verifyNoInteractions(responseCache);
+        verify(scheduler).acquire(eq(2L), any());
+    }
+
+    @Test
+    @DisplayName("tokenBudget - max_tokens réduit quand le temps restant diminue")
+    void tokenBudget_ShouldShrinkWithRemainingTime() {
+        assertThat(aiService.tokenBudget(Deadline.none())).isEqualTo(AiClient.MAX_TOKENS);
+        assertThat(aiService.tokenBudget(Deadline.after(Duration.ofSeconds(20)))).isEqualTo(AiClient.MAX_TOKENS);
+        assertThat(aiService.tokenBudget(Deadline.after(Duration.ofSeconds(5)))).isEqualTo(50);
+        assertThat(aiService.tokenBudget(Deadline.after(Duration.ofMillis(600)))).isEqualTo(50);
+        assertThat(aiService.tokenBudget(Deadline.after(Duration.ofMillis(400)))).isZero();
+    }
+
+    @Test
+    @DisplayName("getAiResponseAsync - délai court -> max_tokens et délai transmis au client")
+    void getAiResponseAsync_WithDeadline_ShouldPassBudgetToClient() {
+        Deadline deadline = Deadline.after(Duration.ofSeconds(8));
+        when(aiClient.chat(any(AiRequest.class))).thenReturn(CompletableFuture.completedFuture("Bonjour!"));
+
+        aiService.getAiResponseAsync(null, "Salut", null, deadline).join();
+
+        verify(aiClient).chat(argThat((AiRequest r) -> r.maxTokens() == 100 && r.deadline() == deadline));
+        verify(responseCache).put(AiPromptKey.of("Salut", 100, AiClient.TEMPERATURE), "Bonjour!");
+    }
+
+    @Test
+    @DisplayName("getAiResponseAsync - délai dépassé -> réponse dégradée sans attendre le modèle")
+    void getAiResponseAsync_WhenDeadlinePasses_ShouldReturnDeadlineReply() {
+        when(aiClient.chat(any(AiRequest.class))).thenReturn(new CompletableFuture<>());
+
+        AtomicReference<String> thread = new AtomicReference<>();
+        String result = aiService.getAiResponseAsync(null, "Salut", null, Deadline.after(Duration.ofMillis(700)))
+                .whenComplete((reply, error) -> thread.set(Thread.currentThread().getName()))
+                .orTimeout(5, TimeUnit.SECONDS)
+                .join();
+
+        assertThat(result).isEqualTo(AiService.DEADLINE_REPLY);
+        // Handed over by the JDK's timeout thread, which must never run what the caller chains
+        assertThat(thread.get()).isEqualTo("ai-callback");
+        verify(responseCache, never()).put(any(), anyString());
+        Timer timer = meterRegistry.find("ai.reply.duration").tag("outcome", "deadline").timer();
+        assertThat(timer).isNotNull();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("getAiResponseAsync - plus de temps pour un appel -> réponse dégradée immédiate")
+    void getAiResponseAsync_WhenNoTimeLeft_ShouldNotCallModel() {
+        String result = aiService.getAiResponseAsync(null, "Salut", null, Deadline.after(Duration.ZERO)).join();
+
+        assertThat(result).isEqualTo(AiService.DEADLINE_REPLY);
+        verifyNoInteractions(aiClient);
+    }
+
+    @Test
+    @DisplayName("streamAiResponse - délai dépassé -> tokens reçus conservés, réponse partielle non mise en cache")
+    void streamAiResponse_WhenDeadlinePasses_ShouldCompleteWithPartialReply() {
+        when(aiClient.chatStream(any(AiRequest.class)))
+                .thenReturn(Flux.concat(Flux.just("Je suis "), Flux.never()));
+
+        List<String> tokens = aiService.streamAiResponse(null, "Salut", null, Deadline.after(Duration.ofMillis(700)))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(tokens).containsExactly("Je suis ");
+        verify(responseCache, never()).put(any(), anyString());
+    }
+
+    @Test
+    @DisplayName("getAiResponse - réponses mesurées par issue, avec l'objectif de latence")
+    void getAiResponse_ShouldRecordLatencyAgainstSlo() {
+        when(aiClient.chat(request("Salut"))).thenReturn(CompletableFuture.completedFuture("Bonjour!"));
+
+        aiService.getAiResponse("Salut");
+
+        Timer timer = meterRegistry.find("ai.reply.duration").tag("outcome", "model").timer();
+        assertThat(timer).isNotNull();
+        assertThat(timer.count()).isEqualTo(1);
+        assertThat(timer.takeSnapshot().histogramCounts())
+                .anySatisfy(bucket -> assertThat(bucket.bucket(TimeUnit.MILLISECONDS)).isEqualTo(20_000.0));
+    }
+
+    @Test
+    @DisplayName("getAiResponse et streamAiResponse - circuit ouvert -> indisponibilité sans appel au modèle")
+    void getAiResponse_WhenCircuitOpen_ShouldFailFastWithoutCallingModel() {
+        doReturn(false).when(circuitBreaker).isCallPermitted();
+
+        String reply = aiService.getAiResponse(7L, "Salut", null, Deadline.none());
+        List<String> tokens = aiService.streamAiResponse(7L, "Salut", "contexte", Deadline.none())
+                .collectList()
+                .block(Duration.ofSeconds(1));
+
+        assertThat(reply).isEqualTo(AiService.UNAVAILABLE_REPLY);
+        assertThat(tokens).isEmpty();
+        verifyNoInteractions(aiClient);
+        verify(scheduler, never()).acquire(any(), any());
+        assertThat(meterRegistry.get("ai.reply.duration").tag("outcome", "circuit_open").timer().count()).isEqualTo(2);
+    }
+
+    private static AiRequest request(String message) {
+        return argThat(r -> r != null && message.equals(r.message()));
+    }
 }
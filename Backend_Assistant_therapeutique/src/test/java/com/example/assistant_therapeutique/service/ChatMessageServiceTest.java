@@ -1,11 +1,11 @@
 package com.example.assistant_therapeutique.service;
 
+import com.example.assistant_therapeutique.dto.ChatMessagePageDTO;
 import com.example.assistant_therapeutique.model.ChatMessage;
 import com.example.assistant_therapeutique.model.Conversation;
 import com.example.assistant_therapeutique.model.User;
 import com.example.assistant_therapeutique.repository.ChatMessageRepository;
 import com.example.assistant_therapeutique.repository.ConversationRepository;
-import com.example.assistant_therapeutique.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -13,6 +13,9 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
@@ -26,7 +29,7 @@ import static org.mockito.Mockito.*;
 
 /**
  * Tests unitaires pour ChatMessageService
- * Couvre : envoi message, gestion erreurs (sender/conversation), récupération
+ * Couvre : envoi message par références, gestion erreurs (sender/conversation), récupération, pages par curseur, aperçu, mode write-behind
  */
 @ExtendWith(MockitoExtension.class)
 class ChatMessageServiceTest {
@@ -35,49 +38,101 @@ class ChatMessageServiceTest {
     private ChatMessageRepository chatMessageRepository;
 
     @Mock
-    private UserRepository userRepository;
+    private ConversationRepository conversationRepository;
 
     @Mock
-    private ConversationRepository conversationRepository;
+    private EntityReferenceCache entityReferenceCache;
+
+    @Mock
+    private ConversationContextService conversationContextService;
+
+    @Mock
+    private ChatMessageWriteBehind writeBehind;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     @InjectMocks
     private ChatMessageService chatMessageService;
 
-    private User testUser;
-    private Conversation testConversation;
-
     @BeforeEach
     void setUp() {
-        testUser = new User();
-        testUser.setId(1L);
-        testUser.setUsername("testuser");
-
-        testConversation = new Conversation();
-        testConversation.setId(1L);
-        testConversation.setTitre("Test Conversation");
-        testConversation.setUser(testUser);
+        ReflectionTestUtils.setField(chatMessageService, "defaultPageSize", 2);
+        ReflectionTestUtils.setField(chatMessageService, "maxPageSize", 3);
     }
 
     @Test
     @DisplayName("saveMessage - doit créer un message avec date auto")
     void saveMessage_ShouldCreateMessageWithAutoDate() {
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(conversationRepository.findById(1L)).thenReturn(Optional.of(testConversation));
+        when(entityReferenceCache.sender(1L)).thenReturn(sender(1L));
+        when(entityReferenceCache.conversationOwnerId(1L)).thenReturn(1L);
         when(chatMessageRepository.save(any(ChatMessage.class))).thenAnswer(inv -> inv.getArgument(0));
 
         LocalDateTime before = LocalDateTime.now();
         ChatMessage saved = chatMessageService.saveMessage(1L, 1L, "Hello!");
 
         assertThat(saved.getContent()).isEqualTo("Hello!");
-        assertThat(saved.getSender()).isEqualTo(testUser);
-        assertThat(saved.getConversation()).isEqualTo(testConversation);
+        assertThat(saved.getSender().getId()).isEqualTo(1L);
+        assertThat(saved.getSender().getUsername()).isEqualTo("user1");
+        assertThat(saved.getConversation().getId()).isEqualTo(1L);
         assertThat(saved.getCreatedAt()).isAfterOrEqualTo(before);
+        verify(conversationRepository).recordMessage(1L, saved.getCreatedAt(), "Hello!");
+        verify(conversationContextService).onMessageSaved(saved);
+    }
+
+    @Test
+    @DisplayName("saveMessage - mode write-behind -> écrit dans le journal, aucun INSERT")
+    void saveMessage_WhenWriteBehind_ShouldAppendToLogWithoutInsert() {
+        when(entityReferenceCache.sender(1L)).thenReturn(sender(1L));
+        when(entityReferenceCache.conversationOwnerId(1L)).thenReturn(1L);
+        when(writeBehind.isEnabled()).thenReturn(true);
+        when(writeBehind.append(any(ChatMessage.class))).thenAnswer(inv -> {
+            ChatMessage message = inv.getArgument(0);
+            message.setId(42L);
+            return message;
+        });
+
+        ChatMessage saved = chatMessageService.saveMessage(1L, 1L, "Hello!");
+
+        assertThat(saved.getId()).isEqualTo(42L);
+        verify(chatMessageRepository, never()).save(any());
+        verify(conversationRepository, never()).recordMessage(any(), any(), any());
+        verify(conversationContextService).onMessageSaved(saved);
+    }
+
+    @Test
+    @DisplayName("saveMessageNow - mode write-behind -> INSERT direct, rien dans le journal")
+    void saveMessageNow_WhenWriteBehind_ShouldInsertWithoutLog() {
+        when(entityReferenceCache.sender(1L)).thenReturn(sender(1L));
+        when(entityReferenceCache.conversationOwnerId(1L)).thenReturn(1L);
+        lenient().when(writeBehind.isEnabled()).thenReturn(true);
+        when(chatMessageRepository.save(any(ChatMessage.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        ChatMessage saved = chatMessageService.saveMessageNow(1L, 1L, "Hello!");
+
+        verify(writeBehind, never()).append(any());
+        verify(chatMessageRepository).save(saved);
+        verify(conversationRepository).recordMessage(1L, saved.getCreatedAt(), "Hello!");
+        verify(conversationContextService).onMessageSaved(saved);
+    }
+
+    @Test
+    @DisplayName("preview - une ligne, coupée avec une ellipse au-delà de PREVIEW_LENGTH")
+    void preview_ShouldBeOneLineAndTruncated() {
+        assertThat(ChatMessageService.preview("  Je dors\n mal  ")).isEqualTo("Je dors mal");
+        String longMessage = "a".repeat(Conversation.PREVIEW_LENGTH - 1) + "\uD83D\uDE00 fin";
+
+        String preview = ChatMessageService.preview(longMessage);
+
+        // The emoji straddling the limit is dropped whole, not cut in half
+        assertThat(preview).isEqualTo("a".repeat(Conversation.PREVIEW_LENGTH - 1) + "…");
+        assertThat(ChatMessageService.preview(null)).isNull();
     }
 
     @Test
     @DisplayName("saveMessage - sender inexistant -> exception")
     void saveMessage_WhenSenderNotFound_ShouldThrowException() {
-        when(userRepository.findById(999L)).thenReturn(Optional.empty());
+        when(entityReferenceCache.sender(999L)).thenReturn(null);
 
         assertThatThrownBy(() -> chatMessageService.saveMessage(999L, 1L, "Hello!"))
                 .isInstanceOf(RuntimeException.class)
@@ -87,12 +142,13 @@ class ChatMessageServiceTest {
     @Test
     @DisplayName("saveMessage - conversation inexistante -> exception")
     void saveMessage_WhenConversationNotFound_ShouldThrowException() {
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(conversationRepository.findById(999L)).thenReturn(Optional.empty());
+        when(entityReferenceCache.sender(1L)).thenReturn(sender(1L));
+        when(entityReferenceCache.conversationOwnerId(999L)).thenReturn(null);
 
         assertThatThrownBy(() -> chatMessageService.saveMessage(1L, 999L, "Hello!"))
                 .isInstanceOf(RuntimeException.class)
                 .hasMessageContaining("Conversation not found");
+        verify(chatMessageRepository, never()).save(any());
     }
 
     @Test
@@ -107,4 +163,95 @@ class ChatMessageServiceTest {
 
         assertThat(messages).hasSize(1);
     }
+
+    @Test
+    @DisplayName("getMessagePage - sans curseur -> page la plus récente, du plus ancien au plus récent")
+    void getMessagePage_WithoutCursor_ShouldReturnNewestPageOldestFirst() {
+        when(chatMessageRepository.findByConversationIdOrderByCreatedAtDescIdDesc(1L, PageRequest.of(0, 3)))
+                .thenReturn(Arrays.asList(message(30L), message(20L), message(10L)));
+
+        ChatMessagePageDTO page = chatMessageService.getMessagePage(1L, null, null, null);
+
+        assertThat(page.getMessages()).extracting(ChatMessage::getId).containsExactly(20L, 30L);
+        assertThat(page.getBefore()).isEqualTo(20L);
+        assertThat(page.getAfter()).isEqualTo(30L);
+        assertThat(page.isHasOlder()).isTrue();
+        assertThat(page.isHasNewer()).isFalse();
+    }
+
+    @Test
+    @DisplayName("getMessagePage - after -> messages suivants, limit plafonnée à max-page-size")
+    void getMessagePage_AfterCursor_ShouldReturnNewerMessagesWithCappedLimit() {
+        LocalDateTime createdAt = LocalDateTime.now();
+        when(chatMessageRepository.findCreatedAtByIdAndConversationId(10L, 1L)).thenReturn(Optional.of(createdAt));
+        when(chatMessageRepository.findPageAfter(1L, createdAt, 10L, PageRequest.of(0, 4)))
+                .thenReturn(Arrays.asList(message(20L), message(30L)));
+
+        ChatMessagePageDTO page = chatMessageService.getMessagePage(1L, null, 10L, 1000);
+
+        assertThat(page.getMessages()).extracting(ChatMessage::getId).containsExactly(20L, 30L);
+        assertThat(page.isHasOlder()).isTrue();
+        assertThat(page.isHasNewer()).isFalse();
+    }
+
+    @Test
+    @DisplayName("getMessagePage - before vide -> curseur conservé")
+    void getMessagePage_BeforeFirstMessage_ShouldKeepCursor() {
+        LocalDateTime createdAt = LocalDateTime.now();
+        when(chatMessageRepository.findCreatedAtByIdAndConversationId(10L, 1L)).thenReturn(Optional.of(createdAt));
+        when(chatMessageRepository.findPageBefore(1L, createdAt, 10L, PageRequest.of(0, 3))).thenReturn(List.of());
+
+        ChatMessagePageDTO page = chatMessageService.getMessagePage(1L, 10L, null, null);
+
+        assertThat(page.getMessages()).isEmpty();
+        assertThat(page.getBefore()).isEqualTo(10L);
+        assertThat(page.isHasOlder()).isFalse();
+        assertThat(page.isHasNewer()).isTrue();
+    }
+
+    @Test
+    @DisplayName("getMessagePage - curseur hors conversation ou before et after -> exception")
+    void getMessagePage_WithInvalidCursor_ShouldThrowException() {
+        when(chatMessageRepository.findCreatedAtByIdAndConversationId(99L, 1L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> chatMessageService.getMessagePage(1L, 99L, null, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("not found in conversation 1");
+        assertThatThrownBy(() -> chatMessageService.getMessagePage(1L, 10L, 20L, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("getMessagePage - messages pas encore en base fusionnés à la page la plus récente")
+    void getMessagePage_WithPendingMessages_ShouldMergeThemIntoNewestPage() {
+        LocalDateTime at = LocalDateTime.of(2025, 3, 1, 9, 0);
+        when(writeBehind.pendingMessages(1L)).thenReturn(List.of(message(40L, at.plusMinutes(4))));
+        when(chatMessageRepository.findByConversationIdOrderByCreatedAtDescIdDesc(1L, PageRequest.of(0, 3)))
+                .thenReturn(Arrays.asList(message(30L, at.plusMinutes(3)), message(20L, at.plusMinutes(2)),
+                        message(10L, at.plusMinutes(1))));
+
+        ChatMessagePageDTO page = chatMessageService.getMessagePage(1L, null, null, null);
+
+        assertThat(page.getMessages()).extracting(ChatMessage::getId).containsExactly(30L, 40L);
+        assertThat(page.isHasOlder()).isTrue();
+    }
+
+    private static ChatMessage message(Long id, LocalDateTime createdAt) {
+        ChatMessage message = message(id);
+        message.setCreatedAt(createdAt);
+        return message;
+    }
+
+    private static ChatMessage message(Long id) {
+        ChatMessage message = new ChatMessage();
+        message.setId(id);
+        return message;
+    }
+
+    private static User sender(Long id) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        return user;
+    }
 }
@@ -0,0 +1,134 @@
+package com.example.assistant_therapeutique.service;
+
+import com.example.assistant_therapeutique.model.ChatMessage;
+import com.example.assistant_therapeutique.model.Conversation;
+import com.example.assistant_therapeutique.model.User;
+import com.example.assistant_therapeutique.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour ConversationContextService
+ * Couvre : construction unique de la fenêtre, mise à jour incrémentale, éviction, désactivation
+ */
+@ExtendWith(MockitoExtension.class)
+class ConversationContextServiceTest {
+
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+
+    @Mock
+    private ChatMessageWriteBehind writeBehind;
+
+    @InjectMocks
+    private ConversationContextService conversationContextService;
+
+    private final User patient = user(2L);
+    private final User assistant = user(1L);
+    private final Conversation conversation = new Conversation();
+
+    @BeforeEach
+    void setUp() {
+        conversation.setId(7L);
+        ReflectionTestUtils.setField(conversationContextService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(conversationContextService, "assistantUserId", 1L);
+        ReflectionTestUtils.setField(conversationContextService, "enabled", true);
+        ReflectionTestUtils.setField(conversationContextService, "maxTurns", 4);
+        ReflectionTestUtils.setField(conversationContextService, "maxTokens", 600);
+        ReflectionTestUtils.setField(conversationContextService, "summaryMaxTokens", 150);
+        ReflectionTestUtils.setField(conversationContextService, "rebuildMessages", 32);
+        ReflectionTestUtils.setField(conversationContextService, "maxConversations", 100L);
+        ReflectionTestUtils.setField(conversationContextService, "idleMinutes", 60L);
+        ReflectionTestUtils.invokeMethod(conversationContextService, "init");
+    }
+
+    @Test
+    @DisplayName("promptContext - fenêtre construite une seule fois depuis les derniers messages")
+    void promptContext_ShouldLoadLatestMessagesOnce() {
+        // Repository returns newest first
+        when(chatMessageRepository.findByConversationIdOrderByCreatedAtDescIdDesc(eq(7L), any(Pageable.class)))
+                .thenReturn(List.of(message(2L, assistant, "Depuis quand ?"), message(1L, patient, "Je dors mal.")));
+
+        String first = conversationContextService.promptContext(7L);
+        String second = conversationContextService.promptContext(7L);
+
+        assertThat(first).isEqualTo("User: Je dors mal.\nAssistant: Depuis quand ?").isEqualTo(second);
+        verify(chatMessageRepository, times(1)).findByConversationIdOrderByCreatedAtDescIdDesc(eq(7L), any(Pageable.class));
+        verify(chatMessageRepository, never()).findByConversationId(any());
+    }
+
+    @Test
+    @DisplayName("onMessageSaved - fenêtre en cache mise à jour sans requête")
+    void onMessageSaved_ShouldAppendToCachedWindow() {
+        when(chatMessageRepository.findByConversationIdOrderByCreatedAtDescIdDesc(eq(7L), any(Pageable.class)))
+                .thenReturn(List.of(message(1L, patient, "Je dors mal.")));
+        conversationContextService.promptContext(7L);
+
+        conversationContextService.onMessageSaved(message(2L, assistant, "Depuis quand ?"));
+        conversationContextService.onMessageSaved(message(3L, patient, "Une semaine."));
+
+        assertThat(conversationContextService.promptContext(7L))
+                .isEqualTo("User: Je dors mal.\nAssistant: Depuis quand ?\nUser: Une semaine.");
+        verify(chatMessageRepository, times(1)).findByConversationIdOrderByCreatedAtDescIdDesc(eq(7L), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("onMessageSaved - fenêtre absente du cache -> rien à faire")
+    void onMessageSaved_WhenWindowNotCached_ShouldNotQuery() {
+        conversationContextService.onMessageSaved(message(1L, patient, "Je dors mal."));
+
+        verifyNoInteractions(chatMessageRepository);
+    }
+
+    @Test
+    @DisplayName("evict - fenêtre reconstruite au prochain appel")
+    void evict_ShouldForceRebuild() {
+        when(chatMessageRepository.findByConversationIdOrderByCreatedAtDescIdDesc(eq(7L), any(Pageable.class))).thenReturn(List.of());
+        conversationContextService.promptContext(7L);
+
+        conversationContextService.evict(7L);
+        conversationContextService.promptContext(7L);
+
+        verify(chatMessageRepository, times(2)).findByConversationIdOrderByCreatedAtDescIdDesc(eq(7L), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("promptContext - désactivé ou nouvelle conversation -> contexte vide")
+    void promptContext_WhenDisabledOrNoConversation_ShouldBeEmpty() {
+        assertThat(conversationContextService.promptContext(null)).isEmpty();
+
+        ReflectionTestUtils.setField(conversationContextService, "enabled", false);
+        assertThat(conversationContextService.promptContext(7L)).isEmpty();
+        verifyNoInteractions(chatMessageRepository);
+    }
+
+    private ChatMessage message(Long id, User sender, String content) {
+        ChatMessage message = new ChatMessage();
+        message.setId(id);
+        message.setSender(sender);
+        message.setConversation(conversation);
+        message.setContent(content);
+        return message;
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
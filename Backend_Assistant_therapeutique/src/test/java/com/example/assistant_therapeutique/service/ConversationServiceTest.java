@@ -1,7 +1,11 @@
 package com.example.assistant_therapeutique.service;
 
+import com.example.assistant_therapeutique.dto.ConversationSummaryDTO;
+import com.example.assistant_therapeutique.dto.ConversationSummaryPageDTO;
+import com.example.assistant_therapeutique.model.ChatMessage;
 import com.example.assistant_therapeutique.model.Conversation;
 import com.example.assistant_therapeutique.model.User;
+import com.example.assistant_therapeutique.repository.ChatMessageRepository;
 import com.example.assistant_therapeutique.repository.ConversationRepository;
 import com.example.assistant_therapeutique.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,6 +15,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
@@ -24,7 +30,7 @@ import static org.mockito.Mockito.*;
 
 /**
  * Tests unitaires pour ConversationService
- * Couvre : création, mise à jour titre, CRUD, gestion erreurs
+ * Couvre : création, mise à jour titre, CRUD, appartenance, résumés paginés, gestion erreurs
  */
 @ExtendWith(MockitoExtension.class)
 class ConversationServiceTest {
@@ -35,6 +41,18 @@ class ConversationServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private ConversationContextService conversationContextService;
+
+    @Mock
+    private EntityReferenceCache entityReferenceCache;
+
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+
+    @Mock
+    private ChatMessageWriteBehind writeBehind;
+
     @InjectMocks
     private ConversationService conversationService;
 
@@ -52,6 +70,9 @@ class ConversationServiceTest {
         testConversation.setTitre("Test Conversation");
         testConversation.setUser(testUser);
         testConversation.setCreatedAt(LocalDateTime.now());
+
+        ReflectionTestUtils.setField(conversationService, "defaultPageSize", 2);
+        ReflectionTestUtils.setField(conversationService, "maxPageSize", 5);
     }
 
     @Test
@@ -66,6 +87,7 @@ class ConversationServiceTest {
         assertThat(created.getTitre()).isEqualTo("Nouvelle conv");
         assertThat(created.getUser()).isEqualTo(testUser);
         assertThat(created.getCreatedAt()).isAfterOrEqualTo(before);
+        verify(entityReferenceCache).onConversationCreated(created);
     }
 
     @Test
@@ -127,5 +149,85 @@ class ConversationServiceTest {
         conversationService.deleteConversation(1L);
 
         verify(conversationRepository).deleteById(1L);
+        verify(conversationContextService).evict(1L);
+        verify(entityReferenceCache).onConversationDeleted(1L);
+    }
+
+    @Test
+    @DisplayName("requireConversationOf - conversation de l'utilisateur -> acceptée sans chargement")
+    void requireConversationOf_WhenOwnedByUser_ShouldPass() {
+        when(entityReferenceCache.conversationOwnerId(1L)).thenReturn(1L);
+
+        conversationService.requireConversationOf(1L, 1L);
+
+        verifyNoInteractions(conversationRepository);
+    }
+
+    @Test
+    @DisplayName("requireConversationOf - conversation d'un autre utilisateur ou inexistante -> exception")
+    void requireConversationOf_WhenOtherOwnerOrMissing_ShouldThrowException() {
+        when(entityReferenceCache.conversationOwnerId(1L)).thenReturn(2L);
+        when(entityReferenceCache.conversationOwnerId(999L)).thenReturn(null);
+
+        assertThatThrownBy(() -> conversationService.requireConversationOf(1L, 1L))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Conversation not found");
+        assertThatThrownBy(() -> conversationService.requireConversationOf(999L, 1L))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Conversation not found");
+    }
+
+    @Test
+    @DisplayName("getConversationSummaries - page pleine -> curseur de la page suivante")
+    void getConversationSummaries_WhenMoreConversations_ShouldReturnNextCursor() {
+        LocalDateTime now = LocalDateTime.of(2025, 3, 1, 9, 30, 15, 123_456_000);
+        when(conversationRepository.findSummaries(1L, PageRequest.of(0, 3))).thenReturn(Arrays.asList(
+                summary(30L, now), summary(20L, now.minusHours(1)), summary(10L, now.minusHours(2))));
+        ConversationSummaryPageDTO first = conversationService.getConversationSummaries(1L, null, null);
+
+        assertThat(first.getConversations()).extracting(ConversationSummaryDTO::getId).containsExactly(30L, 20L);
+        assertThat(first.getNext()).isEqualTo("2025-03-01T08:30:15.123456_20");
+
+        when(conversationRepository.findSummariesBefore(1L, now.minusHours(1), 20L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(summary(10L, now.minusHours(2))));
+        ConversationSummaryPageDTO second = conversationService.getConversationSummaries(1L, first.getNext(), null);
+
+        assertThat(second.getConversations()).extracting(ConversationSummaryDTO::getId).containsExactly(10L);
+        assertThat(second.getNext()).isNull();
+    }
+
+    @Test
+    @DisplayName("getConversationSummaries - curseur invalide -> exception")
+    void getConversationSummaries_WithInvalidCursor_ShouldThrowException() {
+        assertThatThrownBy(() -> conversationService.getConversationSummaries(1L, "hier", null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Invalid cursor");
+        assertThatThrownBy(() -> conversationService.getConversationSummaries(1L, "2025-03-01T09:30_x", null))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(conversationRepository);
+    }
+
+    @Test
+    @DisplayName("backfillSummaries - conversations antérieures aux résumés -> compteurs remplis")
+    void backfillSummaries_ShouldFillSummaryOfOldConversations() {
+        ChatMessage last = new ChatMessage();
+        last.setContent("Depuis quand ?");
+        last.setCreatedAt(LocalDateTime.of(2025, 3, 1, 9, 30));
+        when(conversationRepository.findIdsWithoutSummary()).thenReturn(List.of(1L));
+        when(conversationRepository.findById(1L)).thenReturn(Optional.of(testConversation));
+        when(chatMessageRepository.findByConversationIdOrderByCreatedAtDescIdDesc(1L, PageRequest.of(0, 1)))
+                .thenReturn(List.of(last));
+        when(chatMessageRepository.countByConversationId(1L)).thenReturn(6L);
+
+        conversationService.backfillSummaries();
+
+        assertThat(testConversation.getMessageCount()).isEqualTo(6);
+        assertThat(testConversation.getLastActivityAt()).isEqualTo(last.getCreatedAt());
+        assertThat(testConversation.getLastMessagePreview()).isEqualTo("Depuis quand ?");
+        verify(conversationRepository).save(testConversation);
+    }
+
+    private static ConversationSummaryDTO summary(Long id, LocalDateTime lastActivityAt) {
+        return new ConversationSummaryDTO(id, "Conv " + id, lastActivityAt, lastActivityAt, 1, "Bonjour");
     }
 }
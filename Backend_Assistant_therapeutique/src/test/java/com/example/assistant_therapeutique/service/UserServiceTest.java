@@ -26,6 +26,9 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private EntityReferenceCache entityReferenceCache;
+
     @InjectMocks
     private UserService userService;
 
@@ -48,6 +51,7 @@ class UserServiceTest {
 
         assertThat(saved).isNotNull();
         assertThat(saved.getUsername()).isEqualTo("testuser");
+        verify(entityReferenceCache).onUserSaved(1L);
     }
 
     @Test
@@ -0,0 +1,146 @@
+package com.example.assistant_therapeutique.wal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests unitaires pour WriteAheadLog
+ * Couvre : écriture et relecture, rotation des segments, fin de segment tronquée ou corrompue,
+ * relecture à la réouverture, écritures groupées par fsync, fermeture
+ */
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("append puis rotate - le segment scellé contient les enregistrements dans l'ordre")
+    void appendThenRotate_ShouldSealSegmentWithRecordsInOrder() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(directory, "test", 16)) {
+            log.append(bytes("un")).join();
+            log.append(bytes("deux")).join();
+
+            List<Path> sealed = log.rotate();
+
+            assertThat(sealed).hasSize(1);
+            assertThat(strings(WriteAheadLog.read(sealed.get(0)))).containsExactly("un", "deux");
+            // Nothing written since: no new segment, nothing new to seal
+            assertThat(log.rotate()).isEqualTo(sealed);
+
+            log.delete(sealed);
+            assertThat(log.rotate()).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("read - s'arrête à un enregistrement tronqué ou corrompu")
+    void read_ShouldStopAtTornOrCorruptRecord() throws IOException {
+        Path segment;
+        try (WriteAheadLog log = WriteAheadLog.open(directory, "test", 16)) {
+            log.append(bytes("complet")).join();
+            log.append(bytes("coupé")).join();
+            segment = log.rotate().get(0);
+        }
+        byte[] content = Files.readAllBytes(segment);
+
+        // A crash in the middle of the second record
+        Files.write(segment, Arrays.copyOf(content, content.length - 3));
+        assertThat(strings(WriteAheadLog.read(segment))).containsExactly("complet");
+
+        // A flipped byte in the second record's payload
+        content[content.length - 1] ^= 1;
+        Files.write(segment, content);
+        assertThat(strings(WriteAheadLog.read(segment))).containsExactly("complet");
+    }
+
+    @Test
+    @DisplayName("open - les segments existants sont scellés et relus, les nouveaux vont dans un autre segment")
+    void open_ShouldTreatExistingSegmentsAsSealed() throws IOException {
+        WriteAheadLog crashed = WriteAheadLog.open(directory, "test", 16);
+        crashed.append(bytes("avant")).join();
+        // Not closed, as after a crash; a segment of another log in the same directory is ignored
+        Files.write(directory.resolve("other-000000000001.wal"), bytes("x"), StandardOpenOption.CREATE);
+
+        try (WriteAheadLog reopened = WriteAheadLog.open(directory, "test", 16)) {
+            reopened.append(bytes("après")).join();
+            List<Path> sealed = reopened.rotate();
+
+            assertThat(sealed).hasSize(2);
+            assertThat(strings(WriteAheadLog.read(sealed.get(0)))).containsExactly("avant");
+            assertThat(strings(WriteAheadLog.read(sealed.get(1)))).containsExactly("après");
+        } finally {
+            crashed.close();
+        }
+    }
+
+    @Test
+    @DisplayName("append concurrents - regroupés, moins de fsync que d'enregistrements")
+    void concurrentAppends_ShouldBeGroupedIntoFewerSyncs() throws Exception {
+        int writers = 32;
+        int perWriter = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try (WriteAheadLog log = WriteAheadLog.open(directory, "test", 256)) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<CompletableFuture<Void>> done = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                done.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    for (int i = 0; i < perWriter; i++) {
+                        log.append(bytes(writer + "-" + i)).join();
+                    }
+                }, executor));
+            }
+            start.countDown();
+            CompletableFuture.allOf(done.toArray(new CompletableFuture[0])).join();
+
+            List<byte[]> records = new ArrayList<>();
+            for (Path segment : log.rotate()) {
+                records.addAll(WriteAheadLog.read(segment));
+            }
+            assertThat(records).hasSize(writers * perWriter);
+            assertThat(log.syncCount()).isLessThan(writers * perWriter);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("close - les append suivants échouent")
+    void close_ShouldFailLaterAppends() throws IOException {
+        WriteAheadLog log = WriteAheadLog.open(directory, "test", 16);
+        log.close();
+
+        assertThatThrownBy(() -> log.append(bytes("trop tard")).join())
+                .hasCauseInstanceOf(IOException.class);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(List<byte[]> records) {
+        return records.stream().map(record -> new String(record, StandardCharsets.UTF_8)).toList();
+    }
+}
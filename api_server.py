@@ -1,7 +1,11 @@
 from fastapi import FastAPI, HTTPException
 from fastapi.middleware.cors import CORSMiddleware
+from fastapi.responses import StreamingResponse
 from pydantic import BaseModel
-from transformers import AutoTokenizer, AutoModelForCausalLM
+from transformers import AutoTokenizer, AutoModelForCausalLM, TextIteratorStreamer
+from threading import Thread
+import json
+from typing import List, Optional
 import torch
 import uvicorn
 
@@ -23,6 +27,8 @@ device = None
 
 class ChatRequest(BaseModel):
     message: str
+    # The conversation so far (recent turns and a summary of older ones), if any
+    context: Optional[str] = None
     max_tokens: int = 200
     temperature: float = 0.4
 
@@ -30,6 +36,15 @@ class ChatResponse(BaseModel):
     response: str
     status: str
 
+class BatchChatRequest(BaseModel):
+    messages: List[str]
+    max_tokens: int = 200
+    temperature: float = 0.4
+
+class BatchChatResponse(BaseModel):
+    responses: List[str]
+    status: str
+
 @app.on_event("startup")
 async def load_model():
     """Load the model when the server starts"""
@@ -60,17 +75,13 @@ async def root():
         "device": str(device) if device else "not loaded"
     }
 
-@app.post("/chat", response_model=ChatResponse)
-async def chat(request: ChatRequest):
-    """
-    Send a message to the therapeutic assistant and get a response
-    """
-    if model is None or tokenizer is None:
-        raise HTTPException(status_code=503, detail="Model not loaded")
-    
-    try:
-        # Format the prompt with constraints
-        prompt = f"""### Constraints:
+def build_prompt(message: str, context: Optional[str] = None) -> str:
+    """Format the prompt with constraints, and the conversation so far when given"""
+    history = f"""### Conversation so far:
+{context}
+
+""" if context else ""
+    return f"""### Constraints:
 - Respond in 2–3 sentences maximum
 - Be concise and calm
 - Give only the essential advice
@@ -78,11 +89,23 @@ async def chat(request: ChatRequest):
 - Be honest 
 - Don't lie to be nice
 
-### Instruction:
-{request.message}
+{history}### Instruction:
+{message}
 
 ### Response:
 """
+
+@app.post("/chat", response_model=ChatResponse)
+async def chat(request: ChatRequest):
+    """
+    Send a message to the therapeutic assistant and get a response
+    """
+    if model is None or tokenizer is None:
+        raise HTTPException(status_code=503, detail="Model not loaded")
+    
+    try:
+        # Format the prompt with constraints
+        prompt = build_prompt(request.message, request.context)
         
         # Tokenize
         inputs = tokenizer(prompt, return_tensors="pt").to(device)
@@ -115,6 +138,83 @@ async def chat(request: ChatRequest):
     except Exception as e:
         raise HTTPException(status_code=500, detail=f"Error generating response: {str(e)}")
 
+def extract_response(full_response: str) -> str:
+    """Keep only the generated text after the "### Response:" marker"""
+    if "### Response:" in full_response:
+        return full_response.split("### Response:")[-1].strip()
+    return full_response.strip()
+
+@app.post("/chat/batch", response_model=BatchChatResponse)
+def chat_batch(request: BatchChatRequest):
+    """
+    Generate replies for several messages in a single forward pass.
+    Responses are returned in the same order as the messages.
+    """
+    if model is None or tokenizer is None:
+        raise HTTPException(status_code=503, detail="Model not loaded")
+    if not request.messages:
+        return BatchChatResponse(responses=[], status="success")
+
+    try:
+        # Decoder-only models must be padded on the left to generate in batch
+        tokenizer.padding_side = "left"
+        if tokenizer.pad_token is None:
+            tokenizer.pad_token = tokenizer.eos_token
+
+        prompts = [build_prompt(message) for message in request.messages]
+        inputs = tokenizer(prompts, return_tensors="pt", padding=True).to(device)
+
+        with torch.no_grad():
+            outputs = model.generate(
+                **inputs,
+                max_new_tokens=request.max_tokens,
+                temperature=request.temperature,
+                top_p=0.9,
+                do_sample=True,
+                pad_token_id=tokenizer.pad_token_id
+            )
+
+        responses = [
+            extract_response(tokenizer.decode(output, skip_special_tokens=True))
+            for output in outputs
+        ]
+        return BatchChatResponse(responses=responses, status="success")
+
+    except Exception as e:
+        raise HTTPException(status_code=500, detail=f"Error generating responses: {str(e)}")
+
+@app.post("/chat/stream")
+async def chat_stream(request: ChatRequest):
+    """
+    Same as /chat, but streams the response as Server-Sent Events:
+    one `token` event per decoded chunk, then a final `done` event
+    """
+    if model is None or tokenizer is None:
+        raise HTTPException(status_code=503, detail="Model not loaded")
+
+    inputs = tokenizer(build_prompt(request.message, request.context), return_tensors="pt").to(device)
+    streamer = TextIteratorStreamer(tokenizer, skip_prompt=True, skip_special_tokens=True)
+
+    generation = Thread(target=model.generate, kwargs=dict(
+        **inputs,
+        streamer=streamer,
+        max_new_tokens=request.max_tokens,
+        temperature=request.temperature,
+        top_p=0.9,
+        do_sample=True,
+        pad_token_id=tokenizer.eos_token_id
+    ))
+    generation.start()
+
+    def events():
+        # The streamer yields blocking; StreamingResponse iterates it in a thread pool
+        for text in streamer:
+            if text:
+                yield f"event: token\ndata: {json.dumps({'token': text})}\n\n"
+        yield "event: done\ndata: {}\n\n"
+
+    return StreamingResponse(events(), media_type="text/event-stream")
+
 @app.get("/health")
 async def health_check():
     """Check if the model is loaded and ready"""